@@ -0,0 +1,64 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.fbk.rdfpro.util.Environment;
+
+final class Benchmarks {
+
+    /** Number of statements processed in each benchmark invocation. */
+    static final int SIZE = 100000;
+
+    /** Seed used for generating data, fixed for reproducibility. */
+    static final long SEED = 42L;
+
+    private Benchmarks() {
+    }
+
+    static void parallel(final int threads, final int size, final Slice slice)
+            throws Exception {
+        if (threads <= 1) {
+            slice.run(0, size);
+            return;
+        }
+        final List<Runnable> runnables = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            final int start = (int) ((long) size * i / threads);
+            final int end = (int) ((long) size * (i + 1) / threads);
+            runnables.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        slice.run(start, end);
+                    } catch (final Throwable ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+            });
+        }
+        Environment.run(runnables);
+    }
+
+    interface Slice {
+
+        void run(int start, int end) throws Exception;
+
+    }
+
+}
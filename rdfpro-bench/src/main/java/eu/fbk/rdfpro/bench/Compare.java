@@ -0,0 +1,112 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files in CSV format (option {@code -rf csv}), reporting the relative
+ * change of each benchmark score and flagging regressions.
+ * <p>
+ * Usage: {@code Compare BASELINE_CSV CURRENT_CSV [THRESHOLD_PERCENT]}. A benchmark is flagged as
+ * a regression if its throughput decreased by more than the threshold (default 5%) and by more
+ * than the sum of the two score errors. The exit code is 1 if some regression was found.
+ * </p>
+ */
+public final class Compare {
+
+    public static void main(final String... args) throws IOException {
+
+        if (args.length < 2) {
+            System.err.println("Usage: Compare BASELINE_CSV CURRENT_CSV [THRESHOLD_PERCENT]");
+            System.exit(2);
+        }
+
+        final Map<String, double[]> baseline = read(args[0]);
+        final Map<String, double[]> current = read(args[1]);
+        final double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+
+        int regressions = 0;
+        for (final Map.Entry<String, double[]> entry : current.entrySet()) {
+            final String key = entry.getKey();
+            final double[] cur = entry.getValue();
+            final double[] base = baseline.get(key);
+            if (base == null) {
+                System.out.printf("%-100s %14s %14.1f       new\n", key, "-", cur[0]);
+                continue;
+            }
+            final double delta = (cur[0] - base[0]) * 100.0 / base[0];
+            final boolean regression = delta < -threshold && base[0] - cur[0] > base[1] + cur[1];
+            regressions += regression ? 1 : 0;
+            System.out.printf("%-100s %14.1f %14.1f %+8.1f%%%s\n", key, base[0], cur[0], delta,
+                    regression ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d benchmarks compared, %d regressions (threshold %.1f%%)\n",
+                current.size(), regressions, threshold);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, double[]> read(final String file) throws IOException {
+        final List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        final List<String> header = split(lines.get(0));
+        final int scoreIndex = header.indexOf("Score");
+        final int errorIndex = header.indexOf("Score Error (99.9%)");
+        final Map<String, double[]> result = new LinkedHashMap<>();
+        for (final String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            final List<String> fields = split(line);
+            final StringBuilder key = new StringBuilder(fields.get(0));
+            for (int i = 0; i < header.size(); ++i) {
+                if (header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=');
+                    key.append(fields.get(i));
+                }
+            }
+            final double score = Double.parseDouble(fields.get(scoreIndex));
+            final String error = errorIndex < 0 ? "" : fields.get(errorIndex);
+            result.put(key.toString(), new double[] { score,
+                    error.isEmpty() || error.equals("NaN") ? 0.0 : Double.parseDouble(error) });
+        }
+        return result;
+    }
+
+    private static List<String> split(final String line) {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder builder = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); ++i) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(builder.toString());
+                builder.setLength(0);
+            } else {
+                builder.append(c);
+            }
+        }
+        fields.add(builder.toString());
+        return fields;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+
+import eu.fbk.rdfpro.util.StatementDeduplicator;
+import eu.fbk.rdfpro.util.StatementDeduplicator.ComparisonMethod;
+
+/**
+ * Measures the throughput (statements/s) of total and partial {@link StatementDeduplicator}s on
+ * data where 1 statement out of 4 is a duplicate of a previous statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeduplicatorBenchmark {
+
+    private static final int PARTIAL_CACHE_SIZE = 16 * 1024;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "URIS", "MIXED" })
+    public QuadGenerator.Shape shape;
+
+    @Param({ "IDENTITY", "EQUALS", "HASH" })
+    public ComparisonMethod method;
+
+    @Param({ "true", "false" })
+    public boolean total;
+
+    private Statement[] statements;
+
+    @Setup
+    public void setup() {
+        final Statement[] unique = QuadGenerator.generate(this.shape, Benchmarks.SIZE,
+                Benchmarks.SEED);
+        final Random random = new Random(Benchmarks.SEED);
+        this.statements = new Statement[Benchmarks.SIZE];
+        for (int i = 0; i < Benchmarks.SIZE; ++i) {
+            // duplicates refer to the same Statement object, as it happens in pipelines
+            this.statements[i] = i % 4 == 3 ? this.statements[random.nextInt(i)] : unique[i];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long add() throws Exception {
+        final StatementDeduplicator deduplicator = this.total ? StatementDeduplicator
+                .newTotalDeduplicator(this.method) : StatementDeduplicator
+                .newPartialDeduplicator(this.method, PARTIAL_CACHE_SIZE);
+        final LongAdder counter = new LongAdder();
+        Benchmarks.parallel(this.threads, this.statements.length, (start, end) -> {
+            int added = 0;
+            for (int i = start; i < end; ++i) {
+                added += deduplicator.add(this.statements[i]) ? 1 : 0;
+            }
+            counter.add(added);
+        });
+        return counter.sum();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+
+import eu.fbk.rdfpro.util.Hash;
+
+/**
+ * Measures the throughput (hashes/s) of {@link Hash#murmur3(CharSequence...)} on the string
+ * values of generated statements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashBenchmark {
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "URIS", "LITERALS" })
+    public QuadGenerator.Shape shape;
+
+    private String[] strings;
+
+    @Setup
+    public void setup() {
+        final Statement[] statements = QuadGenerator.generate(this.shape, Benchmarks.SIZE,
+                Benchmarks.SEED);
+        this.strings = new String[Benchmarks.SIZE];
+        for (int i = 0; i < Benchmarks.SIZE; ++i) {
+            this.strings[i] = statements[i].getObject().stringValue();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long murmur3() throws Exception {
+        final LongAdder counter = new LongAdder();
+        Benchmarks.parallel(this.threads, this.strings.length, (start, end) -> {
+            long sum = 0;
+            for (int i = start; i < end; ++i) {
+                sum += Hash.murmur3(this.strings[i]).getLow();
+            }
+            counter.add(sum);
+        });
+        return counter.sum();
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+
+import eu.fbk.rdfpro.util.IO;
+
+/**
+ * Measures the throughput (lines/s) of the streams returned by
+ * {@link IO#parallelBuffer(InputStream, byte)} and {@link IO#parallelBuffer(OutputStream, byte)}
+ * when newline-delimited records are read and written concurrently by multiple threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelBufferBenchmark {
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "URIS", "LITERALS" })
+    public QuadGenerator.Shape shape;
+
+    private byte[][] lines;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        final Statement[] statements = QuadGenerator.generate(this.shape, Benchmarks.SIZE,
+                Benchmarks.SEED);
+        this.lines = new byte[statements.length][];
+        int size = 0;
+        for (int i = 0; i < statements.length; ++i) {
+            final String line = statements[i].toString().replace('\n', ' ') + "\n";
+            this.lines[i] = line.getBytes(StandardCharsets.UTF_8);
+            size += this.lines[i].length;
+        }
+        this.data = new byte[size];
+        int offset = 0;
+        for (final byte[] line : this.lines) {
+            System.arraycopy(line, 0, this.data, offset, line.length);
+            offset += line.length;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long read() throws Exception {
+        final LongAdder counter = new LongAdder();
+        final InputStream stream = new ByteArrayInputStream(this.data);
+        final InputStream[] ins = new InputStream[this.threads];
+        for (int i = 0; i < this.threads; ++i) {
+            ins[i] = IO.parallelBuffer(stream, (byte) '\n'); // all opened before any close
+        }
+        Benchmarks.parallel(this.threads, this.threads, (start, end) -> {
+            final byte[] buffer = new byte[8192];
+            for (int t = start; t < end; ++t) {
+                long lines = 0;
+                int count;
+                while ((count = ins[t].read(buffer)) > 0) {
+                    for (int i = 0; i < count; ++i) {
+                        lines += buffer[i] == '\n' ? 1 : 0;
+                    }
+                }
+                ins[t].close();
+                counter.add(lines);
+            }
+        });
+        return counter.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long write() throws Exception {
+        final LongAdder counter = new LongAdder();
+        final OutputStream stream = new OutputStream() {
+
+            @Override
+            public void write(final int b) {
+                counter.increment();
+            }
+
+            @Override
+            public void write(final byte[] buf, final int off, final int len) {
+                counter.add(len);
+            }
+
+        };
+        final OutputStream[] outs = new OutputStream[this.threads];
+        for (int i = 0; i < this.threads; ++i) {
+            outs[i] = IO.parallelBuffer(stream, (byte) '\n'); // all opened before any close
+        }
+        Benchmarks.parallel(this.threads, this.threads, (start, end) -> {
+            for (int t = start; t < end; ++t) {
+                final int from = this.lines.length * t / this.threads;
+                final int to = this.lines.length * (t + 1) / this.threads;
+                for (int i = from; i < to; ++i) {
+                    outs[t].write(this.lines[i]);
+                }
+                outs[t].close();
+            }
+        });
+        return counter.sum();
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.Objects;
+import java.util.Random;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+import eu.fbk.rdfpro.util.Statements;
+
+/**
+ * Deterministic generator of synthetic quads.
+ * <p>
+ * The same {@code (shape, seed)} pair always produces the same sequence of quads, so that
+ * benchmark results are reproducible without downloading data. Generated data resembles an
+ * encyclopedic KB (e.g., DBpedia): subjects are picked with a skewed distribution (few hub
+ * entities have many statements), 1 statement out of 8 is an {@code rdf:type}, predicates and
+ * contexts are drawn from small vocabularies and objects depend on the {@link Shape}.
+ * </p>
+ */
+public final class QuadGenerator {
+
+    private static final String NS = "http://example.org/";
+
+    private static final int NUM_PREDICATES = 64;
+
+    private static final int NUM_CLASSES = 32;
+
+    private static final int NUM_CONTEXTS = 16;
+
+    private static final String[] LANGUAGES = { "en", "it", "de", "fr" };
+
+    private static final URI[] DATATYPES = { XMLSchema.INT, XMLSchema.DOUBLE, XMLSchema.DATE,
+            XMLSchema.BOOLEAN };
+
+    private final ValueFactory factory;
+
+    private final Shape shape;
+
+    private final Random random;
+
+    private final int numEntities;
+
+    private final URI[] predicates;
+
+    private final URI[] classes;
+
+    private final Resource[] contexts;
+
+    public QuadGenerator(final Shape shape, final int numEntities, final long seed) {
+        this(Statements.VALUE_FACTORY, shape, numEntities, seed);
+    }
+
+    public QuadGenerator(final ValueFactory factory, final Shape shape, final int numEntities,
+            final long seed) {
+        this.factory = Objects.requireNonNull(factory);
+        this.shape = Objects.requireNonNull(shape);
+        this.random = new Random(seed);
+        this.numEntities = Math.max(1, numEntities);
+        this.predicates = new URI[NUM_PREDICATES];
+        for (int i = 0; i < NUM_PREDICATES; ++i) {
+            this.predicates[i] = factory.createURI(NS + "ontology/property" + i);
+        }
+        this.classes = new URI[NUM_CLASSES];
+        for (int i = 0; i < NUM_CLASSES; ++i) {
+            this.classes[i] = factory.createURI(NS + "ontology/Class" + i);
+        }
+        this.contexts = new Resource[NUM_CONTEXTS];
+        for (int i = 0; i < NUM_CONTEXTS; ++i) {
+            this.contexts[i] = factory.createURI(NS + "graph/" + i);
+        }
+    }
+
+    public static Statement[] generate(final Shape shape, final int numStatements,
+            final long seed) {
+        final QuadGenerator generator = new QuadGenerator(shape, numStatements / 8, seed);
+        final Statement[] statements = new Statement[numStatements];
+        for (int i = 0; i < numStatements; ++i) {
+            statements[i] = generator.next();
+        }
+        return statements;
+    }
+
+    public Statement next() {
+        final Resource subj = entity();
+        final Resource ctx = this.contexts[this.random.nextInt(NUM_CONTEXTS)];
+        if (this.random.nextInt(8) == 0) {
+            return this.factory.createStatement(subj, RDF.TYPE,
+                    this.classes[this.random.nextInt(NUM_CLASSES)], ctx);
+        }
+        final boolean literal = this.shape == Shape.LITERALS || this.shape == Shape.MIXED
+                && this.random.nextBoolean();
+        final URI pred = literal && this.random.nextInt(4) == 0 ? RDFS.LABEL
+                : this.predicates[this.random.nextInt(NUM_PREDICATES)];
+        final Value obj = literal ? literal() : entity();
+        return this.factory.createStatement(subj, pred, obj, ctx);
+    }
+
+    private Resource entity() {
+        // Squaring a uniform variable skews the distribution towards low indexes
+        final double r = this.random.nextDouble();
+        final int index = (int) (r * r * this.numEntities);
+        if (this.shape == Shape.MIXED && index % 10 == 9) {
+            return this.factory.createBNode("b" + index);
+        }
+        return this.factory.createURI(NS + "resource/Entity_" + index);
+    }
+
+    private Literal literal() {
+        switch (this.random.nextInt(3)) {
+        case 0:
+            final StringBuilder builder = new StringBuilder();
+            final int numWords = 1 + this.random.nextInt(12);
+            for (int i = 0; i < numWords; ++i) {
+                builder.append(i == 0 ? "" : " ").append("word").append(this.random.nextInt(5000));
+            }
+            return this.factory.createLiteral(builder.toString(),
+                    LANGUAGES[this.random.nextInt(LANGUAGES.length)]);
+        case 1:
+            final URI datatype = DATATYPES[this.random.nextInt(DATATYPES.length)];
+            final String label = datatype == XMLSchema.INT ? Integer.toString(this.random
+                    .nextInt(100000)) : datatype == XMLSchema.DOUBLE ? Double
+                    .toString(this.random.nextInt(100000) / 100.0)
+                    : datatype == XMLSchema.DATE ? String.format("%04d-%02d-%02d",
+                            1900 + this.random.nextInt(120), 1 + this.random.nextInt(12),
+                            1 + this.random.nextInt(28)) : Boolean.toString(this.random
+                            .nextBoolean());
+            return this.factory.createLiteral(label, datatype);
+        default:
+            return this.factory.createLiteral("Label \"" + this.random.nextInt(100000)
+                    + "\"\n\u00e0\u00e8\u00ec");
+        }
+    }
+
+    /**
+     * The shape of generated data, controlling the type of statement objects.
+     */
+    public enum Shape {
+
+        /** Objects are URIs (link-like data, e.g., page links or object properties). */
+        URIS,
+
+        /** Objects are literals (attribute-like data, e.g., labels and abstracts). */
+        LITERALS,
+
+        /** Objects are URIs or literals with equal probability; 10% of entities are BNodes. */
+        MIXED
+
+    }
+
+}
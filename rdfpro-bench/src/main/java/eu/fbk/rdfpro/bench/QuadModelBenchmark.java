@@ -0,0 +1,93 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Measures the throughput (statements/s) of loading a {@link QuadModel} and of looking up
+ * statements by subject and by predicate-object. {@code QuadModel} is not thread-safe, so these
+ * benchmarks are single-threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuadModelBenchmark {
+
+    @Param({ "URIS", "LITERALS", "MIXED" })
+    public QuadGenerator.Shape shape;
+
+    private Statement[] statements;
+
+    private QuadModel model;
+
+    @Setup
+    public void setup() {
+        this.statements = QuadGenerator.generate(this.shape, Benchmarks.SIZE, Benchmarks.SEED);
+        this.model = QuadModel.create();
+        for (final Statement statement : this.statements) {
+            this.model.add(statement);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public int load() {
+        final QuadModel model = QuadModel.create();
+        for (final Statement statement : this.statements) {
+            model.add(statement);
+        }
+        return model.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long lookupSubject() {
+        long count = 0;
+        for (final Statement statement : this.statements) {
+            count += this.model.size(statement.getSubject(), null, null);
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long lookupPredicateObject() {
+        long count = 0;
+        for (final Statement statement : this.statements) {
+            count += this.model.size(null, statement.getPredicate(), statement.getObject());
+        }
+        return count;
+    }
+
+}
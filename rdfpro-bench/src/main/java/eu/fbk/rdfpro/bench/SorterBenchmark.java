@@ -0,0 +1,88 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+
+import eu.fbk.rdfpro.util.Sorter;
+
+/**
+ * Measures the throughput (statements/s) of {@link Sorter} when sorting and deduplicating
+ * statements emitted by multiple threads. The sort implementation is selected with
+ * {@code -jvmArgs -Drdfpro.sort.mode=binary|external}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SorterBenchmark {
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "URIS", "LITERALS", "MIXED" })
+    public QuadGenerator.Shape shape;
+
+    @Param({ "true", "false" })
+    public boolean compress;
+
+    private Statement[] statements;
+
+    @Setup
+    public void setup() {
+        this.statements = QuadGenerator.generate(this.shape, Benchmarks.SIZE, Benchmarks.SEED);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long sort() throws Exception {
+        final LongAdder counter = new LongAdder();
+        try (final Sorter<Statement> sorter = Sorter.newStatementSorter(this.compress)) {
+            sorter.start(true);
+            Benchmarks.parallel(this.threads, this.statements.length, (start, end) -> {
+                for (int i = start; i < end; ++i) {
+                    sorter.emit(this.statements[i]);
+                }
+            });
+            sorter.end(this.threads > 1, new Consumer<Statement>() {
+
+                @Override
+                public void accept(final Statement statement) {
+                    counter.increment();
+                }
+
+            });
+        }
+        return counter.sum();
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.model.vocabulary.RDF;
+
+import eu.fbk.rdfpro.util.StatementMatcher;
+
+/**
+ * Measures the throughput (statements/s) of {@link StatementMatcher} when matching statements
+ * and mapping them to the values associated to matched patterns. Patterns are built from
+ * generated data, using subject-only, predicate-only and type-class masks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatementMatcherBenchmark {
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "URIS", "MIXED" })
+    public QuadGenerator.Shape shape;
+
+    @Param({ "16", "256" })
+    public int patterns;
+
+    private Statement[] statements;
+
+    private StatementMatcher matcher;
+
+    @Setup
+    public void setup() {
+        this.statements = QuadGenerator.generate(this.shape, Benchmarks.SIZE, Benchmarks.SEED);
+        final Random random = new Random(Benchmarks.SEED);
+        final StatementMatcher.Builder builder = StatementMatcher.builder();
+        for (int i = 0; i < this.patterns; ++i) {
+            final Statement stmt = this.statements[random.nextInt(this.statements.length)];
+            if (i % 4 == 0) {
+                builder.addValues(stmt.getSubject(), null, null, null, null, i);
+            } else if (i % 4 == 1 && stmt.getPredicate().equals(RDF.TYPE)) {
+                builder.addValues(null, RDF.TYPE, stmt.getObject(), null, null, i);
+            } else {
+                builder.addValues(null, stmt.getPredicate(), null, null, null, i);
+            }
+        }
+        this.matcher = builder.build(null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long match() throws Exception {
+        final LongAdder counter = new LongAdder();
+        Benchmarks.parallel(this.threads, this.statements.length, (start, end) -> {
+            int matched = 0;
+            for (int i = start; i < end; ++i) {
+                matched += this.matcher.match(this.statements[i]) ? 1 : 0;
+            }
+            counter.add(matched);
+        });
+        return counter.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long map() throws Exception {
+        final LongAdder counter = new LongAdder();
+        Benchmarks.parallel(this.threads, this.statements.length, (start, end) -> {
+            long mapped = 0;
+            for (int i = start; i < end; ++i) {
+                final Statement stmt = this.statements[i];
+                final List<Integer> values = this.matcher.map(stmt.getSubject(),
+                        stmt.getPredicate(), stmt.getObject(), stmt.getContext(),
+                        Integer.class);
+                mapped += values == null ? 0 : values.size();
+            }
+            counter.add(mapped);
+        });
+        return counter.sum();
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import eu.fbk.rdfpro.tql.TQLParser;
+import eu.fbk.rdfpro.tql.TQLWriter;
+
+/**
+ * Measures the single-thread throughput (statements/s) of {@link TQLParser} and
+ * {@link TQLWriter} on in-memory data, so that I/O is not included in the measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TQLBenchmark {
+
+    @Param({ "URIS", "LITERALS", "MIXED" })
+    public QuadGenerator.Shape shape;
+
+    private Statement[] statements;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() throws RDFHandlerException {
+        this.statements = QuadGenerator.generate(this.shape, Benchmarks.SIZE, Benchmarks.SEED);
+        this.data = write(this.statements);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long parse() throws Exception {
+        final long[] counter = new long[1];
+        try (InputStream in = new ByteArrayInputStream(this.data)) {
+            final TQLParser parser = new TQLParser();
+            parser.setRDFHandler(new RDFHandlerBase() {
+
+                @Override
+                public void handleStatement(final Statement statement) {
+                    ++counter[0];
+                }
+
+            });
+            parser.parse(in, "");
+        }
+        return counter[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public int write() throws RDFHandlerException {
+        return write(this.statements).length;
+    }
+
+    private static byte[] write(final Statement[] statements) throws RDFHandlerException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(statements.length * 128);
+        final TQLWriter writer = new TQLWriter(out);
+        writer.startRDF();
+        for (final Statement statement : statements) {
+            writer.handleStatement(statement);
+        }
+        writer.endRDF();
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.bench;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+import eu.fbk.rdfpro.util.Statements;
+
+/**
+ * Measures the throughput (statements/s) of the RDFpro hash-based value factory (the default
+ * {@link Statements#VALUE_FACTORY}) compared to the Sesame one, when creating statements from
+ * strings and when using the resulting statements as hash keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValueFactoryBenchmark {
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "URIS", "MIXED" })
+    public QuadGenerator.Shape shape;
+
+    @Param({ "rdfpro", "sesame" })
+    public String factory;
+
+    private ValueFactory valueFactory;
+
+    private Statement[] statements;
+
+    private Statement[] copies;
+
+    @Setup
+    public void setup() {
+        this.valueFactory = "sesame".equals(this.factory) ? ValueFactoryImpl.getInstance()
+                : Statements.VALUE_FACTORY;
+        this.statements = new Statement[Benchmarks.SIZE];
+        this.copies = new Statement[Benchmarks.SIZE];
+        final QuadGenerator generator = new QuadGenerator(this.valueFactory, this.shape,
+                Benchmarks.SIZE / 8, Benchmarks.SEED);
+        final QuadGenerator copyGenerator = new QuadGenerator(this.valueFactory, this.shape,
+                Benchmarks.SIZE / 8, Benchmarks.SEED);
+        for (int i = 0; i < Benchmarks.SIZE; ++i) {
+            this.statements[i] = generator.next();
+            this.copies[i] = copyGenerator.next(); // equal to statements[i], different objects
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public long create() throws Exception {
+        final LongAdder counter = new LongAdder();
+        final ValueFactory vf = this.valueFactory;
+        Benchmarks.parallel(this.threads, this.statements.length, (start, end) -> {
+            long hash = 0;
+            for (int i = start; i < end; ++i) {
+                final Statement stmt = this.statements[i];
+                final Statement created = vf.createStatement(
+                        (Resource) copy(vf, stmt.getSubject()),
+                        (URI) copy(vf, stmt.getPredicate()), copy(vf, stmt.getObject()),
+                        (Resource) copy(vf, stmt.getContext()));
+                hash += created.hashCode();
+            }
+            counter.add(hash);
+        });
+        return counter.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Benchmarks.SIZE)
+    public int hashSet() {
+        final Set<Statement> set = new HashSet<>();
+        for (final Statement statement : this.statements) {
+            set.add(statement);
+        }
+        int found = 0;
+        for (final Statement copy : this.copies) {
+            found += set.contains(copy) ? 1 : 0;
+        }
+        return found;
+    }
+
+    private static Value copy(final ValueFactory vf, @Nullable final Value value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof URI) {
+            return vf.createURI(value.stringValue());
+        } else if (value instanceof BNode) {
+            return vf.createBNode(((BNode) value).getID());
+        } else {
+            final Literal literal = (Literal) value;
+            return literal.getLanguage() != null ? vf.createLiteral(literal.getLabel(),
+                    literal.getLanguage()) : literal.getDatatype() != null ? vf.createLiteral(
+                    literal.getLabel(), literal.getDatatype()) : vf.createLiteral(literal
+                    .getLabel());
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.RioSettingImpl;
+
+/**
+ * Constants for the Binary Quads format.
+ * <p>
+ * The Binary Quads {@link RDFFormat} is defined by constant {@link #FORMAT}; the format is
+ * registered in the RIO registry via the parser and writer factories of this module. Constant
+ * {@link #BLOCK_SIZE} is an optional setting controlling the number of statements per block
+ * produced by {@link BinaryQuadsWriter}.
+ * </p>
+ * <p>
+ * A Binary Quads file is a sequence of independent blocks, each one encoding up to
+ * {@code BLOCK_SIZE} statements as: (i) the namespace declarations received since the previous
+ * block; (ii) a dictionary of the distinct RDF values in the block, where URIs are split in
+ * namespace and local name, namespaces, languages and datatypes are stored once per block, and
+ * canonical integer, boolean, date and dateTime literals are packed as numbers; and (iii) four
+ * columns of dictionary indexes for subjects, predicates, objects and contexts. Each block is
+ * compressed (Deflate at best speed) and escaped so that it never contains byte {@code '\n'},
+ * which is used to terminate the block. As a consequence, a Binary Quads file can be split at
+ * {@code '\n'} bytes and its pieces parsed in parallel, like a line-based text format, and the
+ * output of multiple writers can be concatenated.
+ * </p>
+ */
+public final class BinaryQuads {
+
+    /** RDFFormat constant for the Binary Quads format. */
+    public static final RDFFormat FORMAT = new RDFFormat("Binary Quads",
+            "application/x-rdfpro-bq", null, "bq", true, true);
+
+    /** Optional setting specifying the maximum number of statements in a block. */
+    public static final RioSetting<Integer> BLOCK_SIZE = new RioSettingImpl<Integer>(
+            "eu.fbk.bq.blocksize", "The maximum number of statements per Binary Quads block",
+            16 * 1024);
+
+    // Package protected constants and utility methods
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final int MAGIC = 0xB9; // first byte of each block
+
+    static final int VERSION = 1; // second byte of each block
+
+    static final int FLAG_DEFLATE = 0x01; // block payload is compressed
+
+    static final int DELIMITER = '\n'; // block terminator
+
+    static final int ESCAPE = 0x1B; // escape byte, followed by ESCAPED_XXX
+
+    static final int ESCAPED_DELIMITER = 0x01;
+
+    static final int ESCAPED_ESCAPE = 0x02;
+
+    static final int TYPE_URI = 0;
+
+    static final int TYPE_BNODE = 1;
+
+    static final int TYPE_PLAIN = 2;
+
+    static final int TYPE_LANG = 3;
+
+    static final int TYPE_TYPED = 4;
+
+    static final int TYPE_LONG = 5; // integer literal with datatype in LONG_DATATYPES
+
+    static final int TYPE_TRUE = 6; // xsd:boolean true
+
+    static final int TYPE_FALSE = 7; // xsd:boolean false
+
+    static final int TYPE_DATE = 8; // xsd:date as epoch day
+
+    static final int TYPE_DATETIME = 9; // xsd:dateTime without timezone as epoch second
+
+    static final int TYPE_DATETIME_UTC = 10; // xsd:dateTime with 'Z' timezone as epoch second
+
+    static final Set<URI> LONG_DATATYPES = new HashSet<URI>(Arrays.asList(XMLSchema.INTEGER,
+            XMLSchema.LONG, XMLSchema.INT, XMLSchema.SHORT, XMLSchema.BYTE,
+            XMLSchema.NON_NEGATIVE_INTEGER, XMLSchema.NON_POSITIVE_INTEGER,
+            XMLSchema.NEGATIVE_INTEGER, XMLSchema.POSITIVE_INTEGER, XMLSchema.UNSIGNED_LONG,
+            XMLSchema.UNSIGNED_INT, XMLSchema.UNSIGNED_SHORT, XMLSchema.UNSIGNED_BYTE));
+
+    static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+
+    private BinaryQuads() {
+    }
+
+    static boolean isCanonicalLong(final String label) {
+        final int length = label.length();
+        final int start = length > 0 && label.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 18 || label.charAt(start) == '0'
+                && (length > start + 1 || start == 1)) {
+            return false; // empty, too long to be safely parsed or with leading zeros
+        }
+        for (int i = start; i < length; ++i) {
+            final char c = label.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long parseDate(final String label) {
+        // return epoch day or Long.MIN_VALUE if the label is not a canonical 'yyyy-MM-dd' date
+        if (label.length() == 10 && label.charAt(4) == '-' && label.charAt(7) == '-') {
+            try {
+                final LocalDate date = LocalDate.parse(label);
+                if (date.toString().equals(label)) {
+                    return date.toEpochDay();
+                }
+            } catch (final DateTimeParseException ex) {
+                // ignore
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    static String formatDate(final long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    static long parseDateTime(final String label) {
+        // return epoch second or Long.MIN_VALUE if the label is not 'yyyy-MM-ddTHH:mm:ss'
+        if (label.length() == 19 && label.charAt(10) == 'T') {
+            try {
+                final LocalDateTime dateTime = LocalDateTime.parse(label, DATETIME_FORMATTER);
+                if (DATETIME_FORMATTER.format(dateTime).equals(label)) {
+                    return dateTime.toEpochSecond(ZoneOffset.UTC);
+                }
+            } catch (final DateTimeParseException ex) {
+                // ignore
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    static String formatDateTime(final long epochSecond) {
+        return DATETIME_FORMATTER.format(LocalDateTime.ofEpochSecond(epochSecond, 0,
+                ZoneOffset.UTC));
+    }
+
+    static void writeNumber(final ByteArrayOutputStream out, final long number) {
+        long n = number;
+        while ((n & ~0x7FL) != 0) {
+            out.write((int) n & 0x7F | 0x80);
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+
+    static void writeSignedNumber(final ByteArrayOutputStream out, final long number) {
+        writeNumber(out, number << 1 ^ number >> 63); // zig-zag encoding
+    }
+
+    static void writeString(final ByteArrayOutputStream out, final String string) {
+        final byte[] bytes = string.getBytes(UTF8);
+        writeNumber(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.RDFParserBase;
+
+/**
+ * A parser that can parse RDF documents that are in the Binary Quads format.
+ * <p>
+ * The parser can be applied to any sequence of complete blocks, such as the pieces obtained by
+ * splitting a Binary Quads file at {@code '\n'} bytes. Values in a block dictionary are created
+ * once and shared by all the statements of the block.
+ * </p>
+ */
+public class BinaryQuadsParser extends RDFParserBase {
+
+    private InputStream stream;
+
+    private byte[] buffer; // read buffer
+
+    private int pos; // index of next byte to consume in read buffer
+
+    private int limit; // number of valid bytes in read buffer
+
+    private byte[] block; // current unescaped block
+
+    private int blockLength; // length of current block
+
+    private byte[] data; // current decoded (decompressed) block payload
+
+    private int offset; // current offset in data
+
+    private Inflater inflater;
+
+    private int blockNo;
+
+    /**
+     * Creates a new BinaryQuadsParser that will use a {@link ValueFactoryImpl} to create RDF
+     * model objects.
+     */
+    public BinaryQuadsParser() {
+        super();
+    }
+
+    /**
+     * Creates a new BinaryQuadsParser that will use the supplied ValueFactory to create RDF
+     * model objects.
+     *
+     * @param valueFactory
+     *            the ValueFactory to use
+     */
+    public BinaryQuadsParser(final ValueFactory valueFactory) {
+        super(valueFactory);
+    }
+
+    @Override
+    public RDFFormat getRDFFormat() {
+        return BinaryQuads.FORMAT;
+    }
+
+    /**
+     * Throws an {@link UnsupportedOperationException}, as Binary Quads is a binary format.
+     */
+    @Override
+    public void parse(final Reader reader, final String baseURI) throws IOException,
+            RDFParseException, RDFHandlerException {
+        throw new UnsupportedOperationException("Binary Quads is a binary format: "
+                + "use parse(InputStream, String)");
+    }
+
+    @Override
+    public void parse(final InputStream stream, final String baseURI) throws IOException,
+            RDFParseException, RDFHandlerException {
+
+        if (stream == null) {
+            throw new NullPointerException("Null stream");
+        }
+
+        if (this.rdfHandler != null) {
+            this.rdfHandler.startRDF();
+        }
+
+        this.stream = stream;
+        this.buffer = new byte[64 * 1024];
+        this.pos = 0;
+        this.limit = 0;
+        this.block = new byte[64 * 1024];
+        this.data = null;
+        this.inflater = new Inflater(true);
+        this.blockNo = 0;
+
+        try {
+            while (readBlock()) {
+                ++this.blockNo;
+                reportLocation(this.blockNo, -1);
+                parseBlock();
+            }
+        } finally {
+            clear();
+            this.inflater.end();
+            this.stream = null;
+            this.buffer = null;
+            this.block = null;
+            this.data = null;
+            this.inflater = null;
+        }
+
+        if (this.rdfHandler != null) {
+            this.rdfHandler.endRDF();
+        }
+    }
+
+    private boolean readBlock() throws IOException, RDFParseException {
+
+        // Read bytes up to the next delimiter, removing escapes
+        this.blockLength = 0;
+        boolean escape = false;
+        while (true) {
+            if (this.pos == this.limit) {
+                this.pos = 0;
+                this.limit = Math.max(0, this.stream.read(this.buffer));
+                if (this.limit == 0) {
+                    if (this.blockLength > 0 || escape) {
+                        throwParseException("Truncated block");
+                    }
+                    return false;
+                }
+            }
+            final byte b = this.buffer[this.pos++];
+            if (escape) {
+                if (b == BinaryQuads.ESCAPED_DELIMITER) {
+                    append(BinaryQuads.DELIMITER);
+                } else if (b == BinaryQuads.ESCAPED_ESCAPE) {
+                    append(BinaryQuads.ESCAPE);
+                } else {
+                    throwParseException("Invalid escape sequence");
+                }
+                escape = false;
+            } else if (b == BinaryQuads.ESCAPE) {
+                escape = true;
+            } else if (b == BinaryQuads.DELIMITER) {
+                return true;
+            } else {
+                append(b);
+            }
+        }
+    }
+
+    private void append(final int b) {
+        if (this.blockLength == this.block.length) {
+            this.block = Arrays.copyOf(this.block, this.block.length * 2);
+        }
+        this.block[this.blockLength++] = (byte) b;
+    }
+
+    private void parseBlock() throws IOException, RDFParseException, RDFHandlerException {
+
+        // Check header and decompress payload if necessary
+        if (this.blockLength < 4 || (this.block[0] & 0xFF) != BinaryQuads.MAGIC) {
+            throwParseException("Invalid block header");
+        } else if (this.block[1] != BinaryQuads.VERSION) {
+            throwParseException("Unsupported version " + this.block[1]);
+        }
+        final boolean deflated = (this.block[2] & BinaryQuads.FLAG_DEFLATE) != 0;
+        this.data = this.block;
+        this.offset = 3;
+        final int length = (int) readNumber();
+        if (deflated) {
+            final byte[] compressed = this.block;
+            final int compressedOffset = this.offset;
+            this.data = new byte[length];
+            this.inflater.reset();
+            this.inflater.setInput(compressed, compressedOffset, this.blockLength
+                    - compressedOffset);
+            try {
+                int n = 0;
+                while (n < length && !this.inflater.finished()) {
+                    final int count = this.inflater.inflate(this.data, n, length - n);
+                    if (count == 0 && (this.inflater.needsInput() || this.inflater
+                            .needsDictionary())) {
+                        break;
+                    }
+                    n += count;
+                }
+                if (n != length) {
+                    throwParseException("Invalid compressed block");
+                }
+            } catch (final DataFormatException ex) {
+                throwParseException("Invalid compressed block: " + ex.getMessage());
+            }
+            this.offset = 0;
+        }
+
+        // Decode and emit namespaces
+        final int namespaceCount = (int) readNumber();
+        for (int i = 0; i < namespaceCount; ++i) {
+            final String prefix = readString();
+            final String namespace = readString();
+            if (this.rdfHandler != null) {
+                this.rdfHandler.handleNamespace(prefix, namespace);
+            }
+        }
+
+        // Decode dictionary
+        final List<String> names = new ArrayList<String>();
+        final Value[] values = new Value[(int) readNumber()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = readValue(names);
+        }
+
+        // Decode columns and emit statements
+        final int size = (int) readNumber();
+        final int[][] columns = new int[4][size];
+        for (int i = 0; i < 4; ++i) {
+            for (int j = 0; j < size; ++j) {
+                columns[i][j] = (int) readNumber();
+            }
+        }
+        if (this.rdfHandler != null) {
+            for (int j = 0; j < size; ++j) {
+                final Resource subj = (Resource) values[columns[0][j]];
+                final URI pred = (URI) values[columns[1][j]];
+                final Value obj = values[columns[2][j]];
+                final int ctxIndex = columns[3][j];
+                final Statement statement = ctxIndex == 0 ? createStatement(subj, pred, obj)
+                        : createStatement(subj, pred, obj, (Resource) values[ctxIndex - 1]);
+                this.rdfHandler.handleStatement(statement);
+            }
+        }
+    }
+
+    private Value readValue(final List<String> names) throws RDFParseException {
+        final int type = this.data[this.offset++];
+        switch (type) {
+        case BinaryQuads.TYPE_URI:
+            final String namespace = readName(names);
+            return createURI(namespace + readString());
+        case BinaryQuads.TYPE_BNODE:
+            return createBNode(readString());
+        case BinaryQuads.TYPE_PLAIN:
+            return createLiteral(readString(), null, null);
+        case BinaryQuads.TYPE_LANG:
+            final String language = readName(names);
+            return createLiteral(readString(), language, null);
+        case BinaryQuads.TYPE_TYPED:
+            final URI datatype = createURI(readName(names));
+            return createLiteral(readString(), null, datatype);
+        case BinaryQuads.TYPE_LONG:
+            final URI longDatatype = createURI(readName(names));
+            return createLiteral(Long.toString(readSignedNumber()), null, longDatatype);
+        case BinaryQuads.TYPE_TRUE:
+            return createLiteral("true", null, XMLSchema.BOOLEAN);
+        case BinaryQuads.TYPE_FALSE:
+            return createLiteral("false", null, XMLSchema.BOOLEAN);
+        case BinaryQuads.TYPE_DATE:
+            return createLiteral(BinaryQuads.formatDate(readSignedNumber()), null,
+                    XMLSchema.DATE);
+        case BinaryQuads.TYPE_DATETIME:
+            return createLiteral(BinaryQuads.formatDateTime(readSignedNumber()), null,
+                    XMLSchema.DATETIME);
+        case BinaryQuads.TYPE_DATETIME_UTC:
+            return createLiteral(BinaryQuads.formatDateTime(readSignedNumber()) + "Z", null,
+                    XMLSchema.DATETIME);
+        default:
+            throwParseException("Invalid value type " + type);
+            return null;
+        }
+    }
+
+    private String readName(final List<String> names) {
+        final int index = (int) readNumber();
+        if (index > 0) {
+            return names.get(index - 1);
+        }
+        final String name = readString();
+        names.add(name);
+        return name;
+    }
+
+    private String readString() {
+        final int length = (int) readNumber();
+        final String string = new String(this.data, this.offset, length, BinaryQuads.UTF8);
+        this.offset += length;
+        return string;
+    }
+
+    private long readSignedNumber() {
+        final long n = readNumber();
+        return n >>> 1 ^ -(n & 1);
+    }
+
+    private long readNumber() {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            final byte b = this.data[this.offset++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private void throwParseException(final String message) throws RDFParseException {
+        throw new RDFParseException(message, this.blockNo, -1);
+    }
+
+}
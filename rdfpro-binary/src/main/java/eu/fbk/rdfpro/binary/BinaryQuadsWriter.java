@@ -0,0 +1,296 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFWriterBase;
+
+/**
+ * An implementation of the RDFWriter interface that writes RDF documents in the Binary Quads
+ * format.
+ * <p>
+ * Statements are accumulated in blocks of size controlled by setting
+ * {@link BinaryQuads#BLOCK_SIZE}; each block is encoded, compressed and written to the output
+ * stream with a single write operation when complete (or at the end of the document).
+ * </p>
+ */
+public class BinaryQuadsWriter extends RDFWriterBase {
+
+    private final OutputStream stream;
+
+    private final Map<Value, Integer> valueIndex; // value -> index in block dictionary
+
+    private final List<Value> values; // block dictionary
+
+    private final List<String> namespaces; // prefix, namespace pairs for next block
+
+    private int[][] columns; // subject, predicate, object, context columns
+
+    private int size; // number of statements in current block
+
+    private int blockSize;
+
+    private Deflater deflater;
+
+    /**
+     * Creates a new BinaryQuadsWriter that will write to the supplied OutputStream.
+     *
+     * @param stream
+     *            the OutputStream to write to
+     */
+    public BinaryQuadsWriter(final OutputStream stream) {
+        if (stream == null) {
+            throw new NullPointerException("Null stream");
+        }
+        this.stream = stream;
+        this.valueIndex = new HashMap<Value, Integer>();
+        this.values = new ArrayList<Value>();
+        this.namespaces = new ArrayList<String>();
+    }
+
+    @Override
+    public RDFFormat getRDFFormat() {
+        return BinaryQuads.FORMAT;
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+        this.blockSize = Math.max(1, getWriterConfig().get(BinaryQuads.BLOCK_SIZE));
+        this.columns = new int[4][Math.min(this.blockSize, 1024)];
+        this.size = 0;
+        this.deflater = new Deflater(Deflater.BEST_SPEED, true);
+    }
+
+    @Override
+    public void handleComment(final String comment) throws RDFHandlerException {
+        // nothing to do
+    }
+
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException {
+        this.namespaces.add(prefix);
+        this.namespaces.add(uri);
+    }
+
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException {
+
+        if (this.size == this.columns[0].length) {
+            final int newLength = Math.min(this.blockSize, this.size * 2);
+            for (int i = 0; i < 4; ++i) {
+                this.columns[i] = Arrays.copyOf(this.columns[i], newLength);
+            }
+        }
+
+        final Resource context = statement.getContext();
+        this.columns[0][this.size] = indexOf(statement.getSubject());
+        this.columns[1][this.size] = indexOf(statement.getPredicate());
+        this.columns[2][this.size] = indexOf(statement.getObject());
+        this.columns[3][this.size] = context == null ? 0 : indexOf(context) + 1;
+        ++this.size;
+
+        if (this.size == this.blockSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        try {
+            if (this.size > 0 || !this.namespaces.isEmpty()) {
+                flush();
+            }
+            this.stream.flush();
+        } catch (final IOException ex) {
+            throw new RDFHandlerException(ex);
+        } finally {
+            this.deflater.end();
+        }
+    }
+
+    private int indexOf(final Value value) {
+        Integer index = this.valueIndex.get(value);
+        if (index == null) {
+            index = this.values.size();
+            this.valueIndex.put(value, index);
+            this.values.add(value);
+        }
+        return index;
+    }
+
+    private void flush() throws RDFHandlerException {
+
+        // Encode namespaces, dictionary and columns
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(this.values.size() * 32
+                + this.size * 8);
+        final Map<String, Integer> names = new HashMap<String, Integer>();
+        BinaryQuads.writeNumber(out, this.namespaces.size() / 2);
+        for (final String string : this.namespaces) {
+            BinaryQuads.writeString(out, string);
+        }
+        BinaryQuads.writeNumber(out, this.values.size());
+        for (final Value value : this.values) {
+            writeValue(out, names, value);
+        }
+        BinaryQuads.writeNumber(out, this.size);
+        for (final int[] column : this.columns) {
+            for (int i = 0; i < this.size; ++i) {
+                BinaryQuads.writeNumber(out, column[i]);
+            }
+        }
+        final byte[] payload = out.toByteArray();
+
+        // Compress the payload, keeping it uncompressed if compression does not help
+        final byte[] compressed = new byte[payload.length];
+        this.deflater.reset();
+        this.deflater.setInput(payload);
+        this.deflater.finish();
+        int length = 0;
+        while (!this.deflater.finished() && length < compressed.length) {
+            length += this.deflater.deflate(compressed, length, compressed.length - length);
+        }
+        final boolean deflated = this.deflater.finished() && length < payload.length;
+
+        // Build the block, escaping delimiter bytes, and write it with a single call
+        final ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+        header.write(BinaryQuads.MAGIC);
+        header.write(BinaryQuads.VERSION);
+        header.write(deflated ? BinaryQuads.FLAG_DEFLATE : 0);
+        BinaryQuads.writeNumber(header, payload.length);
+        final int maxLength = header.size() + (deflated ? length : payload.length);
+        final byte[] block = new byte[maxLength * 2 + 1];
+        int offset = escape(header.toByteArray(), header.size(), block, 0);
+        offset = deflated ? escape(compressed, length, block, offset) : escape(payload,
+                payload.length, block, offset);
+        block[offset++] = BinaryQuads.DELIMITER;
+        try {
+            this.stream.write(block, 0, offset);
+        } catch (final IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+
+        // Reset block state
+        this.namespaces.clear();
+        this.valueIndex.clear();
+        this.values.clear();
+        this.size = 0;
+    }
+
+    private static int escape(final byte[] source, final int length, final byte[] target,
+            final int offset) {
+        int index = offset;
+        for (int i = 0; i < length; ++i) {
+            final byte b = source[i];
+            if (b == BinaryQuads.DELIMITER) {
+                target[index++] = BinaryQuads.ESCAPE;
+                target[index++] = BinaryQuads.ESCAPED_DELIMITER;
+            } else if (b == BinaryQuads.ESCAPE) {
+                target[index++] = BinaryQuads.ESCAPE;
+                target[index++] = BinaryQuads.ESCAPED_ESCAPE;
+            } else {
+                target[index++] = b;
+            }
+        }
+        return index;
+    }
+
+    private static void writeValue(final ByteArrayOutputStream out,
+            final Map<String, Integer> names, final Value value) {
+
+        if (value instanceof URI) {
+            final URI uri = (URI) value;
+            out.write(BinaryQuads.TYPE_URI);
+            writeName(out, names, uri.getNamespace());
+            BinaryQuads.writeString(out, uri.getLocalName());
+
+        } else if (value instanceof BNode) {
+            out.write(BinaryQuads.TYPE_BNODE);
+            BinaryQuads.writeString(out, ((BNode) value).getID());
+
+        } else {
+            final Literal literal = (Literal) value;
+            final String label = literal.getLabel();
+            final String language = literal.getLanguage();
+            final URI datatype = literal.getDatatype();
+            if (language != null) {
+                out.write(BinaryQuads.TYPE_LANG);
+                writeName(out, names, language);
+                BinaryQuads.writeString(out, label);
+            } else if (datatype == null) {
+                out.write(BinaryQuads.TYPE_PLAIN);
+                BinaryQuads.writeString(out, label);
+            } else if (BinaryQuads.LONG_DATATYPES.contains(datatype)
+                    && BinaryQuads.isCanonicalLong(label)) {
+                out.write(BinaryQuads.TYPE_LONG);
+                writeName(out, names, datatype.stringValue());
+                BinaryQuads.writeSignedNumber(out, Long.parseLong(label));
+            } else if (datatype.equals(XMLSchema.BOOLEAN)
+                    && (label.equals("true") || label.equals("false"))) {
+                out.write(label.equals("true") ? BinaryQuads.TYPE_TRUE : BinaryQuads.TYPE_FALSE);
+            } else {
+                long packed = Long.MIN_VALUE;
+                int type = BinaryQuads.TYPE_TYPED;
+                if (datatype.equals(XMLSchema.DATE)) {
+                    packed = BinaryQuads.parseDate(label);
+                    type = BinaryQuads.TYPE_DATE;
+                } else if (datatype.equals(XMLSchema.DATETIME)) {
+                    final boolean utc = label.endsWith("Z");
+                    packed = BinaryQuads.parseDateTime(utc ? label.substring(0,
+                            label.length() - 1) : label);
+                    type = utc ? BinaryQuads.TYPE_DATETIME_UTC : BinaryQuads.TYPE_DATETIME;
+                }
+                if (packed != Long.MIN_VALUE) {
+                    out.write(type);
+                    BinaryQuads.writeSignedNumber(out, packed);
+                } else {
+                    out.write(BinaryQuads.TYPE_TYPED);
+                    writeName(out, names, datatype.stringValue());
+                    BinaryQuads.writeString(out, label);
+                }
+            }
+        }
+    }
+
+    private static void writeName(final ByteArrayOutputStream out,
+            final Map<String, Integer> names, final String name) {
+        // names are written once per block and then referred by their 1-based index
+        final Integer index = names.get(name);
+        if (index != null) {
+            BinaryQuads.writeNumber(out, index);
+        } else {
+            BinaryQuads.writeNumber(out, 0);
+            BinaryQuads.writeString(out, name);
+            names.put(name, names.size() + 1);
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package eu.fbk.rdfpro.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+public class BinaryQuadsTest {
+
+    private static final ValueFactory VF = ValueFactoryImpl.getInstance();
+
+    private static final URI CUSTOM_TYPE = VF.createURI("http://example.org/type");
+
+    @Test
+    public void testRoundTrip() throws Throwable {
+        final List<Statement> stmts = generate(5000);
+        for (final int blockSize : new int[] { 1, 7, 16 * 1024 }) {
+            final Map<String, String> namespaces = new LinkedHashMap<>();
+            namespaces.put("ex", "http://example.org/");
+            namespaces.put("rdf", RDF.NAMESPACE);
+            final byte[] bytes = write(stmts, namespaces, blockSize);
+            final Map<String, String> parsedNamespaces = new LinkedHashMap<>();
+            final List<Statement> parsed = parse(bytes, parsedNamespaces);
+            Assert.assertEquals(namespaces, parsedNamespaces);
+            Assert.assertEquals(keys(stmts), keys(parsed));
+            Assert.assertEquals(stmts.size(), parsed.size());
+        }
+    }
+
+    @Test
+    public void testPackedLiterals() throws Throwable {
+        final List<Literal> literals = Arrays.asList(VF.createLiteral("0", XMLSchema.INTEGER),
+                VF.createLiteral("-42", XMLSchema.INT), VF.createLiteral("007", XMLSchema.INT),
+                VF.createLiteral("+5", XMLSchema.INTEGER), VF.createLiteral("-0", XMLSchema.LONG),
+                VF.createLiteral("123456789012345678901234567890", XMLSchema.INTEGER),
+                VF.createLiteral("9", CUSTOM_TYPE), VF.createLiteral("true", XMLSchema.BOOLEAN),
+                VF.createLiteral("false", XMLSchema.BOOLEAN),
+                VF.createLiteral("1", XMLSchema.BOOLEAN),
+                VF.createLiteral("2015-03-31", XMLSchema.DATE),
+                VF.createLiteral("0001-01-01", XMLSchema.DATE),
+                VF.createLiteral("2015-3-31", XMLSchema.DATE),
+                VF.createLiteral("2015-03-31+01:00", XMLSchema.DATE),
+                VF.createLiteral("2015-03-31T12:34:56", XMLSchema.DATETIME),
+                VF.createLiteral("2015-03-31T12:34:56Z", XMLSchema.DATETIME),
+                VF.createLiteral("2015-03-31T12:34:56.789Z", XMLSchema.DATETIME),
+                VF.createLiteral("2015-03-31T12:34:56+02:00", XMLSchema.DATETIME),
+                VF.createLiteral("1.5", XMLSchema.DECIMAL),
+                VF.createLiteral("x", XMLSchema.STRING));
+        final List<Statement> stmts = new ArrayList<>();
+        final URI subj = VF.createURI("http://example.org/s");
+        final URI pred = VF.createURI("http://example.org/p");
+        for (final Literal literal : literals) {
+            stmts.add(VF.createStatement(subj, pred, literal));
+        }
+        final List<Statement> parsed = parse(write(stmts, Collections.emptyMap(), 1024), null);
+        Assert.assertEquals(keys(stmts), keys(parsed));
+    }
+
+    @Test
+    public void testParallelSplit() throws Throwable {
+
+        // Write many small blocks and split the file at '\n' bytes
+        final List<Statement> stmts = generate(20000);
+        final byte[] bytes = write(stmts, Collections.singletonMap("ex", "http://example.org/"),
+                100);
+        final List<byte[]> pieces = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; ++i) {
+            if (bytes[i] == '\n' && i - start > bytes.length / 8) {
+                pieces.add(Arrays.copyOfRange(bytes, start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < bytes.length) {
+            pieces.add(Arrays.copyOfRange(bytes, start, bytes.length));
+        }
+        Assert.assertTrue(pieces.size() > 4);
+
+        // Decode pieces in parallel with separate parsers and check the union of results
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<List<Statement>>> futures = new ArrayList<>();
+            for (final byte[] piece : pieces) {
+                futures.add(executor.submit(() -> parse(piece, null)));
+            }
+            final List<Statement> parsed = new ArrayList<>();
+            for (final Future<List<Statement>> future : futures) {
+                parsed.addAll(future.get());
+            }
+            Assert.assertEquals(stmts.size(), parsed.size());
+            Assert.assertEquals(keys(stmts), keys(parsed));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Statement> generate(final int count) {
+        final String[] labels = new String[] { "plain", "", "line\nbreak", "tab\tand \"quote\"",
+                "escape \u001b byte", "unicode \u00e8\u4e2d\ud83d\ude00", "back\\slash" };
+        final Resource[] contexts = new Resource[] { null, VF.createURI("http://example.org/g1"),
+                VF.createBNode("g2") };
+        final List<Statement> stmts = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            final Resource subj = i % 5 == 0 ? VF.createBNode("b" + i % 50) : VF
+                    .createURI("http://example.org/s" + i % 200);
+            final URI pred = i % 4 == 0 ? RDF.TYPE : VF.createURI("http://example.org/p" + i % 9);
+            final Value obj;
+            switch (i % 8) {
+            case 0:
+                obj = VF.createURI("http://example.org/C" + i % 13);
+                break;
+            case 1:
+                obj = VF.createLiteral(labels[i % labels.length] + i);
+                break;
+            case 2:
+                obj = VF.createLiteral(labels[i % labels.length], i % 3 == 0 ? "en" : "it-IT");
+                break;
+            case 3:
+                obj = VF.createLiteral(Integer.toString(i - count / 2), XMLSchema.INTEGER);
+                break;
+            case 4:
+                obj = VF.createLiteral(i % 3 == 0 ? "true" : "false", XMLSchema.BOOLEAN);
+                break;
+            case 5:
+                obj = VF.createLiteral(String.format("20%02d-0%d-1%d", i % 100, 1 + i % 9, i % 10),
+                        XMLSchema.DATE);
+                break;
+            case 6:
+                obj = VF.createLiteral(String.format("2015-01-01T10:%02d:%02d%s", i % 60,
+                        i % 59, i % 2 == 0 ? "Z" : ""), XMLSchema.DATETIME);
+                break;
+            default:
+                obj = VF.createLiteral(labels[i % labels.length], CUSTOM_TYPE);
+            }
+            final Resource ctx = contexts[i % contexts.length];
+            stmts.add(ctx == null ? VF.createStatement(subj, pred, obj) : VF.createStatement(
+                    subj, pred, obj, ctx));
+        }
+        return stmts;
+    }
+
+    private static byte[] write(final List<Statement> stmts, final Map<String, String> namespaces,
+            final int blockSize) throws RDFHandlerException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BinaryQuadsWriter writer = new BinaryQuadsWriter(out);
+        writer.getWriterConfig().set(BinaryQuads.BLOCK_SIZE, blockSize);
+        writer.startRDF();
+        for (final Map.Entry<String, String> entry : namespaces.entrySet()) {
+            writer.handleNamespace(entry.getKey(), entry.getValue());
+        }
+        for (final Statement stmt : stmts) {
+            writer.handleStatement(stmt);
+        }
+        writer.endRDF();
+        return out.toByteArray();
+    }
+
+    private static List<Statement> parse(final byte[] bytes,
+            final Map<String, String> namespaces) throws Exception {
+        final List<Statement> stmts = new ArrayList<>();
+        final BinaryQuadsParser parser = new BinaryQuadsParser();
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        parser.setRDFHandler(new RDFHandlerBase() {
+
+            @Override
+            public void handleNamespace(final String prefix, final String uri) {
+                if (namespaces != null) {
+                    namespaces.put(prefix, uri);
+                }
+            }
+
+            @Override
+            public void handleStatement(final Statement stmt) {
+                stmts.add(stmt);
+            }
+
+        });
+        parser.parse(new ByteArrayInputStream(bytes), "http://example.org/");
+        return stmts;
+    }
+
+    private static Set<String> keys(final List<Statement> stmts) {
+        final Set<String> keys = new HashSet<>();
+        for (final Statement stmt : stmts) {
+            keys.add(format(stmt.getSubject()) + " " + format(stmt.getPredicate()) + " "
+                    + format(stmt.getObject()) + " " + format(stmt.getContext()));
+        }
+        return keys;
+    }
+
+    private static String format(final Value value) {
+        if (value instanceof Literal) {
+            final Literal l = (Literal) value;
+            return "\"" + l.getLabel() + "\"@" + l.getLanguage() + "^^" + l.getDatatype();
+        } else if (value instanceof BNode) {
+            return "_:" + ((BNode) value).getID();
+        }
+        return String.valueOf(value);
+    }
+
+}
@@ -14,7 +14,6 @@
 package eu.fbk.rdfpro;
 
 import org.openrdf.model.Statement;
-import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 
 /**
@@ -23,10 +22,12 @@ import org.openrdf.rio.RDFHandlerException;
  * The implementation of {@code AutoCloseable} allows for this class and its subclasses to be
  * notified by RDFpro runtime when they are no more needed, so that allocated resources can be
  * released if necessary. For this reason, it may be convenient to start from this class when
- * implementing your specialized {@code RDFHandler}.
+ * implementing your specialized {@code RDFHandler}. This class also implements
+ * {@link BatchRDFHandler}, by default forwarding each statement of a batch to
+ * {@link #handleStatement(Statement)}.
  * </p>
  */
-public abstract class AbstractRDFHandler implements RDFHandler, AutoCloseable {
+public abstract class AbstractRDFHandler implements BatchRDFHandler, AutoCloseable {
 
     /**
      * Default constructor.
@@ -62,6 +63,17 @@ public abstract class AbstractRDFHandler implements RDFHandler, AutoCloseable {
     public void handleStatement(final Statement statement) throws RDFHandlerException {
     }
 
+    /**
+     * Calls {@link #handleStatement(Statement)} for each statement of the batch.
+     */
+    @Override
+    public void handleStatements(final Statement[] statements, final int count)
+            throws RDFHandlerException {
+        for (int i = 0; i < count; ++i) {
+            handleStatement(statements[i]);
+        }
+    }
+
     /**
      * Does nothing.
      */
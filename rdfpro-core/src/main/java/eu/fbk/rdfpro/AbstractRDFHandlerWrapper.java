@@ -13,6 +13,7 @@
  */
 package eu.fbk.rdfpro;
 
+import java.lang.reflect.Method;
 import java.util.Objects;
 
 import org.openrdf.model.Statement;
@@ -31,12 +32,34 @@ import eu.fbk.rdfpro.util.IO;
  * Sesame {@link RDFHandlerWrapper}, this class wraps a unique {@code RDFHandler} and thus does
  * not need array traversal (and its overhead) to notify a pool of {@code RDFHandlers}.
  * </p>
+ * <p>
+ * Batches of statements received via {@link #handleStatements(Statement[], int)} are forwarded
+ * as a whole to the wrapped {@code RDFHandler} if the subclass does not override
+ * {@link #handleStatement(Statement)}; otherwise, they are split and delivered to the overridden
+ * {@code handleStatement()}, unless {@code handleStatements()} is also overridden.
+ * </p>
  */
 public abstract class AbstractRDFHandlerWrapper extends AbstractRDFHandler {
 
+    private static final ClassValue<Boolean> BATCH_FORWARDING = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            try {
+                final Method method = type.getMethod("handleStatement", Statement.class);
+                return method.getDeclaringClass() == AbstractRDFHandlerWrapper.class;
+            } catch (final NoSuchMethodException ex) {
+                throw new Error("Unexpected error (!)", ex);
+            }
+        }
+
+    };
+
     /** The wrapped {@code RDFHandler}. */
     protected final RDFHandler handler;
 
+    private final boolean forwardBatches;
+
     /**
      * Creates a new instance wrapping the supplied {@code RDFHandler}.
      *
@@ -45,6 +68,7 @@ public abstract class AbstractRDFHandlerWrapper extends AbstractRDFHandler {
      */
     protected AbstractRDFHandlerWrapper(final RDFHandler handler) {
         this.handler = Objects.requireNonNull(handler);
+        this.forwardBatches = BATCH_FORWARDING.get(getClass());
     }
 
     /**
@@ -79,6 +103,20 @@ public abstract class AbstractRDFHandlerWrapper extends AbstractRDFHandler {
         this.handler.handleStatement(statement);
     }
 
+    /**
+     * Delegates to the wrapped {@code RDFHandler} if {@link #handleStatement(Statement)} is not
+     * overridden, otherwise calls it for each statement of the batch.
+     */
+    @Override
+    public void handleStatements(final Statement[] statements, final int count)
+            throws RDFHandlerException {
+        if (this.forwardBatches) {
+            RDFHandlers.handleStatements(this.handler, statements, count);
+        } else {
+            super.handleStatements(statements, count);
+        }
+    }
+
     /**
      * Delegates to the wrapped {@code RDFHandler}.
      */
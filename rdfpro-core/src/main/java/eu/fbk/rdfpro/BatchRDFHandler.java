@@ -0,0 +1,52 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * An {@code RDFHandler} that can natively process arrays of statements.
+ * <p>
+ * This optional extension of {@code RDFHandler} allows a batch of statements to be notified with
+ * a single call, amortizing the cost of per-statement method invocation along a chain of handlers
+ * and allowing implementations to process the whole batch at once (e.g., acquiring a lock only
+ * once or filtering statements in a tight loop). The batch is equivalent to calling
+ * {@link #handleStatement(Statement)} for each statement in the batch, in order. Callers should
+ * not assume that the handler implements this interface, and should use
+ * {@link RDFHandlers#handleStatements(RDFHandler, Statement[], int)} to notify a batch of
+ * statements to an arbitrary handler, falling back to per-statement notification.
+ * </p>
+ * <p>
+ * {@link AbstractRDFHandler} implements this interface, so that all handlers extending it can
+ * receive batches. Implementations must not retain or modify the supplied array after the method
+ * returns, as the caller may reuse it.
+ * </p>
+ */
+public interface BatchRDFHandler extends RDFHandler {
+
+    /**
+     * Handles the first {@code count} statements of the supplied array, in order.
+     *
+     * @param statements
+     *            the statement array, not null; elements after {@code count} are ignored
+     * @param count
+     *            the number of statements to handle
+     * @throws RDFHandlerException
+     *             in case of error
+     */
+    void handleStatements(Statement[] statements, int count) throws RDFHandlerException;
+
+}
@@ -15,12 +15,23 @@ package eu.fbk.rdfpro;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
+import javax.annotation.Nullable;
+
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
@@ -32,7 +43,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
 import eu.fbk.rdfpro.util.Sorter;
+import eu.fbk.rdfpro.util.SpillFile;
 import eu.fbk.rdfpro.util.Statements;
 import eu.fbk.rdfpro.util.Tracker;
 
@@ -44,24 +57,289 @@ final class ProcessorMapReduce implements RDFProcessor {
 
     private static final int MAX_RUNNABLE_MULTIPLIER = 4; // 4 runnables enqueued per core
 
+    private static final int NUM_PARTITIONS = Integer.parseInt(Environment.getProperty(
+            "rdfpro.mapreduce.partitions", "" + 4 * Environment.getCores()));
+
+    private static final long MAX_BUFFERED_STATEMENTS = Long.parseLong(Environment.getProperty(
+            "rdfpro.mapreduce.buffer", "" + Runtime.getRuntime().maxMemory() / 2048));
+
+    private static final int SPILL_BLOCK_SIZE = 64 * 1024; // block size of sub-partition files
+
+    private static final long SPILL_MEMORY = Long.parseLong(Environment.getProperty(
+            "rdfpro.mapreduce.spill.memory", "" + Runtime.getRuntime().maxMemory() / 16));
+
+    private static final int COMBINE_BUFFER_SIZE = Integer.parseInt(Environment.getProperty(
+            "rdfpro.mapreduce.combine.size", "65536"));
+
+    private static final int COMBINE_GROUP_SIZE = 64; // min group size triggering combination
+
+    private static final int SKEW_THRESHOLD = Integer.parseInt(Environment.getProperty(
+            "rdfpro.mapreduce.skew.threshold", "65536"));
+
+    private static final int SKETCH_SIZE = 256; // number of counters of space-saving sketch
+
+    private static final long MAX_KEY_STATEMENTS = Long.parseLong(Environment.getProperty(
+            "rdfpro.mapreduce.key.max", "" + Runtime.getRuntime().maxMemory() / 1024));
+
     private final Mapper mapper;
 
     private final Reducer reducer;
 
     private final boolean deduplicate;
 
-    ProcessorMapReduce(final Mapper mapper, final Reducer reducer, final boolean deduplicate) {
+    private final boolean sortKeys;
+
+    private final boolean combinable;
+
+    private final boolean splittable;
+
+    private final int numPartitions;
+
+    private final long maxBuffered;
+
+    private final int skewThreshold;
+
+    private final long maxKeyStatements;
+
+    ProcessorMapReduce(final Mapper mapper, final Reducer reducer, final boolean deduplicate,
+            final boolean sortKeys) {
+        this(mapper, reducer, deduplicate, sortKeys, NUM_PARTITIONS, MAX_BUFFERED_STATEMENTS,
+                SKEW_THRESHOLD);
+    }
+
+    ProcessorMapReduce(final Mapper mapper, final Reducer reducer, final boolean deduplicate,
+            final boolean sortKeys, final int numPartitions, final long maxBuffered,
+            final int skewThreshold) {
+        this(mapper, reducer, deduplicate, sortKeys, numPartitions, maxBuffered, skewThreshold,
+                MAX_KEY_STATEMENTS);
+    }
+
+    ProcessorMapReduce(final Mapper mapper, final Reducer reducer, final boolean deduplicate,
+            final boolean sortKeys, final int numPartitions, final long maxBuffered,
+            final int skewThreshold, final long maxKeyStatements) {
         this.mapper = Objects.requireNonNull(mapper);
         this.reducer = Objects.requireNonNull(reducer);
         this.deduplicate = deduplicate;
+        this.sortKeys = sortKeys;
+        this.numPartitions = Math.max(1, numPartitions);
+        this.maxBuffered = maxBuffered;
+        this.skewThreshold = skewThreshold;
+        this.maxKeyStatements = maxKeyStatements;
+        this.combinable = supports(reducer::isCombinable);
+        this.splittable = supports(reducer::isSplittable);
+    }
+
+    private static boolean supports(final BooleanSupplier capability) {
+        try {
+            return capability.getAsBoolean();
+        } catch (final Throwable ex) {
+            return false; // scripted reducers may not implement default interface methods
+        }
+    }
+
+    private RDFHandlerException newKeyTooLargeException(final Value key) {
+        return new RDFHandlerException("Cannot reduce more than " + this.maxKeyStatements
+                + " statements of key " + Statements.formatValue(key) + " at once: use a "
+                + "splittable reducer without -u, or raise property rdfpro.mapreduce.key.max");
     }
 
     @Override
     public RDFHandler wrap(final RDFHandler handler) {
-        return new Handler(Objects.requireNonNull(handler));
+        Objects.requireNonNull(handler);
+        return this.sortKeys ? new Handler(handler) : new HashHandler(handler);
     }
 
-    private final class Handler extends AbstractRDFHandlerWrapper implements Consumer<Object[]> {
+    private abstract class AbstractHandler extends AbstractRDFHandlerWrapper {
+
+        @Nullable
+        private final ThreadLocal<CombineBuffer> combineBuffer;
+
+        private final List<CombineBuffer> combineBuffers;
+
+        @Nullable
+        private final ThreadLocal<Sketch> sketch;
+
+        AbstractHandler(final RDFHandler handler) {
+            super(handler);
+            this.combineBuffers = new ArrayList<>();
+            if (ProcessorMapReduce.this.skewThreshold <= 0 || !ProcessorMapReduce.this.splittable
+                    || ProcessorMapReduce.this.deduplicate || ProcessorMapReduce.this.sortKeys) {
+                // key counts only used to spread chunks of heavy keys over hash partitions
+                this.sketch = null;
+            } else {
+                this.sketch = new ThreadLocal<Sketch>() {
+
+                    @Override
+                    protected Sketch initialValue() {
+                        return new Sketch(SKETCH_SIZE);
+                    }
+
+                };
+            }
+            if (!ProcessorMapReduce.this.combinable || COMBINE_BUFFER_SIZE <= 0) {
+                this.combineBuffer = null;
+            } else {
+                this.combineBuffer = new ThreadLocal<CombineBuffer>() {
+
+                    @Override
+                    protected CombineBuffer initialValue() {
+                        final CombineBuffer buffer = new CombineBuffer(AbstractHandler.this);
+                        synchronized (AbstractHandler.this.combineBuffers) {
+                            AbstractHandler.this.combineBuffers.add(buffer);
+                        }
+                        return buffer;
+                    }
+
+                };
+            }
+        }
+
+        @Override
+        public void handleComment(final String comment) throws RDFHandlerException {
+            // dropped
+        }
+
+        @Override
+        public void handleStatement(final Statement statement) throws RDFHandlerException {
+            final Value[] keys = ProcessorMapReduce.this.mapper.map(statement);
+            for (final Value key : keys) {
+                if (Mapper.BYPASS_KEY.equals(key)) {
+                    super.handleStatement(statement); // bypass
+                } else if (this.combineBuffer != null) {
+                    this.combineBuffer.get().add(key, statement);
+                } else {
+                    route(key, statement);
+                }
+            }
+        }
+
+        void route(final Value key, final Statement statement) throws RDFHandlerException {
+            final long count = this.sketch == null ? 0L : this.sketch.get().add(key);
+            shuffle(key, statement, count);
+        }
+
+        void flushCombiners() throws RDFHandlerException {
+            synchronized (this.combineBuffers) {
+                for (final CombineBuffer buffer : this.combineBuffers) {
+                    buffer.flush();
+                }
+            }
+        }
+
+        abstract void shuffle(Value key, Statement statement, long count)
+                throws RDFHandlerException;
+
+    }
+
+    private final class CombineBuffer {
+
+        private final AbstractHandler handler;
+
+        @Nullable
+        private LinkedHashMap<Value, List<Statement>> groups; // null if combining disabled
+
+        private int size;
+
+        private long numCombinedIn; // statements supplied to combine()
+
+        private long numCombinedOut; // statements returned by combine()
+
+        CombineBuffer(final AbstractHandler handler) {
+            this.handler = handler;
+            this.groups = new LinkedHashMap<>(256, 0.75f, true);
+            this.size = 0;
+            this.numCombinedIn = 0;
+            this.numCombinedOut = 0;
+        }
+
+        synchronized void add(final Value key, final Statement statement)
+                throws RDFHandlerException {
+
+            // Route the statement directly if combination proved not to shrink the input
+            if (this.groups == null) {
+                this.handler.route(key, statement);
+                return;
+            }
+
+            // Append the statement to the key group, combining the group when it grows too much
+            List<Statement> group = this.groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                this.groups.put(key, group);
+            }
+            group.add(statement);
+            ++this.size;
+            if (group.size() >= COMBINE_GROUP_SIZE && Integer.bitCount(group.size()) == 1) {
+                final List<Statement> combined = combine(key, group);
+                this.size += combined.size() - group.size();
+                this.groups.put(key, combined);
+            }
+
+            // Evict least recently used groups (combining and shuffling them) when the buffer is
+            // full
+            if (this.size > COMBINE_BUFFER_SIZE) {
+                final Iterator<Map.Entry<Value, List<Statement>>> iterator = this.groups
+                        .entrySet().iterator();
+                while (this.size > COMBINE_BUFFER_SIZE / 2 && iterator.hasNext()) {
+                    final Map.Entry<Value, List<Statement>> entry = iterator.next();
+                    iterator.remove();
+                    this.size -= entry.getValue().size();
+                    emit(entry.getKey(), entry.getValue());
+                }
+            }
+
+            // Disable combination (releasing the buffer) if, after enough statements, it
+            // removed less than 10% of them (e.g., forall filters where most keys pass)
+            if (this.numCombinedIn >= COMBINE_BUFFER_SIZE
+                    && this.numCombinedOut * 10 > this.numCombinedIn * 9) {
+                LOGGER.debug("Combiner disabled: {} statements combined into {}",
+                        this.numCombinedIn, this.numCombinedOut);
+                flush();
+                this.groups = null;
+            }
+        }
+
+        synchronized void flush() throws RDFHandlerException {
+            if (this.groups == null) {
+                return;
+            }
+            for (final Map.Entry<Value, List<Statement>> entry : this.groups.entrySet()) {
+                emit(entry.getKey(), entry.getValue());
+            }
+            this.groups.clear();
+            this.size = 0;
+        }
+
+        private void emit(final Value key, final List<Statement> group)
+                throws RDFHandlerException {
+            for (final Statement statement : combine(key, group)) {
+                this.handler.route(key, statement);
+            }
+        }
+
+        private List<Statement> combine(final Value key, final List<Statement> group)
+                throws RDFHandlerException {
+            Collection<Statement> statements = group;
+            if (ProcessorMapReduce.this.deduplicate) {
+                final Set<List<Value>> seen = new HashSet<>();
+                statements = new ArrayList<>(group.size());
+                for (final Statement stmt : group) {
+                    if (seen.add(Arrays.asList(stmt.getSubject(), stmt.getPredicate(),
+                            stmt.getObject(), stmt.getContext()))) {
+                        statements.add(stmt);
+                    }
+                }
+            }
+            final Statement[] combined = ProcessorMapReduce.this.reducer.combine(key,
+                    statements.toArray(new Statement[statements.size()]));
+            this.numCombinedIn += group.size();
+            this.numCombinedOut += combined.length;
+            return new ArrayList<>(Arrays.asList(combined));
+        }
+
+    }
+
+    private final class Handler extends AbstractHandler implements Consumer<Object[]> {
 
         private final List<Value> jobKeys;
 
@@ -111,45 +389,35 @@ final class ProcessorMapReduce implements RDFProcessor {
         }
 
         @Override
-        public void handleComment(final String comment) throws RDFHandlerException {
-            // dropped
-        }
-
-        @Override
-        public void handleStatement(final Statement statement) throws RDFHandlerException {
-            final Value[] keys = ProcessorMapReduce.this.mapper.map(statement);
-            for (final Value key : keys) {
-                if (Mapper.BYPASS_KEY.equals(key)) {
-                    super.handleStatement(statement); // bypass
-                } else {
-                    final Value s = statement.getSubject();
-                    final Value p = statement.getPredicate();
-                    final Value o = statement.getObject();
-                    final Value c = statement.getContext();
-                    final boolean skey = Objects.equals(s, key);
-                    final boolean pkey = Objects.equals(p, key);
-                    final boolean okey = Objects.equals(o, key);
-                    final boolean ckey = Objects.equals(c, key);
-                    final Object[] record = new Object[6];
-                    record[0] = key;
-                    record[1] = skey ? null : s;
-                    record[2] = pkey ? null : p;
-                    record[3] = okey ? null : o;
-                    record[4] = ckey ? null : c;
-                    record[5] = new Long((skey ? 0x08 : 0) | (pkey ? 0x04 : 0) | (okey ? 0x02 : 0)
-                            | (ckey ? 0x01 : 0));
-                    try {
-                        this.sorter.emit(record);
-                    } catch (final IOException ex) {
-                        throw new RDFHandlerException(ex);
-                    }
-                }
+        void shuffle(final Value key, final Statement statement, final long count)
+                throws RDFHandlerException {
+            final Value s = statement.getSubject();
+            final Value p = statement.getPredicate();
+            final Value o = statement.getObject();
+            final Value c = statement.getContext();
+            final boolean skey = Objects.equals(s, key);
+            final boolean pkey = Objects.equals(p, key);
+            final boolean okey = Objects.equals(o, key);
+            final boolean ckey = Objects.equals(c, key);
+            final Object[] record = new Object[6];
+            record[0] = key;
+            record[1] = skey ? null : s;
+            record[2] = pkey ? null : p;
+            record[3] = okey ? null : o;
+            record[4] = ckey ? null : c;
+            record[5] = new Long((skey ? 0x08 : 0) | (pkey ? 0x04 : 0) | (okey ? 0x02 : 0)
+                    | (ckey ? 0x01 : 0));
+            try {
+                this.sorter.emit(record);
+            } catch (final IOException ex) {
+                throw new RDFHandlerException(ex);
             }
         }
 
         @Override
         public void endRDF() throws RDFHandlerException {
             try {
+                flushCombiners();
                 this.tracker.start();
                 this.sorter.end(false, this);
                 flush(true);
@@ -179,17 +447,55 @@ final class ProcessorMapReduce implements RDFProcessor {
             final Statement statement = c == null ? vf.createStatement(s, p, o) //
                     : vf.createStatement(s, p, o, c);
 
-            if (!key.equals(this.currentKey)) {
-                try {
+            try {
+                if (!key.equals(this.currentKey)) {
                     flush(false);
-                } catch (final Throwable ex) {
-                    throw new RuntimeException(ex);
+                    this.currentKey = key;
+                    this.currentStatements.clear();
                 }
-                this.currentKey = key;
-                this.currentStatements.clear();
+
+                // Chunks never overlap when deduplicating, as sorter output is deduplicated.
+                // Keys that cannot be split are materialized, up to a max number of statements
+                this.currentStatements.add(statement);
+                final int size = this.currentStatements.size();
+                final int threshold = ProcessorMapReduce.this.skewThreshold;
+                if (ProcessorMapReduce.this.splittable && threshold > 0 && size >= threshold) {
+                    flush(false); // reduce a chunk of the statements of the key
+                    this.currentStatements.clear();
+                } else if (size > ProcessorMapReduce.this.maxKeyStatements) {
+                    throw newKeyTooLargeException(key);
+                }
+
+            } catch (final RuntimeException ex) {
+                throw ex;
+            } catch (final Throwable ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private void checkException() throws RDFHandlerException {
+            final Throwable exception = this.exceptionHolder.get();
+            if (exception != null) {
+                if (exception instanceof RDFHandlerException) {
+                    throw (RDFHandlerException) exception;
+                } else if (exception instanceof RuntimeException) {
+                    throw (RuntimeException) exception;
+                } else if (exception instanceof Error) {
+                    throw (Error) exception;
+                }
+                throw new RDFHandlerException(exception);
             }
+        }
 
-            this.currentStatements.add(statement);
+        private void recordException(final Throwable ex) {
+            synchronized (this.exceptionHolder) {
+                final Throwable exception = this.exceptionHolder.get();
+                if (exception != null) {
+                    exception.addSuppressed(ex);
+                } else {
+                    this.exceptionHolder.set(ex);
+                }
+            }
         }
 
         private void flush(final boolean done) throws RDFHandlerException, InterruptedException {
@@ -206,17 +512,7 @@ final class ProcessorMapReduce implements RDFProcessor {
                 return;
             }
 
-            final Throwable exception = this.exceptionHolder.get();
-            if (exception != null) {
-                if (exception instanceof RDFHandlerException) {
-                    throw (RDFHandlerException) exception;
-                } else if (exception instanceof RuntimeException) {
-                    throw (RuntimeException) exception;
-                } else if (exception instanceof Error) {
-                    throw (Error) exception;
-                }
-                throw new RDFHandlerException(exception);
-            }
+            checkException();
 
             final Value[] jobKeys = this.jobKeys.toArray(new Value[len]);
             final Statement[][] jobStatements = this.jobStatements.toArray(new Statement[len][]);
@@ -225,7 +521,8 @@ final class ProcessorMapReduce implements RDFProcessor {
             this.jobSize = 0;
             this.semaphore.acquire(); // will block if too many runnables were submitted
             try {
-                Environment.getPool().execute(new Runnable() {
+                // Reducers emit to the downstream handler, which may block: use the I/O lane
+                Environment.getPool(Lane.IO).execute(new Runnable() {
 
                     @Override
                     public void run() {
@@ -236,14 +533,7 @@ final class ProcessorMapReduce implements RDFProcessor {
                                 Handler.this.tracker.increment();
                             }
                         } catch (final Throwable ex) {
-                            synchronized (Handler.this.exceptionHolder) {
-                                final Throwable exception = Handler.this.exceptionHolder.get();
-                                if (exception != null) {
-                                    exception.addSuppressed(ex);
-                                } else {
-                                    Handler.this.exceptionHolder.set(ex);
-                                }
-                            }
+                            recordException(ex);
                         } finally {
                             Handler.this.semaphore.release();
                         }
@@ -258,4 +548,375 @@ final class ProcessorMapReduce implements RDFProcessor {
 
     }
 
+    private final class HashHandler extends AbstractHandler {
+
+        private final Partition[] partitions;
+
+        private final Tracker tracker;
+
+        HashHandler(final RDFHandler handler) {
+            super(handler);
+            final int numPartitions = ProcessorMapReduce.this.numPartitions;
+            final int maxBuffered = (int) Math.min(Integer.MAX_VALUE, Math.max(16,
+                    ProcessorMapReduce.this.maxBuffered / numPartitions));
+            this.partitions = new Partition[numPartitions];
+            for (int i = 0; i < numPartitions; ++i) {
+                this.partitions[i] = new Partition(maxBuffered);
+            }
+            this.tracker = new Tracker(LOGGER, null, //
+                    "%d reductions (%d red/s avg)", //
+                    "%d reductions (%d red/s, %d red/s avg)");
+        }
+
+        @Override
+        void shuffle(final Value key, final Statement statement, final long count)
+                throws RDFHandlerException {
+            // Spread chunks of heavy keys over partitions (count is 0 if not splitting keys, as
+            // with deduplication, which requires all the statements of a key in one partition)
+            int hash = Objects.hashCode(key);
+            final int threshold = ProcessorMapReduce.this.skewThreshold;
+            if (count > threshold) {
+                hash += (int) (count / threshold);
+            }
+            final int index = ((hash ^ hash >>> 16) & 0x7FFFFFFF) % this.partitions.length;
+            try {
+                this.partitions[index].add(key, statement);
+            } catch (final IOException ex) {
+                throw new RDFHandlerException(ex);
+            }
+        }
+
+        @Override
+        public void endRDF() throws RDFHandlerException {
+            try {
+                flushCombiners();
+                this.tracker.start();
+                final List<Runnable> runnables = new ArrayList<>();
+                for (final Partition partition : this.partitions) {
+                    runnables.add(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                partition.reduce(HashHandler.this.handler,
+                                        HashHandler.this.tracker);
+                            } catch (final RDFHandlerException ex) {
+                                throw new RuntimeException(ex);
+                            }
+                        }
+
+                    });
+                }
+                try {
+                    Environment.run(Lane.IO, runnables); // reducers may block
+                } catch (final RuntimeException ex) {
+                    if (ex.getCause() instanceof RDFHandlerException) {
+                        throw (RDFHandlerException) ex.getCause();
+                    }
+                    throw ex;
+                }
+                this.tracker.end();
+                super.endRDF();
+            } finally {
+                for (final Partition partition : this.partitions) {
+                    partition.close();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            for (final Partition partition : this.partitions) {
+                partition.close();
+            }
+            super.close();
+        }
+
+    }
+
+    private final class Partition {
+
+        private final int maxBuffered;
+
+        private final Object spillLock;
+
+        private List<Value> keys;
+
+        private List<Statement> statements;
+
+        @Nullable
+        private SpillFile spillFile; // guarded by spillLock
+
+        Partition(final int maxBuffered) {
+            this.maxBuffered = maxBuffered;
+            this.spillLock = new Object();
+            this.keys = new ArrayList<>();
+            this.statements = new ArrayList<>();
+            this.spillFile = null;
+        }
+
+        void add(final Value key, final Statement statement) throws IOException {
+
+            // Buffer the statement, swapping out the buffer if full
+            final List<Value> keys;
+            final List<Statement> statements;
+            synchronized (this) {
+                this.keys.add(key);
+                this.statements.add(statement);
+                if (this.keys.size() < this.maxBuffered) {
+                    return;
+                }
+                keys = this.keys;
+                statements = this.statements;
+                this.keys = new ArrayList<>();
+                this.statements = new ArrayList<>();
+            }
+
+            // Spill the full buffer without blocking other threads adding to the partition
+            synchronized (this.spillLock) {
+                if (this.spillFile == null) {
+                    this.spillFile = SpillFile.create(false);
+                }
+                for (int i = 0; i < keys.size(); ++i) {
+                    final Statement stmt = statements.get(i);
+                    this.spillFile.append(keys.get(i), stmt.getSubject(), stmt.getPredicate(),
+                            stmt.getObject(), stmt.getContext());
+                }
+            }
+        }
+
+        void reduce(final RDFHandler handler, final Tracker tracker)
+                throws RDFHandlerException {
+
+            // Reduce the partition in memory if it was not spilled
+            final SpillFile spillFile;
+            synchronized (this.spillLock) {
+                spillFile = this.spillFile;
+                this.spillFile = null;
+            }
+            if (spillFile == null) {
+                final Map<Value, List<Statement>> groups = new LinkedHashMap<>();
+                for (int i = 0; i < this.keys.size(); ++i) {
+                    add(groups, this.keys.get(i), this.statements.get(i), handler, tracker);
+                }
+                this.keys.clear();
+                this.statements.clear();
+                reduce(groups, handler, tracker);
+                return;
+            }
+
+            // Otherwise, split the partition in sub-partitions (based on a secondary hash of
+            // keys) expected to fit in memory, and reduce them one at a time. As partitions are
+            // reduced in parallel and each open sub-partition file buffers a block, the fan-out
+            // is capped so that block buffers of all partitions fit in the spill memory budget
+            final long numRecords = spillFile.getNumRecords() + this.keys.size();
+            final long maxSubPartitions = Math.max(2, Math.min(1024, SPILL_MEMORY
+                    / ((long) Environment.getCores() * SPILL_BLOCK_SIZE)));
+            final int numSubPartitions = (int) Math.min(maxSubPartitions, (numRecords - 1)
+                    / this.maxBuffered + 1);
+            if ((numRecords - 1) / this.maxBuffered + 1 > maxSubPartitions) {
+                LOGGER.warn("Partition of {} statements split in {} sub-partitions, exceeding "
+                        + "the buffer of {} statements each", numRecords, numSubPartitions,
+                        this.maxBuffered);
+            }
+            final SpillFile[] subPartitions = new SpillFile[numSubPartitions];
+            try {
+                for (int i = 0; i < numSubPartitions; ++i) {
+                    subPartitions[i] = SpillFile.create(false, SPILL_BLOCK_SIZE);
+                }
+                for (final Value[] record : spillFile) {
+                    subPartitions[subPartition(record[0], numSubPartitions)].append(record);
+                }
+                spillFile.close();
+                for (int i = 0; i < this.keys.size(); ++i) {
+                    final Value key = this.keys.get(i);
+                    final Statement stmt = this.statements.get(i);
+                    subPartitions[subPartition(key, numSubPartitions)].append(key,
+                            stmt.getSubject(), stmt.getPredicate(), stmt.getObject(),
+                            stmt.getContext());
+                }
+                this.keys.clear();
+                this.statements.clear();
+                final ValueFactory vf = Statements.VALUE_FACTORY;
+                for (int i = 0; i < numSubPartitions; ++i) {
+                    final Map<Value, List<Statement>> groups = new LinkedHashMap<>();
+                    for (final Value[] record : subPartitions[i]) {
+                        final Resource s = (Resource) record[1];
+                        final URI p = (URI) record[2];
+                        final Resource c = (Resource) record[4];
+                        add(groups, record[0], c == null ? vf.createStatement(s, p, record[3]) //
+                                : vf.createStatement(s, p, record[3], c), handler, tracker);
+                    }
+                    subPartitions[i].close();
+                    subPartitions[i] = null;
+                    reduce(groups, handler, tracker);
+                }
+            } catch (final IOException ex) {
+                throw new RDFHandlerException(ex);
+            } finally {
+                spillFile.close();
+                for (final SpillFile subPartition : subPartitions) {
+                    if (subPartition != null) {
+                        subPartition.close();
+                    }
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                this.keys.clear();
+                this.statements.clear();
+            }
+            synchronized (this.spillLock) {
+                if (this.spillFile != null) {
+                    this.spillFile.close();
+                    this.spillFile = null;
+                }
+            }
+        }
+
+        private void reduce(final Map<Value, List<Statement>> groups, final RDFHandler handler,
+                final Tracker tracker) throws RDFHandlerException {
+
+            // Reduce each group, deduplicating its statements if required
+            final Set<List<Value>> seen = ProcessorMapReduce.this.deduplicate ? new HashSet<>()
+                    : null;
+            for (final Map.Entry<Value, List<Statement>> entry : groups.entrySet()) {
+                List<Statement> stmts = entry.getValue();
+                if (stmts.isEmpty()) {
+                    continue; // all the statements of the key already reduced in chunks
+                } else if (seen != null) {
+                    final List<Statement> unique = new ArrayList<>(stmts.size());
+                    for (final Statement stmt : stmts) {
+                        if (seen.add(Arrays.asList(stmt.getSubject(), stmt.getPredicate(),
+                                stmt.getObject(), stmt.getContext()))) {
+                            unique.add(stmt);
+                        }
+                    }
+                    seen.clear();
+                    stmts = unique;
+                }
+                ProcessorMapReduce.this.reducer.reduce(entry.getKey(),
+                        stmts.toArray(new Statement[stmts.size()]), handler);
+                tracker.increment();
+                entry.setValue(null); // release memory as soon as possible
+            }
+        }
+
+        private int subPartition(final Value key, final int numSubPartitions) {
+            final int hash = Objects.hashCode(key) * 0x9E3779B9; // decorrelate from partition
+            return ((hash ^ hash >>> 16) & 0x7FFFFFFF) % numSubPartitions;
+        }
+
+        private void add(final Map<Value, List<Statement>> groups, final Value key,
+                final Statement statement, final RDFHandler handler, final Tracker tracker)
+                throws RDFHandlerException {
+
+            List<Statement> stmts = groups.get(key);
+            if (stmts == null) {
+                stmts = new ArrayList<>();
+                groups.put(key, stmts);
+            }
+            stmts.add(statement);
+
+            // Reduce a chunk of the group as soon as complete if the key can be split, otherwise
+            // keep materializing the group up to a max number of statements
+            final int size = stmts.size();
+            final int threshold = ProcessorMapReduce.this.skewThreshold;
+            if (ProcessorMapReduce.this.splittable && !ProcessorMapReduce.this.deduplicate
+                    && threshold > 0 && size >= threshold) {
+                ProcessorMapReduce.this.reducer.reduce(key, stmts.toArray(new Statement[size]),
+                        handler);
+                tracker.increment();
+                stmts.clear();
+            } else if (size > ProcessorMapReduce.this.maxKeyStatements) {
+                throw newKeyTooLargeException(key);
+            }
+        }
+
+    }
+
+    private static final class Sketch {
+
+        // Space-saving sketch (Metwally et al.), with counters organized in a min-heap
+
+        private final Value[] keys;
+
+        private final long[] counts;
+
+        private final Map<Value, Integer> positions;
+
+        private int size;
+
+        Sketch(final int capacity) {
+            this.keys = new Value[capacity];
+            this.counts = new long[capacity];
+            this.positions = new HashMap<>();
+            this.size = 0;
+        }
+
+        synchronized long add(final Value key) {
+            final Integer position = this.positions.get(key);
+            int index;
+            if (position != null) {
+                index = position;
+            } else if (this.size < this.keys.length) {
+                index = this.size++;
+                this.keys[index] = key;
+                this.positions.put(key, index);
+                index = siftUp(index);
+            } else {
+                index = 0; // replace the key with minimum count, inheriting its count
+                this.positions.remove(this.keys[0]);
+                this.keys[0] = key;
+                this.positions.put(key, 0);
+            }
+            final long count = ++this.counts[index];
+            siftDown(index);
+            return count;
+        }
+
+        private int siftUp(int index) {
+            while (index > 0) {
+                final int parent = (index - 1) / 2;
+                if (this.counts[parent] <= this.counts[index]) {
+                    break;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+            return index;
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                final int left = 2 * index + 1;
+                if (left >= this.size) {
+                    break;
+                }
+                final int right = left + 1;
+                final int child = right < this.size && this.counts[right] < this.counts[left]
+                        ? right : left;
+                if (this.counts[index] <= this.counts[child]) {
+                    break;
+                }
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        private void swap(final int i, final int j) {
+            final Value key = this.keys[i];
+            final long count = this.counts[i];
+            this.keys[i] = this.keys[j];
+            this.counts[i] = this.counts[j];
+            this.keys[j] = key;
+            this.counts[j] = count;
+            this.positions.put(this.keys[i], i);
+            this.positions.put(this.keys[j], j);
+        }
+
+    }
+
 }
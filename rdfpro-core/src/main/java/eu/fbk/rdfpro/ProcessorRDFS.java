@@ -181,6 +181,15 @@ final class ProcessorRDFS implements RDFProcessor {
             this.inferencer.get().handleStatement(statement);
         }
 
+        @Override
+        public void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            final ABoxInferencer inferencer = this.inferencer.get();
+            for (int i = 0; i < count; ++i) {
+                inferencer.handleStatement(statements[i]);
+            }
+        }
+
         @Override
         public void endRDF() throws RDFHandlerException {
             if (ProcessorRDFS.this.emitTBox) {
@@ -205,6 +214,10 @@ final class ProcessorRDFS implements RDFProcessor {
 
         final Map<Resource, Property> properties;
 
+        final Map<Resource, Integer> classIndexes; // class -> index in bitsets
+
+        final Resource[] classes; // index -> class
+
         TBox(final Database database, @Nullable final Resource context) {
 
             final List<Statement> attributes = new ArrayList<Statement>();
@@ -292,16 +305,51 @@ final class ProcessorRDFS implements RDFProcessor {
                 }
             }
 
+            // Index classes, so that superclass closures can be represented as bitsets
+            final Map<Resource, Integer> classIndexes = new HashMap<Resource, Integer>();
+            final List<Resource> classes = new ArrayList<Resource>();
+            index(classIndexes, classes, RDFS.RESOURCE);
+            for (final Map.Entry<Resource, Type> entry : types.entrySet()) {
+                index(classIndexes, classes, entry.getKey());
+                index(classIndexes, classes, entry.getValue().parents);
+            }
+            for (final Property p : properties.values()) {
+                index(classIndexes, classes, p.domain);
+                index(classIndexes, classes, p.range);
+            }
+            final int words = (classes.size() + 63) / 64;
+            for (final Type type : types.values()) {
+                type.closure = new long[words];
+                for (final Resource parent : type.parents) {
+                    final int bit = classIndexes.get(parent);
+                    type.closure[bit >>> 6] |= 1L << bit;
+                }
+            }
+
             this.statements = Arrays.asList(statementArray);
             this.resources = resources; // should use immutable maps here...
             this.types = types;
             this.properties = properties;
+            this.classIndexes = classIndexes;
+            this.classes = classes.toArray(new Resource[classes.size()]);
+        }
+
+        private static void index(final Map<Resource, Integer> indexes,
+                final List<Resource> classes, final Resource... resources) {
+            for (final Resource resource : resources) {
+                if (!indexes.containsKey(resource)) {
+                    indexes.put(resource, classes.size());
+                    classes.add(resource);
+                }
+            }
         }
 
         static final class Type {
 
             final Resource[] parents;
 
+            long[] closure; // bitset of parents, indexed by TBox.classIndexes
+
             Type(final Resource[] parents) {
                 this.parents = parents;
             }
@@ -784,6 +832,19 @@ final class ProcessorRDFS implements RDFProcessor {
 
         private final List<Statement> emitted;
 
+        // Per-subject memoization: types already emitted for the current subject and context,
+        // which allows to emit each inferred type once per subject on subject-clustered input
+
+        private Resource memoSubject;
+
+        private Resource memoContext;
+
+        private final long[] memoTypes;
+
+        private final int[] memoDirtyWords;
+
+        private int memoDirtyCount;
+
         ABoxInferencer(final RDFHandler handler, final Ruleset ruleset, final TBox tbox,
                 final Deduplicator deduplicator, final boolean dropBNodesTypes) {
             this.handler = handler;
@@ -794,6 +855,8 @@ final class ProcessorRDFS implements RDFProcessor {
             this.matrix = new Statement[64 * STATEMENTS_PER_BUCKET];
             this.set = new HashSet<Statement>();
             this.emitted = new ArrayList<Statement>();
+            this.memoTypes = new long[(tbox.classes.length + 63) / 64];
+            this.memoDirtyWords = new int[this.memoTypes.length];
         }
 
         void handleStatement(final Statement statement) throws RDFHandlerException {
@@ -814,6 +877,18 @@ final class ProcessorRDFS implements RDFProcessor {
                 s2 = s;
             }
 
+            if (s2 != this.memoSubject || this.context != this.memoContext) {
+                if (!s2.equals(this.memoSubject)
+                        || !Objects.equals(this.context, this.memoContext)) {
+                    for (int i = 0; i < this.memoDirtyCount; ++i) {
+                        this.memoTypes[this.memoDirtyWords[i]] = 0L;
+                    }
+                    this.memoDirtyCount = 0;
+                }
+                this.memoSubject = s2; // so that later checks can be done by reference
+                this.memoContext = this.context;
+            }
+
             URI p2 = (URI) this.tbox.resources.get(p);
             if (p2 == null) {
                 p2 = s2 == s && p.equals(s) ? (URI) s : p;
@@ -906,7 +981,20 @@ final class ProcessorRDFS implements RDFProcessor {
 
                 if (this.ruleset.rdfs9) {
                     final TBox.Type t = this.tbox.types.get(object);
-                    if (t != null) {
+                    if (t == null) {
+                        // no superclasses
+                    } else if (subject == this.memoSubject) {
+                        // emit only superclasses not already emitted for the subject
+                        final long[] closure = t.closure;
+                        for (int w = 0; w < closure.length; ++w) {
+                            long bits = closure[w] & ~this.memoTypes[w];
+                            while (bits != 0L) {
+                                final int bit = Long.numberOfTrailingZeros(bits);
+                                bits &= bits - 1;
+                                emit(subject, RDF.TYPE, this.tbox.classes[w << 6 | bit], false);
+                            }
+                        }
+                    } else {
                         for (final Resource c : t.parents) {
                             emit(subject, RDF.TYPE, c, false);
                         }
@@ -918,6 +1006,21 @@ final class ProcessorRDFS implements RDFProcessor {
         private void emit(final Resource subject, final URI predicate, final Value object,
                 final boolean buffer) {
 
+            if (predicate == RDF.TYPE && subject == this.memoSubject) {
+                final Integer index = this.tbox.classIndexes.get(object);
+                if (index != null) {
+                    final int word = index >>> 6;
+                    final long mask = 1L << index;
+                    final long bits = this.memoTypes[word];
+                    if ((bits & mask) != 0L) {
+                        return; // already emitted for current subject
+                    } else if (bits == 0L) {
+                        this.memoDirtyWords[this.memoDirtyCount++] = word;
+                    }
+                    this.memoTypes[word] = bits | mask;
+                }
+            }
+
             final int hash = System.identityHashCode(subject) * 3323
                     + System.identityHashCode(predicate) * 661 + System.identityHashCode(object);
 
@@ -15,12 +15,22 @@ package eu.fbk.rdfpro;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
+import com.google.common.io.CharStreams;
+
 import org.openrdf.model.BNode;
+import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
@@ -33,10 +43,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Hash;
 import eu.fbk.rdfpro.util.IO;
+import eu.fbk.rdfpro.util.Metrics;
 import eu.fbk.rdfpro.util.Namespaces;
 import eu.fbk.rdfpro.util.Options;
 import eu.fbk.rdfpro.util.QuadModel;
+import eu.fbk.rdfpro.util.SpillFile;
 import eu.fbk.rdfpro.util.Statements;
 import eu.fbk.rdfpro.util.Tracker;
 
@@ -44,6 +57,36 @@ final class ProcessorRules implements RDFProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProcessorRules.class);
 
+    // Cache settings are read from properties, but can be changed via configureCache()
+
+    private static volatile int cacheSize = Integer.parseInt(Environment.getProperty(
+            "rdfpro.rules.cache.size", "0"));
+
+    @Nullable
+    private static volatile String cacheDir = Environment.getProperty("rdfpro.rules.cache.dir");
+
+    private static final String CACHE_PREFIX = "rules-v1-";
+
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter(
+            "rdfpro_rules_cache_hits_total",
+            "Number of @rules instances reusing a cached ruleset and TBox closure");
+
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter(
+            "rdfpro_rules_cache_misses_total",
+            "Number of @rules instances preprocessing ruleset and TBox data with cache enabled");
+
+    private static final Map<Hash, Preprocessing> CACHE = new LinkedHashMap<Hash, Preprocessing>(
+            16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Hash, Preprocessing> eldest) {
+            return size() > cacheSize;
+        }
+
+    };
+
     private final RuleEngine engine;
 
     @Nullable
@@ -133,6 +176,25 @@ final class ProcessorRules implements RDFProcessor {
             throw new IllegalArgumentException("Unknown graph inference mode: " + mode);
         }
 
+        // Compute a key identifying the ruleset sources and the applied transformations, if
+        // caching is enabled (this requires reading again the ruleset sources)
+        Hash rulesetKey = null;
+        if (cacheSize > 0 || cacheDir != null) {
+            final List<String> keyParts = new ArrayList<>();
+            for (final String url : rdfRulesetURLs) {
+                keyParts.add(readText(url));
+            }
+            for (final String url : dlogRulesetURLs) {
+                keyParts.add(readText(url));
+            }
+            keyParts.add(parameters);
+            keyParts.add(mode);
+            keyParts.add(String.valueOf(globalURI));
+            keyParts.add(String.valueOf(base));
+            keyParts.add(Boolean.toString(preserveBNodes));
+            rulesetKey = Hash.murmur3(keyParts.toArray(new String[keyParts.size()]));
+        }
+
         // Read TBox closure settings
         boolean emitTBox = false;
         URI tboxContext = null;
@@ -173,7 +235,7 @@ final class ProcessorRules implements RDFProcessor {
 
         // Build processor
         return new ProcessorRules(ruleset, mapper, dropBNodeTypes, deduplicate, tboxData,
-                emitTBox, tboxContext);
+                emitTBox, tboxContext, rulesetKey);
     }
 
     public ProcessorRules(final Ruleset ruleset, @Nullable final Mapper mapper,
@@ -185,13 +247,18 @@ final class ProcessorRules implements RDFProcessor {
             final boolean dropBNodeTypes, final boolean deduplicate,
             @Nullable final RDFSource tboxData, final boolean emitTBox,
             @Nullable final URI tboxContext) {
+        this(ruleset, mapper, dropBNodeTypes, deduplicate, tboxData, emitTBox, tboxContext, null);
+    }
+
+    private ProcessorRules(final Ruleset ruleset, @Nullable final Mapper mapper,
+            final boolean dropBNodeTypes, final boolean deduplicate,
+            @Nullable final RDFSource tboxData, final boolean emitTBox,
+            @Nullable final URI tboxContext, @Nullable final Hash rulesetKey) {
 
-        // Process ruleset and static data
+        // Load TBox data, if any
         LOGGER.debug("Processing {} rules {} TBox data", ruleset.getRules().size(),
                 tboxData == null ? "without" : "with");
         final long ts = System.currentTimeMillis();
-        Ruleset processedRuleset = ruleset.mergeSameWhereExpr();
-        RuleEngine engine = RuleEngine.create(processedRuleset);
         QuadModel tboxClosure = null;
         if (tboxData != null) {
             tboxClosure = QuadModel.create();
@@ -200,22 +267,69 @@ final class ProcessorRules implements RDFProcessor {
             } catch (final RDFHandlerException ex) {
                 throw new RuntimeException(ex);
             }
-            engine.eval(tboxClosure);
-            processedRuleset = processedRuleset.getABoxRuleset(tboxClosure).mergeSameWhereExpr();
-            engine = RuleEngine.create(processedRuleset);
-            if (!emitTBox) {
-                tboxClosure = null;
-            } else if (tboxContext != null) {
+        }
+
+        // Lookup the result of preprocessing in the memory and disk caches, if enabled
+        Hash key = null;
+        Preprocessing preprocessing = null;
+        if (rulesetKey != null && (cacheSize > 0 || cacheDir != null)) {
+            key = tboxClosure == null ? rulesetKey : Hash.combine(rulesetKey,
+                    hash(tboxClosure));
+            synchronized (CACHE) {
+                preprocessing = CACHE.get(key);
+            }
+            if (preprocessing == null && cacheDir != null) {
+                preprocessing = load(key);
+                if (preprocessing != null) {
+                    synchronized (CACHE) {
+                        CACHE.put(key, preprocessing);
+                    }
+                }
+            }
+        }
+
+        // Otherwise, process ruleset and TBox data, caching the result if possible
+        if (preprocessing == null) {
+            if (key != null) {
+                CACHE_MISSES.increment();
+            }
+            Ruleset processedRuleset = ruleset.mergeSameWhereExpr();
+            RuleEngine engine = RuleEngine.create(processedRuleset);
+            if (tboxClosure != null) {
+                engine.eval(tboxClosure);
+                processedRuleset = processedRuleset.getABoxRuleset(tboxClosure)
+                        .mergeSameWhereExpr();
+                engine = RuleEngine.create(processedRuleset);
+            }
+            preprocessing = new Preprocessing(processedRuleset, engine, tboxClosure);
+            if (key != null) {
+                synchronized (CACHE) {
+                    CACHE.put(key, preprocessing);
+                }
+                if (cacheDir != null) {
+                    save(key, preprocessing);
+                }
+            }
+        } else {
+            CACHE_HITS.increment();
+            LOGGER.debug("Reusing cached ruleset and TBox closure for key {}", key);
+        }
+
+        // Prepare the TBox closure to emit, if required
+        tboxClosure = null;
+        if (emitTBox && preprocessing.tboxClosure != null) {
+            tboxClosure = preprocessing.tboxClosure;
+            if (tboxContext != null) {
                 final URI ctx = tboxContext.equals(SESAME.NIL) ? null : tboxContext;
-                final List<Statement> stmts = new ArrayList<>(tboxClosure);
-                tboxClosure.clear();
-                for (final Statement stmt : stmts) {
+                tboxClosure = QuadModel.create();
+                for (final Statement stmt : preprocessing.tboxClosure) {
                     tboxClosure.add(stmt.getSubject(), stmt.getPredicate(), stmt.getObject(), ctx);
                 }
             }
         }
+        final RuleEngine engine = preprocessing.engine;
         LOGGER.info("{} initialized with {} ABox rules (from {} rules) in {} ms", engine,
-                processedRuleset.getRules().size(), ruleset.getRules().size(),
+                preprocessing.ruleset.getRules().size(), ruleset.getRules().size(),
                 System.currentTimeMillis() - ts);
 
         // Setup object
@@ -236,14 +350,59 @@ final class ProcessorRules implements RDFProcessor {
         if (this.dropBNodeTypes) {
             result = new AbstractRDFHandlerWrapper(result) {
 
+                // per-thread array for filtered batches (downstream cannot retain it)
+                private final ThreadLocal<Statement[]> buffer = new ThreadLocal<Statement[]>();
+
                 @Override
                 public void handleStatement(final Statement stmt) throws RDFHandlerException {
-                    if (!RDF.TYPE.equals(stmt.getPredicate())
-                            || !(stmt.getObject() instanceof BNode)) {
+                    if (!isBNodeType(stmt)) {
                         super.handleStatement(stmt);
                     }
                 }
 
+                @Override
+                public void handleStatements(final Statement[] stmts, final int count)
+                        throws RDFHandlerException {
+
+                    // Forward the batch as is if there is nothing to drop (common case)
+                    int index = 0;
+                    while (index < count && !isBNodeType(stmts[index])) {
+                        ++index;
+                    }
+                    if (index == count) {
+                        RDFHandlers.handleStatements(this.handler, stmts, count);
+                        return;
+                    }
+
+                    // Otherwise, copy retained statements in the per-thread array, taking it
+                    // out of the thread local while in use in case downstream handlers re-enter
+                    Statement[] filtered = this.buffer.get();
+                    if (filtered == null || filtered.length < count) {
+                        filtered = new Statement[Math.max(count, 1024)];
+                    } else {
+                        this.buffer.set(null);
+                    }
+                    System.arraycopy(stmts, 0, filtered, 0, index);
+                    int size = index;
+                    for (int i = index + 1; i < count; ++i) {
+                        final Statement stmt = stmts[i];
+                        if (!isBNodeType(stmt)) {
+                            filtered[size++] = stmt;
+                        }
+                    }
+                    try {
+                        RDFHandlers.handleStatements(this.handler, filtered, size);
+                    } finally {
+                        Arrays.fill(filtered, 0, size, null); // avoid retaining statements
+                        this.buffer.set(filtered);
+                    }
+                }
+
+                private boolean isBNodeType(final Statement stmt) {
+                    return RDF.TYPE.equals(stmt.getPredicate())
+                            && stmt.getObject() instanceof BNode;
+                }
+
             };
         }
 
@@ -275,9 +434,7 @@ final class ProcessorRules implements RDFProcessor {
                             ProcessorRules.this.deduplicate);
                     try {
                         session.startRDF();
-                        for (final Statement stmt : stmts) {
-                            session.handleStatement(stmt);
-                        }
+                        RDFHandlers.handleStatements(session, stmts, stmts.length);
                         session.endRDF();
                     } finally {
                         IO.closeQuietly(session);
@@ -292,4 +449,126 @@ final class ProcessorRules implements RDFProcessor {
         return result;
     }
 
+    static void configureCache(final int size, @Nullable final String dir) {
+        synchronized (CACHE) {
+            cacheSize = size;
+            cacheDir = dir;
+            CACHE.clear();
+        }
+    }
+
+    private static String readText(final String url) throws IOException {
+        try (Reader reader = IO.utf8Reader(IO.read(url))) {
+            return CharStreams.toString(reader);
+        }
+    }
+
+    @Nullable
+    private static Preprocessing load(final Hash key) {
+
+        final Path rulesetPath = Paths.get(cacheDir, CACHE_PREFIX + key + ".ruleset");
+        final Path tboxPath = Paths.get(cacheDir, CACHE_PREFIX + key + ".tbox");
+        if (!Files.exists(rulesetPath)) {
+            return null;
+        }
+
+        try {
+            final long ts = System.currentTimeMillis();
+            final List<Statement> stmts = new ArrayList<>();
+            try (SpillFile file = SpillFile.open(rulesetPath)) {
+                for (final Value[] record : file) {
+                    stmts.add(Statements.VALUE_FACTORY.createStatement((Resource) record[0],
+                            (URI) record[1], record[2]));
+                }
+            }
+            final Ruleset ruleset = Ruleset.fromRDF(stmts);
+            QuadModel tboxClosure = null;
+            if (Files.exists(tboxPath)) {
+                tboxClosure = QuadModel.create();
+                try (SpillFile file = SpillFile.open(tboxPath)) {
+                    for (final Value[] record : file) {
+                        tboxClosure.add((Resource) record[0], (URI) record[1], record[2],
+                                (Resource) record[3]);
+                    }
+                }
+            }
+            final RuleEngine engine = RuleEngine.create(ruleset);
+            LOGGER.debug("Loaded {} cached rules and {} TBox quads from {} in {} ms", ruleset
+                    .getRules().size(), tboxClosure == null ? 0 : tboxClosure.size(),
+                    rulesetPath, System.currentTimeMillis() - ts);
+            return new Preprocessing(ruleset, engine, tboxClosure);
+
+        } catch (final Throwable ex) {
+            LOGGER.warn("Could not load cached ruleset " + rulesetPath + " (ignoring it)", ex);
+            return null;
+        }
+    }
+
+    private static void save(final Hash key, final Preprocessing preprocessing) {
+
+        final Path rulesetPath = Paths.get(cacheDir, CACHE_PREFIX + key + ".ruleset");
+        final Path tboxPath = Paths.get(cacheDir, CACHE_PREFIX + key + ".tbox");
+
+        try {
+            // The ruleset file is written last, as its presence marks the entry as complete
+            Files.createDirectories(rulesetPath.getParent());
+            if (preprocessing.tboxClosure != null) {
+                save(tboxPath, preprocessing.tboxClosure);
+            }
+            save(rulesetPath, preprocessing.ruleset.toRDF(new ArrayList<Statement>()));
+            LOGGER.debug("Cached ruleset and TBox closure in {}", rulesetPath);
+
+        } catch (final Throwable ex) {
+            LOGGER.warn("Could not cache ruleset in " + rulesetPath, ex);
+        }
+    }
+
+    private static void save(final Path path, final Iterable<Statement> stmts)
+            throws IOException {
+        // Write to a temporary file first, so that concurrent readers never see partial data
+        final Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(),
+                ".tmp");
+        try {
+            try (SpillFile file = SpillFile.create(tmp, true)) {
+                for (final Statement stmt : stmts) {
+                    file.append(stmt.getSubject(), stmt.getPredicate(), stmt.getObject(),
+                            stmt.getContext());
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static Hash hash(final QuadModel model) {
+        // Order-independent combination of statement hashes
+        long high = 0;
+        long low = 0;
+        for (final Statement stmt : model) {
+            final Hash hash = Hash.murmur3(stmt.toString());
+            high += hash.getHigh();
+            low += hash.getLow();
+        }
+        return Hash.fromLongs(high, low);
+    }
+
+    private static final class Preprocessing {
+
+        final Ruleset ruleset;
+
+        final RuleEngine engine;
+
+        @Nullable
+        final QuadModel tboxClosure;
+
+        Preprocessing(final Ruleset ruleset, final RuleEngine engine,
+                @Nullable final QuadModel tboxClosure) {
+            this.ruleset = ruleset;
+            this.engine = engine;
+            this.tboxClosure = tboxClosure;
+        }
+
+    }
+
 }
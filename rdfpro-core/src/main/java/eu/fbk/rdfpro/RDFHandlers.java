@@ -13,12 +13,15 @@
  */
 package eu.fbk.rdfpro;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
@@ -34,13 +37,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 import javax.annotation.Nullable;
 
@@ -58,15 +62,21 @@ import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RDFWriterFactory;
+import org.openrdf.rio.RDFWriterRegistry;
 import org.openrdf.rio.Rio;
+import org.openrdf.rio.RioSetting;
 import org.openrdf.rio.WriterConfig;
 import org.openrdf.rio.helpers.BasicWriterSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
 import eu.fbk.rdfpro.util.IO;
+import eu.fbk.rdfpro.util.Metrics;
 import eu.fbk.rdfpro.util.QuadModel;
+import eu.fbk.rdfpro.util.RingBuffer;
 import eu.fbk.rdfpro.util.Sorter;
 import eu.fbk.rdfpro.util.Statements;
 
@@ -98,17 +108,35 @@ public final class RDFHandlers {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RDFHandlers.class);
 
-    private static final WriterConfig DEFAULT_WRITER_CONFIG;
+    private static final WriterConfig DEFAULT_WRITER_CONFIG = newWriterConfig();
 
-    static {
-        final WriterConfig config = new WriterConfig();
-        config.set(BasicWriterSettings.PRETTY_PRINT, true);
-        config.set(BasicWriterSettings.RDF_LANGSTRING_TO_LANG_LITERAL, true);
-        config.set(BasicWriterSettings.XSD_STRING_TO_PLAIN_LITERAL, true);
-        DEFAULT_WRITER_CONFIG = config;
+    private RDFHandlers() {
     }
 
-    private RDFHandlers() {
+    /**
+     * Notifies the supplied {@code RDFHandler} of the first {@code count} statements in the array
+     * supplied. If the handler is a {@link BatchRDFHandler}, the statements are notified with a
+     * single call to {@link BatchRDFHandler#handleStatements(Statement[], int)}, otherwise
+     * {@link RDFHandler#handleStatement(Statement)} is called for each statement.
+     *
+     * @param handler
+     *            the handler to notify, not null
+     * @param statements
+     *            the statement array, not null
+     * @param count
+     *            the number of statements in the array to notify
+     * @throws RDFHandlerException
+     *             on failure
+     */
+    public static void handleStatements(final RDFHandler handler, final Statement[] statements,
+            final int count) throws RDFHandlerException {
+        if (handler instanceof BatchRDFHandler) {
+            ((BatchRDFHandler) handler).handleStatements(statements, count);
+        } else {
+            for (int i = 0; i < count; ++i) {
+                handler.handleStatement(statements[i]);
+            }
+        }
     }
 
     /**
@@ -238,6 +266,12 @@ public final class RDFHandlers {
                     super.handleStatement(statement);
                 }
 
+                @Override
+                public void handleStatements(final Statement[] statements, final int count)
+                        throws RDFHandlerException {
+                    RDFHandlers.handleStatements(this.handler, statements, count);
+                }
+
             };
 
         } else {
@@ -248,6 +282,12 @@ public final class RDFHandlers {
                     // Discard
                 }
 
+                @Override
+                public void handleStatements(final Statement[] statements, final int count)
+                        throws RDFHandlerException {
+                    // Discard
+                }
+
             };
         }
     }
@@ -294,6 +334,12 @@ public final class RDFHandlers {
                 this.passHandler.handleStatement(statement);
             }
 
+            @Override
+            public void handleStatements(final Statement[] statements, final int count)
+                    throws RDFHandlerException {
+                RDFHandlers.handleStatements(this.passHandler, statements, count);
+            }
+
             @Override
             public void endRDF() throws RDFHandlerException {
                 try {
@@ -521,6 +567,113 @@ public final class RDFHandlers {
             this.statementSink.add(statement);
         }
 
+        @Override
+        public synchronized void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            for (int i = 0; i < count; ++i) {
+                this.statementSink.add(statements[i]);
+            }
+        }
+
+    }
+
+    private static WriterConfig newWriterConfig() {
+        final WriterConfig config = new WriterConfig();
+        config.set(BasicWriterSettings.PRETTY_PRINT, true);
+        config.set(BasicWriterSettings.RDF_LANGSTRING_TO_LANG_LITERAL, true);
+        config.set(BasicWriterSettings.XSD_STRING_TO_PLAIN_LITERAL, true);
+        return config;
+    }
+
+    /**
+     * Returns a {@code WriterConfig} extending the default one with the {@code KEY=VALUE}
+     * settings specified, where each key is resolved against the {@code RioSetting}s in
+     * {@link BasicWriterSettings} and the ones reported as supported by the writers of the
+     * locations given (some Sesame writers honor basic settings without reporting them).
+     *
+     * @param settings
+     *            the {@code KEY=VALUE} settings
+     * @param locations
+     *            the locations to be written, whose formats determine the settings available
+     * @return the created {@code WriterConfig}
+     * @throws IllegalArgumentException
+     *             on malformed, unknown or unsupported settings
+     */
+    static WriterConfig newWriterConfig(final Iterable<String> settings,
+            final String... locations) {
+        final WriterConfig config = newWriterConfig();
+        for (final String setting : settings) {
+            final int index = setting.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Invalid writer setting '" + setting
+                        + "' (expected KEY=VALUE)");
+            }
+            final String key = setting.substring(0, index).trim();
+            final String value = setting.substring(index + 1).trim();
+            final Set<RioSetting<?>> candidates = new HashSet<>();
+            for (final Field field : BasicWriterSettings.class.getFields()) {
+                if (Modifier.isStatic(field.getModifiers())
+                        && RioSetting.class.isAssignableFrom(field.getType())) {
+                    try {
+                        candidates.add((RioSetting<?>) field.get(null));
+                    } catch (final IllegalAccessException ex) {
+                        throw new Error("Unexpected error (!)", ex);
+                    }
+                }
+            }
+            for (final String location : locations) {
+                final RDFFormat format = Statements.toRDFFormat(location);
+                final RDFWriter writer = Rio.createWriter(format, new ByteArrayOutputStream());
+                candidates.addAll(writer.getSupportedSettings());
+            }
+            boolean found = false;
+            for (final RioSetting<?> candidate : candidates) {
+                if (candidate.getKey().equals(key)) {
+                    setWriterSetting(config, candidate, value);
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Unknown writer setting " + key);
+            }
+        }
+        return config;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setWriterSetting(final WriterConfig config,
+            final RioSetting<T> setting, final String value) {
+        final Object defaultValue = setting.getDefaultValue();
+        final Object parsedValue;
+        if (defaultValue instanceof Boolean) {
+            if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                throw new IllegalArgumentException("Invalid boolean value '" + value
+                        + "' for writer setting " + setting.getKey());
+            }
+            parsedValue = Boolean.valueOf(value);
+        } else if (defaultValue instanceof Integer) {
+            parsedValue = Integer.valueOf(value);
+        } else if (defaultValue instanceof Long) {
+            parsedValue = Long.valueOf(value);
+        } else if (defaultValue == null || defaultValue instanceof String) {
+            parsedValue = value;
+        } else {
+            throw new IllegalArgumentException("Unsupported writer setting " + setting.getKey()
+                    + " of type " + defaultValue.getClass().getSimpleName());
+        }
+        config.set(setting, (T) parsedValue);
+    }
+
+    private static boolean isCharacterWriterFormat(final RDFFormat format) {
+        // Text writers are fed a buffered Writer, unless their factory declares (via property
+        // rdfpro.writer.FACTORY_CLASS.stream) that they encode bytes directly to the stream,
+        // thus avoiding the overhead of a Writer (the same happens for binary formats)
+        if (!Statements.isRDFFormatTextBased(format)) {
+            return false;
+        }
+        final RDFWriterFactory factory = RDFWriterRegistry.getInstance().get(format);
+        return factory == null || !Boolean.parseBoolean(Environment.getProperty("rdfpro.writer."
+                + factory.getClass().getName() + ".stream", "false"));
     }
 
     private static final class SequentialWriteHandler extends AbstractRDFHandler {
@@ -546,7 +699,7 @@ public final class RDFHandlers {
                 final RDFFormat format = Statements.toRDFFormat(this.location);
                 LOGGER.debug("Starting sequential {} writing of {}", format, this.location);
                 final OutputStream stream = IO.write(this.location);
-                if (Statements.isRDFFormatTextBased(format)) {
+                if (isCharacterWriterFormat(format)) {
                     this.out = IO.buffer(new OutputStreamWriter(stream, Charset.forName("UTF-8")));
                     this.writer = Rio.createWriter(format, (Writer) this.out);
                 } else {
@@ -578,6 +731,14 @@ public final class RDFHandlers {
             this.writer.handleStatement(statement);
         }
 
+        @Override
+        public synchronized void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            for (int i = 0; i < count; ++i) {
+                this.writer.handleStatement(statements[i]);
+            }
+        }
+
         @Override
         public void endRDF() throws RDFHandlerException {
             this.writer.endRDF();
@@ -607,7 +768,7 @@ public final class RDFHandlers {
         private OutputStream out;
 
         @Nullable
-        private List<Writer> partialOuts;
+        private List<Closeable> partialOuts;
 
         @Nullable
         private List<RDFWriter> partialWriters;
@@ -626,7 +787,7 @@ public final class RDFHandlers {
                 LOGGER.debug("Starting parallel {} writing of {}",
                         Statements.toRDFFormat(this.location).getName(), this.location);
                 this.out = IO.write(this.location);
-                this.partialOuts = new ArrayList<Writer>();
+                this.partialOuts = new ArrayList<Closeable>();
                 this.partialWriters = new ArrayList<RDFWriter>();
                 this.threadWriter = new ThreadLocal<RDFWriter>() {
 
@@ -648,13 +809,22 @@ public final class RDFHandlers {
             this.threadWriter.get().handleStatement(statement);
         }
 
+        @Override
+        public void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            final RDFWriter writer = this.threadWriter.get();
+            for (int i = 0; i < count; ++i) {
+                writer.handleStatement(statements[i]);
+            }
+        }
+
         @Override
         public void endRDF() throws RDFHandlerException {
             for (final RDFHandler partialWriter : this.partialWriters) {
                 partialWriter.endRDF();
             }
             try {
-                for (final Writer partialOut : this.partialOuts) {
+                for (final Closeable partialOut : this.partialOuts) {
                     partialOut.close();
                 }
                 this.out.close();
@@ -673,9 +843,18 @@ public final class RDFHandlers {
         }
 
         private RDFWriter newWriter() {
-            final Writer partialOut = IO.utf8Writer(IO.parallelBuffer(this.out, (byte) '\n'));
             final RDFFormat format = Statements.toRDFFormat(this.location);
-            final RDFWriter partialWriter = Rio.createWriter(format, partialOut);
+            final OutputStream partialStream = IO.parallelBuffer(this.out, (byte) '\n');
+            final Closeable partialOut;
+            final RDFWriter partialWriter;
+            if (isCharacterWriterFormat(format)) {
+                final Writer partialText = IO.utf8Writer(partialStream);
+                partialOut = partialText;
+                partialWriter = Rio.createWriter(format, partialText);
+            } else {
+                partialOut = partialStream; // binary writer emits '\n'-terminated blocks
+                partialWriter = Rio.createWriter(format, partialStream);
+            }
             partialWriter.setWriterConfig(this.config);
             synchronized (this.partialOuts) {
                 this.partialOuts.add(partialOut);
@@ -929,6 +1108,13 @@ public final class RDFHandlers {
             this.second.handleStatement(statement);
         }
 
+        @Override
+        public void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            RDFHandlers.handleStatements(this.first, statements, count);
+            RDFHandlers.handleStatements(this.second, statements, count);
+        }
+
         @Override
         public void endRDF() throws RDFHandlerException {
             this.first.endRDF();
@@ -1009,6 +1195,14 @@ public final class RDFHandlers {
             }
         }
 
+        @Override
+        public void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            for (final RDFHandler handler : this.passHandlers) {
+                RDFHandlers.handleStatements(handler, statements, count);
+            }
+        }
+
         @Override
         public void endRDF() throws RDFHandlerException {
             for (final RDFHandler handler : this.passHandlers) {
@@ -1304,6 +1498,30 @@ public final class RDFHandlers {
 
         private static final int BUFFER_SIZE = 4 * 1024;
 
+        private static final Set<DecoupleHandler> ACTIVE_HANDLERS = Collections
+                .newSetFromMap(new ConcurrentHashMap<DecoupleHandler, Boolean>());
+
+        static {
+            Metrics.gauge("rdfpro_decouple_backlog",
+                    "Number of statements waiting for background processing in decouplers",
+                    new LongSupplier() {
+
+                        @Override
+                        public long getAsLong() {
+                            long backlog = 0;
+                            for (final DecoupleHandler handler : ACTIVE_HANDLERS) {
+                                synchronized (handler) {
+                                    for (final Future<?> future : handler.futures) {
+                                        backlog += future.isDone() ? 0 : BUFFER_SIZE;
+                                    }
+                                }
+                            }
+                            return backlog;
+                        }
+
+                    }, "handler", "decouple");
+        }
+
         private final int numCores;
 
         private final Set<Thread> incomingThreads;
@@ -1314,9 +1532,9 @@ public final class RDFHandlers {
 
         private Throwable exception;
 
-        private Statement[] buffer;
+        private ConcurrentLinkedQueue<Buffer> buffers; // all the thread buffers
 
-        private int size;
+        private ThreadLocal<Buffer> threadBuffer;
 
         private int mask;
 
@@ -1336,10 +1554,20 @@ public final class RDFHandlers {
             this.incomingThreads.clear();
             this.futures.clear();
             this.exception = null;
-            this.buffer = new Statement[BUFFER_SIZE];
-            this.size = 0;
+            this.buffers = new ConcurrentLinkedQueue<Buffer>();
+            this.threadBuffer = new ThreadLocal<Buffer>() {
+
+                @Override
+                protected Buffer initialValue() {
+                    final Buffer buffer = new Buffer();
+                    DecoupleHandler.this.buffers.add(buffer);
+                    return buffer;
+                }
+
+            };
             this.mask = 0;
             this.disabled = false;
+            ACTIVE_HANDLERS.add(this);
         }
 
         @Override
@@ -1352,6 +1580,18 @@ public final class RDFHandlers {
             }
         }
 
+        @Override
+        public void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            if (this.disabled) {
+                RDFHandlers.handleStatements(this.handler, statements, count);
+            } else {
+                for (int i = 0; i < count; ++i) {
+                    handleStatementHelper(statements[i]);
+                }
+            }
+        }
+
         private void handleStatementHelper(final Statement statement) throws RDFHandlerException {
             if ((this.counter.getAndIncrement() & this.mask) != 0) {
                 super.handleStatement(statement);
@@ -1363,24 +1603,26 @@ public final class RDFHandlers {
         private void handleStatementInBackground(final Statement statement)
                 throws RDFHandlerException {
 
-            Statement[] fullBuffer = null;
+            // Statements are buffered in a per-thread buffer, so that a lock is needed only
+            // every BUFFER_SIZE statements, when the buffer is full
+            final Buffer buffer = this.threadBuffer.get();
+            buffer.statements[buffer.size++] = statement;
+            if (buffer.size < BUFFER_SIZE) {
+                return;
+            }
+
+            Statement[] fullBuffer = buffer.statements;
+            buffer.statements = new Statement[BUFFER_SIZE];
+            buffer.size = 0;
             synchronized (this) {
-                this.buffer[this.size++] = statement;
-                if (this.size == BUFFER_SIZE) {
-                    fullBuffer = this.buffer;
-                    this.buffer = new Statement[BUFFER_SIZE];
-                    this.size = 0;
-                    this.incomingThreads.add(Thread.currentThread());
-                    checkNotFailed();
-                    calibrateMask();
-                    fullBuffer = handleStatementsInBackground(fullBuffer);
-                }
+                this.incomingThreads.add(Thread.currentThread());
+                checkNotFailed();
+                calibrateMask();
+                fullBuffer = handleStatementsInBackground(fullBuffer);
             }
 
             if (fullBuffer != null) {
-                for (final Statement stmt : fullBuffer) {
-                    super.handleStatement(stmt);
-                }
+                RDFHandlers.handleStatements(this.handler, fullBuffer, fullBuffer.length);
             }
         }
 
@@ -1399,15 +1641,16 @@ public final class RDFHandlers {
                 return buffer;
             }
 
-            // Schedule a background task, properly managing exceptions it may throw
-            this.futures.add(Environment.getPool().submit(new Runnable() {
+            // Schedule a background task, properly managing exceptions it may throw. The task
+            // feeds the downstream handler, which may block (e.g., on writers or ring buffers),
+            // so it runs in the I/O lane rather than in the work-stealing CPU lane
+            this.futures.add(Environment.getPool(Lane.IO).submit(new Runnable() {
 
                 @Override
                 public void run() {
                     try {
-                        for (final Statement statement : buffer) {
-                            DecoupleHandler.super.handleStatement(statement);
-                        }
+                        RDFHandlers.handleStatements(DecoupleHandler.this.handler, buffer,
+                                buffer.length);
                     } catch (final Throwable ex) {
                         @SuppressWarnings("resource")
                         final DecoupleHandler h = DecoupleHandler.this;
@@ -1467,10 +1710,12 @@ public final class RDFHandlers {
         @Override
         public void endRDF() throws RDFHandlerException {
 
-            // Handle remaining buffered statements
-            for (int i = 0; i < this.size; ++i) {
-                super.handleStatement(this.buffer[i]);
+            // Handle remaining buffered statements (producer threads are done at this point)
+            for (final Buffer buffer : this.buffers) {
+                RDFHandlers.handleStatements(this.handler, buffer.statements, buffer.size);
+                buffer.size = 0;
             }
+            this.buffers.clear();
 
             // Wait for completion of pending tasks
             List<Future<?>> futuresToWaitFor;
@@ -1488,6 +1733,7 @@ public final class RDFHandlers {
             }
 
             // Check there were no errors in background processing
+            ACTIVE_HANDLERS.remove(this);
             checkNotFailed();
 
             // Propagate
@@ -1497,6 +1743,7 @@ public final class RDFHandlers {
         @Override
         public void close() {
             super.close();
+            ACTIVE_HANDLERS.remove(this);
             synchronized (this) {
                 for (final Future<?> future : this.futures) {
                     future.cancel(false);
@@ -1504,6 +1751,14 @@ public final class RDFHandlers {
             }
         }
 
+        private static final class Buffer {
+
+            Statement[] statements = new Statement[BUFFER_SIZE];
+
+            int size = 0;
+
+        }
+
     }
 
     private static final class SynchronizeHandler extends AbstractRDFHandlerWrapper {
@@ -1529,19 +1784,49 @@ public final class RDFHandlers {
             super.handleStatement(statement);
         }
 
+        @Override
+        public synchronized void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            RDFHandlers.handleStatements(this.handler, statements, count);
+        }
+
     }
 
     private static final class DecoupleQueueHandler extends AbstractRDFHandlerWrapper {
 
-        private static final int CAPACITY = 4 * 1024;
+        private static final int CAPACITY = 16 * 1024;
+
+        private static final int BATCH_SIZE = 256;
+
+        private static final RingBuffer.WaitStrategy WAIT_STRATEGY = RingBuffer.WaitStrategy
+                .valueOf(Environment.getProperty("rdfpro.decouple.wait", "park").toUpperCase());
+
+        private static final Set<DecoupleQueueHandler> ACTIVE_HANDLERS = Collections
+                .newSetFromMap(new ConcurrentHashMap<DecoupleQueueHandler, Boolean>());
+
+        static {
+            Metrics.gauge("rdfpro_decouple_backlog",
+                    "Number of statements waiting for background processing in decouplers",
+                    new LongSupplier() {
 
-        private static final Object EOF = new Object();
+                        @Override
+                        public long getAsLong() {
+                            long backlog = 0;
+                            for (final DecoupleQueueHandler handler : ACTIVE_HANDLERS) {
+                                final RingBuffer<Object> ring = handler.ring;
+                                backlog += ring == null ? 0 : ring.size();
+                            }
+                            return backlog;
+                        }
+
+                    }, "handler", "queue");
+        }
 
         private final int numConsumers;
 
         private AtomicReference<Throwable> exception;
 
-        private BlockingQueue<Object> queue;
+        private RingBuffer<Object> ring;
 
         private List<Future<?>> futures;
 
@@ -1554,34 +1839,20 @@ public final class RDFHandlers {
         public void startRDF() throws RDFHandlerException {
             super.startRDF();
             this.exception = new AtomicReference<>(null);
-            this.queue = new ArrayBlockingQueue<>(CAPACITY);
+            this.ring = new RingBuffer<>(CAPACITY, this.numConsumers, WAIT_STRATEGY);
             this.futures = Lists.newArrayList();
+            ACTIVE_HANDLERS.add(this);
             for (int i = 0; i < this.numConsumers; ++i) {
-                this.futures.add(Environment.getPool().submit(new Runnable() {
+                final int consumer = i;
+                this.futures.add(Environment.getPool(Lane.IO).submit(new Runnable() {
 
                     @Override
                     public void run() {
                         try {
-                            final RDFHandler handler = DecoupleQueueHandler.this.handler;
-                            while (true) {
-                                if (DecoupleQueueHandler.this.exception.get() != null) {
-                                    break;
-                                }
-                                final Object element = DecoupleQueueHandler.this.queue.take();
-                                if (element instanceof Statement) {
-                                    handler.handleStatement((Statement) element);
-                                } else if (element instanceof NamespaceImpl) {
-                                    final NamespaceImpl ns = (NamespaceImpl) element;
-                                    handler.handleNamespace(ns.getPrefix(), ns.getName());
-                                } else if (element instanceof String) {
-                                    handler.handleComment((String) element);
-                                } else if (element == EOF) {
-                                    break;
-                                }
-                            }
+                            consume(consumer);
                         } catch (final Throwable ex) {
-                            DecoupleQueueHandler.this.exception.set(ex);
-                            DecoupleQueueHandler.this.queue.clear();
+                            DecoupleQueueHandler.this.exception.compareAndSet(null, ex);
+                            DecoupleQueueHandler.this.ring.abort();
                         }
                     }
 
@@ -1608,11 +1879,25 @@ public final class RDFHandlers {
             put(statement);
         }
 
+        @Override
+        public void handleStatements(final Statement[] statements, final int count)
+                throws RDFHandlerException {
+            check();
+            try {
+                if (!this.ring.putAll(statements, 0, count)) {
+                    checkAborted();
+                }
+            } catch (final InterruptedException ex) {
+                this.exception.compareAndSet(null, ex);
+                throw new RDFHandlerException(ex);
+            }
+        }
+
         @Override
         public void endRDF() throws RDFHandlerException {
             try {
                 check();
-                put(EOF);
+                this.ring.close(); // consumers drain the buffer and then terminate
                 for (final Future<?> future : this.futures) {
                     try {
                         future.get();
@@ -1623,17 +1908,65 @@ public final class RDFHandlers {
                 check();
                 super.endRDF();
             } finally {
+                ACTIVE_HANDLERS.remove(this);
                 this.exception = null;
-                this.queue = null;
+                this.ring = null;
                 this.futures = null;
             }
         }
 
+        @Override
+        public void close() {
+            ACTIVE_HANDLERS.remove(this);
+            final RingBuffer<Object> ring = this.ring;
+            if (ring != null) {
+                ring.abort();
+            }
+            super.close();
+        }
+
+        private void consume(final int consumer) throws Throwable {
+
+            // Take batches of elements from the ring, forwarding consecutive statements as a
+            // batch and namespaces and comments one at a time (preserving their order)
+            final RDFHandler handler = this.handler;
+            final RingBuffer<Object> ring = this.ring;
+            final Object[] elements = new Object[BATCH_SIZE];
+            final Statement[] statements = new Statement[BATCH_SIZE];
+            while (true) {
+                final int count = ring.take(consumer, elements);
+                if (count < 0) {
+                    break;
+                }
+                int size = 0;
+                for (int i = 0; i < count; ++i) {
+                    final Object element = elements[i];
+                    elements[i] = null;
+                    if (element instanceof Statement) {
+                        statements[size++] = (Statement) element;
+                        continue;
+                    }
+                    RDFHandlers.handleStatements(handler, statements, size);
+                    size = 0;
+                    if (element instanceof NamespaceImpl) {
+                        final NamespaceImpl ns = (NamespaceImpl) element;
+                        handler.handleNamespace(ns.getPrefix(), ns.getName());
+                    } else if (element instanceof String) {
+                        handler.handleComment((String) element);
+                    }
+                }
+                RDFHandlers.handleStatements(handler, statements, size);
+                Arrays.fill(statements, 0, size, null);
+            }
+        }
+
         private void put(final Object object) throws RDFHandlerException {
             try {
-                this.queue.put(object);
+                if (!this.ring.put(object)) {
+                    checkAborted();
+                }
             } catch (final InterruptedException ex) {
-                this.exception.set(ex);
+                this.exception.compareAndSet(null, ex);
                 throw new RDFHandlerException(ex);
             }
         }
@@ -1646,6 +1979,12 @@ public final class RDFHandlers {
             }
         }
 
+        private void checkAborted() throws RDFHandlerException {
+            // Ring aborted due to consumer failure or to handler closed: never drop silently
+            check();
+            throw new RDFHandlerException("Decoupler closed: statements cannot be handled");
+        }
+
     }
 
 }
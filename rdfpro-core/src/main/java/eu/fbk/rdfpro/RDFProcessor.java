@@ -21,6 +21,7 @@ import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
 
 // assumptions
 // - lifecycle: start, followed by handleXXX in parallel, followed by end
@@ -153,8 +154,8 @@ public interface RDFProcessor {
      * similarly to {@link #apply(RDFSource, RDFHandler, int)}, but immediately returns providing
      * a {@link CompletableFuture} that can be used to track the result of the computation. This
      * default implementation is based on {@link #apply(RDFSource, RDFHandler, int)} (and thus
-     * indirectly on {@link #wrap(RDFHandler)}) and makes use of the common thread pool provided
-     * by {@link Environment#getPool()}.
+     * indirectly on {@link #wrap(RDFHandler)}) and makes use of the I/O lane thread pool
+     * provided by {@link Environment#getPool(Lane)}.
      *
      * @param input
      *            the input {@code RDFSource}, not null
@@ -170,7 +171,7 @@ public interface RDFProcessor {
     default CompletableFuture<Void> applyAsync(final RDFSource input, final RDFHandler output,
             final int passes) {
         final CompletableFuture<Void> future = new CompletableFuture<Void>();
-        Environment.getPool().execute(new Runnable() {
+        Environment.getPool(Lane.IO).execute(new Runnable() {
 
             @Override
             public void run() {
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
@@ -42,7 +43,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
 import eu.fbk.rdfpro.util.IO;
+import eu.fbk.rdfpro.util.Metrics;
 import eu.fbk.rdfpro.util.Namespaces;
 import eu.fbk.rdfpro.util.Options;
 import eu.fbk.rdfpro.util.Scripting;
@@ -98,9 +101,9 @@ public final class RDFProcessors {
                 escaped = true;
             } else {
                 if (start < 0) {
-                    if (!ws) {
+                    if (!ws || escaped) {
                         start = i;
-                        quoted = ch == '\'' || ch == '\"';
+                        quoted = !escaped && (ch == '\'' || ch == '\"');
                         builder.setLength(0);
                         if (!quoted) {
                             builder.append(ch);
@@ -111,8 +114,7 @@ public final class RDFProcessors {
                             || !quoted && !ws;
                     if (tokenChar) {
                         builder.append(ch);
-                    }
-                    if (!tokenChar || i == spec.length() - 1) {
+                    } else {
                         tokens.add(builder.toString());
                         start = -1;
                         quoted = false;
@@ -121,6 +123,9 @@ public final class RDFProcessors {
                 escaped = false;
             }
         }
+        if (start >= 0) {
+            tokens.add(builder.toString()); // last token, possibly of a single char
+        }
 
         return tokens.toArray(new String[tokens.size()]);
     }
@@ -152,11 +157,14 @@ public final class RDFProcessors {
 
         case "w":
         case "write": {
-            final Options options = Options.parse("c!|+", args);
+            final Options options = Options.parse("c!|s!|+", args);
             final int chunkSize = options.getOptionArg("c", Integer.class, 1);
             final String[] locations = options.getPositionalArgs(String.class).toArray(
                     new String[0]);
-            return write(null, chunkSize, locations);
+            final List<String> settings = options.getOptionArgs("s", String.class);
+            final WriterConfig config = settings.isEmpty() ? null : RDFHandlers
+                    .newWriterConfig(settings, locations);
+            return write(config, chunkSize, locations);
         }
 
         case "t":
@@ -339,8 +347,9 @@ public final class RDFProcessors {
         }
 
         case "mapreduce": {
-            final Options options = Options.parse("b!|r!|e!|a!|u|+", args);
+            final Options options = Options.parse("b!|r!|e!|a!|u|p|+", args);
             final boolean deduplicate = options.hasOption("u");
+            final boolean sortKeys = !options.hasOption("p");
             final String bypassExp = options.getOptionArg("b", String.class);
             final String existsExp = options.getOptionArg("e", String.class);
             final String forallExp = options.getOptionArg("a", String.class);
@@ -359,7 +368,7 @@ public final class RDFProcessors {
             if (bypassPred != null) {
                 mapper = Mapper.bypass(mapper, bypassPred);
             }
-            return mapReduce(mapper, reducer, deduplicate);
+            return mapReduce(mapper, reducer, deduplicate, sortKeys);
         }
 
         default:
@@ -514,7 +523,34 @@ public final class RDFProcessors {
      */
     public static RDFProcessor mapReduce(final Mapper mapper, final Reducer reducer,
             final boolean deduplicate) {
-        return new ProcessorMapReduce(mapper, reducer, deduplicate);
+        return mapReduce(mapper, reducer, deduplicate, true);
+    }
+
+    /**
+     * Creates an {@code RDFProcessor} that processes the RDF stream in a MapReduce fashion,
+     * optionally avoiding the global sort of mapped statements. If {@code sortKeys} is true, this
+     * method behaves as {@link #mapReduce(Mapper, Reducer, boolean)}. Otherwise, mapped
+     * statements are hash-partitioned by key into a fixed number of partitions (property
+     * {@code rdfpro.mapreduce.partitions}), buffered in memory and spilled to temporary files
+     * when exceeding a configurable threshold (property {@code rdfpro.mapreduce.buffer}); at the
+     * end of the input stream, partitions are grouped by key and reduced in parallel, splitting
+     * spilled partitions in sub-partitions that fit in memory. Keys are reduced in no specific
+     * order and the statements of a single key must fit in memory when reduced.
+     *
+     * @param mapper
+     *            the mapper, not null
+     * @param reducer
+     *            the reducer, not null
+     * @param deduplicate
+     *            true if duplicate statements mapped to the same key should be merged
+     * @param sortKeys
+     *            true if keys should be globally sorted (external sort), false to group them
+     *            via hash partitioning
+     * @return the created {@code RDFProcessor}
+     */
+    public static RDFProcessor mapReduce(final Mapper mapper, final Reducer reducer,
+            final boolean deduplicate, final boolean sortKeys) {
+        return new ProcessorMapReduce(mapper, reducer, deduplicate, sortKeys);
     }
 
     /**
@@ -648,6 +684,18 @@ public final class RDFProcessors {
                         transformer.transform(statement, this.handler);
                     }
 
+                    @Override
+                    public void handleStatements(final Statement[] statements, final int count)
+                            throws RDFHandlerException {
+                        // Collect transformer output, so to forward it as a batch
+                        final BatchBuffer buffer = new BatchBuffer(count);
+                        for (int i = 0; i < count; ++i) {
+                            transformer.transform(statements[i], buffer);
+                        }
+                        RDFHandlers.handleStatements(this.handler, buffer.statements,
+                                buffer.size);
+                    }
+
                 };
             }
 
@@ -856,6 +904,13 @@ public final class RDFProcessors {
                         tracker.increment();
                     }
 
+                    @Override
+                    public void handleStatements(final Statement[] statements, final int count)
+                            throws RDFHandlerException {
+                        RDFHandlers.handleStatements(this.handler, statements, count);
+                        tracker.add(count);
+                    }
+
                     @Override
                     public void endRDF() throws RDFHandlerException {
                         try {
@@ -922,6 +977,226 @@ public final class RDFProcessors {
                 emitTBox, tboxContext);
     }
 
+    private static final class MetricsProcessor implements RDFProcessor {
+
+        private static final int SAMPLING_MASK = 0x3F; // time 1 statement out of 64
+
+        private final RDFProcessor processor;
+
+        private final Metrics.Counter statementsIn;
+
+        private final Metrics.Counter statementsOut;
+
+        private final Metrics.Histogram statementNanos;
+
+        private final Metrics.Histogram endMillis;
+
+        MetricsProcessor(final RDFProcessor processor, final String stage) {
+            final String job = Metrics.getJob();
+            final String[] labels = job == null ? new String[] { "stage", stage }
+                    : new String[] { "job", job, "stage", stage };
+            this.processor = Objects.requireNonNull(processor);
+            this.statementsIn = Metrics.counter("rdfpro_stage_statements_in_total",
+                    "Number of statements entering the stage", labels);
+            this.statementsOut = Metrics.counter("rdfpro_stage_statements_out_total",
+                    "Number of statements emitted by the stage", labels);
+            this.statementNanos = Metrics.histogram("rdfpro_stage_statement_nanos",
+                    "Sampled time spent in the stage per statement, excluding later stages",
+                    labels);
+            this.endMillis = Metrics.histogram("rdfpro_stage_end_millis",
+                    "Time spent in the stage at the end of a pass, excluding later stages",
+                    labels);
+        }
+
+        @Override
+        public int getExtraPasses() {
+            return this.processor.getExtraPasses();
+        }
+
+        @Override
+        public RDFHandler wrap(final RDFHandler handler) {
+            final InHandler inHandler = new InHandler();
+            final OutHandler outHandler = new OutHandler(handler, inHandler);
+            inHandler.handler = this.processor.wrap(outHandler);
+            return inHandler;
+        }
+
+        @Override
+        public String toString() {
+            return this.processor.toString();
+        }
+
+        // Time is measured in the stage input handler on sampled statements, subtracting the
+        // time spent by the same thread in the output handler (i.e., in later stages)
+
+        private final class InHandler extends AbstractRDFHandler {
+
+            final ThreadLocal<long[]> sampling = new ThreadLocal<long[]>() {
+
+                @Override
+                protected long[] initialValue() {
+                    return new long[2]; // sampling flag, nanos spent downstream
+                }
+
+            };
+
+            RDFHandler handler;
+
+            volatile long endTimestamp;
+
+            @Override
+            public void startRDF() throws RDFHandlerException {
+                this.handler.startRDF();
+            }
+
+            @Override
+            public void handleComment(final String comment) throws RDFHandlerException {
+                this.handler.handleComment(comment);
+            }
+
+            @Override
+            public void handleNamespace(final String prefix, final String uri)
+                    throws RDFHandlerException {
+                this.handler.handleNamespace(prefix, uri);
+            }
+
+            @Override
+            public void handleStatement(final Statement statement) throws RDFHandlerException {
+                MetricsProcessor.this.statementsIn.increment();
+                if ((ThreadLocalRandom.current().nextInt() & SAMPLING_MASK) != 0) {
+                    this.handler.handleStatement(statement);
+                } else {
+                    final long[] state = this.sampling.get();
+                    state[0] = 1L;
+                    state[1] = 0L;
+                    final long ts = System.nanoTime();
+                    try {
+                        this.handler.handleStatement(statement);
+                    } finally {
+                        state[0] = 0L;
+                        MetricsProcessor.this.statementNanos.record(System.nanoTime() - ts
+                                - state[1]);
+                    }
+                }
+            }
+
+            @Override
+            public void handleStatements(final Statement[] statements, final int count)
+                    throws RDFHandlerException {
+                MetricsProcessor.this.statementsIn.add(count);
+                if (count == 0
+                        || (ThreadLocalRandom.current().nextInt() & SAMPLING_MASK) >= count) {
+                    RDFHandlers.handleStatements(this.handler, statements, count);
+                } else {
+                    final long[] state = this.sampling.get();
+                    state[0] = 1L;
+                    state[1] = 0L;
+                    final long ts = System.nanoTime();
+                    try {
+                        RDFHandlers.handleStatements(this.handler, statements, count);
+                    } finally {
+                        state[0] = 0L;
+                        MetricsProcessor.this.statementNanos.record((System.nanoTime() - ts
+                                - state[1]) / count);
+                    }
+                }
+            }
+
+            @Override
+            public void endRDF() throws RDFHandlerException {
+                this.endTimestamp = System.nanoTime();
+                this.handler.endRDF();
+                final long ts = this.endTimestamp;
+                if (ts != 0L) { // extra pass: end of pass not propagated downstream
+                    MetricsProcessor.this.endMillis.record((System.nanoTime() - ts) / 1000000);
+                    this.endTimestamp = 0L;
+                }
+            }
+
+            @Override
+            public void close() {
+                IO.closeQuietly(this.handler);
+            }
+
+        }
+
+        private final class OutHandler extends AbstractRDFHandlerWrapper {
+
+            private final InHandler inHandler;
+
+            OutHandler(final RDFHandler handler, final InHandler inHandler) {
+                super(handler);
+                this.inHandler = inHandler;
+            }
+
+            @Override
+            public void handleStatement(final Statement statement) throws RDFHandlerException {
+                MetricsProcessor.this.statementsOut.increment();
+                final long[] state = this.inHandler.sampling.get();
+                if (state[0] == 0L) {
+                    this.handler.handleStatement(statement);
+                } else {
+                    final long ts = System.nanoTime();
+                    try {
+                        this.handler.handleStatement(statement);
+                    } finally {
+                        state[1] += System.nanoTime() - ts;
+                    }
+                }
+            }
+
+            @Override
+            public void handleStatements(final Statement[] statements, final int count)
+                    throws RDFHandlerException {
+                MetricsProcessor.this.statementsOut.add(count);
+                final long[] state = this.inHandler.sampling.get();
+                if (state[0] == 0L) {
+                    RDFHandlers.handleStatements(this.handler, statements, count);
+                } else {
+                    final long ts = System.nanoTime();
+                    try {
+                        RDFHandlers.handleStatements(this.handler, statements, count);
+                    } finally {
+                        state[1] += System.nanoTime() - ts;
+                    }
+                }
+            }
+
+            @Override
+            public void endRDF() throws RDFHandlerException {
+                final long ts = this.inHandler.endTimestamp;
+                if (ts != 0L) {
+                    MetricsProcessor.this.endMillis.record((System.nanoTime() - ts) / 1000000);
+                    this.inHandler.endTimestamp = 0L;
+                }
+                super.endRDF();
+            }
+
+        }
+
+    }
+
+    private static final class BatchBuffer extends AbstractRDFHandler {
+
+        Statement[] statements;
+
+        int size;
+
+        BatchBuffer(final int capacity) {
+            this.statements = new Statement[Math.max(16, capacity)];
+            this.size = 0;
+        }
+
+        @Override
+        public void handleStatement(final Statement statement) {
+            if (this.size == this.statements.length) {
+                this.statements = Arrays.copyOf(this.statements, this.size * 2);
+            }
+            this.statements[this.size++] = statement;
+        }
+
+    }
+
     private static class InjectSourceHandler extends AbstractRDFHandler {
 
         @Nullable
@@ -954,7 +1229,7 @@ public final class RDFProcessors {
         public void startRDF() throws RDFHandlerException {
             this.handler.startRDF();
             this.latch = new CountDownLatch(1);
-            Environment.getPool().execute(new Runnable() {
+            Environment.getPool(Lane.IO).execute(new Runnable() {
 
                 @Override
                 public void run() {
@@ -1073,12 +1348,15 @@ public final class RDFProcessors {
 
         private int pos;
 
+        private int stage;
+
         Parser(final List<String> tokens) {
 
             this.tokens = tokens;
             this.token = null;
             this.type = 0;
             this.pos = 0;
+            this.stage = 0;
 
             next();
         }
@@ -1126,8 +1404,9 @@ public final class RDFProcessors {
             while (next() == OPTION) {
                 args.add(this.token);
             }
-            return Environment.newPlugin(RDFProcessor.class, command,
+            final RDFProcessor processor = Environment.newPlugin(RDFProcessor.class, command,
                     args.toArray(new String[args.size()]));
+            return new MetricsProcessor(processor, ++this.stage + ":" + command);
         }
 
         private void syntaxError(final String expected) {
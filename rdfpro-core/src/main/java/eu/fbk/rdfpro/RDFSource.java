@@ -30,6 +30,7 @@ import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
 
 /**
  * A source of RDF data.
@@ -178,7 +179,7 @@ public interface RDFSource extends Iterable<Statement> {
                     return false;
                 }
                 this.queue = new ArrayBlockingQueue<Object>(1024);
-                Environment.getPool().execute(new Runnable() {
+                Environment.getPool(Lane.IO).execute(new Runnable() {
 
                     @Override
                     public void run() {
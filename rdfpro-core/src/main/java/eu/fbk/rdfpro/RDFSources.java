@@ -30,6 +30,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -37,7 +38,9 @@ import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 import javax.xml.stream.XMLInputFactory;
@@ -71,9 +74,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
 import eu.fbk.rdfpro.util.Hash;
 import eu.fbk.rdfpro.util.IO;
 import eu.fbk.rdfpro.util.QuadModel;
+import eu.fbk.rdfpro.util.SpillFile;
 import eu.fbk.rdfpro.util.Statements;
 
 /**
@@ -371,6 +376,156 @@ public final class RDFSources {
         };
     }
 
+    private static final class SpillCache implements Closeable {
+
+        // Records the statements of the first pass of an expensive source in temporary files,
+        // one per producer thread, so that later passes can be replayed (in parallel) from disk
+
+        private static final Logger LOGGER = LoggerFactory.getLogger(SpillCache.class);
+
+        private static final String MODE = Environment.getProperty("rdfpro.source.spill",
+                "auto");
+
+        private static final String COMPRESS = Environment.getProperty(
+                "rdfpro.source.spill.compress", "auto");
+
+        private final List<SpillFile> files;
+
+        private final ThreadLocal<SpillFile> file;
+
+        private final Map<String, String> namespaces;
+
+        private SpillCache(final boolean compress) {
+            this.files = new ArrayList<>();
+            this.namespaces = new LinkedHashMap<>();
+            this.file = new ThreadLocal<SpillFile>() {
+
+                @Override
+                protected SpillFile initialValue() {
+                    try {
+                        final SpillFile file = SpillFile.create(compress);
+                        synchronized (SpillCache.this.files) {
+                            SpillCache.this.files.add(file);
+                        }
+                        return file;
+                    } catch (final IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+            };
+        }
+
+        @Nullable
+        static SpillCache create(final int passes, final boolean expensive,
+                final boolean compressed, final boolean repeatable) {
+            // by default, spill files are compressed iff the source data is compressed, so that
+            // the cache does not take much more disk space than the source. Sources that may
+            // return different data (e.g., BNodes) at each pass are always spilled instead
+            if (!repeatable && passes > 1 && "never".equalsIgnoreCase(MODE)) {
+                LOGGER.warn("Ignoring rdfpro.source.spill=never for non-repeatable source");
+            }
+            final boolean enabled = !repeatable || "always".equalsIgnoreCase(MODE) || expensive
+                    && !"never".equalsIgnoreCase(MODE);
+            final boolean compress = "auto".equalsIgnoreCase(COMPRESS) ? compressed : Boolean
+                    .parseBoolean(COMPRESS);
+            return passes > 1 && enabled ? new SpillCache(compress) : null;
+        }
+
+        RDFHandler tee(final RDFHandler handler) {
+            return new AbstractRDFHandlerWrapper(handler) {
+
+                @Override
+                public void handleNamespace(final String prefix, final String uri)
+                        throws RDFHandlerException {
+                    synchronized (SpillCache.this.namespaces) {
+                        SpillCache.this.namespaces.put(prefix, uri);
+                    }
+                    super.handleNamespace(prefix, uri);
+                }
+
+                @Override
+                public void handleStatement(final Statement statement)
+                        throws RDFHandlerException {
+                    try {
+                        SpillCache.this.file.get().append(statement.getSubject(),
+                                statement.getPredicate(), statement.getObject(),
+                                statement.getContext());
+                    } catch (final IOException ex) {
+                        throw new RDFHandlerException(ex);
+                    }
+                    super.handleStatement(statement);
+                }
+
+                @Override
+                public void close() {
+                    // handler is closed by the source
+                }
+
+            };
+        }
+
+        void replay(final RDFHandler handler, final boolean parallelize)
+                throws RDFHandlerException {
+
+            final List<SpillFile> files;
+            synchronized (this.files) {
+                files = new ArrayList<>(this.files);
+            }
+            synchronized (this.namespaces) {
+                for (final Map.Entry<String, String> entry : this.namespaces.entrySet()) {
+                    handler.handleNamespace(entry.getKey(), entry.getValue());
+                }
+            }
+
+            final long ts = System.currentTimeMillis();
+            final ValueFactory vf = Statements.VALUE_FACTORY;
+            final AtomicLong counter = new AtomicLong();
+            try {
+                for (final SpillFile file : files) {
+                    final Consumer<Value[]> consumer = (final Value[] record) -> {
+                        final Resource s = (Resource) record[0];
+                        final URI p = (URI) record[1];
+                        final Resource c = (Resource) record[3];
+                        try {
+                            handler.handleStatement(c == null ? vf.createStatement(s, p,
+                                    record[2]) : vf.createStatement(s, p, record[2], c));
+                        } catch (final RDFHandlerException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                        counter.incrementAndGet();
+                    };
+                    if (parallelize) {
+                        file.forEach(Environment.getCores(), consumer);
+                    } else {
+                        for (final Value[] record : file) {
+                            consumer.accept(record);
+                        }
+                    }
+                }
+            } catch (final RuntimeException ex) {
+                if (ex.getCause() instanceof RDFHandlerException) {
+                    throw (RDFHandlerException) ex.getCause();
+                }
+                throw ex;
+            }
+
+            LOGGER.debug("{} statements replayed from {} spill files in {} ms", counter,
+                    files.size(), System.currentTimeMillis() - ts);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this.files) {
+                for (final SpillFile file : this.files) {
+                    file.close();
+                }
+                this.files.clear();
+            }
+        }
+
+    }
+
     private static class FileSource implements RDFSource {
 
         private static final Logger LOGGER = LoggerFactory.getLogger(FileSource.class);
@@ -410,10 +565,20 @@ public final class RDFSources {
             final RDFHandler wrappedSink = RDFHandlers.ignoreMethods(sink,
                     RDFHandlers.METHOD_START_RDF | RDFHandlers.METHOD_END_RDF);
 
+            // Parsing is repeated at each pass, unless it is expensive (compressed or remote
+            // files), in which case the statements of the first pass are replayed from disk
+            final SpillCache cache = SpillCache.create(passes, isExpensive(), isCompressed(), true);
+
             try {
                 for (int i = 0; i < passes; ++i) {
                     sink.startRDF();
-                    parse(wrappedSink);
+                    if (cache == null) {
+                        parse(wrappedSink);
+                    } else if (i == 0) {
+                        parse(cache.tee(wrappedSink));
+                    } else {
+                        cache.replay(wrappedSink, this.parallelize);
+                    }
                     sink.endRDF();
                 }
             } catch (RDFHandlerException | RuntimeException | Error ex) {
@@ -421,10 +586,31 @@ public final class RDFSources {
             } catch (final Throwable ex) {
                 throw new RDFSourceException(ex);
             } finally {
+                IO.closeQuietly(cache);
                 IO.closeQuietly(handler);
             }
         }
 
+        private boolean isExpensive() {
+            for (final String location : this.locations) {
+                if (!"file".equals(IO.extractURL(location).getProtocol())) {
+                    return true;
+                }
+            }
+            return isCompressed();
+        }
+
+        private boolean isCompressed() {
+            for (final String location : this.locations) {
+                final String ext = IO.extractExtension(location);
+                if (ext.endsWith(".gz") || ext.endsWith(".bz2") || ext.endsWith(".xz")
+                        || ext.endsWith(".7z")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private void parse(final RDFHandler handler) throws Throwable {
 
             // Sort the locations based on decreasing size to improve throughput
@@ -510,7 +696,7 @@ public final class RDFSources {
 
             try {
                 for (int i = 1; i < parallelism; ++i) {
-                    Environment.getPool().execute(runnables.get(i));
+                    Environment.getPool(Lane.IO).execute(runnables.get(i));
                 }
                 if (!runnables.isEmpty()) {
                     runnables.get(0).run();
@@ -562,18 +748,22 @@ public final class RDFSources {
                         + IO.extractExtension(this.location));
 
                 final String logMsg = "Starting {} {} {} parsing for {}";
-                if (!Statements.isRDFFormatTextBased(format)) {
-                    LOGGER.debug(logMsg, "sequential", "binary", format.getName(), this.location);
-                    this.in = IO.buffer(IO.read(this.location));
-
-                } else if (!FileSource.this.parallelize
-                        || !Statements.isRDFFormatLineBased(format)) {
-                    LOGGER.debug(logMsg, "sequential", "text", format.getName(), this.location);
-                    this.in = IO.buffer(new InputStreamReader(IO.read(this.location), Charset
-                            .forName("UTF-8")));
+                final boolean binary = !Statements.isRDFFormatTextBased(format);
+                if (!FileSource.this.parallelize || !Statements.isRDFFormatLineBased(format)) {
+                    if (binary) {
+                        LOGGER.debug(logMsg, "sequential", "binary", format.getName(),
+                                this.location);
+                        this.in = IO.buffer(IO.read(this.location));
+                    } else {
+                        LOGGER.debug(logMsg, "sequential", "text", format.getName(),
+                                this.location);
+                        this.in = IO.buffer(new InputStreamReader(IO.read(this.location),
+                                Charset.forName("UTF-8")));
+                    }
 
                 } else {
-                    LOGGER.debug(logMsg, "parallel", "text", format.getName(), this.location);
+                    LOGGER.debug(logMsg, "parallel", binary ? "binary" : "text",
+                            format.getName(), this.location);
                     synchronized (this.streams) {
                         InputStream stream = this.streams.get(this.location);
                         if (stream == null) {
@@ -583,7 +773,9 @@ public final class RDFSources {
                             stream = IO.read(this.location);
                             this.streams.put(this.location, stream);
                         }
-                        this.in = IO.utf8Reader(IO.parallelBuffer(stream, (byte) '\n'));
+                        // line-based binary formats escape '\n' so that it delimits blocks
+                        final InputStream in = IO.parallelBuffer(stream, (byte) '\n');
+                        this.in = binary ? in : IO.utf8Reader(in);
                     }
                 }
 
@@ -647,9 +839,9 @@ public final class RDFSources {
         public void emit(final RDFHandler handler, final int passes) throws RDFSourceException,
                 RDFHandlerException {
 
-            // different BNodes may be returned each time the query is evaluated;
-            // to allow preserving their identities, we should store the query result and
-            // read from it from disk the next times
+            // different BNodes may be returned each time the query is evaluated; to preserve
+            // their identities (and avoid querying the endpoint multiple times) the query result
+            // is always stored on disk and replayed in the passes after the first one
             Objects.requireNonNull(handler);
 
             RDFHandler actualHandler = handler;
@@ -661,10 +853,18 @@ public final class RDFSources {
                         Hash.murmur3(this.endpointURL).toString());
             }
 
+            final SpillCache cache = SpillCache.create(passes, true, false, false);
+
             try {
                 for (int i = 0; i < passes; ++i) {
                     actualHandler.startRDF();
-                    sendQuery(actualHandler);
+                    if (cache == null) {
+                        sendQuery(actualHandler);
+                    } else if (i == 0) {
+                        sendQuery(cache.tee(actualHandler));
+                    } else {
+                        cache.replay(actualHandler, this.parallelize);
+                    }
                     actualHandler.endRDF();
                 }
             } catch (RDFHandlerException | RuntimeException | Error ex) {
@@ -672,6 +872,7 @@ public final class RDFSources {
             } catch (final Throwable ex) {
                 throw new RDFSourceException("Sparql query to " + this.endpointURL + " failed", ex);
             } finally {
+                IO.closeQuietly(cache);
                 IO.closeQuietly(actualHandler);
             }
         }
@@ -33,6 +33,21 @@ import eu.fbk.rdfpro.util.Scripting;
  * (e.g., all the statements having a specific subject).
  * </p>
  * <p>
+ * A {@code Reducer} may optionally act as a combiner, by returning true from
+ * {@link #isCombinable()} and implementing {@link #combine(Value, Statement[])} so to replace a
+ * subset of the statements of a partition with a (possibly much smaller) set of partial
+ * aggregate statements. Combination is applied before statements are shuffled, possibly multiple
+ * times on overlapping results, and it is thus required that reducing a partition where some
+ * statements have been replaced by their combination produces the same result as reducing the
+ * original partition. As buffering statements for combination has a cost, a MapReduce job stops
+ * combining (in the mapping thread) if combination does not shrink the statements it processes.
+ * </p>
+ * <p>
+ * In order to deal with partitions too large to be materialized in memory, a {@code Reducer} may
+ * also declare itself splittable (method {@link #isSplittable()}), meaning that a partition can
+ * be arbitrarily split in sub-partitions reduced independently.
+ * </p>
+ * <p>
  * Implementations of this interface should be thread-safe, as multiple reduce jobs can be fired
  * in parallel with method {@code reduce()} being invoked concurrently by different threads on
  * different statement partitions.
@@ -49,9 +64,12 @@ public interface Reducer {
         @Override
         public void reduce(final Value key, final Statement[] statements, final RDFHandler handler)
                 throws RDFHandlerException {
-            for (final Statement statement : statements) {
-                handler.handleStatement(statement);
-            }
+            RDFHandlers.handleStatements(handler, statements, statements.length);
+        }
+
+        @Override
+        public boolean isSplittable() {
+            return true;
         }
 
     };
@@ -75,61 +93,60 @@ public interface Reducer {
             @Nullable final Predicate<Statement> existsPredicate,
             @Nullable final Predicate<Statement> forallPredicate) {
 
-        if (existsPredicate != null) {
-            if (forallPredicate != null) {
-                return new Reducer() {
-
-                    @Override
-                    public void reduce(final Value key, final Statement[] statements,
-                            final RDFHandler handler) throws RDFHandlerException {
-                        boolean exists = false;
-                        for (final Statement statement : statements) {
-                            if (!forallPredicate.test(statement)) {
-                                return;
-                            }
-                            exists = exists || existsPredicate.test(statement);
-                        }
-                        if (exists) {
-                            reducer.reduce(key, statements, handler);
+        if (forallPredicate != null) {
+            return new Reducer() {
+
+                @Override
+                public void reduce(final Value key, final Statement[] statements,
+                        final RDFHandler handler) throws RDFHandlerException {
+                    boolean exists = existsPredicate == null;
+                    for (final Statement statement : statements) {
+                        if (!forallPredicate.test(statement)) {
+                            return;
                         }
+                        exists = exists || existsPredicate.test(statement);
+                    }
+                    if (exists) {
+                        reducer.reduce(key, statements, handler);
                     }
+                }
+
+                @Override
+                public boolean isCombinable() {
+                    return true;
+                }
 
-                };
-            } else {
-                return new Reducer() {
-
-                    @Override
-                    public void reduce(final Value key, final Statement[] statements,
-                            final RDFHandler handler) throws RDFHandlerException {
-                        for (final Statement statement : statements) {
-                            if (existsPredicate.test(statement)) {
-                                reducer.reduce(key, statements, handler);
-                                return;
-                            }
+                @Override
+                public Statement[] combine(final Value key, final Statement[] statements) {
+                    // a single violating statement suffices to discard the partition
+                    for (final Statement statement : statements) {
+                        if (!forallPredicate.test(statement)) {
+                            return new Statement[] { statement };
                         }
                     }
+                    return statements;
+                }
 
-                };
-            }
-        } else {
-            if (forallPredicate != null) {
-                return new Reducer() {
-
-                    @Override
-                    public void reduce(final Value key, final Statement[] statements,
-                            final RDFHandler handler) throws RDFHandlerException {
-                        for (final Statement statement : statements) {
-                            if (!forallPredicate.test(statement)) {
-                                return;
-                            }
+            };
+
+        } else if (existsPredicate != null) {
+            return new Reducer() {
+
+                @Override
+                public void reduce(final Value key, final Statement[] statements,
+                        final RDFHandler handler) throws RDFHandlerException {
+                    for (final Statement statement : statements) {
+                        if (existsPredicate.test(statement)) {
+                            reducer.reduce(key, statements, handler);
+                            return;
                         }
-                        reducer.reduce(key, statements, handler);
                     }
+                }
 
-                };
-            } else {
-                return reducer;
-            }
+            };
+
+        } else {
+            return reducer;
         }
     }
 
@@ -185,4 +202,46 @@ public interface Reducer {
     void reduce(@Nullable Value key, Statement[] statements, RDFHandler handler)
             throws RDFHandlerException;
 
+    /**
+     * Returns whether the partition associated to a key can be split in arbitrary sub-partitions
+     * that are reduced independently, producing (as a whole) the same output of reducing the
+     * original partition. The default implementation returns false.
+     *
+     * @return true, if partitions can be split
+     */
+    default boolean isSplittable() {
+        return false;
+    }
+
+    /**
+     * Returns whether this {@code Reducer} supports the combination of partial partitions via
+     * {@link #combine(Value, Statement[])}. The default implementation returns false.
+     *
+     * @return true, if combination is supported
+     */
+    default boolean isCombinable() {
+        return false;
+    }
+
+    /**
+     * Combines a subset of the statements of the partition associated to a certain key,
+     * returning the statements to use in their place. The method is called (only if
+     * {@link #isCombinable()} returns true) before statements are shuffled, possibly multiple
+     * times and concurrently by different threads; if deduplication is enabled, supplied
+     * statements are deduplicated, although they may still overlap with other subsets. The
+     * default implementation returns the supplied statements unchanged.
+     *
+     * @param key
+     *            the partition key, possibly null
+     * @param statements
+     *            a modifiable array with a subset of the statements of the partition, not null
+     * @return an array with the combined statements, not null
+     * @throws RDFHandlerException
+     *             on error
+     */
+    default Statement[] combine(@Nullable final Value key, final Statement[] statements)
+            throws RDFHandlerException {
+        return statements;
+    }
+
 }
\ No newline at end of file
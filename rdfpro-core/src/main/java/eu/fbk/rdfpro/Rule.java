@@ -83,6 +83,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.LookAheadIteration;
 
 import eu.fbk.rdfpro.util.Algebra;
 import eu.fbk.rdfpro.util.Environment;
@@ -183,6 +184,16 @@ public final class Rule implements Comparable<Rule> {
         Preconditions.checkArgument(this.insertExpr == null || Algebra.isBGP(this.insertExpr));
     }
 
+    private Rule(final URI id, final Rule rule) {
+        // Copy constructor: expressions are already normalized and can be shared
+        this.id = id;
+        this.fixpoint = rule.fixpoint;
+        this.phase = rule.phase;
+        this.deleteExpr = rule.deleteExpr;
+        this.insertExpr = rule.insertExpr;
+        this.whereExpr = rule.whereExpr;
+    }
+
     /**
      * Returns the rule ID.
      *
@@ -997,6 +1008,10 @@ public final class Rule implements Comparable<Rule> {
         return rules;
     }
 
+    Rule rename(final URI id) {
+        return new Rule(Objects.requireNonNull(id), this);
+    }
+
     static URI newID(final String baseID) {
         final int index = baseID.indexOf("__");
         final String base = index < 0 ? baseID : baseID.substring(0, index);
@@ -1016,6 +1031,8 @@ public final class Rule implements Comparable<Rule> {
 
     private static final class Evaluation implements Runnable, Comparable<Evaluation> {
 
+        private static final int PREFETCH_SIZE = 64;
+
         private final Rule rule;
 
         private final QuadModel model;
@@ -1215,6 +1232,77 @@ public final class Rule implements Comparable<Rule> {
                     return super.evaluate(pattern, bindings);
                 }
 
+                @Override
+                public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(
+                        final Join join, final BindingSet bindings)
+                        throws QueryEvaluationException {
+
+                    // Nested loop join with lookups on the base model: hint the model about the
+                    // lookups of each block of left bindings, so that they can be prefetched
+                    if (!(join.getRightArg() instanceof StatementPattern)
+                            || join.getRightArg().equals(Evaluation.this.deltaPattern)) {
+                        return super.evaluate(join, bindings);
+                    }
+
+                    final EvaluationStrategy strategy = this;
+                    final StatementPattern pattern = (StatementPattern) join.getRightArg();
+                    final CloseableIteration<BindingSet, QueryEvaluationException> leftIter;
+                    leftIter = evaluate(join.getLeftArg(), bindings);
+
+                    return new LookAheadIteration<BindingSet, QueryEvaluationException>() {
+
+                        private final List<BindingSet> block = new ArrayList<>(PREFETCH_SIZE);
+
+                        private int index = 0;
+
+                        @Nullable
+                        private CloseableIteration<BindingSet, QueryEvaluationException> rightIter;
+
+                        @Override
+                        protected BindingSet getNextElement() throws QueryEvaluationException {
+                            while (true) {
+                                if (this.rightIter != null) {
+                                    if (this.rightIter.hasNext()) {
+                                        return this.rightIter.next();
+                                    }
+                                    this.rightIter.close();
+                                    this.rightIter = null;
+                                }
+                                if (this.index == this.block.size()) {
+                                    this.block.clear();
+                                    this.index = 0;
+                                    while (this.block.size() < PREFETCH_SIZE
+                                            && leftIter.hasNext()) {
+                                        this.block.add(leftIter.next());
+                                    }
+                                    if (this.block.isEmpty()) {
+                                        return null;
+                                    }
+                                    Evaluation.this.model.prefetch(pattern, this.block);
+                                }
+                                this.rightIter = strategy.evaluate(pattern,
+                                        this.block.get(this.index++));
+                            }
+                        }
+
+                        @Override
+                        protected void handleClose() throws QueryEvaluationException {
+                            try {
+                                super.handleClose();
+                            } finally {
+                                try {
+                                    leftIter.close();
+                                } finally {
+                                    if (this.rightIter != null) {
+                                        this.rightIter.close();
+                                    }
+                                }
+                            }
+                        }
+
+                    };
+                }
+
             };
         }
 
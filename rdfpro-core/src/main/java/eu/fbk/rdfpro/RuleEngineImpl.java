@@ -526,6 +526,19 @@ final class RuleEngineImpl extends RuleEngine {
                             StreamPhase.this.insertMatcher, StreamPhase.this.fixpoint, true);
                 }
 
+                @Override
+                public void handleStatements(final Statement[] stmts, final int count)
+                        throws RDFHandlerException {
+
+                    // Same as handleStatement(), but reading matchers and flags only once
+                    final StatementMatcher dm = StreamPhase.this.deleteMatcher;
+                    final StatementMatcher im = StreamPhase.this.insertMatcher;
+                    final boolean fixpoint = StreamPhase.this.fixpoint;
+                    for (int i = 0; i < count; ++i) {
+                        expand(stmts[i], this.handler, this.deduplicator, dm, im, fixpoint, true);
+                    }
+                }
+
             };
         }
     }
@@ -14,8 +14,10 @@
 package eu.fbk.rdfpro;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -24,6 +26,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -58,6 +61,8 @@ public final class Ruleset {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Ruleset.class);
 
+    private static final int CHUNK_SIZE = 256;
+
     public static final Ruleset RHODF = fromRDF(Environment.getProperty("rdfpro.rules.rhodf"));
 
     public static final Ruleset RDFS = fromRDF(Environment.getProperty("rdfpro.rules.rdfs"));
@@ -290,6 +295,10 @@ public final class Ruleset {
      * @return the resulting ruleset
      */
     public Ruleset getABoxRuleset(final QuadModel tboxData) {
+        return getABoxRuleset(tboxData, true);
+    }
+
+    Ruleset getABoxRuleset(final QuadModel tboxData, final boolean parallel) {
 
         // Split rules if necessary, caching the result
         if (this.ruleSplits == null) {
@@ -321,49 +330,94 @@ public final class Ruleset {
                 }
             }
         }
-        Environment.run(queries);
-
-        // Compute the ABox rules using obtained bindings to explode the TBox WHERE parts
-        final List<Rule> rules = new ArrayList<>();
+        run(queries, parallel);
+
+        // Compute the ABox rules using obtained bindings to explode the TBox WHERE parts. This
+        // is done in parallel, splitting the bindings of each rule in chunks so that rules with
+        // many bindings (e.g., large class hierarchies) are spread among all the threads. Rules
+        // are created with the ID of the rule they derive from, and are given their final ID
+        // only when collected, so that IDs do not depend on the scheduling of threads
+        final List<List<Rule>> chunks = new ArrayList<>();
+        final List<Runnable> explosions = new ArrayList<>();
         for (final RuleSplit split : this.ruleSplits) {
             if (split.aboxDeleteExpr != null || split.aboxInsertExpr != null) {
                 final URI id = split.rule.getID();
                 final boolean fixpoint = split.rule.isFixpoint();
                 final int phase = split.rule.getPhase();
                 if (split.tboxWhereExpr == null) {
-                    final URI newID = Rule.newID(id.stringValue());
-                    rules.add(new Rule(newID, fixpoint, phase, split.aboxDeleteExpr,
-                            split.aboxInsertExpr, split.aboxWhereExpr));
+                    chunks.add(ImmutableList.of(new Rule(id, fixpoint, phase,
+                            split.aboxDeleteExpr, split.aboxInsertExpr, split.aboxWhereExpr)));
                 } else {
-                    final Iterable<? extends BindingSet> list = bindingsMap.get(id);
+                    final List<BindingSet> list = bindingsMap.get(id);
                     if (list != null) {
-                        for (final BindingSet b : list) {
-                            final TupleExpr delete = Algebra.normalize(
-                                    Algebra.rewrite(split.aboxDeleteExpr, b),
-                                    Statements.VALUE_NORMALIZER);
-                            final TupleExpr insert = Algebra.normalize(
-                                    Algebra.rewrite(split.aboxInsertExpr, b),
-                                    Statements.VALUE_NORMALIZER);
-                            final TupleExpr where = Algebra.normalize(
-                                    Algebra.rewrite(split.aboxWhereExpr, b),
-                                    Statements.VALUE_NORMALIZER);
-                            if (!Objects.equals(insert, where) || delete != null) {
-                                final URI newID = Rule.newID(id.stringValue());
-                                rules.add(new Rule(newID, fixpoint, phase, delete, insert, where));
-                            }
+                        for (final List<BindingSet> chunk : Lists.partition(list, CHUNK_SIZE)) {
+                            final List<Rule> chunkRules = new ArrayList<>(chunk.size());
+                            chunks.add(chunkRules);
+                            explosions.add(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    for (final BindingSet b : chunk) {
+                                        final TupleExpr delete = Algebra.normalize(
+                                                Algebra.rewrite(split.aboxDeleteExpr, b),
+                                                Statements.VALUE_NORMALIZER);
+                                        final TupleExpr insert = Algebra.normalize(
+                                                Algebra.rewrite(split.aboxInsertExpr, b),
+                                                Statements.VALUE_NORMALIZER);
+                                        final TupleExpr where = Algebra.normalize(
+                                                Algebra.rewrite(split.aboxWhereExpr, b),
+                                                Statements.VALUE_NORMALIZER);
+                                        if (!Objects.equals(insert, where) || delete != null) {
+                                            chunkRules.add(new Rule(id, fixpoint, phase, delete,
+                                                    insert, where));
+                                        }
+                                    }
+                                }
+
+                            });
                         }
                     }
                 }
             }
         }
+        run(explosions, parallel);
+
+        // Collect the ABox rules in the original order, dropping duplicate rules that may
+        // originate from bindings differing only in variables not used in the ABox part, and
+        // assign them new IDs in that order
+        final List<Rule> rules = new ArrayList<>();
+        final Set<List<Object>> keys = new HashSet<>();
+        int numDuplicates = 0;
+        for (final List<Rule> chunkRules : chunks) {
+            for (final Rule rule : chunkRules) {
+                if (keys.add(Arrays.asList(rule.isFixpoint(), rule.getPhase(),
+                        rule.getDeleteExpr(), rule.getInsertExpr(), rule.getWhereExpr()))) {
+                    rules.add(rule.rename(Rule.newID(rule.getID().stringValue())));
+                } else {
+                    ++numDuplicates;
+                }
+            }
+        }
         LOGGER.debug("{} ABox rules derived from {} TBox quads and {} original rules "
-                + "({} with ABox components, {} with TBox & ABox components)", rules.size(),
-                tboxData.size(), this.rules.size(), numABoxRules, queries.size());
+                + "({} with ABox components, {} with TBox & ABox components), "
+                + "{} duplicate rules dropped",
+                rules.size(), tboxData.size(), this.rules.size(), numABoxRules, queries.size(),
+                numDuplicates);
 
         // Build and return the resulting ruleset
         return new Ruleset(rules, this.metaVocabularyTerms);
     }
 
+    private static void run(final List<Runnable> tasks, final boolean parallel) {
+        if (parallel) {
+            Environment.run(tasks);
+        } else {
+            for (final Runnable task : tasks) {
+                task.run();
+            }
+        }
+    }
+
     /**
      * Returns the ruleset obtained by rewriting the rules of this ruleset according to the GLOBAL
      * graph inference mode, using the global graph URI specified. Meta-vocabulary terms are not
@@ -518,7 +572,8 @@ public final class Ruleset {
         // Emit meta-vocabulary terms
         final ValueFactory vf = Statements.VALUE_FACTORY;
         for (final URI metaVocabularyTerm : this.metaVocabularyTerms) {
-            vf.createStatement(metaVocabularyTerm, RDF.TYPE, RR.META_VOCABULARY_TERM);
+            output.add(vf.createStatement(metaVocabularyTerm, RDF.TYPE,
+                    RR.META_VOCABULARY_TERM));
         }
 
         // Emit rules
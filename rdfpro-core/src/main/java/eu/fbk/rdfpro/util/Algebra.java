@@ -667,12 +667,17 @@ public final class Algebra {
                     final Set<String> filterVars = extractVariables(condition, false);
                     final Join join = (Join) arg;
                     boolean rewritten = false;
+                    // Conditions already applied to a join argument are not duplicated
                     if (join.getLeftArg().getAssuredBindingNames().containsAll(filterVars)) {
-                        join.setLeftArg(new Filter(join.getLeftArg(), condition.clone()));
+                        if (!hasFilter(join.getLeftArg(), condition)) {
+                            join.setLeftArg(new Filter(join.getLeftArg(), condition.clone()));
+                        }
                         rewritten = true;
                     }
                     if (join.getRightArg().getAssuredBindingNames().containsAll(filterVars)) {
-                        join.setRightArg(new Filter(join.getRightArg(), condition.clone()));
+                        if (!hasFilter(join.getRightArg(), condition)) {
+                            join.setRightArg(new Filter(join.getRightArg(), condition.clone()));
+                        }
                         rewritten = true;
                     }
                     if (rewritten) {
@@ -702,6 +707,15 @@ public final class Algebra {
         return expr;
     }
 
+    private static boolean hasFilter(final TupleExpr expr, final ValueExpr condition) {
+        for (TupleExpr e = expr; e instanceof Filter; e = ((Filter) e).getArg()) {
+            if (((Filter) e).getCondition().equals(condition)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Nullable
     public static TupleExpr pushExtensions(@Nullable TupleExpr expr) {
 
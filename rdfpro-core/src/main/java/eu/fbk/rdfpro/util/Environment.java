@@ -34,12 +34,25 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.annotation.Nullable;
 
@@ -64,9 +77,10 @@ public final class Environment {
 
     private static Map<String, Optional<String>> frozenProperties = new ConcurrentHashMap<>();
 
-    private static ExecutorService configuredPool = null;
+    private static final ExecutorService[] configuredPools = new ExecutorService[3];
 
-    private static ExecutorService frozenPool = null;
+    private static final AtomicReferenceArray<ExecutorService> frozenPools = //
+    new AtomicReferenceArray<>(3); // by lane
 
     private static List<Plugin> frozenPlugins = null;
 
@@ -115,11 +129,17 @@ public final class Environment {
     }
 
     public static void configurePool(@Nullable final ExecutorService pool) {
+        configurePool(Lane.IO, pool);
+    }
+
+    public static void configurePool(final Lane lane, @Nullable final ExecutorService pool) {
+        Objects.requireNonNull(lane);
         synchronized (Environment.class) {
-            if (frozenPool != null) {
-                throw new IllegalStateException("Thread pool already in use");
+            if (frozenPools.get(lane.ordinal()) != null) {
+                throw new IllegalStateException("Thread pool for lane " + lane
+                        + " already in use");
             }
-            configuredPool = pool; // to be frozen later
+            configuredPools[lane.ordinal()] = pool; // to be frozen later
         }
     }
 
@@ -150,36 +170,150 @@ public final class Environment {
     }
 
     public static ExecutorService getPool() {
-        if (frozenPool == null) {
-            synchronized (Environment.class) {
-                if (frozenPool == null) {
-                    frozenPool = configuredPool;
-                    if (frozenPool == null) {
-                        final ThreadFactory factory = new ThreadFactory() {
-
-                            private final AtomicInteger counter = new AtomicInteger(0);
-
-                            @Override
-                            public Thread newThread(final Runnable runnable) {
-                                final int index = this.counter.getAndIncrement();
-                                final Thread thread = new Thread(runnable);
-                                thread.setName(String.format("rdfpro-%03d", index));
-                                thread.setPriority(Thread.NORM_PRIORITY);
-                                thread.setDaemon(true);
-                                return thread;
-                            }
+        return getPool(Lane.IO);
+    }
 
-                        };
-                        frozenPool = Executors.newCachedThreadPool(factory);
+    public static ExecutorService getPool(final Lane lane) {
+        ExecutorService pool = frozenPools.get(lane.ordinal());
+        if (pool == null) {
+            synchronized (Environment.class) {
+                pool = frozenPools.get(lane.ordinal());
+                if (pool == null) {
+                    pool = configuredPools[lane.ordinal()];
+                    if (pool == null) {
+                        final String name = lane.name().toLowerCase();
+                        final int size = Integer.parseInt(getProperty("rdfpro.pool." + name
+                                + ".size", Integer.toString(lane == Lane.IO ? Math.max(64,
+                                16 * getCores()) : lane == Lane.CPU ? getCores() : 2)));
+                        final int limit = Integer.parseInt(lane == Lane.IO ? getProperty(
+                                "rdfpro.pool.io.overflow", Integer.toString(size))
+                                : getProperty("rdfpro.pool.cpu.pending",
+                                        Integer.toString(64 * size)));
+                        pool = newPool(lane, size, limit);
                     }
-                    LOGGER.debug("Using pool {}", frozenPool);
+                    frozenPools.set(lane.ordinal(), pool);
+                    LOGGER.debug("Using pool {} for lane {}", pool, lane);
                 }
             }
         }
-        return frozenPool;
+        return pool;
+    }
+
+    public static LaneStatus getPoolStatus(final Lane lane) {
+        return getStatus(lane, getPool(lane));
+    }
+
+    static LaneStatus getStatus(final Lane lane, final ExecutorService pool) {
+        if (pool instanceof CpuPool) {
+            final CpuPool p = (CpuPool) pool;
+            return new LaneStatus(lane, p.getParallelism(), p.getPoolSize(),
+                    p.getActiveThreadCount(), p.getQueuedSubmissionCount()
+                            + p.getQueuedTaskCount(), p.completed.get());
+        } else if (pool instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor p = (ThreadPoolExecutor) pool;
+            return new LaneStatus(lane, p.getMaximumPoolSize(), p.getPoolSize(),
+                    p.getActiveCount(), p.getQueue().size(), p.getCompletedTaskCount());
+        } else {
+            return new LaneStatus(lane, -1, -1, -1, -1, -1); // externally configured
+        }
+    }
+
+    // limit = max overflow threads for IO lane, max queued submissions for CPU lane
+    static ExecutorService newPool(final Lane lane, final int size, final int limit) {
+
+        final String prefix = "rdfpro-" + lane.name().toLowerCase() + "-";
+
+        if (lane == Lane.CPU) {
+            return new CpuPool(prefix, size, limit);
+        }
+
+        final ThreadFactory factory = new ThreadFactory() {
+
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final int index = this.counter.getAndIncrement();
+                final Thread thread = new Thread(runnable);
+                thread.setName(String.format(prefix + "%03d", index));
+                thread.setPriority(lane == Lane.BACKGROUND ? Thread.MIN_PRIORITY
+                        : Thread.NORM_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        };
+
+        if (lane == Lane.BACKGROUND) {
+            final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(size,
+                    factory);
+            pool.setRemoveOnCancelPolicy(true);
+            return pool;
+        }
+
+        // Blocking I/O tasks: threads are handed tasks directly; when all of them are busy,
+        // submitters wait for one to become free (backpressure). As tasks in this lane may
+        // depend on each other (e.g., parsers and fetchers), waiting is bounded and on timeout
+        // the task is run on one of at most 'limit' overflow threads rather than risking a
+        // deadlock; once overflow threads are exhausted too, submitters block until a pool
+        // thread becomes free
+        final Semaphore overflowPermits = new Semaphore(limit);
+        return new ThreadPoolExecutor(0, size, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), factory, new RejectedExecutionHandler() {
+
+                    @Override
+                    public void rejectedExecution(final Runnable runnable,
+                            final ThreadPoolExecutor executor) {
+                        boolean warned = false;
+                        try {
+                            while (true) {
+                                if (executor.isShutdown()) {
+                                    throw new RejectedExecutionException("Pool for lane "
+                                            + lane + " shut down");
+                                }
+                                if (executor.getQueue().offer(runnable, 1, TimeUnit.SECONDS)) {
+                                    return;
+                                }
+                                if (overflowPermits.tryAcquire()) {
+                                    LOGGER.warn("Pool for lane {} saturated ({} threads): "
+                                            + "using overflow thread", lane,
+                                            executor.getPoolSize());
+                                    factory.newThread(new Runnable() {
+
+                                        @Override
+                                        public void run() {
+                                            try {
+                                                runnable.run();
+                                            } finally {
+                                                overflowPermits.release();
+                                            }
+                                        }
+
+                                    }).start();
+                                    return;
+                                }
+                                if (!warned) {
+                                    LOGGER.warn("Pool for lane {} saturated ({} threads, {} "
+                                            + "overflow threads): waiting", lane,
+                                            executor.getPoolSize(), limit);
+                                    warned = true;
+                                }
+                            }
+                        } catch (final InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting "
+                                    + "for pool for lane " + lane, ex);
+                        }
+                    }
+
+                });
     }
 
     public static void run(final Iterable<? extends Runnable> runnables) {
+        run(Lane.CPU, runnables);
+    }
+
+    public static void run(final Lane lane, final Iterable<? extends Runnable> runnables) {
 
         final List<Runnable> runnableList = ImmutableList.copyOf(runnables);
         final int parallelism = Math.min(Environment.getCores(), runnableList.size());
@@ -214,12 +348,25 @@ public final class Environment {
 
         try {
             for (int i = 1; i < parallelism; ++i) {
-                Environment.getPool().submit(threadRunnables.get(i));
+                Environment.getPool(lane).submit(threadRunnables.get(i));
             }
             if (!threadRunnables.isEmpty()) {
                 threadRunnables.get(0).run();
             }
-            latch.await();
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return latch.getCount() == 0;
+                }
+
+            });
             if (exception.get() != null) {
                 throw exception.get();
             }
@@ -389,6 +536,202 @@ public final class Environment {
         }
     }
 
+    public enum Lane {
+
+        /** Lane for tasks that block on I/O or on other tasks. */
+        IO,
+
+        /**
+         * Lane for CPU-bound tasks, executed by a work-stealing pool sized on cores. Tasks must
+         * not block (e.g., by feeding arbitrary downstream handlers) unless waiting through
+         * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}.
+         */
+        CPU,
+
+        /** Lane for low priority and periodic maintenance tasks. */
+        BACKGROUND
+
+    }
+
+    public static final class LaneStatus {
+
+        private final Lane lane;
+
+        private final int maxThreads;
+
+        private final int threads;
+
+        private final int activeThreads;
+
+        private final long queuedTasks;
+
+        private final long completedTasks;
+
+        LaneStatus(final Lane lane, final int maxThreads, final int threads,
+                final int activeThreads, final long queuedTasks, final long completedTasks) {
+            this.lane = lane;
+            this.maxThreads = maxThreads;
+            this.threads = threads;
+            this.activeThreads = activeThreads;
+            this.queuedTasks = queuedTasks;
+            this.completedTasks = completedTasks;
+        }
+
+        public Lane getLane() {
+            return this.lane;
+        }
+
+        public int getMaxThreads() {
+            return this.maxThreads;
+        }
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public int getActiveThreads() {
+            return this.activeThreads;
+        }
+
+        public long getQueuedTasks() {
+            return this.queuedTasks;
+        }
+
+        public long getCompletedTasks() {
+            return this.completedTasks;
+        }
+
+        public double getUtilization() {
+            return this.maxThreads <= 0 ? Double.NaN : (double) this.activeThreads
+                    / this.maxThreads;
+        }
+
+        @Override
+        public String toString() {
+            return this.lane + ": " + this.activeThreads + "/" + this.threads + "/"
+                    + this.maxThreads + " active/live/max threads, " + this.queuedTasks
+                    + " queued, " + this.completedTasks + " completed";
+        }
+
+    }
+
+    private static final class CpuPool extends ForkJoinPool {
+
+        // Work stealing pool for non-blocking tasks; blocking waits must go through
+        // ForkJoinPool.managedBlock() so that the pool can compensate for blocked workers.
+        // External submitters are throttled when too many submissions are queued, while
+        // submissions from the pool workers are never throttled (they would deadlock)
+
+        final AtomicLong completed;
+
+        private final int limit;
+
+        CpuPool(final String prefix, final int size, final int limit) {
+            super(size, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+                private final AtomicInteger counter = new AtomicInteger(0);
+
+                @Override
+                public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                    final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+                    thread.setName(String.format(prefix + "%03d", this.counter.getAndIncrement()));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            }, null, true);
+            this.completed = new AtomicLong(0L);
+            this.limit = limit;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            awaitCapacity();
+            super.execute(wrap(task));
+        }
+
+        @Override
+        public ForkJoinTask<?> submit(final Runnable task) {
+            awaitCapacity();
+            return super.submit(wrap(task));
+        }
+
+        @Override
+        public <T> ForkJoinTask<T> submit(final Runnable task, final T result) {
+            awaitCapacity();
+            return super.submit(wrap(task), result);
+        }
+
+        @Override
+        public <T> ForkJoinTask<T> submit(final Callable<T> task) {
+            awaitCapacity();
+            return super.submit(new Callable<T>() {
+
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        CpuPool.this.completed.incrementAndGet();
+                    }
+                }
+
+            });
+        }
+
+        private Runnable wrap(final Runnable task) {
+            Objects.requireNonNull(task);
+            return new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        CpuPool.this.completed.incrementAndGet();
+                    }
+                }
+
+            };
+        }
+
+        private void awaitCapacity() {
+            final Thread thread = Thread.currentThread();
+            if (thread instanceof ForkJoinWorkerThread
+                    && ((ForkJoinWorkerThread) thread).getPool() == this
+                    || getQueuedSubmissionCount() < this.limit) {
+                return;
+            }
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        if (isShutdown()) {
+                            return true; // let super method reject the task
+                        }
+                        LockSupport.parkNanos(100000L);
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                        return isReleasable();
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return getQueuedSubmissionCount() < CpuPool.this.limit;
+                    }
+
+                });
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for CPU pool",
+                        ex);
+            }
+        }
+
+    }
+
     private static final class Plugin {
 
         public final List<String> names;
@@ -0,0 +1,841 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ *
+ * Written in 2015 by Francesco Corcoglioniti with support by Alessio Palmero Aprosio and Marco
+ * Rospocher. Contact info on http://rdfpro.fbk.eu/
+ *
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ *
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.Mapper;
+import eu.fbk.rdfpro.Transformer;
+
+/**
+ * Compiler for the builtin {@code expr:} expression language.
+ * <p>
+ * The language supports boolean conditions over the components {@code s}, {@code p}, {@code o},
+ * {@code c} of a statement and is compiled at startup into a tree of specialized, immutable
+ * objects implementing {@link Predicate}, {@link Transformer} or {@link Mapper} directly, thus
+ * avoiding the per-statement dynamic invocation overhead of JSR-223 scripts (see
+ * {@link Scripting}). The grammar is:
+ * </p>
+ *
+ * <pre>
+ * predicate   := cond
+ * transformer := cond [ '=>' rules ]            (rules as in Transformer.rules())
+ * mapper      := [ cond '=>' ] term (',' term)*
+ * cond        := and ( '||' and )*
+ * and         := unary ( '&amp;&amp;' unary )*
+ * unary       := '!' unary | '(' cond ')' | 'true' | 'false'
+ *              | ( 'isuri' | 'isiri' | 'isblank' | 'isliteral' | 'bound' ) '(' term ')'
+ *              | 'strstarts' '(' term ',' string ')'
+ *              | term ( '=' | '!=' ) term | term '=~' string | term 'in' '(' term (',' term)* ')'
+ * term        := 's' | 'p' | 'o' | 'c' | Turtle value (&lt;uri&gt;, qname, _:bnode, literal)
+ *              | ( 'str' | 'lang' | 'datatype' | 'ns' ) '(' term ')'
+ *              | 'hash' '(' term (',' term)* ')'
+ * </pre>
+ * <p>
+ * Turtle values are resolved using {@link Namespaces#DEFAULT}. Function {@code hash} produces a
+ * BNode whose ID is the hash of its arguments (useful as MapReduce key), while {@code str},
+ * {@code lang}, {@code ns} produce plain strings (and {@code datatype} a URI) to be compared with
+ * literal constants or regular expressions. A transformer expression without the {@code =>} part
+ * acts as a filter; a mapper whose condition is false drops the statement (no keys), while a
+ * mapper term without a value (e.g., {@code c} in the default graph) produces a null key, as
+ * admitted by {@link Mapper}. The {@code =>} separator is recognized only outside URIs and
+ * quoted literals, so it may appear in string constants and regular expressions.
+ * </p>
+ */
+public final class Expressions {
+
+    /** The language name under which expressions are recognized by {@link Scripting}. */
+    public static final String LANGUAGE = "expr";
+
+    private Expressions() {
+    }
+
+    /**
+     * Compiles the supplied expression into an implementation of the requested interface,
+     * which should be either {@link Predicate}, {@link Transformer} or {@link Mapper}.
+     *
+     * @param interfaceClass
+     *            the interface to implement, not null
+     * @param expression
+     *            the expression, without the {@code expr:} prefix, not null
+     * @param <T>
+     *            the type of interface
+     * @return the compiled implementation
+     * @throws IllegalArgumentException
+     *             on syntax errors
+     * @throws UnsupportedOperationException
+     *             if the interface is not supported
+     */
+    public static <T> T compile(final Class<T> interfaceClass, final String expression) {
+
+        Objects.requireNonNull(interfaceClass);
+        Objects.requireNonNull(expression);
+
+        Object result;
+
+        if (interfaceClass == Predicate.class) {
+            final Cond cond = new Parser(expression).parseCondAndEnd();
+            result = newPredicate(cond);
+
+        } else if (interfaceClass == Transformer.class) {
+            final int index = indexOfArrow(expression);
+            final Cond cond = new Parser(index < 0 ? expression : expression.substring(0, index))
+                    .parseCondAndEnd();
+            final Transformer rules = index < 0 ? null : Transformer.rules(expression.substring(
+                    index + 2).trim());
+            result = newTransformer(cond, rules);
+
+        } else if (interfaceClass == Mapper.class) {
+            final int index = indexOfArrow(expression);
+            final Cond cond = index < 0 ? Cond.TRUE : new Parser(expression.substring(0, index))
+                    .parseCondAndEnd();
+            final Parser termParser = new Parser(index < 0 ? expression
+                    : expression.substring(index + 2));
+            final List<Term> terms = termParser.parseTermList();
+            termParser.expectEnd();
+            result = newMapper(cond, terms.toArray(new Term[terms.size()]));
+
+        } else {
+            throw new UnsupportedOperationException("Cannot compile expression to "
+                    + interfaceClass.getName());
+        }
+
+        return interfaceClass.cast(result);
+    }
+
+    private static int indexOfArrow(final String expression) {
+        // Locate '=>' outside URIs and quoted literals (including regexes), which may contain it
+        final int len = expression.length();
+        for (int i = 0; i < len; ++i) {
+            final char ch = expression.charAt(i);
+            if (ch == '"' || ch == '\'') {
+                for (++i; i < len && expression.charAt(i) != ch; ++i) {
+                    if (expression.charAt(i) == '\\') {
+                        ++i;
+                    }
+                }
+            } else if (ch == '<') {
+                final int end = expression.indexOf('>', i);
+                i = end < 0 ? len : end;
+            } else if (ch == '=' && i + 1 < len && expression.charAt(i + 1) == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Predicate<Statement> newPredicate(final Cond cond) {
+        return new Predicate<Statement>() {
+
+            @Override
+            public boolean test(final Statement statement) {
+                return cond.test(statement);
+            }
+
+        };
+    }
+
+    private static Transformer newTransformer(final Cond cond, @Nullable final Transformer rules) {
+        if (cond == Cond.TRUE) {
+            return rules != null ? rules : Transformer.IDENTITY;
+        } else if (cond == Cond.FALSE) {
+            return Transformer.NIL;
+        } else if (rules == null) {
+            return new Transformer() {
+
+                @Override
+                public void transform(final Statement statement, final RDFHandler handler)
+                        throws RDFHandlerException {
+                    if (cond.test(statement)) {
+                        handler.handleStatement(statement);
+                    }
+                }
+
+            };
+        } else {
+            return new Transformer() {
+
+                @Override
+                public void transform(final Statement statement, final RDFHandler handler)
+                        throws RDFHandlerException {
+                    if (cond.test(statement)) {
+                        rules.transform(statement, handler);
+                    }
+                }
+
+            };
+        }
+    }
+
+    private static Mapper newMapper(final Cond cond, final Term[] terms) {
+        final Value[] empty = new Value[0];
+        if (terms.length == 1) {
+            final Term term = terms[0];
+            return new Mapper() {
+
+                @Override
+                public Value[] map(final Statement statement) throws RDFHandlerException {
+                    return cond.test(statement) ? new Value[] { term.value(statement) } : empty;
+                }
+
+            };
+        } else {
+            return new Mapper() {
+
+                @Override
+                public Value[] map(final Statement statement) throws RDFHandlerException {
+                    if (!cond.test(statement)) {
+                        return empty;
+                    }
+                    final Value[] keys = new Value[terms.length];
+                    for (int i = 0; i < terms.length; ++i) {
+                        keys[i] = terms[i].value(statement);
+                    }
+                    return keys;
+                }
+
+            };
+        }
+    }
+
+    private static abstract class Cond {
+
+        static final Cond TRUE = new Cond() {
+
+            @Override
+            boolean test(final Statement statement) {
+                return true;
+            }
+
+        };
+
+        static final Cond FALSE = new Cond() {
+
+            @Override
+            boolean test(final Statement statement) {
+                return false;
+            }
+
+        };
+
+        abstract boolean test(Statement statement);
+
+        static Cond not(final Cond cond) {
+            if (cond == TRUE) {
+                return FALSE;
+            } else if (cond == FALSE) {
+                return TRUE;
+            }
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    return !cond.test(statement);
+                }
+
+            };
+        }
+
+        static Cond and(final Cond left, final Cond right) {
+            if (left == FALSE || right == FALSE) {
+                return FALSE;
+            } else if (left == TRUE) {
+                return right;
+            } else if (right == TRUE) {
+                return left;
+            }
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    return left.test(statement) && right.test(statement);
+                }
+
+            };
+        }
+
+        static Cond or(final Cond left, final Cond right) {
+            if (left == TRUE || right == TRUE) {
+                return TRUE;
+            } else if (left == FALSE) {
+                return right;
+            } else if (right == FALSE) {
+                return left;
+            }
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    return left.test(statement) || right.test(statement);
+                }
+
+            };
+        }
+
+        static Cond equal(final Term left, final Term right) {
+            if (left.isConstant() && right.isConstant()) {
+                return Objects.equals(left.eval(null), right.eval(null)) ? TRUE : FALSE;
+            } else if (left.isConstant() || right.isConstant()) {
+                final Term term = left.isConstant() ? right : left;
+                final Object constant = left.isConstant() ? left.coerce(right) : right
+                        .coerce(left);
+                if (constant == null) {
+                    return new Cond() {
+
+                        @Override
+                        boolean test(final Statement statement) {
+                            return term.eval(statement) == null;
+                        }
+
+                    };
+                }
+                return new Cond() {
+
+                    @Override
+                    boolean test(final Statement statement) {
+                        return constant.equals(term.eval(statement));
+                    }
+
+                };
+            }
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    return Objects.equals(left.eval(statement), right.eval(statement));
+                }
+
+            };
+        }
+
+        static Cond in(final Term term, final List<Term> constants) {
+            final Set<Object> set = new HashSet<>();
+            for (final Term constant : constants) {
+                if (!constant.isConstant()) {
+                    throw new IllegalArgumentException("Only constants supported in 'in' list");
+                }
+                set.add(constant.coerce(term));
+            }
+            if (set.size() == 1) {
+                return equal(term, constants.get(0));
+            }
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    return set.contains(term.eval(statement));
+                }
+
+            };
+        }
+
+        static Cond matches(final Term term, final String regex) {
+            final Pattern pattern = Pattern.compile(regex);
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    final Object value = term.eval(statement);
+                    return value != null && pattern.matcher(toString(value)).find();
+                }
+
+            };
+        }
+
+        static Cond startsWith(final Term term, final String prefix) {
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    final Object value = term.eval(statement);
+                    return value != null && toString(value).startsWith(prefix);
+                }
+
+            };
+        }
+
+        static Cond typeOf(final Term term, final Class<?> clazz) {
+            return new Cond() {
+
+                @Override
+                boolean test(final Statement statement) {
+                    return clazz.isInstance(term.eval(statement));
+                }
+
+            };
+        }
+
+        static String toString(final Object value) {
+            return value instanceof Value ? ((Value) value).stringValue() : value.toString();
+        }
+
+    }
+
+    private static abstract class Term {
+
+        static final Term SUBJ = new Term() {
+
+            @Override
+            Object eval(final Statement statement) {
+                return statement.getSubject();
+            }
+
+        };
+
+        static final Term PRED = new Term() {
+
+            @Override
+            Object eval(final Statement statement) {
+                return statement.getPredicate();
+            }
+
+        };
+
+        static final Term OBJ = new Term() {
+
+            @Override
+            Object eval(final Statement statement) {
+                return statement.getObject();
+            }
+
+        };
+
+        static final Term CTX = new Term() {
+
+            @Override
+            Object eval(final Statement statement) {
+                return statement.getContext();
+            }
+
+        };
+
+        @Nullable
+        abstract Object eval(@Nullable Statement statement);
+
+        boolean isConstant() {
+            return false;
+        }
+
+        boolean isString() {
+            return false;
+        }
+
+        @Nullable
+        Object coerce(final Term other) {
+            final Object value = eval(null);
+            return other.isString() && value instanceof Literal ? ((Literal) value).getLabel()
+                    : value;
+        }
+
+        @Nullable
+        Value value(final Statement statement) {
+            final Object result = eval(statement);
+            return result == null || result instanceof Value ? (Value) result
+                    : Statements.VALUE_FACTORY.createLiteral(result.toString());
+        }
+
+        static Term constant(@Nullable final Value value) {
+            return new Term() {
+
+                @Override
+                Object eval(final Statement statement) {
+                    return value;
+                }
+
+                @Override
+                boolean isConstant() {
+                    return true;
+                }
+
+            };
+        }
+
+        static Term str(final Term arg) {
+            return new Term() {
+
+                @Override
+                Object eval(final Statement statement) {
+                    final Object value = arg.eval(statement);
+                    return value == null ? null : Cond.toString(value);
+                }
+
+                @Override
+                boolean isString() {
+                    return true;
+                }
+
+            };
+        }
+
+        static Term lang(final Term arg) {
+            return new Term() {
+
+                @Override
+                Object eval(final Statement statement) {
+                    final Object value = arg.eval(statement);
+                    return value instanceof Literal ? ((Literal) value).getLanguage() : null;
+                }
+
+                @Override
+                boolean isString() {
+                    return true;
+                }
+
+            };
+        }
+
+        static Term datatype(final Term arg) {
+            return new Term() {
+
+                @Override
+                Object eval(final Statement statement) {
+                    final Object value = arg.eval(statement);
+                    return value instanceof Literal ? ((Literal) value).getDatatype() : null;
+                }
+
+            };
+        }
+
+        static Term ns(final Term arg) {
+            return new Term() {
+
+                @Override
+                Object eval(final Statement statement) {
+                    final Object value = arg.eval(statement);
+                    return value instanceof URI ? ((URI) value).getNamespace() : null;
+                }
+
+                @Override
+                boolean isString() {
+                    return true;
+                }
+
+            };
+        }
+
+        static Term hash(final Term[] args) {
+            final Hash nullHash = Hash.fromLongs(0L, 0L); // for unbound args, e.g. default ctx
+            return new Term() {
+
+                @Override
+                Object eval(final Statement statement) {
+                    final Hash[] hashes = new Hash[args.length];
+                    for (int i = 0; i < args.length; ++i) {
+                        final Object value = args[i].eval(statement);
+                        hashes[i] = value == null ? nullHash
+                                : value instanceof String ? Hash.murmur3((String) value)
+                                        : Statements.getHash((Value) value);
+                    }
+                    return Statements.VALUE_FACTORY.createBNode(Hash.combine(hashes).toString());
+                }
+
+            };
+        }
+
+    }
+
+    private static final class Parser {
+
+        private final String string;
+
+        private int pos;
+
+        Parser(final String string) {
+            this.string = string;
+            this.pos = 0;
+        }
+
+        Cond parseCondAndEnd() {
+            final Cond cond = parseCond();
+            expectEnd();
+            return cond;
+        }
+
+        Cond parseCond() {
+            Cond cond = parseAnd();
+            while (accept("||")) {
+                cond = Cond.or(cond, parseAnd());
+            }
+            return cond;
+        }
+
+        private Cond parseAnd() {
+            Cond cond = parseUnary();
+            while (accept("&&")) {
+                cond = Cond.and(cond, parseUnary());
+            }
+            return cond;
+        }
+
+        private Cond parseUnary() {
+            if (accept("!")) {
+                return Cond.not(parseUnary());
+            } else if (accept("(")) {
+                final Cond cond = parseCond();
+                expect(")");
+                return cond;
+            }
+            final int start = this.pos;
+            final String word = peekWord();
+            if (word != null) {
+                final String keyword = word.toLowerCase();
+                if (keyword.equals("true") || keyword.equals("false")) {
+                    this.pos += word.length();
+                    return keyword.equals("true") ? Cond.TRUE : Cond.FALSE;
+                } else if (keyword.equals("strstarts")) {
+                    this.pos += word.length();
+                    expect("(");
+                    final Term term = parseTerm();
+                    expect(",");
+                    final String prefix = parseString();
+                    expect(")");
+                    return Cond.startsWith(term, prefix);
+                } else if (keyword.startsWith("is") || keyword.equals("bound")) {
+                    final Class<?> clazz = keyword.equals("isuri")
+                            || keyword.equals("isiri") ? URI.class //
+                            : keyword.equals("isblank") ? BNode.class //
+                                    : keyword.equals("isliteral") ? Literal.class //
+                                            : keyword.equals("bound") ? Value.class : null;
+                    if (clazz != null) {
+                        this.pos += word.length();
+                        expect("(");
+                        final Term term = parseTerm();
+                        expect(")");
+                        return Cond.typeOf(term, clazz);
+                    }
+                }
+            }
+            this.pos = start;
+            final Term term = parseTerm();
+            if (accept("!=")) {
+                return Cond.not(Cond.equal(term, parseTerm()));
+            } else if (accept("=~")) {
+                return Cond.matches(term, parseString());
+            } else if (accept("=")) {
+                return Cond.equal(term, parseTerm());
+            } else if (acceptWord("in")) {
+                expect("(");
+                final List<Term> constants = parseTermList();
+                expect(")");
+                return Cond.in(term, constants);
+            }
+            throw fail("Expected comparison operator");
+        }
+
+        List<Term> parseTermList() {
+            final List<Term> terms = new ArrayList<>();
+            do {
+                terms.add(parseTerm());
+            } while (accept(","));
+            return terms;
+        }
+
+        private Term parseTerm() {
+            skipSpaces();
+            if (this.pos >= this.string.length()) {
+                throw fail("Expected term");
+            }
+            final char ch = this.string.charAt(this.pos);
+            if (ch == '<' || ch == '"' || ch == '\'' || ch == '_' && peek(1) == ':') {
+                return Term.constant(parseValue());
+            }
+            final String word = peekWord();
+            if (word == null) {
+                throw fail("Expected term");
+            } else if (word.indexOf(':') >= 0) {
+                return Term.constant(parseValue());
+            }
+            this.pos += word.length();
+            switch (word.toLowerCase()) {
+            case "s":
+                return Term.SUBJ;
+            case "p":
+                return Term.PRED;
+            case "o":
+                return Term.OBJ;
+            case "c":
+                return Term.CTX;
+            case "null":
+                return Term.constant(null);
+            case "hash": {
+                expect("(");
+                final List<Term> args = parseTermList();
+                expect(")");
+                return Term.hash(args.toArray(new Term[args.size()]));
+            }
+            default:
+                expect("(");
+                final Term arg = parseTerm();
+                expect(")");
+                switch (word.toLowerCase()) {
+                case "str":
+                    return Term.str(arg);
+                case "lang":
+                    return Term.lang(arg);
+                case "datatype":
+                    return Term.datatype(arg);
+                case "ns":
+                    return Term.ns(arg);
+                default:
+                    throw fail("Unknown function " + word);
+                }
+            }
+        }
+
+        private String parseString() {
+            final Value value = parseValue();
+            if (!(value instanceof Literal)) {
+                throw fail("Expected string literal");
+            }
+            return ((Literal) value).getLabel();
+        }
+
+        private Value parseValue() {
+            skipSpaces();
+            final int start = this.pos;
+            final int len = this.string.length();
+            final char ch = this.string.charAt(this.pos);
+            if (ch == '<') {
+                final int end = this.string.indexOf('>', this.pos);
+                if (end < 0) {
+                    throw fail("Unterminated URI");
+                }
+                this.pos = end + 1;
+            } else if (ch == '"' || ch == '\'') {
+                ++this.pos;
+                while (this.pos < len && this.string.charAt(this.pos) != ch) {
+                    this.pos += this.string.charAt(this.pos) == '\\' ? 2 : 1;
+                }
+                if (this.pos >= len) {
+                    throw fail("Unterminated literal");
+                }
+                ++this.pos;
+                if (peek(0) == '@') {
+                    ++this.pos;
+                    skipWord();
+                } else if (peek(0) == '^' && peek(1) == '^') {
+                    this.pos += 2;
+                    if (peek(0) == '<') {
+                        this.pos = this.string.indexOf('>', this.pos) + 1;
+                        if (this.pos == 0) {
+                            throw fail("Unterminated datatype URI");
+                        }
+                    } else {
+                        skipWord();
+                    }
+                }
+            } else {
+                skipWord();
+            }
+            try {
+                return Statements.parseValue(this.string.substring(start, this.pos),
+                        Namespaces.DEFAULT);
+            } catch (final Throwable ex) {
+                this.pos = start;
+                throw fail("Invalid RDF value (" + ex.getMessage() + ")");
+            }
+        }
+
+        @Nullable
+        private String peekWord() {
+            skipSpaces();
+            final int start = this.pos;
+            skipWord();
+            final String word = this.string.substring(start, this.pos);
+            this.pos = start;
+            return word.isEmpty() ? null : word;
+        }
+
+        private void skipWord() {
+            final int len = this.string.length();
+            while (this.pos < len) {
+                final char ch = this.string.charAt(this.pos);
+                if (!Character.isLetterOrDigit(ch) && ch != '_' && ch != '-' && ch != ':'
+                        && ch != '.' && ch != '%') {
+                    break;
+                }
+                ++this.pos;
+            }
+            while (this.pos > 0 && this.string.charAt(this.pos - 1) == '.') {
+                --this.pos; // trailing dots are not part of a qname
+            }
+        }
+
+        private boolean acceptWord(final String word) {
+            final String actual = peekWord();
+            if (actual != null && actual.equalsIgnoreCase(word)) {
+                this.pos += actual.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean accept(final String token) {
+            skipSpaces();
+            if (this.string.startsWith(token, this.pos)) {
+                this.pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final String token) {
+            if (!accept(token)) {
+                throw fail("Expected '" + token + "'");
+            }
+        }
+
+        void expectEnd() {
+            skipSpaces();
+            if (this.pos < this.string.length()) {
+                throw fail("Unexpected content");
+            }
+        }
+
+        private char peek(final int offset) {
+            final int index = this.pos + offset;
+            return index < this.string.length() ? this.string.charAt(index) : 0;
+        }
+
+        private void skipSpaces() {
+            while (this.pos < this.string.length()
+                    && Character.isWhitespace(this.string.charAt(this.pos))) {
+                ++this.pos;
+            }
+        }
+
+        private IllegalArgumentException fail(final String message) {
+            return new IllegalArgumentException(message + " at offset " + this.pos + " in '"
+                    + this.string + "'");
+        }
+
+    }
+
+}
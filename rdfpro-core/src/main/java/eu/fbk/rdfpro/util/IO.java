@@ -43,6 +43,8 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.fbk.rdfpro.util.Environment.Lane;
+
 // note on buffered stream thread safety: they are not thread safe and are expected to be used by
 // a single thread, with the exception of method close() which can be called concurrently by other
 // threads (so to guarantee e.g. asynchronous write/read termination) and it is synchronized so
@@ -180,7 +182,7 @@ public final class IO {
                 LOGGER.debug("Downloading file {} using {}", url, cmd);
                 final Process process = new ProcessBuilder(cmd.split("\\s+")) //
                         .redirectError(Redirect.INHERIT).start();
-                Environment.getPool().execute(new Runnable() {
+                Environment.getPool(Lane.IO).execute(new Runnable() {
 
                     @Override
                     public void run() {
@@ -904,7 +906,7 @@ public final class IO {
                 this.exception = null;
                 this.latch = new CountDownLatch(1);
 
-                Environment.getPool().submit(this);
+                Environment.getPool(Lane.IO).submit(this);
             }
 
             private void release(final CharBuffer buffer) {
@@ -1229,7 +1231,7 @@ public final class IO {
                 this.references = 0;
                 this.exception = null;
                 this.latch = new CountDownLatch(1);
-                Environment.getPool().submit(this);
+                Environment.getPool(Lane.IO).submit(this);
             }
 
             private void release(final CharBuffer buffer) {
@@ -1513,7 +1515,7 @@ public final class IO {
                 this.exception = null;
                 this.latch = new CountDownLatch(1);
 
-                Environment.getPool().submit(this);
+                Environment.getPool(Lane.IO).submit(this);
             }
 
             private void release(final ByteBuffer buffer) {
@@ -1825,7 +1827,7 @@ public final class IO {
                 this.references = 0;
                 this.exception = null;
                 this.latch = new CountDownLatch(1);
-                Environment.getPool().submit(this);
+                Environment.getPool(Lane.IO).submit(this);
             }
 
             private void release(final ByteBuffer buffer) {
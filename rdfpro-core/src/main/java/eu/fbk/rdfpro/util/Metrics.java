@@ -0,0 +1,556 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nullable;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.rdfpro.util.Environment.Lane;
+
+/**
+ * Process-wide registry of runtime metrics.
+ * <p>
+ * Metrics are identified by a Prometheus-style name (e.g., {@code rdfpro_stage_statements_in})
+ * and an optional list of label name/value pairs. Three types of metrics are supported:
+ * {@link Counter}s, gauges backed by a {@code LongSupplier} and {@link Histogram}s with
+ * log-linear buckets (HdrHistogram-style, about 6% relative error). Registered metrics are
+ * exposed over JMX by MBean {@code eu.fbk.rdfpro:type=Metrics}, can be rendered in JSON or
+ * Prometheus text format, and are periodically written to the file specified by property
+ * {@code rdfpro.metrics.file} (every {@code rdfpro.metrics.period} seconds, default 10), in JSON
+ * format if the file extension is {@code .json} and in Prometheus format otherwise.
+ * </p>
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    private static final Map<String, Metric> METRICS = new ConcurrentSkipListMap<>();
+
+    @Nullable
+    private static final String FILE = Environment.getProperty("rdfpro.metrics.file");
+
+    private static final long PERIOD = Long.parseLong(Environment.getProperty(
+            "rdfpro.metrics.period", "10"));
+
+    private static final ThreadLocal<String> JOB = new ThreadLocal<>();
+
+    static {
+        for (final Lane lane : Lane.values()) {
+            final String name = lane.name().toLowerCase();
+            gauge("rdfpro_pool_active_threads", "Number of active threads in the pool",
+                    () -> Environment.getPoolStatus(lane).getActiveThreads(), "lane", name);
+            gauge("rdfpro_pool_queued_tasks", "Number of tasks queued in the pool",
+                    () -> Environment.getPoolStatus(lane).getQueuedTasks(), "lane", name);
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(),
+                    new ObjectName("eu.fbk.rdfpro:type=Metrics"));
+        } catch (final Throwable ex) {
+            LOGGER.warn("Could not register metrics MBean", ex);
+        }
+        if (FILE != null && PERIOD > 0) {
+            ((ScheduledExecutorService) Environment.getPool(Lane.BACKGROUND))
+                    .scheduleWithFixedDelay(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            dump();
+                        }
+
+                    }, PERIOD, PERIOD, TimeUnit.SECONDS);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static Counter counter(final String name, final String help,
+            final String... labels) {
+        final String key = key(name, labels);
+        Metric metric = METRICS.get(key);
+        if (metric == null) {
+            synchronized (METRICS) {
+                metric = METRICS.get(key);
+                if (metric == null) {
+                    metric = new Counter(name, help, labels);
+                    METRICS.put(key, metric);
+                }
+            }
+        }
+        return (Counter) metric;
+    }
+
+    public static Histogram histogram(final String name, final String help,
+            final String... labels) {
+        final String key = key(name, labels);
+        Metric metric = METRICS.get(key);
+        if (metric == null) {
+            synchronized (METRICS) {
+                metric = METRICS.get(key);
+                if (metric == null) {
+                    metric = new Histogram(name, help, labels);
+                    METRICS.put(key, metric);
+                }
+            }
+        }
+        return (Histogram) metric;
+    }
+
+    public static void gauge(final String name, final String help, final LongSupplier supplier,
+            final String... labels) {
+        METRICS.put(key(name, labels), new Gauge(name, help, labels, supplier));
+    }
+
+    public static void unregister(final String name, final String... labels) {
+        METRICS.remove(key(name, labels));
+    }
+
+    public static List<Metric> getMetrics(final String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected label name/value pairs");
+        }
+        final List<Metric> result = new ArrayList<>();
+        outer: for (final Metric metric : METRICS.values()) {
+            for (int i = 0; i < labels.length; i += 2) {
+                if (!labels[i + 1].equals(metric.getLabel(labels[i]))) {
+                    continue outer;
+                }
+            }
+            result.add(metric);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the job the current thread is working for, or clears it if null. Pipelines built by
+     * the thread while the job is set label their stage metrics with it, so that metrics of
+     * concurrent pipelines running in the same JVM can be told apart.
+     *
+     * @param job
+     *            the job identifier, null to clear it
+     */
+    public static void setJob(@Nullable final String job) {
+        if (job == null) {
+            JOB.remove();
+        } else {
+            JOB.set(job);
+        }
+    }
+
+    @Nullable
+    public static String getJob() {
+        return JOB.get();
+    }
+
+    public static String toJson() {
+        return toJson(METRICS.values());
+    }
+
+    public static String toJson(final Iterable<? extends Metric> metrics) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("[");
+        String separator = "\n";
+        for (final Metric metric : metrics) {
+            builder.append(separator).append("  {\"name\": \"").append(metric.name);
+            builder.append("\", \"type\": \"").append(metric.getType()).append("\"");
+            if (metric.labels.length > 0) {
+                builder.append(", \"labels\": {");
+                for (int i = 0; i < metric.labels.length; i += 2) {
+                    builder.append(i == 0 ? "" : ", ");
+                    builder.append('"').append(escape(metric.labels[i])).append("\": \"");
+                    builder.append(escape(metric.labels[i + 1])).append('"');
+                }
+                builder.append("}");
+            }
+            if (metric instanceof Histogram) {
+                final Histogram h = (Histogram) metric;
+                builder.append(", \"count\": ").append(h.getCount());
+                builder.append(", \"sum\": ").append(h.getSum());
+                builder.append(", \"max\": ").append(h.getMax());
+                builder.append(", \"p50\": ").append(h.getQuantile(0.5));
+                builder.append(", \"p90\": ").append(h.getQuantile(0.9));
+                builder.append(", \"p99\": ").append(h.getQuantile(0.99));
+            } else {
+                builder.append(", \"value\": ").append(metric.getValue());
+            }
+            builder.append("}");
+            separator = ",\n";
+        }
+        builder.append("\n]\n");
+        return builder.toString();
+    }
+
+    public static String toPrometheus() {
+        final StringBuilder builder = new StringBuilder();
+        String lastName = null;
+        for (final Metric metric : METRICS.values()) {
+            if (!metric.name.equals(lastName)) {
+                builder.append("# HELP ").append(metric.name).append(' ').append(metric.help);
+                builder.append("\n# TYPE ").append(metric.name).append(' ');
+                builder.append(metric.getType()).append('\n');
+                lastName = metric.name;
+            }
+            if (metric instanceof Histogram) {
+                final Histogram h = (Histogram) metric;
+                for (final double q : new double[] { 0.5, 0.9, 0.99 }) {
+                    builder.append(metric.name);
+                    appendLabels(builder, metric.labels, "quantile", Double.toString(q));
+                    builder.append(' ').append(h.getQuantile(q)).append('\n');
+                }
+                builder.append(metric.name).append("_sum");
+                appendLabels(builder, metric.labels);
+                builder.append(' ').append(h.getSum()).append('\n');
+                builder.append(metric.name).append("_count");
+                appendLabels(builder, metric.labels);
+                builder.append(' ').append(h.getCount()).append('\n');
+            } else {
+                builder.append(metric.name);
+                appendLabels(builder, metric.labels);
+                builder.append(' ').append(metric.getValue()).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    public static void dump() {
+        if (FILE != null) {
+            dump(FILE);
+        }
+    }
+
+    public static void dump(final String location) {
+        final Path path = Paths.get(location);
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        final String text = location.endsWith(".json") ? toJson() : toPrometheus();
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(text);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            LOGGER.warn("Could not write metrics to " + location, ex);
+        }
+    }
+
+    private static String key(final String name, final String... labels) {
+        Objects.requireNonNull(name);
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected label name/value pairs");
+        }
+        final StringBuilder builder = new StringBuilder(name);
+        appendLabels(builder, labels);
+        return builder.toString();
+    }
+
+    private static void appendLabels(final StringBuilder builder, final String[] labels,
+            final String... extraLabels) {
+        if (labels.length + extraLabels.length > 0) {
+            builder.append('{');
+            for (int i = 0; i < labels.length + extraLabels.length; i += 2) {
+                final String[] array = i < labels.length ? labels : extraLabels;
+                final int index = i < labels.length ? i : i - labels.length;
+                builder.append(i == 0 ? "" : ",").append(array[index]).append("=\"");
+                builder.append(escape(array[index + 1])).append('"');
+            }
+            builder.append('}');
+        }
+    }
+
+    private static String escape(final String string) {
+        return string.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public abstract static class Metric {
+
+        final String name;
+
+        final String help;
+
+        final String[] labels;
+
+        Metric(final String name, final String help, final String[] labels) {
+            this.name = Objects.requireNonNull(name);
+            this.help = Objects.requireNonNull(help);
+            this.labels = labels.clone();
+        }
+
+        public final String getName() {
+            return this.name;
+        }
+
+        public final String getHelp() {
+            return this.help;
+        }
+
+        public final String[] getLabels() {
+            return this.labels.clone();
+        }
+
+        @Nullable
+        public final String getLabel(final String name) {
+            for (int i = 0; i < this.labels.length; i += 2) {
+                if (this.labels[i].equals(name)) {
+                    return this.labels[i + 1];
+                }
+            }
+            return null;
+        }
+
+        public abstract long getValue();
+
+        abstract String getType();
+
+        @Override
+        public String toString() {
+            return key(this.name, this.labels) + " " + getValue();
+        }
+
+    }
+
+    public static final class Counter extends Metric {
+
+        private final LongAdder adder;
+
+        Counter(final String name, final String help, final String[] labels) {
+            super(name, help, labels);
+            this.adder = new LongAdder();
+        }
+
+        public void increment() {
+            this.adder.increment();
+        }
+
+        public void add(final long delta) {
+            this.adder.add(delta);
+        }
+
+        @Override
+        public long getValue() {
+            return this.adder.sum();
+        }
+
+        @Override
+        String getType() {
+            return "counter";
+        }
+
+    }
+
+    private static final class Gauge extends Metric {
+
+        private final LongSupplier supplier;
+
+        Gauge(final String name, final String help, final String[] labels,
+                final LongSupplier supplier) {
+            super(name, help, labels);
+            this.supplier = Objects.requireNonNull(supplier);
+        }
+
+        @Override
+        public long getValue() {
+            try {
+                return this.supplier.getAsLong();
+            } catch (final Throwable ex) {
+                return -1L;
+            }
+        }
+
+        @Override
+        String getType() {
+            return "gauge";
+        }
+
+    }
+
+    public static final class Histogram extends Metric {
+
+        // Log-linear buckets: values < 16 have their own bucket; larger values are grouped in
+        // 16 sub-buckets per power of 2 (at most 1/16 relative error)
+
+        private static final int SUB_BUCKETS = 16;
+
+        private final AtomicLongArray counts;
+
+        private final LongAdder sum;
+
+        private volatile long max;
+
+        Histogram(final String name, final String help, final String[] labels) {
+            super(name, help, labels);
+            this.counts = new AtomicLongArray(64 * SUB_BUCKETS);
+            this.sum = new LongAdder();
+            this.max = 0L;
+        }
+
+        public void record(final long value) {
+            final long v = Math.max(0L, value);
+            this.counts.incrementAndGet(index(v));
+            this.sum.add(v);
+            if (v > this.max) {
+                synchronized (this) {
+                    this.max = Math.max(this.max, v);
+                }
+            }
+        }
+
+        public long getCount() {
+            long count = 0L;
+            for (int i = 0; i < this.counts.length(); ++i) {
+                count += this.counts.get(i);
+            }
+            return count;
+        }
+
+        public long getSum() {
+            return this.sum.sum();
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        public long getQuantile(final double quantile) {
+            final long count = getCount();
+            final long rank = (long) Math.ceil(quantile * count);
+            long seen = 0L;
+            for (int i = 0; i < this.counts.length(); ++i) {
+                seen += this.counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(this.max, upperBound(i));
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public long getValue() {
+            return getCount();
+        }
+
+        @Override
+        String getType() {
+            return "summary";
+        }
+
+        static int index(final long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            final int exp = 63 - Long.numberOfLeadingZeros(value); // >= 4
+            final int sub = (int) (value >>> exp - 4) & SUB_BUCKETS - 1;
+            return (exp - 3) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBound(final int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            final int exp = index / SUB_BUCKETS + 3;
+            final long sub = index % SUB_BUCKETS;
+            return (SUB_BUCKETS + sub + 1 << exp - 4) - 1;
+        }
+
+    }
+
+    private static final class MBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final Metric metric = METRICS.get(attribute);
+            if (metric == null) {
+                throw new AttributeNotFoundException(attribute);
+            } else if (metric instanceof Histogram) {
+                final Histogram h = (Histogram) metric;
+                return String.format("count=%d sum=%d max=%d p50=%d p90=%d p99=%d",
+                        h.getCount(), h.getSum(), h.getMax(), h.getQuantile(0.5),
+                        h.getQuantile(0.9), h.getQuantile(0.99));
+            }
+            return metric.getValue();
+        }
+
+        @Override
+        public AttributeList getAttributes(final String[] attributes) {
+            final AttributeList list = new AttributeList();
+            for (final String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (final AttributeNotFoundException ex) {
+                    // ignore
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(final String actionName, final Object[] params,
+                final String[] signature) {
+            throw new UnsupportedOperationException("No operations available");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (final Map.Entry<String, Metric> entry : METRICS.entrySet()) {
+                final boolean histogram = entry.getValue() instanceof Histogram;
+                attributes.add(new MBeanAttributeInfo(entry.getKey(), histogram ? String.class
+                        .getName() : Long.class.getName(), entry.getValue().help, true, false,
+                        false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "RDFpro runtime metrics",
+                    attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+                    new MBeanOperationInfo[0], null);
+        }
+
+    }
+
+}
@@ -93,12 +93,52 @@ public abstract class QuadModel extends AbstractCollection<Statement> implements
      */
     public static QuadModel wrap(final org.openrdf.sail.SailConnection connection,
             final boolean trackChanges) {
-        return new QuadModelSailAdapter(connection, trackChanges);
+        return new QuadModelSailAdapter(connection, trackChanges, 0);
+    }
+
+    /**
+     * Returns a {@code QuadModel} view of the supplied {@code SailConnection}, caching the
+     * results of statement lookups. The cache is invalidated as the model is modified through
+     * the view, but is not aware of modifications performed directly on the connection.
+     *
+     * @param connection
+     *            the connection to wrap
+     * @param trackChanges
+     *            true, if addition/deletion operations should return true or false based on
+     *            whether the model was actually changed by the operation
+     * @param cacheSize
+     *            the maximum number of statements to cache; zero disables caching
+     * @return the created {@code QuadModel} view
+     */
+    public static QuadModel wrap(final org.openrdf.sail.SailConnection connection,
+            final boolean trackChanges, final int cacheSize) {
+        return new QuadModelSailAdapter(connection, trackChanges, cacheSize);
     }
 
     public static QuadModel wrap(final org.openrdf.repository.RepositoryConnection connection,
             final boolean trackChanges) {
-        return new QuadModelRepositoryAdapter(connection, trackChanges);
+        return new QuadModelRepositoryAdapter(connection, trackChanges, -1);
+    }
+
+    /**
+     * Returns a {@code QuadModel} view of the supplied {@code RepositoryConnection}, caching the
+     * results of statement lookups. If a negative cache size is supplied, caching is enabled
+     * only for remote (HTTP or SPARQL) repositories, using the size specified by property
+     * {@code rdfpro.model.cache.size}.
+     *
+     * @param connection
+     *            the connection to wrap
+     * @param trackChanges
+     *            true, if addition/deletion operations should return true or false based on
+     *            whether the model was actually changed by the operation
+     * @param cacheSize
+     *            the maximum number of statements to cache; zero disables caching, a negative
+     *            value selects the default behaviour
+     * @return the created {@code QuadModel} view
+     */
+    public static QuadModel wrap(final org.openrdf.repository.RepositoryConnection connection,
+            final boolean trackChanges, final int cacheSize) {
+        return new QuadModelRepositoryAdapter(connection, trackChanges, cacheSize);
     }
 
     public static QuadModel wrap(final Model model) {
@@ -138,6 +178,11 @@ public abstract class QuadModel extends AbstractCollection<Statement> implements
                 getEvaluationStatistics(), getValueNormalizer());
     }
 
+    protected void doPrefetch(final StatementPattern pattern,
+            final Iterable<? extends BindingSet> bindings) {
+        // nothing to prefetch by default
+    }
+
     protected Value doNormalize(@Nullable final Value value) {
         return value;
     }
@@ -265,6 +310,22 @@ public abstract class QuadModel extends AbstractCollection<Statement> implements
         return doEvaluate(Objects.requireNonNull(expr), dataset, bindings);
     }
 
+    /**
+     * Hints the model that the supplied statement pattern is going to be looked up for each of
+     * the supplied bindings, e.g., in the inner loop of a join. Models wrapping remote stores may
+     * use the hint to retrieve the matching statements of all the lookups with a single request.
+     * Lookups leaving subject, predicate and object all unbound are ignored.
+     *
+     * @param pattern
+     *            the statement pattern that will be looked up
+     * @param bindings
+     *            the bindings the pattern will be instantiated with
+     */
+    public final void prefetch(final StatementPattern pattern,
+            final Iterable<? extends BindingSet> bindings) {
+        doPrefetch(Objects.requireNonNull(pattern), Objects.requireNonNull(bindings));
+    }
+
     @Override
     public final boolean contains(@Nullable final Object object) {
         if (object instanceof Statement) {
@@ -958,6 +1019,12 @@ public abstract class QuadModel extends AbstractCollection<Statement> implements
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        protected void doPrefetch(final StatementPattern pattern,
+                final Iterable<? extends BindingSet> bindings) {
+            this.model.doPrefetch(pattern, bindings);
+        }
+
         @Override
         protected Iterator<BindingSet> doEvaluate(final TupleExpr expr,
                 @Nullable final Dataset dataset, @Nullable final BindingSet bindings) {
@@ -0,0 +1,333 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.Var;
+
+/**
+ * Size-bounded LRU cache of the statements matching lookup patterns, used by the Sail and
+ * Repository {@code QuadModel} adapters to save round-trips to the wrapped store.
+ * <p>
+ * Patterns are cached only if at least one of subject, predicate and object is bound and if at
+ * most one context is specified; patterns producing more than 1/16 of the cache capacity are
+ * never cached. Entries are invalidated selectively when statements are added, while removals
+ * not fully specifying the removed quads clear the whole cache. A version counter prevents
+ * results loaded concurrently to a modification from being cached.
+ * </p>
+ */
+final class QuadModelCache {
+
+    private final Map<Key, Statement[]> entries;
+
+    private final int maxSize;
+
+    private final int maxEntrySize;
+
+    private int size;
+
+    private long version;
+
+    private long hits;
+
+    private long misses;
+
+    QuadModelCache(final int maxSize) {
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true);
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.max(1, maxSize / 16);
+    }
+
+    public Iterator<Statement> iterator(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj, final Resource[] ctxs, final Loader loader) {
+
+        final Key key = Key.create(subj, pred, obj, ctxs);
+        if (key == null) {
+            return loader.load(subj, pred, obj, ctxs);
+        }
+
+        final long version;
+        synchronized (this) {
+            final Statement[] stmts = this.entries.get(key);
+            if (stmts != null) {
+                ++this.hits;
+                return Arrays.asList(stmts).iterator();
+            }
+            ++this.misses;
+            version = this.version;
+        }
+
+        final Iterator<Statement> iterator = loader.load(subj, pred, obj, ctxs);
+        final List<Statement> list = new ArrayList<>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+            if (list.size() > this.maxEntrySize) {
+                return Iterators.concat(Arrays.<Iterator<Statement>>asList(list.iterator(),
+                        iterator).iterator());
+            }
+        }
+
+        final Statement[] stmts = list.toArray(new Statement[list.size()]);
+        synchronized (this) {
+            put(key, stmts, version);
+        }
+        return Arrays.asList(stmts).iterator();
+    }
+
+    public void prefetch(final Iterable<Value[]> quads, final Loader loader) {
+
+        // Identify the lookups not in the cache; nothing to do if only one is missing, as the
+        // subsequent call to iterator() will be as efficient as a multi-get
+        final Map<Key, List<Statement>> buckets = new LinkedHashMap<>();
+        final long version;
+        synchronized (this) {
+            for (final Value[] quad : quads) {
+                final Key key = Key.create(quad[0], quad[1], quad[2], quad[3], quad[3] == null);
+                if (key != null && !this.entries.containsKey(key)) {
+                    buckets.put(key, new ArrayList<>());
+                }
+            }
+            version = this.version;
+        }
+        if (buckets.size() < 2) {
+            return;
+        }
+
+        // Collect the distinct key shapes, so to map each returned statement to its buckets
+        final List<Key> shapes = new ArrayList<>();
+        final List<Value[]> lookups = new ArrayList<>(buckets.size());
+        for (final Key key : buckets.keySet()) {
+            lookups.add(new Value[] { key.subj, key.pred, key.obj,
+                    key.anyContext ? null : key.ctx });
+            boolean found = false;
+            for (final Key shape : shapes) {
+                found |= shape.mask() == key.mask() && shape.anyContext == key.anyContext;
+            }
+            if (!found) {
+                shapes.add(key);
+            }
+        }
+
+        // Perform the multi-get, distributing statements among lookup buckets
+        final Iterator<Statement> iterator = loader.loadAll(lookups);
+        try {
+            while (iterator.hasNext()) {
+                final Statement stmt = iterator.next();
+                for (final Key shape : shapes) {
+                    final int mask = shape.mask();
+                    final Key key = Key.create((mask & 1) != 0 ? stmt.getSubject() : null,
+                            (mask & 2) != 0 ? stmt.getPredicate() : null,
+                            (mask & 4) != 0 ? stmt.getObject() : null, stmt.getContext(),
+                            shape.anyContext);
+                    final List<Statement> bucket = key == null ? null : buckets.get(key);
+                    if (bucket != null && bucket.size() <= this.maxEntrySize) {
+                        bucket.add(stmt);
+                    }
+                }
+            }
+        } finally {
+            IO.closeQuietly(iterator);
+        }
+
+        synchronized (this) {
+            for (final Map.Entry<Key, List<Statement>> entry : buckets.entrySet()) {
+                final List<Statement> list = entry.getValue();
+                if (list.size() <= this.maxEntrySize) {
+                    put(entry.getKey(), list.toArray(new Statement[list.size()]), version);
+                }
+            }
+        }
+    }
+
+    public static List<Value[]> lookups(final StatementPattern pattern,
+            final Iterable<? extends BindingSet> bindings) {
+        final Set<List<Value>> lookups = new LinkedHashSet<>();
+        for (final BindingSet b : bindings) {
+            final Value s = resolve(pattern.getSubjectVar(), b);
+            final Value p = resolve(pattern.getPredicateVar(), b);
+            final Value o = resolve(pattern.getObjectVar(), b);
+            final Value c = resolve(pattern.getContextVar(), b);
+            lookups.add(Arrays.asList(s, p, o, c));
+        }
+        final List<Value[]> result = new ArrayList<>(lookups.size());
+        for (final List<Value> lookup : lookups) {
+            result.add(lookup.toArray(new Value[4]));
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Value resolve(@Nullable final Var var, final BindingSet bindings) {
+        return var == null ? null : var.hasValue() ? var.getValue() : bindings.getValue(var
+                .getName());
+    }
+
+    public synchronized void invalidate(final Resource subj, final URI pred, final Value obj,
+            final Resource[] ctxs) {
+        if (subj == null || pred == null || obj == null || ctxs.length == 0) {
+            invalidateAll();
+            return;
+        }
+        ++this.version;
+        for (final Resource ctx : ctxs) {
+            for (int mask = 1; mask < 8; ++mask) {
+                final Resource s = (mask & 1) != 0 ? subj : null;
+                final URI p = (mask & 2) != 0 ? pred : null;
+                final Value o = (mask & 4) != 0 ? obj : null;
+                remove(Key.create(s, p, o, null, true));
+                remove(Key.create(s, p, o, ctx, false));
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        ++this.version;
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.entries.size() + " entries, " + this.size + "/" + this.maxSize
+                + " statements, " + this.hits + " hits, " + this.misses + " misses";
+    }
+
+    private void put(final Key key, final Statement[] stmts, final long version) {
+        if (version != this.version) {
+            return; // store modified in the meanwhile
+        }
+        final Statement[] oldStmts = this.entries.put(key, stmts);
+        this.size += 1 + stmts.length - (oldStmts == null ? 0 : 1 + oldStmts.length);
+        final Iterator<Statement[]> iterator = this.entries.values().iterator();
+        while (this.size > this.maxSize && this.entries.size() > 1) {
+            this.size -= 1 + iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    private void remove(@Nullable final Key key) {
+        final Statement[] stmts = key == null ? null : this.entries.remove(key);
+        if (stmts != null) {
+            this.size -= 1 + stmts.length;
+        }
+    }
+
+    interface Loader {
+
+        Iterator<Statement> load(@Nullable Resource subj, @Nullable URI pred,
+                @Nullable Value obj, Resource[] ctxs);
+
+        /**
+         * Retrieves, possibly with a single request, all the statements matching the supplied
+         * lookups. Each lookup is a {@code (subj, pred, obj, ctx)} array where null components
+         * are wildcards and a null context means any context. The returned iterator may
+         * include statements not matching any lookup, which are then ignored.
+         */
+        Iterator<Statement> loadAll(List<Value[]> lookups);
+
+    }
+
+    private static final class Key {
+
+        @Nullable
+        final Resource subj;
+
+        @Nullable
+        final URI pred;
+
+        @Nullable
+        final Value obj;
+
+        @Nullable
+        final Resource ctx;
+
+        final boolean anyContext;
+
+        private final int hash;
+
+        private Key(@Nullable final Resource subj, @Nullable final URI pred,
+                @Nullable final Value obj, @Nullable final Resource ctx, final boolean anyContext) {
+            this.subj = subj;
+            this.pred = pred;
+            this.obj = obj;
+            this.ctx = ctx;
+            this.anyContext = anyContext;
+            this.hash = Objects.hash(subj, pred, obj, ctx, anyContext);
+        }
+
+        @Nullable
+        static Key create(@Nullable final Resource subj, @Nullable final URI pred,
+                @Nullable final Value obj, final Resource[] ctxs) {
+            return ctxs.length > 1 ? null : create(subj, pred, obj,
+                    ctxs.length == 0 ? null : ctxs[0], ctxs.length == 0);
+        }
+
+        @Nullable
+        static Key create(@Nullable final Value subj, @Nullable final Value pred,
+                @Nullable final Value obj, @Nullable final Value ctx, final boolean anyContext) {
+            if (subj == null && pred == null && obj == null || subj != null
+                    && !(subj instanceof Resource) || pred != null && !(pred instanceof URI)
+                    || ctx != null && !(ctx instanceof Resource)) {
+                return null;
+            }
+            return new Key((Resource) subj, (URI) pred, obj, anyContext ? null : (Resource) ctx,
+                    anyContext);
+        }
+
+        int mask() {
+            return (this.subj != null ? 1 : 0) | (this.pred != null ? 2 : 0)
+                    | (this.obj != null ? 4 : 0);
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) object;
+            return this.hash == other.hash && this.anyContext == other.anyContext
+                    && Objects.equals(this.subj, other.subj)
+                    && Objects.equals(this.pred, other.pred)
+                    && Objects.equals(this.obj, other.obj)
+                    && Objects.equals(this.ctx, other.ctx);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+}
@@ -13,13 +13,16 @@
  */
 package eu.fbk.rdfpro.util;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import org.openrdf.model.BNode;
 import org.openrdf.model.Namespace;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -34,6 +37,7 @@ import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.TupleQuery;
+import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.TupleExpr;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
@@ -47,9 +51,39 @@ final class QuadModelRepositoryAdapter extends QuadModel implements AutoCloseabl
 
     private final boolean trackChanges;
 
-    QuadModelRepositoryAdapter(final RepositoryConnection connection, final boolean trackChanges) {
+    @Nullable
+    private final QuadModelCache cache;
+
+    private final QuadModelCache.Loader loader;
+
+    QuadModelRepositoryAdapter(final RepositoryConnection connection, final boolean trackChanges,
+            final int cacheSize) {
         this.connection = Objects.requireNonNull(connection);
         this.trackChanges = trackChanges;
+        final int size = cacheSize >= 0 ? cacheSize : !isRemote(connection) ? 0 : Integer
+                .parseInt(Environment.getProperty("rdfpro.model.cache.size", "1000000"));
+        this.cache = size == 0 ? null : new QuadModelCache(size);
+        this.loader = new QuadModelCache.Loader() {
+
+            @Override
+            public Iterator<Statement> load(@Nullable final Resource subj,
+                    @Nullable final URI pred, @Nullable final Value obj, final Resource[] ctxs) {
+                return getStatements(subj, pred, obj, ctxs);
+            }
+
+            @Override
+            public Iterator<Statement> loadAll(final List<Value[]> lookups) {
+                return getStatements(lookups);
+            }
+
+        };
+    }
+
+    private static boolean isRemote(final RepositoryConnection connection) {
+        // Avoid depending on the HTTP and SPARQL repository modules just to check the class
+        final String name = connection.getRepository().getClass().getName();
+        return name.startsWith("org.openrdf.repository.http.")
+                || name.startsWith("org.openrdf.repository.sparql.");
     }
 
     @Override
@@ -138,6 +172,55 @@ final class QuadModelRepositoryAdapter extends QuadModel implements AutoCloseabl
     @Override
     protected Iterator<Statement> doIterator(@Nullable final Resource subj,
             @Nullable final URI pred, @Nullable final Value obj, final Resource[] ctxs) {
+        return this.cache == null ? getStatements(subj, pred, obj, ctxs) //
+                : this.cache.iterator(subj, pred, obj, ctxs, this.loader);
+    }
+
+    @Override
+    protected void doPrefetch(final StatementPattern pattern,
+            final Iterable<? extends BindingSet> bindings) {
+        if (this.cache != null) {
+            // Blank nodes cannot be referenced in a query, so they are looked up one at a time
+            final List<Value[]> lookups = QuadModelCache.lookups(pattern, bindings);
+            final List<Value[]> queryableLookups = new ArrayList<>(lookups.size());
+            outer: for (final Value[] lookup : lookups) {
+                for (final Value value : lookup) {
+                    if (value instanceof BNode) {
+                        continue outer;
+                    }
+                }
+                queryableLookups.add(lookup);
+            }
+            this.cache.prefetch(queryableLookups, this.loader);
+        }
+    }
+
+    @Override
+    protected boolean doAdd(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj, final Resource[] ctxs) {
+        try {
+            return addUncached(subj, pred, obj, ctxs);
+        } finally {
+            if (this.cache != null) {
+                this.cache.invalidate(subj, pred, obj, ctxs.length == 0 ? CTX_DEFAULT : ctxs);
+            }
+        }
+    }
+
+    @Override
+    protected boolean doRemove(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj, final Resource[] ctxs) {
+        try {
+            return removeUncached(subj, pred, obj, ctxs);
+        } finally {
+            if (this.cache != null) {
+                this.cache.invalidate(subj, pred, obj, ctxs);
+            }
+        }
+    }
+
+    private Iterator<Statement> getStatements(@Nullable final Resource subj,
+            @Nullable final URI pred, @Nullable final Value obj, final Resource[] ctxs) {
         try {
             return Iterators.forIteration(this.connection.getStatements(subj, pred, obj, false,
                     ctxs));
@@ -146,8 +229,53 @@ final class QuadModelRepositoryAdapter extends QuadModel implements AutoCloseabl
         }
     }
 
-    @Override
-    protected boolean doAdd(@Nullable final Resource subj, @Nullable final URI pred,
+    private Iterator<Statement> getStatements(final List<Value[]> lookups) {
+
+        // Lookups on any context follow the approach of SPARQLConnection, matching the default
+        // graph and then retrieving the named graphs (if any) each triple belongs to
+        final StringBuilder anyBuilder = new StringBuilder();
+        final StringBuilder ctxBuilder = new StringBuilder();
+        for (final Value[] lookup : lookups) {
+            final StringBuilder builder = lookup[3] == null ? anyBuilder : ctxBuilder;
+            builder.append("  (");
+            for (int i = 0; i < (lookup[3] == null ? 3 : 4); ++i) {
+                builder.append(lookup[i] == null ? "UNDEF" : Statements.formatValue(lookup[i]));
+                builder.append(i < 3 ? " " : "");
+            }
+            builder.append(")\n");
+        }
+
+        final List<Iterator<Statement>> iterators = new ArrayList<>(2);
+        if (anyBuilder.length() > 0) {
+            iterators.add(query("SELECT DISTINCT ?s ?p ?o ?c\nWHERE {\n VALUES (?s ?p ?o) {\n"
+                    + anyBuilder + " }\n ?s ?p ?o .\n OPTIONAL { GRAPH ?c { ?s ?p ?o } }\n}"));
+        }
+        if (ctxBuilder.length() > 0) {
+            iterators.add(query("SELECT ?s ?p ?o ?c\nWHERE {\n VALUES (?s ?p ?o ?c) {\n"
+                    + ctxBuilder + " }\n GRAPH ?c { ?s ?p ?o }\n}"));
+        }
+        return Iterators.concat(iterators.iterator());
+    }
+
+    private Iterator<Statement> query(final String queryString) {
+        try {
+            final TupleQuery query = this.connection.prepareTupleQuery(QueryLanguage.SPARQL,
+                    queryString);
+            return Iterators.transform(Iterators.forIteration(query.evaluate()),
+                    (final BindingSet b) -> {
+                        final Resource s = (Resource) b.getValue("s");
+                        final URI p = (URI) b.getValue("p");
+                        final Value o = b.getValue("o");
+                        final Resource c = (Resource) b.getValue("c");
+                        return c == null ? Statements.VALUE_FACTORY.createStatement(s, p, o)
+                                : Statements.VALUE_FACTORY.createStatement(s, p, o, c);
+                    });
+        } catch (final QueryEvaluationException | MalformedQueryException | RepositoryException ex) {
+            throw new ModelException(ex);
+        }
+    }
+
+    private boolean addUncached(@Nullable final Resource subj, @Nullable final URI pred,
             @Nullable final Value obj, final Resource[] ctxs) {
         try {
             if (!this.trackChanges) {
@@ -181,8 +309,7 @@ final class QuadModelRepositoryAdapter extends QuadModel implements AutoCloseabl
         }
     }
 
-    @Override
-    protected boolean doRemove(@Nullable final Resource subj, @Nullable final URI pred,
+    private boolean removeUncached(@Nullable final Resource subj, @Nullable final URI pred,
             @Nullable final Value obj, final Resource[] ctxs) {
         try {
             if (!this.trackChanges) {
@@ -13,8 +13,10 @@
  */
 package eu.fbk.rdfpro.util;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -29,7 +31,12 @@ import org.openrdf.model.impl.NamespaceImpl;
 import org.openrdf.model.util.ModelException;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.BindingSetAssignment;
+import org.openrdf.query.algebra.Join;
+import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.evaluation.QueryBindingSet;
 import org.openrdf.query.impl.EmptyBindingSet;
 import org.openrdf.sail.NotifyingSailConnection;
 import org.openrdf.sail.SailConnection;
@@ -42,6 +49,8 @@ final class QuadModelSailAdapter extends QuadModel implements AutoCloseable {
 
     private static final long serialVersionUID = 1L;
 
+    private static final String[] VAR_NAMES = new String[] { "s", "p", "o", "c" };
+
     private final SailConnection connection;
 
     private final boolean trackChanges;
@@ -50,9 +59,30 @@ final class QuadModelSailAdapter extends QuadModel implements AutoCloseable {
 
     private long removeCounter;
 
-    QuadModelSailAdapter(final SailConnection connection, final boolean trackChanges) {
+    @Nullable
+    private final QuadModelCache cache;
+
+    private final QuadModelCache.Loader loader;
+
+    QuadModelSailAdapter(final SailConnection connection, final boolean trackChanges,
+            final int cacheSize) {
         this.connection = Objects.requireNonNull(connection);
         this.trackChanges = trackChanges;
+        this.cache = cacheSize <= 0 ? null : new QuadModelCache(cacheSize);
+        this.loader = new QuadModelCache.Loader() {
+
+            @Override
+            public Iterator<Statement> load(@Nullable final Resource subj,
+                    @Nullable final URI pred, @Nullable final Value obj, final Resource[] ctxs) {
+                return getStatements(subj, pred, obj, ctxs);
+            }
+
+            @Override
+            public Iterator<Statement> loadAll(final List<Value[]> lookups) {
+                return getStatements(lookups);
+            }
+
+        };
         if (trackChanges && connection instanceof NotifyingSailConnection) {
             this.addCounter = 0;
             this.removeCounter = 0;
@@ -162,6 +192,44 @@ final class QuadModelSailAdapter extends QuadModel implements AutoCloseable {
     @Override
     protected Iterator<Statement> doIterator(@Nullable final Resource subj,
             @Nullable final URI pred, @Nullable final Value obj, final Resource[] ctxs) {
+        return this.cache == null ? getStatements(subj, pred, obj, ctxs) //
+                : this.cache.iterator(subj, pred, obj, ctxs, this.loader);
+    }
+
+    @Override
+    protected void doPrefetch(final StatementPattern pattern,
+            final Iterable<? extends BindingSet> bindings) {
+        if (this.cache != null) {
+            this.cache.prefetch(QuadModelCache.lookups(pattern, bindings), this.loader);
+        }
+    }
+
+    @Override
+    protected boolean doAdd(final Resource subj, final URI pred, final Value obj,
+            final Resource[] ctxs) {
+        try {
+            return addUncached(subj, pred, obj, ctxs);
+        } finally {
+            if (this.cache != null) {
+                this.cache.invalidate(subj, pred, obj, ctxs.length == 0 ? CTX_DEFAULT : ctxs);
+            }
+        }
+    }
+
+    @Override
+    protected boolean doRemove(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj, final Resource[] ctxs) {
+        try {
+            return removeUncached(subj, pred, obj, ctxs);
+        } finally {
+            if (this.cache != null) {
+                this.cache.invalidate(subj, pred, obj, ctxs);
+            }
+        }
+    }
+
+    private Iterator<Statement> getStatements(@Nullable final Resource subj,
+            @Nullable final URI pred, @Nullable final Value obj, final Resource[] ctxs) {
         try {
             return Iterators.forIteration(this.connection.getStatements(subj, pred, obj, false,
                     ctxs));
@@ -170,8 +238,43 @@ final class QuadModelSailAdapter extends QuadModel implements AutoCloseable {
         }
     }
 
-    @Override
-    protected boolean doAdd(final Resource subj, final URI pred, final Value obj,
+    private Iterator<Statement> getStatements(final List<Value[]> lookups) {
+
+        // Evaluate a join between the lookups (as a VALUES clause) and a quad pattern
+        final List<BindingSet> bindingSets = new ArrayList<>(lookups.size());
+        final Set<String> bindingNames = new HashSet<>();
+        for (final Value[] lookup : lookups) {
+            final QueryBindingSet bindingSet = new QueryBindingSet();
+            for (int i = 0; i < 4; ++i) {
+                if (lookup[i] != null) {
+                    bindingSet.addBinding(VAR_NAMES[i], lookup[i]);
+                    bindingNames.add(VAR_NAMES[i]);
+                }
+            }
+            bindingSets.add(bindingSet);
+        }
+        final BindingSetAssignment values = new BindingSetAssignment();
+        values.setBindingNames(bindingNames);
+        values.setBindingSets(bindingSets);
+        final TupleExpr expr = new Join(values, new StatementPattern(new Var(VAR_NAMES[0]),
+                new Var(VAR_NAMES[1]), new Var(VAR_NAMES[2]), new Var(VAR_NAMES[3])));
+
+        try {
+            return Iterators.transform(Iterators.forIteration(this.connection.evaluate(expr,
+                    null, EmptyBindingSet.getInstance(), false)), (final BindingSet b) -> {
+                final Resource s = (Resource) b.getValue(VAR_NAMES[0]);
+                final URI p = (URI) b.getValue(VAR_NAMES[1]);
+                final Value o = b.getValue(VAR_NAMES[2]);
+                final Resource c = (Resource) b.getValue(VAR_NAMES[3]);
+                return c == null ? Statements.VALUE_FACTORY.createStatement(s, p, o)
+                        : Statements.VALUE_FACTORY.createStatement(s, p, o, c);
+            });
+        } catch (final SailException ex) {
+            throw new ModelException(ex);
+        }
+    }
+
+    private boolean addUncached(final Resource subj, final URI pred, final Value obj,
             final Resource[] ctxs) {
         try {
             if (!this.trackChanges) {
@@ -205,8 +308,7 @@ final class QuadModelSailAdapter extends QuadModel implements AutoCloseable {
         }
     }
 
-    @Override
-    protected boolean doRemove(@Nullable final Resource subj, @Nullable final URI pred,
+    private boolean removeUncached(@Nullable final Resource subj, @Nullable final URI pred,
             @Nullable final Value obj, final Resource[] ctxs) {
         try {
             if (!this.trackChanges) {
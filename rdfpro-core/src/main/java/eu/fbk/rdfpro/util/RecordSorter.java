@@ -0,0 +1,441 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process external merge sort of binary records, used by {@link Sorter} in place of GNU sort.
+ * <p>
+ * Each record is associated to a fixed-width normalized key consisting of its first 16 bytes
+ * (zero padded), stored as two big-endian {@code long}s next to the record offset. Comparing two
+ * records thus amounts to two unsigned {@code long} comparisons, with a byte-wise comparison of
+ * the remaining bytes only for records sharing the same 16 bytes prefix. As {@code Sorter}
+ * records never contain zero bytes, the resulting order is the same byte-wise order produced by
+ * {@code sort -z} with {@code LC_ALL=C}.
+ * </p>
+ * <p>
+ * Records are accumulated in per-thread {@link Run}s; full runs are sorted and spilled to
+ * temporary files, while runs still in memory at the end are sorted in place. Sorted runs are
+ * then merged with a priority queue, optionally removing duplicates.
+ * </p>
+ */
+final class RecordSorter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordSorter.class);
+
+    private static final Metrics.Counter SPILLED_BYTES = Metrics.counter(
+            "rdfpro_sort_spill_bytes_total", "Number of bytes spilled to disk by sorters",
+            "mode", "binary");
+
+    private final boolean deduplicate;
+
+    private final int runSize;
+
+    private final List<Cursor> cursors;
+
+    private final List<Path> files;
+
+    @Nullable
+    private PriorityQueue<Cursor> queue;
+
+    @Nullable
+    private byte[] last;
+
+    private int lastLength;
+
+    RecordSorter(final boolean deduplicate, final int runSize) {
+        this.deduplicate = deduplicate;
+        this.runSize = runSize;
+        this.cursors = new ArrayList<>();
+        this.files = new ArrayList<>();
+        this.queue = null;
+        this.last = null;
+        this.lastLength = -1;
+    }
+
+    public Run newRun() {
+        return new Run();
+    }
+
+    public synchronized void merge() throws IOException {
+        if (this.queue != null) {
+            throw new IllegalStateException();
+        }
+        this.queue = new PriorityQueue<>(Math.max(1, this.cursors.size()));
+        for (final Cursor cursor : this.cursors) {
+            if (cursor.advance()) {
+                this.queue.add(cursor);
+            }
+        }
+        LOGGER.debug("Merging {} sorted runs ({} spilled)", this.cursors.size(),
+                this.files.size());
+    }
+
+    /**
+     * Copies the next record in sort order to the supplied buffer, which is reallocated if too
+     * small. Returns the new buffer (or null if there are no more records) and stores the
+     * record length in {@code length[0]}.
+     */
+    @Nullable
+    public synchronized byte[] next(@Nullable byte[] buffer, final int[] length)
+            throws IOException {
+        if (this.queue == null) {
+            throw new IllegalStateException();
+        }
+        while (true) {
+            final Cursor cursor = this.queue.poll();
+            if (cursor == null) {
+                return null;
+            }
+            final byte[] data = cursor.data;
+            final int offset = cursor.offset;
+            final int len = cursor.length;
+            final boolean duplicate = this.deduplicate && this.last != null
+                    && compare(this.last, 0, this.lastLength, data, offset, len) == 0;
+            if (!duplicate) {
+                if (buffer == null || buffer.length < len) {
+                    buffer = new byte[Math.max(len, 256)];
+                }
+                System.arraycopy(data, offset, buffer, 0, len);
+                length[0] = len;
+                if (this.deduplicate) {
+                    if (this.last == null || this.last.length < len) {
+                        this.last = new byte[Math.max(len, 256)];
+                    }
+                    System.arraycopy(data, offset, this.last, 0, len);
+                    this.lastLength = len;
+                }
+            }
+            if (cursor.advance()) {
+                this.queue.add(cursor);
+            }
+            if (!duplicate) {
+                return buffer;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (final Cursor cursor : this.cursors) {
+            cursor.close();
+        }
+        this.cursors.clear();
+        for (final Path file : this.files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (final Throwable ex) {
+                LOGGER.warn("Could not delete temporary sort file " + file, ex);
+            }
+        }
+        this.files.clear();
+        this.queue = null;
+    }
+
+    private synchronized void register(final Cursor cursor, @Nullable final Path file) {
+        this.cursors.add(cursor);
+        if (file != null) {
+            this.files.add(file);
+        }
+    }
+
+    static long key(final byte[] data, final int offset, final int length, final int index) {
+        long key = 0L;
+        final int start = offset + index;
+        final int end = Math.min(start + 8, offset + length);
+        for (int i = start; i < end; ++i) {
+            key = key << 8 | data[i] & 0xFF;
+        }
+        return key << 8 * (8 - Math.max(0, end - start));
+    }
+
+    static int compare(final byte[] data1, final int offset1, final int length1,
+            final byte[] data2, final int offset2, final int length2) {
+        final int len = Math.min(length1, length2);
+        for (int i = 0; i < len; ++i) {
+            final int b1 = data1[offset1 + i] & 0xFF;
+            final int b2 = data2[offset2 + i] & 0xFF;
+            if (b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        return length1 - length2;
+    }
+
+    final class Run {
+
+        private byte[] data;
+
+        private int size;
+
+        private int[] offsets;
+
+        private long[] keys;
+
+        private int count;
+
+        Run() {
+            this.data = new byte[Math.min(RecordSorter.this.runSize, 64 * 1024)];
+            this.size = 0;
+            this.offsets = new int[1024];
+            this.keys = new long[2048];
+            this.count = 0;
+        }
+
+        public void add(final byte[] buffer, final int length) throws IOException {
+            if (this.size + length > this.data.length) {
+                this.data = Arrays.copyOf(this.data, Math.max(this.size + length,
+                        Math.min(this.data.length * 2, RecordSorter.this.runSize)));
+            }
+            if (this.count == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+                this.keys = Arrays.copyOf(this.keys, this.count * 4);
+            }
+            System.arraycopy(buffer, 0, this.data, this.size, length);
+            this.offsets[this.count] = this.size;
+            this.keys[2 * this.count] = key(buffer, 0, length, 0);
+            this.keys[2 * this.count + 1] = key(buffer, 0, length, 8);
+            this.size += length;
+            ++this.count;
+            if (this.size >= RecordSorter.this.runSize) {
+                spill();
+            }
+        }
+
+        public void close() {
+            if (this.count > 0) {
+                final int[] order = sort();
+                register(new MemoryCursor(this.data, this.offsets, this.size, order, this.count),
+                        null);
+            }
+            this.data = null;
+            this.offsets = null;
+            this.keys = null;
+        }
+
+        private void spill() throws IOException {
+            final int[] order = sort();
+            final Path file = Files.createTempFile("rdfpro-sort-", ".bin");
+            file.toFile().deleteOnExit();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file), 64 * 1024))) {
+                for (int i = 0; i < this.count; ++i) {
+                    final int index = order[i];
+                    final int offset = this.offsets[index];
+                    final int length = length(index);
+                    out.writeInt(length);
+                    out.write(this.data, offset, length);
+                }
+            }
+            register(new FileCursor(file), file);
+            SPILLED_BYTES.add(this.size + 4L * this.count);
+            LOGGER.debug("Spilled {} records ({} bytes) to {}", this.count, this.size, file);
+            this.size = 0;
+            this.count = 0;
+        }
+
+        private int length(final int index) {
+            return (index + 1 < this.count ? this.offsets[index + 1] : this.size)
+                    - this.offsets[index];
+        }
+
+        private int[] sort() {
+            final int[] order = new int[this.count];
+            for (int i = 0; i < this.count; ++i) {
+                order[i] = i;
+            }
+            final int[] aux = order.clone();
+            mergeSort(aux, order, 0, this.count);
+            return order;
+        }
+
+        private void mergeSort(final int[] src, final int[] dest, final int lo, final int hi) {
+            if (hi - lo < 8) {
+                for (int i = lo; i < hi; ++i) {
+                    for (int j = i; j > lo && compare(dest[j - 1], dest[j]) > 0; --j) {
+                        final int t = dest[j];
+                        dest[j] = dest[j - 1];
+                        dest[j - 1] = t;
+                    }
+                }
+                return;
+            }
+            final int mid = lo + hi >>> 1;
+            mergeSort(dest, src, lo, mid);
+            mergeSort(dest, src, mid, hi);
+            if (compare(src[mid - 1], src[mid]) <= 0) {
+                System.arraycopy(src, lo, dest, lo, hi - lo);
+                return;
+            }
+            for (int i = lo, p = lo, q = mid; i < hi; ++i) {
+                if (q >= hi || p < mid && compare(src[p], src[q]) <= 0) {
+                    dest[i] = src[p++];
+                } else {
+                    dest[i] = src[q++];
+                }
+            }
+        }
+
+        private int compare(final int index1, final int index2) {
+            final long k1 = this.keys[2 * index1];
+            final long k2 = this.keys[2 * index2];
+            if (k1 != k2) {
+                return Long.compareUnsigned(k1, k2);
+            }
+            final long k3 = this.keys[2 * index1 + 1];
+            final long k4 = this.keys[2 * index2 + 1];
+            if (k3 != k4) {
+                return Long.compareUnsigned(k3, k4);
+            }
+            final int length1 = length(index1);
+            final int length2 = length(index2);
+            if (length1 <= 16 || length2 <= 16) {
+                return length1 - length2;
+            }
+            return RecordSorter.compare(this.data, this.offsets[index1] + 16, length1 - 16,
+                    this.data, this.offsets[index2] + 16, length2 - 16);
+        }
+
+    }
+
+    private static abstract class Cursor implements Comparable<Cursor> {
+
+        byte[] data;
+
+        int offset;
+
+        int length;
+
+        long key1;
+
+        long key2;
+
+        abstract boolean advance() throws IOException;
+
+        abstract void close();
+
+        @Override
+        public int compareTo(final Cursor other) {
+            if (this.key1 != other.key1) {
+                return Long.compareUnsigned(this.key1, other.key1);
+            }
+            if (this.key2 != other.key2) {
+                return Long.compareUnsigned(this.key2, other.key2);
+            }
+            return compare(this.data, this.offset, this.length, other.data, other.offset,
+                    other.length);
+        }
+
+        void updateKeys() {
+            this.key1 = key(this.data, this.offset, this.length, 0);
+            this.key2 = key(this.data, this.offset, this.length, 8);
+        }
+
+    }
+
+    private static final class MemoryCursor extends Cursor {
+
+        private final int[] offsets;
+
+        private final int size;
+
+        private final int[] order;
+
+        private final int count;
+
+        private int index;
+
+        MemoryCursor(final byte[] data, final int[] offsets, final int size, final int[] order,
+                final int count) {
+            this.data = data;
+            this.offsets = offsets;
+            this.size = size;
+            this.order = order;
+            this.count = count;
+            this.index = 0;
+        }
+
+        @Override
+        boolean advance() {
+            if (this.index >= this.count) {
+                return false;
+            }
+            final int i = this.order[this.index++];
+            this.offset = this.offsets[i];
+            this.length = (i + 1 < this.count ? this.offsets[i + 1] : this.size) - this.offset;
+            updateKeys();
+            return true;
+        }
+
+        @Override
+        void close() {
+            this.data = null;
+        }
+
+    }
+
+    private static final class FileCursor extends Cursor {
+
+        private final DataInputStream in;
+
+        FileCursor(final Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                    64 * 1024));
+            this.data = new byte[256];
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            final int len;
+            try {
+                len = this.in.readInt();
+            } catch (final EOFException ex) {
+                close();
+                return false;
+            }
+            if (this.data.length < len) {
+                this.data = new byte[Math.max(len, this.data.length * 2)];
+            }
+            this.in.readFully(this.data, 0, len);
+            this.offset = 0;
+            this.length = len;
+            updateKeys();
+            return true;
+        }
+
+        @Override
+        void close() {
+            IO.closeQuietly(this.in);
+        }
+
+    }
+
+}
@@ -0,0 +1,393 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.util;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, pre-allocated, multi-producer / multi-consumer ring buffer.
+ * <p>
+ * Elements are published by producers in sequence order after claiming one or more slots via
+ * {@link #claim(int)}, assigning them via {@link #set(long, Object)} and making them visible via
+ * {@link #publish(long, int)} (or simply via {@link #put(Object)} and
+ * {@link #putAll(Object[], int, int)}). Each published element is delivered to exactly one
+ * consumer, with consumers identified by an index from 0 to the number of consumers (excluded)
+ * and taking batches of contiguous available elements via {@link #take(int, Object[])}. Each
+ * consumer publishes the sequence it is about to claim from while inside {@code take()}, and
+ * releases it as soon as the claimed elements are copied out, so that a consumer busy
+ * processing a batch never holds back producers; producers wait only for slots not yet copied
+ * out by consumers before overwriting them. No lock is used: slot claiming relies on CAS operations
+ * on two sequence counters (one for producers, one for consumers), while waiting is performed
+ * according to the {@link WaitStrategy} supplied at construction time.
+ * </p>
+ * <p>
+ * Methods {@link #close()} and {@link #abort()} end the use of the buffer: after closing,
+ * consumers drain remaining elements before being notified of the end of the stream; after
+ * aborting, producers and consumers are immediately notified that no more elements can be added
+ * or taken.
+ * </p>
+ *
+ * @param <T>
+ *            the type of element
+ */
+public final class RingBuffer<T> {
+
+    private static final int STRIDE = 8; // 64 bytes between consumer sequences (false sharing)
+
+    private static final int SPIN_TRIES = 128;
+
+    private static final int YIELD_TRIES = 128;
+
+    private static final long PARK_NANOS = 50000L;
+
+    private final Object[] entries;
+
+    private final AtomicIntegerArray rounds; // round (sequence >>> shift) of published slots
+
+    private final int mask;
+
+    private final int shift;
+
+    private final WaitStrategy waitStrategy;
+
+    private final AtomicLong producerSequence; // last sequence claimed by producers
+
+    private final AtomicLong consumerSequence; // last sequence claimed by consumers
+
+    private final AtomicLongArray consumedSequences; // per consumer, MAX_VALUE if not taking
+
+    private volatile long gatingSequence; // cached minimum of consumer sequences
+
+    private volatile boolean closed;
+
+    private volatile boolean aborted;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity
+     *            the minimum capacity, rounded up to the next power of two
+     * @param numConsumers
+     *            the number of consumers that will take elements from the buffer
+     * @param waitStrategy
+     *            the strategy used by producers and consumers to wait for slots / elements
+     */
+    public RingBuffer(final int capacity, final int numConsumers,
+            final WaitStrategy waitStrategy) {
+
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        if (numConsumers <= 0) {
+            throw new IllegalArgumentException("Invalid number of consumers " + numConsumers);
+        }
+
+        final int size = Integer.highestOneBit(capacity - 1) << 1 | (capacity == 1 ? 1 : 0);
+
+        this.entries = new Object[size];
+        this.rounds = new AtomicIntegerArray(size);
+        this.mask = size - 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        this.producerSequence = new AtomicLong(-1L);
+        this.consumerSequence = new AtomicLong(-1L);
+        this.consumedSequences = new AtomicLongArray(numConsumers * STRIDE);
+        this.gatingSequence = -1L;
+        this.closed = false;
+        this.aborted = false;
+
+        for (int i = 0; i < size; ++i) {
+            this.rounds.set(i, -1);
+        }
+        for (int i = 0; i < numConsumers; ++i) {
+            this.consumedSequences.set(i * STRIDE, Long.MAX_VALUE);
+        }
+    }
+
+    public int getCapacity() {
+        return this.entries.length;
+    }
+
+    public int getNumConsumers() {
+        return this.consumedSequences.length() / STRIDE;
+    }
+
+    /**
+     * Returns the number of elements published or being published and not yet taken.
+     *
+     * @return the approximate number of elements in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0L, this.producerSequence.get() - this.consumerSequence.get());
+    }
+
+    /**
+     * Claims {@code count} consecutive slots, waiting for them to be released by consumers.
+     *
+     * @param count
+     *            the number of slots to claim, between 1 and the buffer capacity
+     * @return the sequence of the first claimed slot, or -1 if the buffer has been aborted
+     * @throws IllegalStateException
+     *             if the buffer has been closed (without aborting it)
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public long claim(final int count) throws InterruptedException {
+        if (count <= 0 || count > this.entries.length) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        if (this.aborted) {
+            return -1L;
+        }
+        checkNotClosed();
+        int attempt = 0;
+        while (true) {
+            final long current = this.producerSequence.get();
+            final long next = current + count;
+            final long wrapPoint = next - this.entries.length;
+            if (wrapPoint > this.gatingSequence) {
+                final long gating = getMinimumConsumedSequence();
+                this.gatingSequence = gating;
+                if (wrapPoint > gating) {
+                    if (this.aborted) {
+                        return -1L;
+                    }
+                    checkNotClosed();
+                    await(attempt++);
+                    continue;
+                }
+            }
+            if (this.producerSequence.compareAndSet(current, next)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Assigns the element of a slot previously claimed and not yet published.
+     *
+     * @param sequence
+     *            the sequence of the slot
+     * @param element
+     *            the element
+     */
+    public void set(final long sequence, final T element) {
+        this.entries[(int) sequence & this.mask] = element;
+    }
+
+    /**
+     * Publishes {@code count} consecutive slots previously claimed, making their elements
+     * available to consumers.
+     *
+     * @param sequence
+     *            the sequence of the first slot
+     * @param count
+     *            the number of slots
+     */
+    public void publish(final long sequence, final int count) {
+        for (long s = sequence; s < sequence + count; ++s) {
+            this.rounds.lazySet((int) s & this.mask, (int) (s >>> this.shift));
+        }
+    }
+
+    /**
+     * Adds an element, waiting for a slot to be released if necessary.
+     *
+     * @param element
+     *            the element to add
+     * @return true on success, false if the buffer has been aborted
+     * @throws IllegalStateException
+     *             if the buffer has been closed (without aborting it)
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean put(final T element) throws InterruptedException {
+        final long sequence = claim(1);
+        if (sequence < 0) {
+            return false;
+        }
+        this.entries[(int) sequence & this.mask] = element;
+        this.rounds.lazySet((int) sequence & this.mask, (int) (sequence >>> this.shift));
+        return true;
+    }
+
+    /**
+     * Adds a range of elements of the array supplied, claiming and publishing them in batches.
+     *
+     * @param elements
+     *            the element array
+     * @param offset
+     *            the index of the first element to add
+     * @param length
+     *            the number of elements to add
+     * @return true on success, false if the buffer has been aborted
+     * @throws IllegalStateException
+     *             if the buffer has been closed (without aborting it)
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean putAll(final T[] elements, final int offset, final int length)
+            throws InterruptedException {
+        final int maxBatch = Math.max(1, this.entries.length / 4);
+        int index = offset;
+        final int end = offset + length;
+        while (index < end) {
+            final int count = Math.min(maxBatch, end - index);
+            final long sequence = claim(count);
+            if (sequence < 0) {
+                return false;
+            }
+            for (int i = 0; i < count; ++i) {
+                this.entries[(int) (sequence + i) & this.mask] = elements[index + i];
+            }
+            publish(sequence, count);
+            index += count;
+        }
+        return true;
+    }
+
+    /**
+     * Takes a batch of contiguous available elements, waiting for at least one element to be
+     * published. The elements are copied to the supplied array, starting at index 0.
+     *
+     * @param consumer
+     *            the index of the consumer
+     * @param buffer
+     *            the array where to store taken elements, whose length is the maximum batch size
+     * @return the number of elements taken, or -1 if the buffer has been aborted or closed and
+     *         all its elements have been taken
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public int take(final int consumer, final Object[] buffer) throws InterruptedException {
+        final int index = consumer * STRIDE;
+        int attempt = 0;
+        try {
+            while (true) {
+                if (this.aborted) {
+                    return -1;
+                }
+                final long current = this.consumerSequence.get();
+                this.consumedSequences.set(index, current); // protect slots after current
+                final long next = current + 1;
+                if (isPublished(next)) {
+                    long last = next;
+                    final long limit = current + buffer.length;
+                    while (last < limit && isPublished(last + 1)) {
+                        ++last;
+                    }
+                    if (this.consumerSequence.compareAndSet(current, last)) {
+                        final int count = (int) (last - current);
+                        for (int i = 0; i < count; ++i) {
+                            final int slot = (int) (next + i) & this.mask;
+                            buffer[i] = this.entries[slot];
+                            this.entries[slot] = null;
+                        }
+                        return count;
+                    }
+                    attempt = 0; // contention with other consumers: retry immediately
+
+                } else if (this.closed && next > this.producerSequence.get()) {
+                    return -1;
+
+                } else {
+                    await(attempt++);
+                }
+            }
+        } finally {
+            // Slots copied out (or none claimed): stop gating producers while the caller
+            // processes the batch, rather than until the next call to take()
+            this.consumedSequences.set(index, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Closes the buffer, signalling that no more elements will be added. Consumers will take the
+     * remaining elements and will then be notified of the end of the stream. This method must
+     * be called after all the producers completed their operations.
+     */
+    public void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Aborts the buffer, causing pending and future producer and consumer operations to return
+     * immediately, discarding any element not taken yet.
+     */
+    public void abort() {
+        this.aborted = true;
+        this.closed = true;
+    }
+
+    public boolean isAborted() {
+        return this.aborted;
+    }
+
+    private void checkNotClosed() {
+        // An aborted buffer is also closed, but aborting is reported by returning -1 / false
+        if (this.closed && !this.aborted) {
+            throw new IllegalStateException("Ring buffer closed");
+        }
+    }
+
+    private boolean isPublished(final long sequence) {
+        return this.rounds.get((int) sequence & this.mask) == (int) (sequence >>> this.shift);
+    }
+
+    private long getMinimumConsumedSequence() {
+        long min = this.consumerSequence.get();
+        for (int i = 0; i < this.consumedSequences.length(); i += STRIDE) {
+            min = Math.min(min, this.consumedSequences.get(i));
+        }
+        return min;
+    }
+
+    private void await(final int attempt) throws InterruptedException {
+        if (this.waitStrategy == WaitStrategy.SPIN) {
+            if ((attempt & 0xFFFF) == 0xFFFF && Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } else if (this.waitStrategy == WaitStrategy.YIELD || attempt < SPIN_TRIES + YIELD_TRIES) {
+            if (attempt >= SPIN_TRIES) {
+                Thread.yield();
+            }
+        } else {
+            LockSupport.parkNanos(this, PARK_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Strategy used by producers and consumers for waiting for slots / elements.
+     */
+    public enum WaitStrategy {
+
+        /** Busy spinning: lowest latency, but keeps a core busy while waiting. */
+        SPIN,
+
+        /** Spinning for a while, then yielding the CPU to other threads. */
+        YIELD,
+
+        /** Spinning and yielding for a while, then parking the thread for short periods. */
+        PARK
+
+    }
+
+}
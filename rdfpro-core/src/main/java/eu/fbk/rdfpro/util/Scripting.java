@@ -138,6 +138,12 @@ public final class Scripting {
             // ignore
         }
 
+        // Builtin expressions are compiled natively, bypassing the JSR-223 machinery
+        if (Expressions.LANGUAGE.equals(language)) {
+            LOGGER.debug("Compiling builtin expression:\n{}", expression);
+            return Expressions.compile(interfaceClass, expression);
+        }
+
         // Rewrite <URI> and QNames in the script expression
         expression = rewrite(expression);
 
@@ -40,13 +40,28 @@ import org.openrdf.model.vocabulary.XMLSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.fbk.rdfpro.util.Environment.Lane;
+
 public abstract class Sorter<T> implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Sorter.class);
 
+    private static final boolean BINARY_MODE = "binary".equalsIgnoreCase(Environment
+            .getProperty("rdfpro.sort.mode", "external"));
+
+    private static final int BINARY_RUN_SIZE = Integer.parseInt(Environment.getProperty(
+            "rdfpro.sort.run.size", "" + 32 * 1024 * 1024));
+
+    private static final Metrics.Counter EXTERNAL_BYTES = Metrics.counter(
+            "rdfpro_sort_spill_bytes_total", "Number of bytes spilled to disk by sorters",
+            "mode", "external");
+
     @Nullable
     private Dictionary dictionary;
 
+    @Nullable
+    private RecordSorter recordSorter;
+
     @Nullable
     private Process sortProcess;
 
@@ -111,8 +126,14 @@ public abstract class Sorter<T> implements AutoCloseable {
 
             @Override
             protected Output initialValue() {
-                final OutputStream out = IO.parallelBuffer(Sorter.this.sortOut, (byte) 0);
-                final Output output = new Output(out, Sorter.this.dictionary);
+                final Output output;
+                if (Sorter.this.recordSorter != null) {
+                    output = new Output(Sorter.this.recordSorter.newRun(),
+                            Sorter.this.dictionary);
+                } else {
+                    final OutputStream out = IO.parallelBuffer(Sorter.this.sortOut, (byte) 0);
+                    output = new Output(out, Sorter.this.dictionary);
+                }
                 synchronized (Sorter.this.outputs) {
                     Sorter.this.outputs.add(output);
                 }
@@ -121,6 +142,27 @@ public abstract class Sorter<T> implements AutoCloseable {
 
         };
 
+        // Initialize trackers
+        this.writeTracker = new Tracker(LOGGER, null, //
+                "%d records to sort (%d rec/s avg)", //
+                "%d records to sort (%d rec/s, %d rec/s avg)");
+        this.readTracker = new Tracker(LOGGER, null, //
+                "%d records from sort (%d rec/s avg)", //
+                "%d records from sort (%d rec/s, %d rec/s avg)");
+
+        // Sort in process, if enabled, otherwise invoke sort
+        if (BINARY_MODE) {
+            this.recordSorter = new RecordSorter(deduplicate, BINARY_RUN_SIZE);
+        } else {
+            startSortProcess(deduplicate);
+        }
+
+        // Start write tracker
+        this.writeTracker.start();
+    }
+
+    private void startSortProcess(final boolean deduplicate) throws IOException {
+
         // Invoke sort
         final List<String> command = new ArrayList<String>(Arrays.asList(Environment.getProperty(
                 "rdfpro.cmd.sort", "sort").split("\\s+")));
@@ -137,7 +179,7 @@ public abstract class Sorter<T> implements AutoCloseable {
         this.sortIn = this.sortProcess.getInputStream();
 
         // Launch a task to log STDERR at ERROR level
-        Environment.getPool().submit(new Runnable() {
+        Environment.getPool(Lane.IO).submit(new Runnable() {
 
             @Override
             public void run() {
@@ -156,17 +198,6 @@ public abstract class Sorter<T> implements AutoCloseable {
             }
 
         });
-
-        // Initialize trackers
-        this.writeTracker = new Tracker(LOGGER, null, //
-                "%d records to sort (%d rec/s avg)", //
-                "%d records to sort (%d rec/s, %d rec/s avg)");
-        this.readTracker = new Tracker(LOGGER, null, //
-                "%d records from sort (%d rec/s avg)", //
-                "%d records from sort (%d rec/s, %d rec/s avg)");
-
-        // Start write tracker
-        this.writeTracker.start();
     }
 
     public void emit(final T element) throws IOException {
@@ -203,7 +234,11 @@ public abstract class Sorter<T> implements AutoCloseable {
                 }
                 this.outputs.clear();
             } finally {
-                this.sortOut.close();
+                if (this.recordSorter != null) {
+                    this.recordSorter.merge();
+                } else {
+                    this.sortOut.close();
+                }
             }
 
             // Consume sort output, possibly using multiple decode threads
@@ -216,12 +251,16 @@ public abstract class Sorter<T> implements AutoCloseable {
             // tryDecode(this.inputs.get(0), consumer);
             // } else {
             for (int i = 0; i < decoders; ++i) {
-                final InputStream in = IO.parallelBuffer(this.sortIn, (byte) 0);
-                this.inputs.add(new Input(in, this.dictionary));
+                if (this.recordSorter != null) {
+                    this.inputs.add(new Input(this.recordSorter, this.dictionary));
+                } else {
+                    final InputStream in = IO.parallelBuffer(this.sortIn, (byte) 0);
+                    this.inputs.add(new Input(in, this.dictionary));
+                }
             }
             for (int i = 1; i < decoders; ++i) {
                 final Input input = this.inputs.get(i);
-                Environment.getPool().execute(new Runnable() {
+                Environment.getPool(Lane.IO).execute(new Runnable() {
 
                     @Override
                     public void run() {
@@ -241,6 +280,7 @@ public abstract class Sorter<T> implements AutoCloseable {
         } finally {
             // Close streams and propagate exception, if any
             IO.closeQuietly(this.sortIn);
+            IO.closeQuietly(this.recordSorter);
             if (this.inputs != null) {
                 for (final Input input : this.inputs) {
                     input.close();
@@ -286,6 +326,7 @@ public abstract class Sorter<T> implements AutoCloseable {
             if (this.sortProcess != null) {
                 this.sortProcess.destroy();
             }
+            IO.closeQuietly(this.recordSorter);
 
         } catch (final Throwable ex) {
             LOGGER.error("Exception caught while killing sort process", ex);
@@ -294,6 +335,7 @@ public abstract class Sorter<T> implements AutoCloseable {
             // Mark as non startable and release everything
             this.startable = false;
             this.dictionary = null;
+            this.recordSorter = null;
             this.sortProcess = null;
             this.sortOut = null;
             this.sortIn = null;
@@ -327,24 +369,55 @@ public abstract class Sorter<T> implements AutoCloseable {
 
     public static final class Output {
 
+        @Nullable
         private final OutputStream out;
 
+        @Nullable
+        private final RecordSorter.Run run;
+
         private final Dictionary dictionary;
 
         private final int[] remaining;
 
+        private byte[] buffer;
+
+        private int length;
+
         Output(final OutputStream out, final Dictionary dictionary) {
+            this(out, null, dictionary);
+        }
+
+        Output(final RecordSorter.Run run, final Dictionary dictionary) {
+            this(null, run, dictionary);
+        }
+
+        private Output(@Nullable final OutputStream out, @Nullable final RecordSorter.Run run,
+                final Dictionary dictionary) {
             this.out = out;
+            this.run = run;
             this.dictionary = dictionary;
             this.remaining = new int[] { -1 };
+            this.buffer = new byte[256];
+            this.length = 0;
         }
 
         void endRecord() throws IOException {
-            this.out.write(0);
+            if (this.run != null) {
+                this.run.add(this.buffer, this.length);
+            } else {
+                this.out.write(this.buffer, 0, this.length);
+                this.out.write(0);
+                EXTERNAL_BYTES.add(this.length + 1);
+            }
+            this.length = 0;
         }
 
         void close() throws IOException {
-            this.out.close();
+            if (this.run != null) {
+                this.run.close();
+            } else {
+                this.out.close();
+            }
         }
 
         public final void writeStatement(@Nullable final Statement statement,
@@ -482,43 +555,82 @@ public abstract class Sorter<T> implements AutoCloseable {
             }
         }
 
-        private void write(final int b) throws IOException {
+        private void write(final int b) {
             assert (b & 0xFF) != 0;
-            this.out.write(b);
+            if (this.length == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, this.length * 2);
+            }
+            this.buffer[this.length++] = (byte) b;
         }
 
     }
 
     public static final class Input {
 
+        @Nullable
         private final InputStream in;
 
+        @Nullable
+        private final RecordSorter sorter;
+
         private final Dictionary dictionary;
 
         private final StringBuilder builder;
 
-        private int c;
+        private final int[] length;
+
+        private byte[] buffer;
+
+        private int size;
+
+        private int pos;
 
         Input(final InputStream in, final Dictionary dictionary) {
+            this(in, null, dictionary);
+        }
+
+        Input(final RecordSorter sorter, final Dictionary dictionary) {
+            this(null, sorter, dictionary);
+        }
+
+        private Input(@Nullable final InputStream in, @Nullable final RecordSorter sorter,
+                final Dictionary dictionary) {
             this.in = in;
+            this.sorter = sorter;
             this.dictionary = dictionary;
             this.builder = new StringBuilder();
-            this.c = 0;
+            this.length = new int[1];
+            this.buffer = new byte[256];
+            this.size = 0;
+            this.pos = 0;
         }
 
         boolean nextRecord() throws IOException {
-            while (this.c != 0) {
-                LOGGER.warn("Skipping " + this.c);
-                this.c = this.in.read();
-                if (this.c < 0) {
-                    throw new EOFException("EOF found before completing read of record");
+            this.pos = 0;
+            this.size = 0;
+            if (this.sorter != null) {
+                final byte[] buffer = this.sorter.next(this.buffer, this.length);
+                if (buffer == null) {
+                    return false; // no more records
+                }
+                this.buffer = buffer;
+                this.size = this.length[0];
+                return true;
+            }
+            int c;
+            while ((c = this.in.read()) > 0) {
+                if (this.size == this.buffer.length) {
+                    this.buffer = Arrays.copyOf(this.buffer, this.size * 2);
                 }
+                this.buffer[this.size++] = (byte) c;
             }
-            this.c = this.in.read();
-            if (this.c < 0) {
-                return false; // EOF reached, no more records
+            if (c < 0) {
+                if (this.size == 0) {
+                    return false; // EOF reached, no more records
+                }
+                throw new EOFException("EOF found before completing read of record");
             }
-            if (this.c == 0) {
+            if (this.size == 0) {
                 throw new Error("Empty record!");
             }
             return true;
@@ -529,7 +641,7 @@ public abstract class Sorter<T> implements AutoCloseable {
         }
 
         public final boolean isEOF() {
-            return this.c <= 0;
+            return this.pos >= this.size;
         }
 
         @Nullable
@@ -655,12 +767,10 @@ public abstract class Sorter<T> implements AutoCloseable {
         }
 
         private int read() throws IOException {
-            final int result = this.c;
-            if (result <= 0) {
-                throw new EOFException("Byte is " + result);
+            if (this.pos >= this.size) {
+                throw new EOFException("End of record reached");
             }
-            this.c = this.in.read();
-            return result;
+            return this.buffer[this.pos++] & 0xFF;
         }
 
     }
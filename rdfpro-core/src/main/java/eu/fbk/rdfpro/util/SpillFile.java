@@ -0,0 +1,575 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A temporary file storing records of {@code Value}s in a compact binary form.
+ * <p>
+ * Records are appended (possibly by multiple threads) and, once appending is complete, can be
+ * read back any number of times, either sequentially via {@link #iterator()} or in parallel via
+ * {@link #forEach(int, Consumer)}. Records are grouped in blocks of about 1 MB (or of the size
+ * given to {@link #create(boolean, int)}), each one encoded independently of the others using a
+ * block-local dictionary of values and optionally compressed with the fastest {@code Deflater}
+ * level, so that blocks can be decoded in parallel. The block buffer is allocated on the first
+ * append and grown as needed up to the block size, so that many small files can be kept open.
+ * Temporary spill files are deleted when the {@code SpillFile} is closed. Persistent spill files
+ * (see {@link #create(Path, boolean)}) are instead kept, ending with an index of their blocks
+ * written when appending completes, and can be later opened with {@link #open(Path)}.
+ * </p>
+ */
+public final class SpillFile implements AutoCloseable, Iterable<Value[]> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillFile.class);
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    private static final int MAX_DICTIONARY_SIZE = 64 * 1024;
+
+    private static final int TAG_NULL = 0;
+
+    private static final int TAG_REF = 1;
+
+    private static final int TAG_URI = 2;
+
+    private static final int TAG_BNODE = 3;
+
+    private static final int TAG_PLAIN = 4;
+
+    private static final int TAG_LANG = 5;
+
+    private static final int TAG_TYPED = 6;
+
+    private static final long MAGIC = 0x5244467072605346L;
+
+    private static final int TRAILER_SIZE = 4 + 8 + 8 + 1 + 8;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final boolean compress;
+
+    private final boolean persistent;
+
+    private final int blockSize;
+
+    private final List<long[]> blocks; // offset, stored length, raw length
+
+    private final Map<Value, Integer> dictionary;
+
+    private byte[] buffer;
+
+    private int size;
+
+    private long numRecords;
+
+    private long numBytes;
+
+    private boolean sealed;
+
+    private SpillFile(final Path path, final FileChannel channel, final boolean compress,
+            final boolean persistent, final int blockSize) {
+        this.path = path;
+        this.channel = channel;
+        this.compress = compress;
+        this.persistent = persistent;
+        this.blockSize = blockSize;
+        this.blocks = new ArrayList<>();
+        this.dictionary = new HashMap<>();
+        this.buffer = null; // allocated on first append
+        this.size = 0;
+        this.numRecords = 0;
+        this.numBytes = 0;
+        this.sealed = false;
+    }
+
+    public static SpillFile create(final boolean compress) throws IOException {
+        return create(compress, BLOCK_SIZE);
+    }
+
+    public static SpillFile create(final boolean compress, final int blockSize)
+            throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        }
+        final Path path = Files.createTempFile("rdfpro-spill-", ".bin");
+        path.toFile().deleteOnExit();
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new SpillFile(path, channel, compress, false, blockSize);
+    }
+
+    public static SpillFile create(final Path path, final boolean compress) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new SpillFile(path, channel, compress, true, BLOCK_SIZE);
+    }
+
+    public static SpillFile open(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            // Read the trailer and then the block index preceding it
+            final long size = channel.size();
+            if (size < TRAILER_SIZE) {
+                throw new IOException("Not a spill file: " + path);
+            }
+            final ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            final int numBlocks = trailer.getInt();
+            final long numRecords = trailer.getLong();
+            final long numBytes = trailer.getLong();
+            final boolean compress = trailer.get() != 0;
+            if (trailer.getLong() != MAGIC || numBlocks < 0
+                    || size < TRAILER_SIZE + numBlocks * 24L) {
+                throw new IOException("Not a spill file: " + path);
+            }
+            final ByteBuffer index = read(channel, size - TRAILER_SIZE - numBlocks * 24L,
+                    numBlocks * 24);
+            final SpillFile file = new SpillFile(path, channel, compress, true, BLOCK_SIZE);
+            for (int i = 0; i < numBlocks; ++i) {
+                file.blocks.add(new long[] { index.getLong(), index.getLong(), index.getLong() });
+            }
+            file.numRecords = numRecords;
+            file.numBytes = numBytes;
+            file.sealed = true;
+            return file;
+        } catch (final Throwable ex) {
+            IO.closeQuietly(channel);
+            throw ex;
+        }
+    }
+
+    public synchronized void append(final Value... record) throws IOException {
+        if (this.sealed) {
+            throw new IllegalStateException("Spill file already read");
+        }
+        writeNumber(record.length);
+        for (final Value value : record) {
+            writeValue(value);
+        }
+        ++this.numRecords;
+        if (this.size >= this.blockSize) {
+            flushBlock();
+        }
+    }
+
+    public synchronized long getNumRecords() {
+        return this.numRecords;
+    }
+
+    public synchronized long getNumBytes() {
+        return this.numBytes + this.size;
+    }
+
+    @Override
+    public Iterator<Value[]> iterator() {
+        final int numBlocks = seal();
+        return new Iterator<Value[]>() {
+
+            private int blockIndex = 0;
+
+            @Nullable
+            private BlockDecoder decoder = null;
+
+            @Nullable
+            private Value[] next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (this.next == null) {
+                    if (this.decoder != null) {
+                        this.next = this.decoder.next();
+                        if (this.next != null) {
+                            break;
+                        }
+                        this.decoder = null;
+                    }
+                    if (this.blockIndex == numBlocks) {
+                        return false;
+                    }
+                    this.decoder = readBlock(this.blockIndex++);
+                }
+                return true;
+            }
+
+            @Override
+            public Value[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Value[] result = this.next;
+                this.next = null;
+                return result;
+            }
+
+        };
+    }
+
+    public void forEach(final int parallelism, final Consumer<Value[]> consumer) {
+        final int numBlocks = seal();
+        final AtomicInteger counter = new AtomicInteger(0);
+        final List<Runnable> runnables = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelism, numBlocks); ++i) {
+            runnables.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int index = counter.getAndIncrement(); index < numBlocks; //
+                    index = counter.getAndIncrement()) {
+                        final BlockDecoder decoder = readBlock(index);
+                        for (Value[] record = decoder.next(); record != null; //
+                        record = decoder.next()) {
+                            consumer.accept(record);
+                        }
+                    }
+                }
+
+            });
+        }
+        Environment.run(runnables);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.persistent) {
+            try {
+                seal();
+            } finally {
+                IO.closeQuietly(this.channel);
+            }
+        } else {
+            IO.closeQuietly(this.channel);
+            try {
+                Files.deleteIfExists(this.path);
+            } catch (final Throwable ex) {
+                LOGGER.warn("Could not delete spill file " + this.path, ex);
+            }
+        }
+        this.buffer = null;
+    }
+
+    @Override
+    public String toString() {
+        return this.path + " (" + getNumRecords() + " records, " + getNumBytes() + " bytes)";
+    }
+
+    private synchronized int seal() {
+        if (!this.sealed) {
+            try {
+                flushBlock();
+                if (this.persistent) {
+                    writeIndex();
+                }
+            } catch (final IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            this.sealed = true;
+            this.buffer = null;
+        }
+        return this.blocks.size();
+    }
+
+    private void flushBlock() throws IOException {
+        if (this.size == 0) {
+            return;
+        }
+        byte[] data = this.buffer;
+        int length = this.size;
+        if (this.compress) {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(this.buffer, 0, this.size);
+                deflater.finish();
+                data = new byte[this.size + this.size / 1000 + 64];
+                length = 0;
+                while (!deflater.finished()) {
+                    if (length == data.length) {
+                        data = Arrays.copyOf(data, data.length * 2);
+                    }
+                    length += deflater.deflate(data, length, data.length - length);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        final long offset = this.channel.size();
+        final ByteBuffer bb = ByteBuffer.wrap(data, 0, length);
+        long position = offset;
+        while (bb.hasRemaining()) {
+            position += this.channel.write(bb, position);
+        }
+        this.blocks.add(new long[] { offset, length, this.size });
+        this.numBytes += this.size;
+        this.size = 0;
+        this.dictionary.clear();
+    }
+
+    private void writeIndex() throws IOException {
+        final ByteBuffer bb = ByteBuffer.allocate(this.blocks.size() * 24 + TRAILER_SIZE);
+        for (final long[] block : this.blocks) {
+            bb.putLong(block[0]).putLong(block[1]).putLong(block[2]);
+        }
+        bb.putInt(this.blocks.size()).putLong(this.numRecords).putLong(this.numBytes);
+        bb.put((byte) (this.compress ? 1 : 0)).putLong(MAGIC);
+        bb.flip();
+        long position = this.channel.size();
+        while (bb.hasRemaining()) {
+            position += this.channel.write(bb, position);
+        }
+    }
+
+    private static ByteBuffer read(final FileChannel channel, final long offset,
+            final int length) throws IOException {
+        final ByteBuffer bb = ByteBuffer.allocate(length);
+        long position = offset;
+        while (bb.hasRemaining()) {
+            final int n = channel.read(bb, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += n;
+        }
+        bb.flip();
+        return bb;
+    }
+
+    private BlockDecoder readBlock(final int index) {
+        final long[] block;
+        synchronized (this) {
+            block = this.blocks.get(index);
+        }
+        try {
+            final byte[] stored = new byte[(int) block[1]];
+            final ByteBuffer bb = ByteBuffer.wrap(stored);
+            long position = block[0];
+            while (bb.hasRemaining()) {
+                final int n = this.channel.read(bb, position);
+                if (n < 0) {
+                    throw new IOException("Truncated spill file " + this.path);
+                }
+                position += n;
+            }
+            if (!this.compress) {
+                return new BlockDecoder(stored, stored.length);
+            }
+            final byte[] raw = new byte[(int) block[2]];
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(stored);
+                int length = 0;
+                while (length < raw.length) {
+                    final int n = inflater.inflate(raw, length, raw.length - length);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Corrupted spill block " + index + " in "
+                                + this.path);
+                    }
+                    length += n;
+                }
+            } finally {
+                inflater.end();
+            }
+            return new BlockDecoder(raw, raw.length);
+        } catch (final IOException | DataFormatException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void writeValue(@Nullable final Value value) {
+        if (value == null) {
+            writeByte(TAG_NULL);
+            return;
+        }
+        final Integer index = this.dictionary.get(value);
+        if (index != null) {
+            writeByte(TAG_REF);
+            writeNumber(index);
+            return;
+        }
+        if (value instanceof URI) {
+            writeByte(TAG_URI);
+            writeString(value.stringValue());
+        } else if (value instanceof BNode) {
+            writeByte(TAG_BNODE);
+            writeString(((BNode) value).getID());
+        } else {
+            final Literal literal = (Literal) value;
+            if (literal.getLanguage() != null) {
+                writeByte(TAG_LANG);
+                writeString(literal.getLabel());
+                writeString(literal.getLanguage());
+            } else if (literal.getDatatype() != null) {
+                writeByte(TAG_TYPED);
+                writeString(literal.getLabel());
+                writeValue(literal.getDatatype());
+            } else {
+                writeByte(TAG_PLAIN);
+                writeString(literal.getLabel());
+            }
+        }
+        if (this.dictionary.size() < MAX_DICTIONARY_SIZE) {
+            this.dictionary.put(value, this.dictionary.size());
+        }
+    }
+
+    private void writeString(final String string) {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeNumber(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+        this.size += bytes.length;
+    }
+
+    private void writeNumber(int number) {
+        ensureCapacity(5);
+        while ((number & ~0x7F) != 0) {
+            this.buffer[this.size++] = (byte) (number & 0x7F | 0x80);
+            number >>>= 7;
+        }
+        this.buffer[this.size++] = (byte) number;
+    }
+
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        this.buffer[this.size++] = (byte) b;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (this.buffer == null) {
+            this.buffer = new byte[Math.max(length, Math.min(INITIAL_BUFFER_SIZE,
+                    this.blockSize + 1024))];
+        } else if (this.size + length > this.buffer.length) {
+            // Grow up to the block size (plus some slack for the last record of the block)
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.size + length, Math.min(
+                    this.buffer.length * 2, this.blockSize + 64 * 1024)));
+        }
+    }
+
+    private static final class BlockDecoder {
+
+        private final byte[] data;
+
+        private final int length;
+
+        private final List<Value> dictionary;
+
+        private int pos;
+
+        BlockDecoder(final byte[] data, final int length) {
+            this.data = data;
+            this.length = length;
+            this.dictionary = new ArrayList<>();
+            this.pos = 0;
+        }
+
+        @Nullable
+        Value[] next() {
+            if (this.pos >= this.length) {
+                return null;
+            }
+            final Value[] record = new Value[readNumber()];
+            for (int i = 0; i < record.length; ++i) {
+                record[i] = readValue();
+            }
+            return record;
+        }
+
+        @Nullable
+        private Value readValue() {
+            final ValueFactory vf = Statements.VALUE_FACTORY;
+            final int tag = this.data[this.pos++];
+            final Value value;
+            switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_REF:
+                return this.dictionary.get(readNumber());
+            case TAG_URI:
+                value = vf.createURI(readString());
+                break;
+            case TAG_BNODE:
+                value = vf.createBNode(readString());
+                break;
+            case TAG_PLAIN:
+                value = vf.createLiteral(readString());
+                break;
+            case TAG_LANG:
+                final String label = readString();
+                value = vf.createLiteral(label, readString());
+                break;
+            case TAG_TYPED:
+                final String typedLabel = readString();
+                value = vf.createLiteral(typedLabel, (URI) readValue());
+                break;
+            default:
+                throw new IllegalStateException("Invalid value tag " + tag);
+            }
+            if (this.dictionary.size() < MAX_DICTIONARY_SIZE) {
+                this.dictionary.add(value);
+            }
+            return value;
+        }
+
+        private String readString() {
+            final int len = readNumber();
+            final String string = new String(this.data, this.pos, len, StandardCharsets.UTF_8);
+            this.pos += len;
+            return string;
+        }
+
+        private int readNumber() {
+            int number = 0;
+            for (int shift = 0;; shift += 7) {
+                final int b = this.data[this.pos++];
+                number |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return number;
+                }
+            }
+        }
+
+    }
+
+}
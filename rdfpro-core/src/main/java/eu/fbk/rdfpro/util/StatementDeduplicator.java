@@ -37,6 +37,9 @@ public abstract class StatementDeduplicator {
 
     private static final int LOCK_MASK = 0x3F;
 
+    private static final Metrics.Counter ENTRIES = Metrics.counter("rdfpro_dedup_entries_total",
+            "Number of statements stored in the tables of total deduplicators");
+
     public static StatementDeduplicator newTotalDeduplicator(final ComparisonMethod method) {
 
         Preconditions.checkNotNull(method);
@@ -212,6 +215,7 @@ public abstract class StatementDeduplicator {
                             this.hashes[slot] = lo;
                             this.hashes[slot + 1] = hi;
                             ++this.size;
+                            ENTRIES.increment();
                             if (this.size >= this.hashes.length / 3) { // fill factor 0.66
                                 rehash();
                             }
@@ -290,6 +294,7 @@ public abstract class StatementDeduplicator {
                             this.values[valueIndex + 2] = obj;
                             this.values[valueIndex + 3] = ctx;
                             ++this.size;
+                            ENTRIES.increment();
                             if (this.size >= (this.hashes.length << 1) / 3) { // fill factor 0.66
                                 final Object[] pair = rehash(this.hashes, this.values);
                                 this.hashes = (int[]) pair[0];
@@ -358,6 +363,7 @@ public abstract class StatementDeduplicator {
                             this.values[valueIndex + 2] = obj;
                             this.values[valueIndex + 3] = ctx;
                             ++this.size;
+                            ENTRIES.increment();
                             if (this.size >= (this.hashes.length << 1) / 3) { // fill factor 0.66
                                 final Object[] pair = rehash(this.hashes, this.values);
                                 this.hashes = (int[]) pair[0];
@@ -260,10 +260,11 @@ public final class Statements {
     public static boolean isRDFFormatTextBased(final RDFFormat format) {
         for (final String ext : format.getFileExtensions()) {
             if (ext.equalsIgnoreCase("rdf") || ext.equalsIgnoreCase("rj")
-                    || ext.equalsIgnoreCase("jsonld") || ext.equalsIgnoreCase("nt")
-                    || ext.equalsIgnoreCase("nq") || ext.equalsIgnoreCase("trix")
-                    || ext.equalsIgnoreCase("trig") || ext.equalsIgnoreCase("tql")
-                    || ext.equalsIgnoreCase("ttl") || ext.equalsIgnoreCase("n3")) {
+                    || ext.equalsIgnoreCase("jsonld") || ext.equalsIgnoreCase("ndjsonld")
+                    || ext.equalsIgnoreCase("nt") || ext.equalsIgnoreCase("nq")
+                    || ext.equalsIgnoreCase("trix") || ext.equalsIgnoreCase("trig")
+                    || ext.equalsIgnoreCase("tql") || ext.equalsIgnoreCase("ttl")
+                    || ext.equalsIgnoreCase("n3")) {
                 return true;
             }
         }
@@ -273,7 +274,8 @@ public final class Statements {
     public static boolean isRDFFormatLineBased(final RDFFormat format) {
         for (final String ext : format.getFileExtensions()) {
             if (ext.equalsIgnoreCase("nt") || ext.equalsIgnoreCase("nq")
-                    || ext.equalsIgnoreCase("tql")) {
+                    || ext.equalsIgnoreCase("tql") || ext.equalsIgnoreCase("ndjsonld")
+                    || ext.equalsIgnoreCase("bq")) {
                 return true;
             }
         }
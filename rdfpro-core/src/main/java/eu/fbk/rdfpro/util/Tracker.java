@@ -16,6 +16,8 @@ package eu.fbk.rdfpro.util;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -47,17 +49,25 @@ public final class Tracker {
     @Nullable
     private Integer statusKey;
 
-    private final AtomicLong counter;
+    // Each thread increments its own counter (a cell), so that no cache line is shared among
+    // threads on the hot path. The aggregate is computed by summing cells only when a thread
+    // notices that a status update is due, which is checked once every 'chunkSize' increments
 
-    private long counterAtTs = 0;
+    private ConcurrentLinkedQueue<Cell> cells;
 
-    private long ts0;
+    private ThreadLocal<Cell> threadCell;
 
-    private long ts1;
+    private final AtomicBoolean updating;
 
-    private long ts;
+    private volatile long chunkSize;
+
+    private volatile long nextTs;
+
+    private long counterAtTs;
 
-    private long chunkSize;
+    private long ts0;
+
+    private long ts;
 
     public Tracker(final Logger logger, @Nullable final String startMessage,
             @Nullable final String endMessage, @Nullable final String statusMessage) {
@@ -66,33 +76,32 @@ public final class Tracker {
         this.endMessage = endMessage;
         this.statusMessage = statusMessage;
         this.statusKey = null;
-        this.counter = new AtomicLong(0L);
+        this.updating = new AtomicBoolean(false);
+        reset();
     }
 
     public void start() {
-        this.counter.set(0L);
-        this.counterAtTs = 0;
-        this.ts0 = 0;
-        this.ts1 = 0;
-        this.ts = 0;
-        this.chunkSize = 1L;
+        reset();
         if (this.startMessage != null) {
             this.logger.info(this.startMessage);
         }
     }
 
     public void increment() {
-        final long counter = this.counter.getAndIncrement();
-        if (counter % this.chunkSize == 0 && this.statusMessage != null) {
-            updateStatus(counter + 1);
+        final Cell cell = this.threadCell.get();
+        final long counter = cell.get() + 1;
+        cell.lazySet(counter); // single writer: no atomic RMW needed
+        if (counter >= cell.nextCheck) {
+            check(cell, counter);
         }
     }
 
     public void add(final long delta) {
-        final long counter = this.counter.addAndGet(delta);
-        if (this.statusMessage != null
-                && (counter - delta) / this.chunkSize < counter / this.chunkSize) {
-            updateStatus(counter);
+        final Cell cell = this.threadCell.get();
+        final long counter = cell.get() + delta;
+        cell.lazySet(counter);
+        if (counter >= cell.nextCheck) {
+            check(cell, counter);
         }
     }
 
@@ -101,41 +110,83 @@ public final class Tracker {
             registerStatus(this.statusKey, null);
         }
         if (this.endMessage != null) {
-            final long ts = this.ts1;
-            final long avgThroughput = this.counter.get() * 1000 / (ts - this.ts0 + 1);
+            final long counter = sum();
+            final long ts0 = this.ts0;
+            final long avgThroughput = ts0 == 0 ? 0L : counter * 1000
+                    / (System.currentTimeMillis() - ts0 + 1);
             if (this.logger.isInfoEnabled()) {
-                this.logger
-                        .info(String.format(this.endMessage, this.counter.get(), avgThroughput));
+                this.logger.info(String.format(this.endMessage, counter, avgThroughput));
             }
         }
     }
 
-    private synchronized void updateStatus(final long counter) {
-        synchronized (this) {
-            final long ts = System.currentTimeMillis();
-            this.ts1 = ts;
-            if (this.ts0 == 0) {
-                this.ts0 = ts;
-                this.ts = ts;
-                this.statusKey = STATUS_KEY_COUNTER.getAndIncrement();
+    private void reset() {
+        final ConcurrentLinkedQueue<Cell> cells = new ConcurrentLinkedQueue<Cell>();
+        this.cells = cells;
+        this.threadCell = new ThreadLocal<Cell>() {
+
+            @Override
+            protected Cell initialValue() {
+                final Cell cell = new Cell();
+                cells.add(cell);
+                return cell;
             }
-            final long delta = ts - this.ts0;
-            if (delta > 0) {
-                final long avgThroughput = counter * 1000 / delta;
-                this.chunkSize = avgThroughput < 10 ? 1
-                        : avgThroughput < 10000 ? avgThroughput / 10 : 1000;
-                if (ts / 1000 - this.ts / 1000 >= 1 || this.chunkSize == 1) {
-                    final long throughput = ts == this.ts ? 0L : (counter - this.counterAtTs)
-                            * 1000 / (ts - this.ts);
-                    this.ts = ts;
-                    this.counterAtTs = counter;
-                    registerStatus(this.statusKey, String.format(this.statusMessage, counter - 1,
-                            throughput, avgThroughput));
+
+        };
+        this.chunkSize = 1L;
+        this.nextTs = 0L;
+        this.counterAtTs = 0L;
+        this.ts0 = 0L;
+        this.ts = 0L;
+    }
+
+    private long sum() {
+        long sum = 0L;
+        for (final Cell cell : this.cells) {
+            sum += cell.get();
+        }
+        return sum;
+    }
+
+    private void check(final Cell cell, final long counter) {
+        cell.nextCheck = counter + this.chunkSize;
+        if (this.ts0 == 0L || System.currentTimeMillis() >= this.nextTs) {
+            if (this.updating.compareAndSet(false, true)) {
+                try {
+                    updateStatus();
+                } finally {
+                    this.updating.set(false);
                 }
             }
         }
     }
 
+    private void updateStatus() {
+        final long ts = System.currentTimeMillis();
+        if (this.ts0 == 0L) {
+            this.ts0 = ts;
+            this.ts = ts;
+            this.statusKey = STATUS_KEY_COUNTER.getAndIncrement();
+        }
+        this.nextTs = (ts / 1000 + 1) * 1000; // next update at the beginning of next second
+        final long counter = sum();
+        final long delta = ts - this.ts0;
+        if (delta > 0) {
+            final long avgThroughput = counter * 1000 / delta;
+            final int numThreads = Math.max(1, this.cells.size());
+            this.chunkSize = Math.max(1L, (avgThroughput < 10 ? 1
+                    : avgThroughput < 10000 ? avgThroughput / 10 : 1000) / numThreads);
+            if (this.statusMessage != null) {
+                final long throughput = ts == this.ts ? 0L : (counter - this.counterAtTs)
+                        * 1000 / (ts - this.ts);
+                this.ts = ts;
+                this.counterAtTs = counter;
+                registerStatus(this.statusKey, String.format(this.statusMessage, counter,
+                        throughput, avgThroughput));
+            }
+        }
+    }
+
     private static void registerStatus(final Integer key, @Nullable final String message) {
         synchronized (STATUS_DATA) {
             if (message == null) {
@@ -162,4 +213,15 @@ public final class Tracker {
         }
     }
 
+    @SuppressWarnings("serial")
+    private static final class Cell extends AtomicLong {
+
+        // padding to keep the counters of different threads on different cache lines
+
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        long nextCheck;
+
+    }
+
 }
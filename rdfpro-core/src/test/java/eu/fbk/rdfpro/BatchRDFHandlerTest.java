@@ -0,0 +1,84 @@
+package eu.fbk.rdfpro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+public class BatchRDFHandlerTest {
+
+    private static final Statement[] STMTS = new Statement[] {
+            new StatementImpl(new URIImpl("ex:a"), RDF.TYPE, RDFS.CLASS),
+            new StatementImpl(new URIImpl("ex:b"), RDFS.LABEL, new URIImpl("ex:x")),
+            new StatementImpl(new URIImpl("ex:c"), RDF.TYPE, RDFS.RESOURCE) };
+
+    @Test
+    public void testForwarding() throws RDFHandlerException {
+
+        final List<Integer> batches = new ArrayList<>();
+        final List<Statement> stmts = new ArrayList<>();
+        final AbstractRDFHandler sink = new AbstractRDFHandler() {
+
+            @Override
+            public void handleStatement(final Statement statement) {
+                stmts.add(statement);
+            }
+
+            @Override
+            public void handleStatements(final Statement[] statements, final int count)
+                    throws RDFHandlerException {
+                batches.add(count);
+                super.handleStatements(statements, count);
+            }
+
+        };
+
+        // Pass-through wrapper forwards the whole batch
+        RDFHandlers.handleStatements(new AbstractRDFHandlerWrapper(sink) {}, STMTS, 2);
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(2, (int) batches.get(0));
+        Assert.assertEquals(2, stmts.size());
+
+        // Filtering wrapper sees each statement of the batch
+        batches.clear();
+        stmts.clear();
+        RDFHandlers.handleStatements(new AbstractRDFHandlerWrapper(sink) {
+
+            @Override
+            public void handleStatement(final Statement statement) throws RDFHandlerException {
+                if (statement.getPredicate().equals(RDF.TYPE)) {
+                    super.handleStatement(statement);
+                }
+            }
+
+        }, STMTS, STMTS.length);
+        Assert.assertTrue(batches.isEmpty());
+        Assert.assertEquals(2, stmts.size());
+
+        // Transform processor forwards its output as a batch
+        batches.clear();
+        stmts.clear();
+        final RDFHandler handler = RDFProcessors.transform(
+                Transformer.filter(new Predicate<Statement>() {
+
+                    @Override
+                    public boolean test(final Statement statement) {
+                        return statement.getPredicate().equals(RDF.TYPE);
+                    }
+
+                })).wrap(sink);
+        RDFHandlers.handleStatements(handler, STMTS, STMTS.length);
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(2, stmts.size());
+    }
+
+}
@@ -0,0 +1,316 @@
+package eu.fbk.rdfpro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+public class ProcessorMapReduceTest {
+
+    private static final ValueFactory VF = ValueFactoryImpl.getInstance();
+
+    private static final URI COUNT = VF.createURI("ex:count");
+
+    private static final Reducer COUNTER = (final Value key, final Statement[] statements,
+            final RDFHandler handler) -> handler.handleStatement(VF.createStatement(
+            (Resource) key, COUNT, VF.createLiteral(statements.length)));
+
+    @Test
+    public void testHashSpill() throws Throwable {
+        final List<Statement> stmts = generate(20000, 500);
+        for (final boolean deduplicate : new boolean[] { false, true }) {
+            // 4 partitions, at most 100 statements buffered in memory per partition
+            final RDFProcessor processor = new ProcessorMapReduce(Mapper.select("s"), COUNTER,
+                    deduplicate, false, 4, 400, 0);
+            Assert.assertEquals(counts(stmts, deduplicate), counts(apply(processor, stmts)));
+        }
+    }
+
+    @Test
+    public void testHashParse() throws Throwable {
+        final List<Statement> stmts = generate(5000, 100);
+        for (final String spec : new String[] { "@mapreduce -p -u 's'", "@mapreduce -p -u s" }) {
+            final RDFProcessor processor = RDFProcessors.parse(true, spec);
+            final List<Statement> output = apply(processor, stmts);
+            Assert.assertEquals(new HashSet<>(stmts).size(), output.size());
+            Assert.assertEquals(new HashSet<>(stmts), new HashSet<>(output));
+        }
+    }
+
+    @Test
+    public void testCombiner() throws Throwable {
+        final List<Statement> stmts = generate(20000, 100);
+        final AtomicInteger combinations = new AtomicInteger(0);
+        final Reducer reducer = new Reducer() {
+
+            @Override
+            public void reduce(final Value key, final Statement[] statements,
+                    final RDFHandler handler) throws RDFHandlerException {
+                handler.handleStatement(VF.createStatement((Resource) key, COUNT,
+                        VF.createLiteral(count(statements))));
+            }
+
+            @Override
+            public boolean isCombinable() {
+                return true;
+            }
+
+            @Override
+            public Statement[] combine(final Value key, final Statement[] statements) {
+                combinations.incrementAndGet();
+                return new Statement[] { VF.createStatement((Resource) key, COUNT,
+                        VF.createLiteral(count(statements))) };
+            }
+
+            private int count(final Statement[] statements) {
+                int count = 0;
+                for (final Statement stmt : statements) {
+                    count += stmt.getPredicate().equals(COUNT) ? Integer.parseInt(stmt
+                            .getObject().stringValue()) : 1;
+                }
+                return count;
+            }
+
+        };
+        for (final boolean sortKeys : new boolean[] { true, false }) {
+            combinations.set(0);
+            final RDFProcessor processor = new ProcessorMapReduce(Mapper.select("s"), reducer,
+                    false, sortKeys, 4, 400, 0);
+            final List<Statement> output = apply(processor, stmts);
+            Assert.assertEquals(100, output.size());
+            Assert.assertEquals(counts(stmts, false), counts(output));
+            Assert.assertTrue(combinations.get() > 0);
+        }
+    }
+
+    @Test
+    public void testCombinerFilter() throws Throwable {
+        // Only subjects never associated to object 39 are kept (with 50 subjects and 40
+        // objects, these are the subjects whose index does not end with 9)
+        final List<Statement> stmts = generate(20000, 50);
+        final Reducer reducer = Reducer.filter(COUNTER, null,
+                (final Statement stmt) -> !stmt.getObject().stringValue().equals("39"));
+        Assert.assertTrue(reducer.isCombinable());
+        final Map<Value, Integer> expected = new HashMap<>();
+        for (final Map.Entry<Value, Integer> entry : counts(stmts, false).entrySet()) {
+            boolean violated = false;
+            for (final Statement stmt : stmts) {
+                violated |= stmt.getSubject().equals(entry.getKey())
+                        && stmt.getObject().stringValue().equals("39");
+            }
+            if (!violated) {
+                expected.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Assert.assertFalse(expected.isEmpty());
+        for (final boolean sortKeys : new boolean[] { true, false }) {
+            final RDFProcessor processor = new ProcessorMapReduce(Mapper.select("s"), reducer,
+                    false, sortKeys, 4, 400, 0);
+            final Map<Value, Integer> actual = counts(apply(processor, stmts));
+            Assert.assertEquals(expected.keySet(), actual.keySet());
+        }
+    }
+
+    @Test
+    public void testSkew() throws Throwable {
+
+        // A heavy key with 20000 statements (2800 distinct ones), plus 100 light keys
+        final List<Statement> stmts = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            stmts.add(VF.createStatement(VF.createURI("ex:heavy"), VF.createURI("ex:p" + i % 7),
+                    VF.createLiteral(i % 400)));
+        }
+        stmts.addAll(generate(1000, 100));
+        Collections.shuffle(stmts, new Random(0));
+
+        for (final boolean sortKeys : new boolean[] { true, false }) {
+            for (final boolean deduplicate : new boolean[] { false, true }) {
+                // Splittable reducer: heavy key reduced in chunks of at most 1000 statements,
+                // with no chunk overlapping another one when deduplicating
+                final List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+                final Reducer identity = new Reducer() {
+
+                    @Override
+                    public void reduce(final Value key, final Statement[] statements,
+                            final RDFHandler handler) throws RDFHandlerException {
+                        if (key.stringValue().equals("ex:heavy")) {
+                            sizes.add(statements.length);
+                        }
+                        Reducer.IDENTITY.reduce(key, statements, handler);
+                    }
+
+                    @Override
+                    public boolean isSplittable() {
+                        return true;
+                    }
+
+                };
+                final List<Statement> output = apply(new ProcessorMapReduce(
+                        Mapper.select("s"), identity, deduplicate, sortKeys, 4, 1000000, 1000),
+                        stmts);
+                if (deduplicate) {
+                    Assert.assertEquals(new HashSet<>(stmts).size(), output.size());
+                    Assert.assertEquals(new HashSet<>(stmts), new HashSet<>(output));
+                } else {
+                    Assert.assertEquals(stmts.size(), output.size());
+                    Assert.assertEquals(counts(stmts, false), counts(output, false));
+                }
+                if (sortKeys || !deduplicate) {
+                    Assert.assertTrue(sizes.size() > 1);
+                }
+
+                // Non splittable reducer: heavy key reduced at once
+                final List<Statement> counts = apply(new ProcessorMapReduce(Mapper.select("s"),
+                        COUNTER, deduplicate, sortKeys, 4, 1000000, 1000), stmts);
+                Assert.assertEquals(101, counts.size());
+                Assert.assertEquals(counts(stmts, deduplicate), counts(counts));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyTooLarge() throws Throwable {
+
+        // A heavy key with 20000 statements exceeds the 5000 statements that can be reduced at
+        // once: this is an error with a non splittable reducer, not with a splittable one
+        final List<Statement> stmts = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            stmts.add(VF.createStatement(VF.createURI("ex:heavy"), VF.createURI("ex:p"),
+                    VF.createLiteral(i)));
+        }
+        stmts.addAll(generate(1000, 100));
+        final Reducer splittable = new Reducer() {
+
+            @Override
+            public void reduce(final Value key, final Statement[] statements,
+                    final RDFHandler handler) throws RDFHandlerException {
+                Assert.assertTrue(statements.length <= 1000);
+                COUNTER.reduce(key, statements, handler);
+            }
+
+            @Override
+            public boolean isSplittable() {
+                return true;
+            }
+
+        };
+        for (final boolean sortKeys : new boolean[] { true, false }) {
+            final List<Statement> output = apply(new ProcessorMapReduce(Mapper.select("s"),
+                    splittable, false, sortKeys, 4, 1000000, 1000, 5000), stmts);
+            Assert.assertEquals(counts(stmts, false), counts(output));
+            try {
+                apply(new ProcessorMapReduce(Mapper.select("s"), COUNTER, false, sortKeys, 4,
+                        1000000, 1000, 5000), stmts);
+                Assert.fail();
+            } catch (final Throwable ex) {
+                Throwable cause = ex;
+                while (!(cause instanceof RDFHandlerException) && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                Assert.assertTrue(ex.toString(), cause.getMessage().contains("ex:heavy"));
+            }
+        }
+    }
+
+    @Test
+    public void testCombinerDisabled() throws Throwable {
+        // A combiner that never shrinks its input (forall filter satisfied by all statements)
+        // is disabled after a while, with all statements still reaching the reducer
+        final List<Statement> stmts = generate(300000, 100);
+        final Reducer filter = Reducer.filter(COUNTER, null, (final Statement stmt) -> true);
+        final AtomicLong combined = new AtomicLong(0L);
+        final Reducer reducer = new Reducer() {
+
+            @Override
+            public void reduce(final Value key, final Statement[] statements,
+                    final RDFHandler handler) throws RDFHandlerException {
+                filter.reduce(key, statements, handler);
+            }
+
+            @Override
+            public boolean isCombinable() {
+                return true;
+            }
+
+            @Override
+            public Statement[] combine(final Value key, final Statement[] statements)
+                    throws RDFHandlerException {
+                combined.addAndGet(statements.length);
+                return filter.combine(key, statements);
+            }
+
+        };
+        for (final boolean sortKeys : new boolean[] { true, false }) {
+            combined.set(0L);
+            final List<Statement> output = Collections.synchronizedList(new ArrayList<>());
+            final RDFHandler handler = new ProcessorMapReduce(Mapper.select("s"), reducer,
+                    false, sortKeys, 4, 1000000, 0).wrap(RDFHandlers.wrap(output));
+            handler.startRDF();
+            for (final Statement stmt : stmts) {
+                handler.handleStatement(stmt); // single thread, thus single combine buffer
+            }
+            handler.endRDF();
+            Assert.assertEquals(counts(stmts, false), counts(output));
+            Assert.assertTrue(combined.get() < stmts.size() / 2);
+        }
+    }
+
+    static List<Statement> generate(final int count, final int numSubjects) {
+        final List<Statement> stmts = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            stmts.add(VF.createStatement(VF.createURI("ex:s" + i % numSubjects),
+                    VF.createURI("ex:p" + i % 7), VF.createLiteral(i % 40)));
+        }
+        return stmts;
+    }
+
+    static List<Statement> apply(final RDFProcessor processor, final List<Statement> stmts)
+            throws Throwable {
+        final List<Statement> output = Collections.synchronizedList(new ArrayList<>());
+        processor.apply(RDFSources.wrap(stmts), RDFHandlers.wrap(output), 1);
+        return output;
+    }
+
+    static Map<Value, Integer> counts(final List<Statement> stmts, final boolean deduplicate) {
+        final Map<Value, Integer> counts = new HashMap<>();
+        final Set<List<Value>> seen = new HashSet<>();
+        for (final Statement stmt : stmts) {
+            if (!deduplicate || seen.add(Arrays.asList(stmt.getSubject(), stmt.getPredicate(),
+                    stmt.getObject(), stmt.getContext()))) {
+                final Integer count = counts.get(stmt.getSubject());
+                counts.put(stmt.getSubject(), count == null ? 1 : count + 1);
+            }
+        }
+        return counts;
+    }
+
+    static Map<Value, Integer> counts(final List<Statement> output) {
+        final Map<Value, Integer> counts = new HashMap<>();
+        for (final Statement stmt : output) {
+            Assert.assertEquals(COUNT, stmt.getPredicate());
+            final Integer count = counts.get(stmt.getSubject());
+            counts.put(stmt.getSubject(), (count == null ? 0 : count)
+                    + Integer.parseInt(stmt.getObject().stringValue()));
+        }
+        return counts;
+    }
+
+}
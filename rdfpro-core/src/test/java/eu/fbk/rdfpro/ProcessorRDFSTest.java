@@ -0,0 +1,82 @@
+package eu.fbk.rdfpro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.util.Statements;
+
+public class ProcessorRDFSTest {
+
+    @Test
+    public void testRDFSMemoization() throws RDFHandlerException {
+
+        // TBox: 200 leaf classes sharing 30 superclasses, property p with domain M0
+        final ValueFactory vf = Statements.VALUE_FACTORY;
+        final String ns = "http://example.org/";
+        final URI p = vf.createURI(ns + "p");
+        final List<Statement> tbox = new ArrayList<>();
+        tbox.add(vf.createStatement(p, RDFS.DOMAIN, vf.createURI(ns + "M0")));
+        final Set<Resource> expected = new HashSet<>();
+        expected.add(RDFS.RESOURCE);
+        for (int j = 0; j < 30; ++j) {
+            expected.add(vf.createURI(ns + "M" + j));
+        }
+        for (int i = 0; i < 200; ++i) {
+            final URI leaf = vf.createURI(ns + "L" + i);
+            expected.add(leaf);
+            for (int j = 0; j < 30; ++j) {
+                tbox.add(vf.createStatement(leaf, RDFS.SUBCLASSOF, vf.createURI(ns + "M" + j)));
+            }
+        }
+
+        // ABox: subject-clustered types and property values of 30 subjects
+        final List<Statement> output = new ArrayList<>();
+        final RDFHandler handler = RDFProcessors.rdfs(RDFSources.wrap(tbox), null, false, false)
+                .wrap(RDFHandlers.wrap(output));
+        final URI g = vf.createURI(ns + "g");
+        handler.startRDF();
+        for (int k = 0; k < 30; ++k) {
+            final URI s = vf.createURI(ns + "s" + k);
+            for (int i = 0; i < 200; ++i) {
+                handler.handleStatement(vf.createStatement(s, RDF.TYPE,
+                        vf.createURI(ns + "L" + i), g));
+                handler.handleStatement(vf.createStatement(s, p, vf.createLiteral(i), g));
+            }
+        }
+        handler.endRDF();
+
+        // Each subject must get its whole closure, with each type emitted once
+        final Map<Resource, Set<Resource>> types = new HashMap<>();
+        for (final Statement stmt : output) {
+            if (stmt.getPredicate().equals(RDF.TYPE)
+                    && stmt.getSubject().stringValue().startsWith(ns + "s")) {
+                Set<Resource> set = types.get(stmt.getSubject());
+                if (set == null) {
+                    set = new HashSet<>();
+                    types.put(stmt.getSubject(), set);
+                }
+                Assert.assertTrue("Duplicate " + stmt, set.add((Resource) stmt.getObject()));
+            }
+        }
+        Assert.assertEquals(30, types.size());
+        for (final Set<Resource> set : types.values()) {
+            Assert.assertEquals(expected, set);
+        }
+    }
+
+}
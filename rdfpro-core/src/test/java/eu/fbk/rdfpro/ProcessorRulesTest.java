@@ -0,0 +1,162 @@
+package eu.fbk.rdfpro;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+
+import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Metrics;
+
+public class ProcessorRulesTest {
+
+    private static final ValueFactory VF = ValueFactoryImpl.getInstance();
+
+    private static final String NS = "http://example.org/";
+
+    @BeforeClass
+    public static void setUp() {
+        ProcessorRules.configureCache(1, null);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        final int size = Integer.parseInt(Environment.getProperty("rdfpro.rules.cache.size",
+                "0"));
+        ProcessorRules.configureCache(size, Environment.getProperty("rdfpro.rules.cache.dir"));
+    }
+
+    @Test
+    public void testCacheHit() throws Throwable {
+
+        final Metrics.Counter hits = Metrics.counter("rdfpro_rules_cache_hits_total", "");
+        final Metrics.Counter misses = Metrics.counter("rdfpro_rules_cache_misses_total", "");
+        final File tbox = tbox("HitA", "HitB");
+
+        // The first instance preprocesses the ruleset, the second reuses the cached result
+        final long hits0 = hits.getValue();
+        final long misses0 = misses.getValue();
+        final Set<Statement> first = infer(tbox, "HitA");
+        Assert.assertEquals(hits0, hits.getValue());
+        Assert.assertEquals(misses0 + 1, misses.getValue());
+        final Set<Statement> second = infer(tbox, "HitA");
+        Assert.assertEquals(hits0 + 1, hits.getValue());
+        Assert.assertEquals(misses0 + 1, misses.getValue());
+        Assert.assertEquals(first, second);
+        Assert.assertTrue(first.contains(VF.createStatement(VF.createURI(NS + "x"), RDF.TYPE,
+                VF.createURI(NS + "HitB"))));
+
+        // Changing the TBox content changes the key, even if the file name stays the same
+        Files.write(tbox.toPath(), Arrays.asList("@prefix rdfs: "
+                + "<http://www.w3.org/2000/01/rdf-schema#> .", "<" + NS + "HitA> "
+                + "rdfs:subClassOf <" + NS + "HitC> ."), StandardCharsets.UTF_8);
+        final Set<Statement> third = infer(tbox, "HitA");
+        Assert.assertEquals(hits0 + 1, hits.getValue());
+        Assert.assertEquals(misses0 + 2, misses.getValue());
+        Assert.assertTrue(third.contains(VF.createStatement(VF.createURI(NS + "x"), RDF.TYPE,
+                VF.createURI(NS + "HitC"))));
+        tbox.delete();
+    }
+
+    @Test
+    public void testDiskCache() throws Throwable {
+
+        final Metrics.Counter hits = Metrics.counter("rdfpro_rules_cache_hits_total", "");
+        final File tbox = tbox("DiskA", "DiskB");
+        final File dir = Files.createTempDirectory("rdfpro-rules-").toFile();
+        try {
+            // Compute the expected output without caching
+            ProcessorRules.configureCache(0, null);
+            final Set<Statement> expected = infer(tbox, "DiskA", "owl2rl");
+
+            // The first run stores the preprocessing result; the memory cache is then cleared
+            // so that the second run has to load it from disk, producing the same output
+            ProcessorRules.configureCache(1, dir.getAbsolutePath());
+            Assert.assertEquals(expected, infer(tbox, "DiskA", "owl2rl"));
+            Assert.assertEquals(2, dir.listFiles().length); // ruleset + TBox closure
+            ProcessorRules.configureCache(1, dir.getAbsolutePath());
+            final long hits0 = hits.getValue();
+            Assert.assertEquals(expected, infer(tbox, "DiskA", "owl2rl"));
+            Assert.assertEquals(hits0 + 1, hits.getValue());
+
+        } finally {
+            ProcessorRules.configureCache(1, null);
+            for (final File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+            tbox.delete();
+        }
+    }
+
+    @Test
+    public void testDropBNodeTypes() throws Throwable {
+
+        final File tbox = tbox("DropA", "DropB");
+        try {
+            final List<Statement> data = new ArrayList<>();
+            for (int i = 0; i < 5000; ++i) {
+                final URI subj = VF.createURI(NS + "x" + i);
+                data.add(VF.createStatement(subj, RDF.TYPE, VF.createURI(NS + "DropA")));
+                data.add(VF.createStatement(subj, RDF.TYPE, VF.createBNode("b" + i)));
+            }
+            final List<Statement> result = new ArrayList<>();
+            final RDFProcessor processor = RDFProcessors.parse(true, "@rules -r rdfs -t '"
+                    + tbox.getAbsolutePath() + "'");
+            processor.apply(RDFSources.wrap(data), RDFHandlers.wrap(result), 1);
+
+            final Set<Statement> set = new HashSet<>(result);
+            for (final Statement stmt : set) {
+                Assert.assertFalse(stmt.toString(), RDF.TYPE.equals(stmt.getPredicate())
+                        && stmt.getObject() instanceof BNode);
+            }
+            for (int i = 0; i < 5000; ++i) {
+                Assert.assertTrue(set.contains(VF.createStatement(VF.createURI(NS + "x" + i),
+                        RDF.TYPE, VF.createURI(NS + "DropB"))));
+            }
+        } finally {
+            tbox.delete();
+        }
+    }
+
+    private static File tbox(final String subClass, final String superClass) throws Throwable {
+        final File file = File.createTempFile("rdfpro-tbox-", ".ttl");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("@prefix rdfs: "
+                + "<http://www.w3.org/2000/01/rdf-schema#> .", "<" + NS + subClass + "> "
+                + "rdfs:subClassOf <" + NS + superClass + "> ."), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static Set<Statement> infer(final File tbox, final String type) throws Throwable {
+        return infer(tbox, type, "rdfs");
+    }
+
+    private static Set<Statement> infer(final File tbox, final String type, final String ruleset)
+            throws Throwable {
+        final URI subj = VF.createURI(NS + "x");
+        final List<Statement> data = Arrays.asList(VF.createStatement(subj, RDF.TYPE,
+                VF.createURI(NS + type)));
+        final List<Statement> result = new ArrayList<>();
+        final RDFProcessor processor = RDFProcessors.parse(true, "@rules -r " + ruleset + " '"
+                + tbox.getAbsolutePath() + "'");
+        processor.apply(RDFSources.wrap(data), RDFHandlers.wrap(result), 1);
+        return new HashSet<>(result);
+    }
+
+}
@@ -0,0 +1,60 @@
+package eu.fbk.rdfpro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.WriterConfig;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+
+public class RDFHandlersTest {
+
+    @Test
+    public void testDecoupleQueueAfterClose() throws Throwable {
+        final List<Statement> statements = new ArrayList<>();
+        final RDFHandler handler = RDFHandlers.decouple(RDFHandlers.wrap(statements), 2);
+        final Statement statement = ValueFactoryImpl.getInstance().createStatement(
+                RDF.TYPE, RDF.TYPE, RDF.PROPERTY);
+        handler.startRDF();
+        handler.handleStatement(statement);
+        ((AutoCloseable) handler).close();
+        try {
+            handler.handleStatement(statement); // must not be silently dropped
+            Assert.fail();
+        } catch (final RDFHandlerException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNewWriterConfig() {
+        final WriterConfig defaults = RDFHandlers.newWriterConfig(
+                Collections.<String>emptyList(), "out.ttl");
+        Assert.assertTrue(defaults.get(BasicWriterSettings.PRETTY_PRINT));
+
+        final WriterConfig config = RDFHandlers.newWriterConfig(
+                Arrays.asList("org.openrdf.rio.prettyprint = false"), "out.nt", "out.ttl");
+        Assert.assertFalse(config.get(BasicWriterSettings.PRETTY_PRINT));
+        Assert.assertTrue(config.get(BasicWriterSettings.XSD_STRING_TO_PLAIN_LITERAL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewWriterConfigUnknownKey() {
+        RDFHandlers.newWriterConfig(Arrays.asList("eu.fbk.unknown=true"), "out.ttl");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewWriterConfigInvalidValue() {
+        RDFHandlers.newWriterConfig(Arrays.asList("org.openrdf.rio.prettyprint=maybe"),
+                "out.ttl");
+    }
+
+}
@@ -0,0 +1,124 @@
+package eu.fbk.rdfpro;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+
+public class RDFSourcesTest {
+
+    @Test
+    public void testSpillCache() throws Throwable {
+        for (final boolean parallelize : new boolean[] { false, true }) {
+            final File dir = Files.createTempDirectory("rdfpro-test-").toFile();
+            try {
+                // A TriG file with namespaces, named graphs and bnodes, plus an N-Quads file
+                // that is parsed in parallel chunks when parallelize is true
+                final File trig = new File(dir, "data.trig.gz");
+                final File nquads = new File(dir, "data.nq.gz");
+                final StringBuilder trigData = new StringBuilder();
+                trigData.append("@prefix ex: <http://example.org/> .\n");
+                trigData.append("@prefix foaf: <http://xmlns.com/foaf/0.1/> .\n");
+                trigData.append("ex:g1 { ex:a foaf:knows _:x . _:x foaf:name \"x\"@en . }\n");
+                trigData.append("{ ex:a foaf:name \"a\" . _:y foaf:knows _:x . }\n");
+                write(trig, trigData.toString());
+                final StringBuilder nquadsData = new StringBuilder();
+                for (int i = 0; i < 20000; ++i) {
+                    nquadsData.append("_:b").append(i % 100).append(" <http://example.org/p> \"")
+                            .append(i).append("\" <http://example.org/g").append(i % 3)
+                            .append("> .\n");
+                }
+                write(nquads, nquadsData.toString());
+
+                // Read twice: source files are deleted after the first pass, so the second
+                // pass must be replayed from the spill cache
+                final List<Set<String>> statements = new ArrayList<>();
+                final List<Map<String, String>> namespaces = new ArrayList<>();
+                final RDFSource source = RDFSources.read(parallelize, false, null, null,
+                        trig.getAbsolutePath(), nquads.getAbsolutePath());
+                source.emit(new AbstractRDFHandler() {
+
+                    @Override
+                    public void startRDF() {
+                        statements.add(Collections.synchronizedSet(new HashSet<>()));
+                        namespaces.add(Collections.synchronizedMap(new HashMap<>()));
+                    }
+
+                    @Override
+                    public void handleNamespace(final String prefix, final String uri) {
+                        namespaces.get(namespaces.size() - 1).put(prefix, uri);
+                    }
+
+                    @Override
+                    public void handleStatement(final Statement stmt) {
+                        Assert.assertTrue(statements.get(statements.size() - 1).add(
+                                format(stmt)));
+                    }
+
+                    @Override
+                    public void endRDF() throws RDFHandlerException {
+                        Assert.assertTrue(trig.delete() || !trig.exists());
+                        Assert.assertTrue(nquads.delete() || !nquads.exists());
+                    }
+
+                }, 2);
+
+                Assert.assertEquals(2, statements.size());
+                Assert.assertEquals(20004, statements.get(0).size());
+                Assert.assertEquals(statements.get(0), statements.get(1));
+                Assert.assertEquals("http://example.org/", namespaces.get(1).get("ex"));
+                Assert.assertEquals(namespaces.get(0), namespaces.get(1));
+
+                // Bnodes are rewritten once and keep their identity within the file
+                final Set<String> bnodes = new HashSet<>();
+                for (final String stmt : statements.get(1)) {
+                    if (stmt.contains("<http://example.org/p>")) {
+                        bnodes.add(stmt.substring(0, stmt.indexOf(' ')));
+                    }
+                }
+                Assert.assertEquals(100, bnodes.size());
+                Assert.assertFalse(bnodes.contains("_:b0"));
+
+            } finally {
+                for (final File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static void write(final File file, final String data) throws Throwable {
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(
+                file)), Charset.forName("UTF-8"))) {
+            writer.write(data);
+        }
+    }
+
+    private static String format(final Statement stmt) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(stmt.getSubject() instanceof BNode ? "_:" : "");
+        builder.append(stmt.getSubject().stringValue());
+        builder.append(' ').append('<').append(stmt.getPredicate()).append('>');
+        builder.append(' ').append(stmt.getObject());
+        builder.append(' ').append(stmt.getContext());
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,102 @@
+package eu.fbk.rdfpro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+
+import eu.fbk.rdfpro.util.Algebra;
+import eu.fbk.rdfpro.util.QuadModel;
+import eu.fbk.rdfpro.util.Statements;
+
+public class RulesetTest {
+
+    @Test
+    public void testRDFRoundTrip() throws Throwable {
+        for (final Ruleset ruleset : new Ruleset[] { Ruleset.RHODF, Ruleset.RDFS,
+                Ruleset.OWL2RL }) {
+            Assert.assertFalse(ruleset.getMetaVocabularyTerms().isEmpty());
+            final Ruleset parsed = Ruleset.fromRDF(ruleset.toRDF(new ArrayList<Statement>()));
+            Assert.assertEquals(ruleset, parsed);
+            Assert.assertEquals(ruleset.getMetaVocabularyTerms(), parsed
+                    .getMetaVocabularyTerms());
+            Assert.assertEquals(format(ruleset), format(parsed));
+        }
+    }
+
+    @Test
+    public void testParallelInstantiation() throws Throwable {
+
+        // Classes have two labels, so each class produces two identical ABox rules
+        final ValueFactory vf = Statements.VALUE_FACTORY;
+        final URI label = vf.createURI("http://example.org/label");
+        final QuadModel tbox = QuadModel.create();
+        for (int i = 0; i < 600; ++i) {
+            final URI c = vf.createURI("http://example.org/C" + i);
+            tbox.add(c, label, vf.createLiteral("a" + i));
+            tbox.add(c, label, vf.createLiteral("b" + i));
+        }
+        final Rule typed = new Rule(vf.createURI("http://example.org/typed"), true, 0, null,
+                Algebra.parseTupleExpr("?x <http://example.org/typed> ?c", null, null),
+                Algebra.parseTupleExpr("?c <http://example.org/label> ?l . ?x a ?c", null,
+                        null));
+        final Rule copy = new Rule(vf.createURI("http://example.org/copy"), true, 0, null,
+                Algebra.parseTupleExpr("?x <http://example.org/q> ?y", null, null),
+                Algebra.parseTupleExpr("?x <http://example.org/p> ?y", null, null));
+        final Ruleset ruleset = new Ruleset(Arrays.asList(typed, copy),
+                Collections.singleton(label));
+
+        // Parallel and sequential instantiation must give the same rules in the same ID order
+        final List<String> parallel = describe(ruleset.getABoxRuleset(tbox, true));
+        final List<String> sequential = describe(ruleset.getABoxRuleset(tbox, false));
+        Assert.assertEquals(601, parallel.size());
+        Assert.assertEquals(sequential, parallel);
+    }
+
+    private static List<String> describe(final Ruleset ruleset) {
+        // Sort rules by the counter in their IDs, then strip IDs so that runs can be compared
+        final List<Rule> rules = new ArrayList<>(ruleset.getRules());
+        Collections.sort(rules, new Comparator<Rule>() {
+
+            @Override
+            public int compare(final Rule first, final Rule second) {
+                return Long.compare(counter(first), counter(second));
+            }
+
+        });
+        final List<String> result = new ArrayList<>();
+        final Set<URI> ids = new HashSet<>();
+        for (final Rule rule : rules) {
+            Assert.assertTrue(ids.add(rule.getID()));
+            final String id = rule.getID().stringValue();
+            result.add(id.substring(0, id.indexOf("__")) + " " + rule.isFixpoint() + " "
+                    + rule.getPhase() + " " + rule.getDeleteExpr() + " " + rule.getInsertExpr()
+                    + " " + rule.getWhereExpr());
+        }
+        return result;
+    }
+
+    private static long counter(final Rule rule) {
+        final String id = rule.getID().stringValue();
+        return Long.parseLong(id.substring(id.indexOf("__") + 2));
+    }
+
+    private static Set<String> format(final Ruleset ruleset) {
+        // Rule.equals() compares only IDs: compare string representations instead
+        final Set<String> rules = new HashSet<>();
+        for (final Rule rule : ruleset.getRules()) {
+            rules.add(rule.toString());
+        }
+        return rules;
+    }
+
+}
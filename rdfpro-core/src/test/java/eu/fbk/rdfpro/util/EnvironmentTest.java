@@ -0,0 +1,149 @@
+package eu.fbk.rdfpro.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.fbk.rdfpro.util.Environment.Lane;
+
+public class EnvironmentTest {
+
+    @Test
+    public void testCpuLaneBackpressure() throws Throwable {
+        final ExecutorService pool = Environment.newPool(Lane.CPU, 2, 4);
+        try {
+            final CountDownLatch started = new CountDownLatch(2);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger done = new AtomicInteger(0);
+            final Runnable task = new Runnable() {
+
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.incrementAndGet();
+                }
+
+            };
+
+            // Occupy both workers, then fill the submission queue up to its limit
+            pool.execute(task);
+            pool.execute(task);
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 4; ++i) {
+                pool.execute(task);
+            }
+
+            // A further submission must wait until queued tasks are taken by workers
+            final Thread submitter = submit(pool, task);
+            submitter.join(500);
+            Assert.assertTrue(submitter.isAlive());
+            release.countDown();
+            submitter.join(10000);
+            Assert.assertFalse(submitter.isAlive());
+
+            pool.shutdown();
+            Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertEquals(7, done.get());
+            Assert.assertEquals(7, Environment.getStatus(Lane.CPU, pool).getCompletedTasks());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIoLaneOverflow() throws Throwable {
+        final ExecutorService pool = Environment.newPool(Lane.IO, 2, 1);
+        try {
+            final CountDownLatch started = new CountDownLatch(3);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger done = new AtomicInteger(0);
+            final Runnable task = new Runnable() {
+
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.incrementAndGet();
+                }
+
+            };
+
+            // Two pool threads plus one overflow thread may run concurrently
+            for (int i = 0; i < 3; ++i) {
+                pool.execute(task);
+            }
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // Once the overflow thread is taken, submitters wait for a thread to be free
+            final Thread submitter = submit(pool, task);
+            submitter.join(2500);
+            Assert.assertTrue(submitter.isAlive());
+            release.countDown();
+            submitter.join(10000);
+            Assert.assertFalse(submitter.isAlive());
+
+            pool.shutdown();
+            Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && done.get() < 4; ++i) {
+                Thread.sleep(50); // overflow thread is not tracked by the executor
+            }
+            Assert.assertEquals(4, done.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBackgroundLane() throws Throwable {
+        final ExecutorService pool = Environment.newPool(Lane.BACKGROUND, 1, 0);
+        try {
+            Assert.assertTrue(pool instanceof ScheduledExecutorService);
+            final Future<String> future = ((ScheduledExecutorService) pool).schedule(
+                    () -> Thread.currentThread().getName(), 10, TimeUnit.MILLISECONDS);
+            final String name = future.get(10, TimeUnit.SECONDS);
+            Assert.assertTrue(name.startsWith("rdfpro-background-"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGetPool() throws Throwable {
+        for (final Lane lane : Lane.values()) {
+            final ExecutorService pool = Environment.getPool(lane);
+            Assert.assertSame(pool, Environment.getPool(lane));
+            final String name = pool.submit(() -> Thread.currentThread().getName()).get();
+            Assert.assertTrue(name.startsWith("rdfpro-" + lane.name().toLowerCase() + "-"));
+            Assert.assertEquals(lane, Environment.getPoolStatus(lane).getLane());
+        }
+    }
+
+    private static Thread submit(final ExecutorService pool, final Runnable task) {
+        final Thread thread = new Thread() {
+
+            @Override
+            public void run() {
+                pool.execute(task);
+            }
+
+        };
+        thread.start();
+        return thread;
+    }
+
+}
@@ -0,0 +1,101 @@
+package eu.fbk.rdfpro.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.Mapper;
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.Transformer;
+
+public class ExpressionsTest {
+
+    private static final Statement TYPE_STMT = new StatementImpl(new URIImpl("ex:s"), RDF.TYPE,
+            new URIImpl("ex:c"));
+
+    private static final Statement LABEL_STMT = new StatementImpl(new URIImpl("ex:s"),
+            RDFS.LABEL, new LiteralImpl("hello world", "en"));
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPredicate() {
+        final Predicate<Statement> p1 = Scripting.compile(Predicate.class,
+                "expr: p = rdf:type && isuri(o)", "q");
+        Assert.assertTrue(p1.test(TYPE_STMT));
+        Assert.assertFalse(p1.test(LABEL_STMT));
+
+        final Predicate<Statement> p2 = Expressions.compile(Predicate.class,
+                "isliteral(o) && lang(o) = 'en' && str(o) =~ '^hello'");
+        Assert.assertFalse(p2.test(TYPE_STMT));
+        Assert.assertTrue(p2.test(LABEL_STMT));
+
+        final Predicate<Statement> p3 = Expressions.compile(Predicate.class,
+                "!(p in (rdfs:label, rdfs:comment)) || !bound(c)");
+        Assert.assertTrue(p3.test(TYPE_STMT));
+        Assert.assertTrue(p3.test(LABEL_STMT));
+    }
+
+    @Test
+    public void testTransformer() throws RDFHandlerException {
+        final Transformer transformer = Expressions.compile(Transformer.class,
+                "p = rdf:type => =o owl:Thing");
+        final List<Statement> stmts = new ArrayList<>();
+        transformer.transform(TYPE_STMT, RDFHandlers.wrap(stmts));
+        transformer.transform(LABEL_STMT, RDFHandlers.wrap(stmts));
+        Assert.assertEquals(1, stmts.size());
+        Assert.assertEquals("http://www.w3.org/2002/07/owl#Thing", stmts.get(0).getObject()
+                .stringValue());
+    }
+
+    @Test
+    public void testMapper() throws RDFHandlerException {
+        final Mapper mapper = Expressions.compile(Mapper.class, "isuri(o) => s, hash(p, o)");
+        final Value[] keys = mapper.map(TYPE_STMT);
+        Assert.assertEquals(2, keys.length);
+        Assert.assertEquals(TYPE_STMT.getSubject(), keys[0]);
+        Assert.assertEquals(keys[1], mapper.map(TYPE_STMT)[1]);
+        Assert.assertEquals(0, mapper.map(LABEL_STMT).length);
+    }
+
+    @Test
+    public void testArrowInLiterals() throws RDFHandlerException {
+        final Statement stmt = new StatementImpl(new URIImpl("ex:s"), RDFS.LABEL,
+                new LiteralImpl("a => b"));
+        final Mapper mapper = Expressions.compile(Mapper.class, "o = 'a => b' => s");
+        Assert.assertArrayEquals(new Value[] { stmt.getSubject() }, mapper.map(stmt));
+        final Mapper regexMapper = Expressions.compile(Mapper.class, "str(o) =~ '=>' => p");
+        Assert.assertArrayEquals(new Value[] { RDFS.LABEL }, regexMapper.map(stmt));
+        Assert.assertEquals(0, regexMapper.map(LABEL_STMT).length);
+        final Transformer transformer = Expressions.compile(Transformer.class,
+                "str(o) = \"a => b\"");
+        final List<Statement> stmts = new ArrayList<>();
+        transformer.transform(stmt, RDFHandlers.wrap(stmts));
+        transformer.transform(LABEL_STMT, RDFHandlers.wrap(stmts));
+        Assert.assertEquals(1, stmts.size());
+    }
+
+    @Test
+    public void testHashDefaultContext() throws RDFHandlerException {
+        final Mapper mapper = Expressions.compile(Mapper.class, "hash(s, c), c");
+        final Value[] keys = mapper.map(TYPE_STMT);
+        Assert.assertNotNull(keys[0]);
+        Assert.assertNull(keys[1]); // null keys denote the default context
+        Assert.assertEquals(keys[0], mapper.map(TYPE_STMT)[0]);
+        final Value[] ctxKeys = mapper.map(new ContextStatementImpl(TYPE_STMT.getSubject(),
+                TYPE_STMT.getPredicate(), TYPE_STMT.getObject(), new URIImpl("ex:g")));
+        Assert.assertNotEquals(keys[0], ctxKeys[0]);
+    }
+
+}
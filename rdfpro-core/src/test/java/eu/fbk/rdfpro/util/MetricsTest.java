@@ -0,0 +1,63 @@
+package eu.fbk.rdfpro.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test
+    public void testHistogram() {
+        final Metrics.Histogram histogram = Metrics.histogram("test_histogram", "Test");
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getSum());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(500, histogram.getQuantile(0.5), 500 / 16);
+        Assert.assertEquals(990, histogram.getQuantile(0.99), 990 / 16);
+        Assert.assertSame(histogram, Metrics.histogram("test_histogram", "Test"));
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 1000000; value = value * 3 / 2 + 1) {
+            final long bound = Metrics.Histogram.upperBound(Metrics.Histogram.index(value));
+            Assert.assertTrue(bound >= value);
+            Assert.assertTrue(bound - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void testExport() {
+        Metrics.counter("test_total", "Test counter", "stage", "1:\"x\"").add(5);
+        Metrics.gauge("test_gauge", "Test gauge", () -> 7L);
+        final String prometheus = Metrics.toPrometheus();
+        Assert.assertTrue(prometheus.contains("# TYPE test_total counter\n"));
+        Assert.assertTrue(prometheus.contains("test_total{stage=\"1:\\\"x\\\"\"} 5\n"));
+        Assert.assertTrue(prometheus.contains("test_gauge 7\n"));
+        final String json = Metrics.toJson();
+        Assert.assertTrue(json.contains("{\"name\": \"test_gauge\", \"type\": \"gauge\", "
+                + "\"value\": 7}"));
+        Metrics.unregister("test_gauge");
+        Assert.assertFalse(Metrics.toPrometheus().contains("test_gauge"));
+    }
+
+    @Test
+    public void testJobFilter() {
+        Metrics.setJob("42");
+        Assert.assertEquals("42", Metrics.getJob());
+        Metrics.setJob(null);
+        Assert.assertNull(Metrics.getJob());
+        Metrics.counter("test_job_total", "Test counter", "job", "42", "stage", "1:@read");
+        Metrics.counter("test_job_total", "Test counter", "job", "43", "stage", "1:@read");
+        Assert.assertEquals(1, Metrics.getMetrics("job", "42").size());
+        Assert.assertEquals("1:@read", Metrics.getMetrics("job", "42").get(0).getLabel("stage"));
+        Assert.assertEquals(2, Metrics.getMetrics("stage", "1:@read").size());
+        for (final Metrics.Metric metric : Metrics.getMetrics("stage", "1:@read")) {
+            Metrics.unregister(metric.getName(), metric.getLabels());
+        }
+        Assert.assertTrue(Metrics.getMetrics("stage", "1:@read").isEmpty());
+    }
+
+}
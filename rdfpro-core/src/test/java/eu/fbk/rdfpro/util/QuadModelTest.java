@@ -43,7 +43,9 @@ import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
 import org.openrdf.query.impl.ListBindingSet;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
@@ -84,7 +86,8 @@ public final class QuadModelTest {
 
     @Parameters
     public static Collection<String> parameters() {
-        return Arrays.asList(new String[] { "memory", "sail", "repository", "hash", "tree" });
+        return Arrays.asList(new String[] { "memory", "sail", "sail-cached", "repository",
+                "repository-cached", "hash", "tree" });
     }
 
     public QuadModelTest(final String parameter) {
@@ -97,7 +100,8 @@ public final class QuadModelTest {
             case "memory": {
                 return QuadModel.create();
             }
-            case "sail": {
+            case "sail":
+            case "sail-cached": {
                 final Path path = Files.createTempDirectory("sailmodel");
                 path.toFile().deleteOnExit();
                 final MemoryStore sail = new MemoryStore(path.toFile());
@@ -105,9 +109,11 @@ public final class QuadModelTest {
                 sail.initialize();
                 final SailConnection connection = sail.getConnection();
                 connection.begin(IsolationLevels.NONE);
-                return QuadModel.wrap(connection, true);
+                return QuadModel.wrap(connection, true, this.parameter.endsWith("-cached") ? 1024
+                        : 0);
             }
-            case "repository": {
+            case "repository":
+            case "repository-cached": {
                 final Path path = Files.createTempDirectory("sailmodel");
                 path.toFile().deleteOnExit();
                 final MemoryStore sail = new MemoryStore(path.toFile());
@@ -116,7 +122,8 @@ public final class QuadModelTest {
                 repository.initialize();
                 final RepositoryConnection connection = repository.getConnection();
                 connection.begin();
-                return QuadModel.wrap(connection, true);
+                return QuadModel.wrap(connection, true, this.parameter.endsWith("-cached") ? 1024
+                        : 0);
             }
             case "hash": {
                 return QuadModel.wrap(new LinkedHashModel());
@@ -342,6 +349,36 @@ public final class QuadModelTest {
         }
     }
 
+    @Test
+    public final void testPrefetch() {
+        final QuadModel model = newModel();
+        try {
+            model.add(this.uri1, RDFS.LABEL, this.literal1, this.ctx1);
+            model.add(this.uri2, RDFS.LABEL, this.literal2, this.ctx2);
+            model.add(this.uri2, RDFS.COMMENT, this.literal1, this.ctx1);
+            final StatementPattern pattern = new StatementPattern(new Var("s"), new Var("p",
+                    RDFS.LABEL), new Var("o"));
+            model.prefetch(pattern, ImmutableList.of(
+                    new ListBindingSet(ImmutableList.of("s"), this.uri1),
+                    new ListBindingSet(ImmutableList.of("s"), this.uri2),
+                    new ListBindingSet(ImmutableList.of("s"), this.bnode1)));
+            assertEquals(ImmutableSet.of(new ContextStatementImpl(this.uri1, RDFS.LABEL,
+                    this.literal1, this.ctx1)), ImmutableSet.copyOf(model.filter(this.uri1,
+                    RDFS.LABEL, null)));
+            assertEquals(ImmutableSet.of(new ContextStatementImpl(this.uri2, RDFS.LABEL,
+                    this.literal2, this.ctx2)), ImmutableSet.copyOf(model.filter(this.uri2,
+                    RDFS.LABEL, null)));
+            assertTrue(model.filter(this.bnode1, RDFS.LABEL, null).isEmpty());
+            model.add(this.uri2, RDFS.LABEL, this.literal1, this.ctx1);
+            assertEquals(2, ImmutableSet.copyOf(model.iterator(this.uri2, RDFS.LABEL, null))
+                    .size());
+            model.remove(this.uri1, null, null);
+            assertFalse(model.iterator(this.uri1, RDFS.LABEL, null).hasNext());
+        } finally {
+            disposeModel(model);
+        }
+    }
+
     private static <T extends Throwable> T assertThrown(final Class<T> exceptionClazz,
             final Runnable runnable) {
         try {
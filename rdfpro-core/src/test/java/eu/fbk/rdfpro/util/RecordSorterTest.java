@@ -0,0 +1,76 @@
+package eu.fbk.rdfpro.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecordSorterTest {
+
+    @Test
+    public void testInMemory() throws Throwable {
+        test(false, 1024 * 1024);
+        test(true, 1024 * 1024);
+    }
+
+    @Test
+    public void testSpilled() throws Throwable {
+        test(false, 4096);
+        test(true, 4096);
+    }
+
+    @Test
+    public void testKeys() {
+        final byte[] data = "abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals(0x6162636465666768L, RecordSorter.key(data, 0, data.length, 0));
+        Assert.assertEquals(0x696A000000000000L, RecordSorter.key(data, 0, data.length, 8));
+        Assert.assertEquals(0L, RecordSorter.key(data, 0, 4, 8));
+    }
+
+    private static void test(final boolean deduplicate, final int runSize) throws Throwable {
+
+        // Generate records with long shared prefixes, so that the tail comparison is exercised
+        final Random random = new Random(runSize);
+        final List<String> records = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(random.nextBoolean() ? "http://example.org/resource/" : "\u00e9x:");
+            builder.append(random.nextInt(2000));
+            records.add(builder.toString());
+        }
+
+        final List<String> expected = new ArrayList<>();
+        if (deduplicate) {
+            expected.addAll(new TreeSet<>(records));
+        } else {
+            expected.addAll(records);
+            expected.sort(null);
+        }
+
+        final List<String> actual = new ArrayList<>();
+        try (RecordSorter sorter = new RecordSorter(deduplicate, runSize)) {
+            final RecordSorter.Run run1 = sorter.newRun();
+            final RecordSorter.Run run2 = sorter.newRun();
+            for (int i = 0; i < records.size(); ++i) {
+                final byte[] bytes = records.get(i).getBytes(StandardCharsets.UTF_8);
+                (i % 2 == 0 ? run1 : run2).add(bytes, bytes.length);
+            }
+            run1.close();
+            run2.close();
+            sorter.merge();
+            final int[] length = new int[1];
+            byte[] buffer = null;
+            while ((buffer = sorter.next(buffer, length)) != null) {
+                actual.add(new String(buffer, 0, length[0], StandardCharsets.UTF_8));
+            }
+        }
+
+        // UTF-8 byte order matches String order for the characters used here
+        Assert.assertEquals(expected, actual);
+    }
+
+}
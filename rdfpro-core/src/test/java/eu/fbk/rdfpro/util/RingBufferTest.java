@@ -0,0 +1,207 @@
+package eu.fbk.rdfpro.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingBufferTest {
+
+    @Test
+    public void testMultiProducerMultiConsumer() throws Throwable {
+        for (final RingBuffer.WaitStrategy strategy : RingBuffer.WaitStrategy.values()) {
+            test(strategy, 4, 4, 100000);
+        }
+    }
+
+    @Test
+    public void testCloseWithoutElements() throws Throwable {
+        test(RingBuffer.WaitStrategy.PARK, 1, 3, 0);
+    }
+
+    @Test
+    public void testPutAfterCloseAndAbort() throws Throwable {
+
+        // Adding to a closed buffer is an error, while adding to an aborted buffer fails softly
+        final RingBuffer<Integer> closed = new RingBuffer<>(4, 1, RingBuffer.WaitStrategy.PARK);
+        Assert.assertTrue(closed.put(1));
+        closed.close();
+        try {
+            closed.put(2);
+            Assert.fail();
+        } catch (final IllegalStateException ex) {
+            // expected
+        }
+        try {
+            closed.putAll(new Integer[] { 3, 4 }, 0, 2);
+            Assert.fail();
+        } catch (final IllegalStateException ex) {
+            // expected
+        }
+        final Object[] buffer = new Object[4];
+        Assert.assertEquals(1, closed.take(0, buffer));
+        Assert.assertEquals(-1, closed.take(0, buffer));
+
+        final RingBuffer<Integer> aborted = new RingBuffer<>(4, 1, RingBuffer.WaitStrategy.PARK);
+        aborted.abort();
+        Assert.assertFalse(aborted.put(1));
+        Assert.assertFalse(aborted.putAll(new Integer[] { 2, 3 }, 0, 2));
+    }
+
+    @Test
+    public void testReleaseOnTake() throws Throwable {
+
+        // Consumer 0 takes a batch and then stays busy: producers must not wait for it, as the
+        // slots it took are released as soon as they are copied out of the buffer
+        final RingBuffer<Long> ring = new RingBuffer<>(16, 2, RingBuffer.WaitStrategy.PARK);
+        final CountDownLatch taken = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicLong count = new AtomicLong(0L);
+        final Thread busyConsumer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    final Object[] buffer = new Object[4];
+                    count.addAndGet(ring.take(0, buffer));
+                    taken.countDown();
+                    release.await();
+                    for (int n = ring.take(0, buffer); n >= 0; n = ring.take(0, buffer)) {
+                        count.addAndGet(n);
+                    }
+                } catch (final InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+        };
+        busyConsumer.start();
+        ring.put(0L);
+        Assert.assertTrue(taken.await(10, TimeUnit.SECONDS));
+
+        final Thread consumer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    final Object[] buffer = new Object[4];
+                    for (int n = ring.take(1, buffer); n >= 0; n = ring.take(1, buffer)) {
+                        count.addAndGet(n);
+                    }
+                } catch (final InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+        };
+        consumer.start();
+
+        final Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    for (long i = 1; i < 1000; ++i) {
+                        ring.put(i);
+                    }
+                } catch (final InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+        };
+        producer.start();
+        producer.join(10000);
+        Assert.assertFalse(producer.isAlive());
+
+        ring.close();
+        release.countDown();
+        busyConsumer.join();
+        consumer.join();
+        Assert.assertEquals(1000L, count.get());
+    }
+
+    private static void test(final RingBuffer.WaitStrategy strategy, final int numProducers,
+            final int numConsumers, final int numElements) throws Throwable {
+
+        final RingBuffer<Long> ring = new RingBuffer<>(1000, numConsumers, strategy);
+        Assert.assertEquals(1024, ring.getCapacity());
+
+        final AtomicLong sum = new AtomicLong(0L);
+        final AtomicLong count = new AtomicLong(0L);
+        final List<Thread> consumers = new ArrayList<>();
+        for (int i = 0; i < numConsumers; ++i) {
+            final int consumer = i;
+            consumers.add(new Thread() {
+
+                @Override
+                public void run() {
+                    final Object[] buffer = new Object[64];
+                    try {
+                        while (true) {
+                            final int n = ring.take(consumer, buffer);
+                            if (n < 0) {
+                                break;
+                            }
+                            for (int j = 0; j < n; ++j) {
+                                sum.addAndGet((Long) buffer[j]);
+                            }
+                            count.addAndGet(n);
+                        }
+                    } catch (final InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+            });
+        }
+
+        final List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < numProducers; ++i) {
+            producers.add(new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        final Long[] batch = new Long[10];
+                        for (int j = 0; j < numElements; j += batch.length) {
+                            for (int k = 0; k < batch.length; ++k) {
+                                batch[k] = (long) (j + k);
+                            }
+                            ring.putAll(batch, 0, batch.length / 2);
+                            for (int k = batch.length / 2; k < batch.length; ++k) {
+                                ring.put(batch[k]);
+                            }
+                        }
+                    } catch (final InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+            });
+        }
+
+        for (final Thread thread : consumers) {
+            thread.start();
+        }
+        for (final Thread thread : producers) {
+            thread.start();
+        }
+        for (final Thread thread : producers) {
+            thread.join();
+        }
+        ring.close();
+        for (final Thread thread : consumers) {
+            thread.join();
+        }
+
+        final long n = (long) numElements;
+        Assert.assertEquals(numProducers * n, count.get());
+        Assert.assertEquals(numProducers * (n * (n - 1) / 2), sum.get());
+    }
+
+}
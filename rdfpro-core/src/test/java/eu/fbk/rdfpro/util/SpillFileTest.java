@@ -0,0 +1,114 @@
+package eu.fbk.rdfpro.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+public class SpillFileTest {
+
+    @Test
+    public void testUncompressed() throws Throwable {
+        test(false);
+    }
+
+    @Test
+    public void testCompressed() throws Throwable {
+        test(true);
+    }
+
+    @Test
+    public void testSmallBlocks() throws Throwable {
+        final ValueFactory vf = Statements.VALUE_FACTORY;
+        try (SpillFile file = SpillFile.create(false, 256)) {
+            for (final Value[] record : file) {
+                Assert.fail("Unexpected record " + Arrays.toString(record));
+            }
+        }
+        try (SpillFile file = SpillFile.create(false, 256)) {
+            final String big = new String(new char[10000]).replace('\0', 'x');
+            for (int i = 0; i < 1000; ++i) {
+                file.append(vf.createURI("ex:s" + i), vf.createLiteral(i % 100 == 0 ? big : ""
+                        + i));
+            }
+            Assert.assertEquals(1000, file.getNumRecords());
+            int i = 0;
+            for (final Value[] record : file) {
+                Assert.assertEquals(Arrays.asList(vf.createURI("ex:s" + i), vf.createLiteral(
+                        i % 100 == 0 ? big : "" + i)), Arrays.asList(record));
+                ++i;
+            }
+            Assert.assertEquals(1000, i);
+        }
+    }
+
+    @Test
+    public void testPersistent() throws Throwable {
+        final ValueFactory vf = Statements.VALUE_FACTORY;
+        final Path path = Files.createTempFile("rdfpro-test-", ".bin");
+        try {
+            try (SpillFile file = SpillFile.create(path, true)) {
+                for (int i = 0; i < 100000; ++i) {
+                    file.append(vf.createURI("ex:s" + i), vf.createLiteral(i));
+                }
+            }
+            try (SpillFile file = SpillFile.open(path)) {
+                Assert.assertEquals(100000, file.getNumRecords());
+                int i = 0;
+                for (final Value[] record : file) {
+                    Assert.assertEquals(Arrays.asList(vf.createURI("ex:s" + i),
+                            vf.createLiteral(i)), Arrays.asList(record));
+                    ++i;
+                }
+                Assert.assertEquals(100000, i);
+            }
+            Assert.assertTrue(Files.exists(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void test(final boolean compress) throws Throwable {
+
+        // Generate enough records to span multiple blocks, with repeated values and nulls
+        final ValueFactory vf = Statements.VALUE_FACTORY;
+        final List<List<Value>> records = new ArrayList<>();
+        for (int i = 0; i < 100000; ++i) {
+            records.add(Arrays.asList(vf.createURI("ex:s" + i % 1000), vf.createBNode("b" + i),
+                    vf.createLiteral("label \u00e9 " + i, "en"), vf.createLiteral(i),
+                    vf.createLiteral("" + i, XMLSchema.STRING), vf.createLiteral("plain"),
+                    i % 2 == 0 ? null : vf.createURI("ex:c")));
+        }
+
+        try (SpillFile file = SpillFile.create(compress)) {
+            for (final List<Value> record : records) {
+                file.append(record.toArray(new Value[record.size()]));
+            }
+            Assert.assertEquals(records.size(), file.getNumRecords());
+
+            final List<List<Value>> actual = new ArrayList<>();
+            for (final Value[] record : file) {
+                actual.add(Arrays.asList(record));
+            }
+            Assert.assertEquals(records, actual);
+
+            final Set<List<Value>> parallel = new HashSet<>();
+            file.forEach(4, (final Value[] record) -> {
+                synchronized (parallel) {
+                    parallel.add(Arrays.asList(record));
+                }
+            });
+            Assert.assertEquals(new HashSet<>(records), parallel);
+        }
+    }
+
+}
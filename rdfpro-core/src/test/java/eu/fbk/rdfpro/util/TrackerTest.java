@@ -0,0 +1,61 @@
+package eu.fbk.rdfpro.util;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+public class TrackerTest {
+
+    @Test
+    public void testConcurrentCount() throws Throwable {
+
+        // Capture info messages, so that the total reported by end() can be checked
+        final List<String> messages = new ArrayList<>();
+        final Logger logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(),
+                new Class<?>[] { Logger.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("info") && args.length == 1) {
+                        synchronized (messages) {
+                            messages.add((String) args[0]);
+                        }
+                    }
+                    return method.getReturnType() == boolean.class ? true : null;
+                });
+
+        // Run the tracker twice with the same pool threads: counts must not leak across runs
+        final Tracker tracker = new Tracker(logger, null, "%d items", "%d items, %d/s, %d/s avg");
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int run = 1; run <= 2; ++run) {
+                final int factor = run;
+                tracker.start();
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; ++i) {
+                    futures.add(executor.submit(() -> {
+                        for (int j = 0; j < 100000 * factor; ++j) {
+                            tracker.increment();
+                        }
+                        for (int j = 0; j < 1000; ++j) {
+                            tracker.add(3);
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+                tracker.end();
+                Assert.assertEquals(8 * (100000 * factor + 3000) + " items",
+                        messages.get(messages.size() - 1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -14,15 +14,30 @@
 package eu.fbk.rdfpro.tool;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.openrdf.model.Statement;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.rio.ParserConfig;
@@ -33,16 +48,31 @@ import org.openrdf.rio.RDFParseException;
 import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.RDFParserFactory;
 import org.openrdf.rio.Rio;
+import org.openrdf.rio.RioSetting;
 import org.openrdf.rio.helpers.BasicParserSettings;
-import org.openrdf.rio.helpers.RDFHandlerWrapper;
+import org.openrdf.rio.helpers.RDFHandlerBase;
 import org.openrdf.rio.helpers.RDFParserBase;
+import org.openrdf.rio.helpers.RioSettingImpl;
 import org.openrdf.rio.helpers.XMLParserSettings;
+import org.xml.sax.SAXException;
+
+import eu.fbk.rdfpro.util.Environment;
 
 public class GeonamesRDF implements RDFParserFactory {
 
     public static final RDFFormat FORMAT = new RDFFormat("Geonames RDF",
             "application/x-geonames-rdf", null, "geonames", true, true);
 
+    /**
+     * Optional setting specifying the number of threads used to parse Geonames entries; if zero
+     * (the default), the number of available cores is used.
+     */
+    public static final RioSetting<Integer> THREADS = new RioSettingImpl<Integer>(
+            "eu.fbk.rdfpro.geonames.threads", "The number of threads used to parse entries "
+                    + "(0 = number of cores)", 0);
+
+    private static final int BATCH_SIZE = 256;
+
     public static void init() {
         // calling this method will cause the static initializer to run once
     }
@@ -76,61 +106,120 @@ public class GeonamesRDF implements RDFParserFactory {
         public void parse(final InputStream in, final String baseURI) throws IOException,
                 RDFParseException, RDFHandlerException {
 
-            final RDFHandler handler = new RDFHandlerWrapper(getRDFHandler()) {
+            // Entries are independent, small RDF/XML documents. They are read sequentially in
+            // batches by the calling thread and parsed in parallel by worker threads, each one
+            // reusing the same RDF/XML parser. Statements of a batch are emitted downstream
+            // under a lock, so to support handlers that are not thread-safe. Workers run on a
+            // dedicated executor: as they block on the queue, running them in a shared pool
+            // could starve the threads the reader (or the downstream handler) depends on
+            final RDFHandler handler = getRDFHandler();
+            final int threads = getParserConfig().get(THREADS);
+            final int numWorkers = threads > 0 ? threads : Environment.getCores();
+            final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(numWorkers * 4);
+            final AtomicReference<Throwable> exception = new AtomicReference<>();
+            final CountDownLatch latch = new CountDownLatch(numWorkers);
 
-                @Override
-                public void startRDF() throws RDFHandlerException {
-                }
+            handler.startRDF();
 
-                @Override
-                public void endRDF() throws RDFHandlerException {
-                }
+            final ExecutorService executor = Executors.newFixedThreadPool(numWorkers,
+                    new ThreadFactory() {
 
-            };
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "rdfpro-geonames-parser");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
 
-            getRDFHandler().startRDF();
+                    });
+            for (int i = 0; i < numWorkers; ++i) {
+                executor.execute(new Worker(handler, baseURI, queue, exception, latch));
+            }
 
             final ZipInputStream stream = new ZipInputStream(in);
             try {
-                while (stream.getNextEntry() != null) {
-                    final BufferedReader reader = new BufferedReader(new InputStreamReader(stream,
-                            Charset.forName("UTF-8")));
-                    while (reader.readLine() != null) { // read and drop URI
-                        final String entry = reader.readLine();
-
-                        final RDFParser parser = Rio.createParser(RDFFormat.RDFXML);
-                        parser.setRDFHandler(handler);
-                        parser.setValueFactory(ValueFactoryImpl.getInstance());
-
-                        final ParserConfig config = parser.getParserConfig();
-                        config.set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
-                        config.set(BasicParserSettings.FAIL_ON_UNKNOWN_LANGUAGES, false);
-                        config.set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
-                        config.set(BasicParserSettings.VERIFY_LANGUAGE_TAGS, false);
-                        config.set(BasicParserSettings.VERIFY_RELATIVE_URIS, false);
-                        config.set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, true);
-                        config.set(BasicParserSettings.NORMALIZE_LANGUAGE_TAGS, true);
-                        config.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
-                        config.set(XMLParserSettings.FAIL_ON_DUPLICATE_RDF_ID, false);
-                        config.set(XMLParserSettings.FAIL_ON_INVALID_NCNAME, false);
-                        config.set(XMLParserSettings.FAIL_ON_INVALID_QNAME, false);
-                        config.set(XMLParserSettings.FAIL_ON_MISMATCHED_TAGS, false);
-                        config.set(XMLParserSettings.FAIL_ON_NON_STANDARD_ATTRIBUTES, false);
-                        config.set(XMLParserSettings.FAIL_ON_SAX_NON_FATAL_ERRORS, false);
-
-                        parser.parse(new StringReader(entry), baseURI);
+                // Geonames dumps declare a wrong entry size, so reading the entry ends with a
+                // ZipException. The error is reported as EOF to the reader, so that the lines it
+                // has buffered are not lost, and the last partial batch is queued afterwards
+                final InputStream entryStream = new FilterInputStream(stream) {
+
+                    @Override
+                    public int read(final byte[] buf, final int off, final int len)
+                            throws IOException {
+                        try {
+                            return super.read(buf, off, len);
+                        } catch (final ZipException ex) {
+                            if (!ex.getMessage().contains("invalid entry size")) {
+                                throw ex;
+                            }
+                            return -1;
+                        }
+                    }
+
+                };
+                List<String> batch = new ArrayList<>(BATCH_SIZE);
+                try {
+                    while (exception.get() == null && stream.getNextEntry() != null) {
+                        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                entryStream, Charset.forName("UTF-8")));
+                        while (exception.get() == null && reader.readLine() != null) { // drop URI
+                            final String entry = reader.readLine();
+                            if (entry == null) {
+                                break;
+                            }
+                            batch.add(entry);
+                            if (batch.size() == BATCH_SIZE) {
+                                queue.put(batch);
+                                batch = new ArrayList<>(BATCH_SIZE);
+                            }
+                        }
+                    }
+                } catch (final ZipException ex) {
+                    if (!ex.getMessage().contains("invalid entry size")) {
+                        throw ex;
                     }
                 }
-            } catch (final ZipException ex) {
-                if (!ex.getMessage().contains("invalid entry size")) {
-                    throw ex;
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
                 }
 
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                exception.compareAndSet(null, ex);
+
             } finally {
-                stream.close();
+                // Workers consume the queue until they get an end marker, so put cannot block
+                // indefinitely; the stream is closed only after all the workers completed
+                try {
+                    for (int i = 0; i < numWorkers; ++i) {
+                        queue.put(Collections.<String>emptyList());
+                    }
+                    latch.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    exception.compareAndSet(null, ex);
+                } finally {
+                    executor.shutdown();
+                    stream.close();
+                }
             }
 
-            getRDFHandler().endRDF();
+            final Throwable ex = exception.get();
+            if (ex instanceof RDFHandlerException) {
+                throw (RDFHandlerException) ex;
+            } else if (ex instanceof RDFParseException) {
+                throw (RDFParseException) ex;
+            } else if (ex instanceof IOException) {
+                throw (IOException) ex;
+            } else if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            } else if (ex instanceof Error) {
+                throw (Error) ex;
+            } else if (ex != null) {
+                throw new RDFParseException(ex);
+            }
+
+            handler.endRDF();
         }
 
         @Override
@@ -141,4 +230,109 @@ public class GeonamesRDF implements RDFParserFactory {
 
     }
 
+    private static final class Worker implements Runnable {
+
+        private final RDFHandler handler;
+
+        private final String baseURI;
+
+        private final BlockingQueue<List<String>> queue;
+
+        private final AtomicReference<Throwable> exception;
+
+        private final CountDownLatch latch;
+
+        private final List<Statement> statements;
+
+        Worker(final RDFHandler handler, final String baseURI,
+                final BlockingQueue<List<String>> queue,
+                final AtomicReference<Throwable> exception, final CountDownLatch latch) {
+            this.handler = handler;
+            this.baseURI = baseURI;
+            this.queue = queue;
+            this.exception = exception;
+            this.latch = latch;
+            this.statements = new ArrayList<>();
+        }
+
+        @Override
+        public void run() {
+            try {
+                final RDFParser parser = newParser();
+                while (true) {
+                    final List<String> batch = this.queue.take();
+                    if (batch.isEmpty()) {
+                        break; // end marker
+                    } else if (this.exception.get() != null) {
+                        continue; // drain the queue so that the reader is not blocked
+                    }
+                    try {
+                        for (final String entry : batch) {
+                            parser.parse(new StringReader(entry), this.baseURI);
+                        }
+                        synchronized (this.handler) {
+                            for (final Statement statement : this.statements) {
+                                this.handler.handleStatement(statement);
+                            }
+                        }
+                    } catch (final Throwable ex) {
+                        this.exception.compareAndSet(null, ex);
+                    } finally {
+                        this.statements.clear();
+                    }
+                }
+            } catch (final Throwable ex) {
+                this.exception.compareAndSet(null, ex);
+            } finally {
+                this.latch.countDown();
+            }
+        }
+
+        private RDFParser newParser() throws SAXException, ParserConfigurationException {
+
+            final RDFParser parser = Rio.createParser(RDFFormat.RDFXML);
+            parser.setValueFactory(ValueFactoryImpl.getInstance());
+            parser.setRDFHandler(new RDFHandlerBase() {
+
+                @Override
+                public void handleNamespace(final String prefix, final String uri)
+                        throws RDFHandlerException {
+                    synchronized (Worker.this.handler) {
+                        Worker.this.handler.handleNamespace(prefix, uri);
+                    }
+                }
+
+                @Override
+                public void handleStatement(final Statement statement) {
+                    Worker.this.statements.add(statement);
+                }
+
+            });
+
+            final ParserConfig config = parser.getParserConfig();
+            config.set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
+            config.set(BasicParserSettings.FAIL_ON_UNKNOWN_LANGUAGES, false);
+            config.set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
+            config.set(BasicParserSettings.VERIFY_LANGUAGE_TAGS, false);
+            config.set(BasicParserSettings.VERIFY_RELATIVE_URIS, false);
+            config.set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, true);
+            config.set(BasicParserSettings.NORMALIZE_LANGUAGE_TAGS, true);
+            config.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            config.set(XMLParserSettings.FAIL_ON_DUPLICATE_RDF_ID, false);
+            config.set(XMLParserSettings.FAIL_ON_INVALID_NCNAME, false);
+            config.set(XMLParserSettings.FAIL_ON_INVALID_QNAME, false);
+            config.set(XMLParserSettings.FAIL_ON_MISMATCHED_TAGS, false);
+            config.set(XMLParserSettings.FAIL_ON_NON_STANDARD_ATTRIBUTES, false);
+            config.set(XMLParserSettings.FAIL_ON_SAX_NON_FATAL_ERRORS, false);
+
+            // Reuse the same SAX parser for all the entries parsed by this worker
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            config.set(XMLParserSettings.CUSTOM_XML_READER, factory.newSAXParser()
+                    .getXMLReader());
+            return parser;
+        }
+
+    }
+
 }
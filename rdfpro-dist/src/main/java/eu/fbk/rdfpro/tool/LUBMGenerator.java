@@ -0,0 +1,454 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.tool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Statements;
+
+/**
+ * Generator of synthetic data modeled after the Lehigh University Benchmark (LUBM).
+ * <p>
+ * The TBox is a subset of the LUBM ontology (class and property hierarchies, domains and ranges,
+ * inverse and transitive properties). The ABox describes universities, each with departments,
+ * research groups, faculty, students, courses and publications. Compared to LUBM, generated data
+ * can be tuned with:
+ * </p>
+ * <ul>
+ * <li>a skew exponent (1 = uniform) controlling how links (e.g., degrees, advisors, courses,
+ * publication counts) concentrate on few hub entities;</li>
+ * <li>owl:sameAs clusters of a given size, involving a given fraction of people, whose alias URIs
+ * are in namespace {@code http://aliasN.example.org/};</li>
+ * <li>the number of named graphs quads are distributed to, by department (0 = default graph).</li>
+ * </ul>
+ * <p>
+ * Generation is deterministic given the parameters and the seed, and universities are generated
+ * in parallel (the order of emitted quads is thus not deterministic).
+ * </p>
+ */
+public final class LUBMGenerator {
+
+    private static final String NS = "http://swat.cse.lehigh.edu/onto/univ-bench.owl#";
+
+    private static final ValueFactory VF = Statements.VALUE_FACTORY;
+
+    private static final URI ONTOLOGY = VF.createURI(NS.substring(0, NS.length() - 1));
+
+    private static final URI ORGANIZATION = VF.createURI(NS + "Organization");
+
+    private static final URI UNIVERSITY = VF.createURI(NS + "University");
+
+    private static final URI DEPARTMENT = VF.createURI(NS + "Department");
+
+    private static final URI RESEARCH_GROUP = VF.createURI(NS + "ResearchGroup");
+
+    private static final URI PERSON = VF.createURI(NS + "Person");
+
+    private static final URI EMPLOYEE = VF.createURI(NS + "Employee");
+
+    private static final URI FACULTY = VF.createURI(NS + "Faculty");
+
+    private static final URI PROFESSOR = VF.createURI(NS + "Professor");
+
+    private static final URI FULL_PROFESSOR = VF.createURI(NS + "FullProfessor");
+
+    private static final URI ASSOCIATE_PROFESSOR = VF.createURI(NS + "AssociateProfessor");
+
+    private static final URI ASSISTANT_PROFESSOR = VF.createURI(NS + "AssistantProfessor");
+
+    private static final URI LECTURER = VF.createURI(NS + "Lecturer");
+
+    private static final URI STUDENT = VF.createURI(NS + "Student");
+
+    private static final URI UNDERGRADUATE_STUDENT = VF.createURI(NS + "UndergraduateStudent");
+
+    private static final URI GRADUATE_STUDENT = VF.createURI(NS + "GraduateStudent");
+
+    private static final URI WORK = VF.createURI(NS + "Work");
+
+    private static final URI COURSE = VF.createURI(NS + "Course");
+
+    private static final URI GRADUATE_COURSE = VF.createURI(NS + "GraduateCourse");
+
+    private static final URI PUBLICATION = VF.createURI(NS + "Publication");
+
+    private static final URI NAME = VF.createURI(NS + "name");
+
+    private static final URI EMAIL_ADDRESS = VF.createURI(NS + "emailAddress");
+
+    private static final URI TELEPHONE = VF.createURI(NS + "telephone");
+
+    private static final URI MEMBER = VF.createURI(NS + "member");
+
+    private static final URI MEMBER_OF = VF.createURI(NS + "memberOf");
+
+    private static final URI WORKS_FOR = VF.createURI(NS + "worksFor");
+
+    private static final URI HEAD_OF = VF.createURI(NS + "headOf");
+
+    private static final URI SUB_ORGANIZATION_OF = VF.createURI(NS + "subOrganizationOf");
+
+    private static final URI DEGREE_FROM = VF.createURI(NS + "degreeFrom");
+
+    private static final URI HAS_ALUMNUS = VF.createURI(NS + "hasAlumnus");
+
+    private static final URI UNDERGRADUATE_DEGREE_FROM = VF.createURI(NS
+            + "undergraduateDegreeFrom");
+
+    private static final URI MASTERS_DEGREE_FROM = VF.createURI(NS + "mastersDegreeFrom");
+
+    private static final URI DOCTORAL_DEGREE_FROM = VF.createURI(NS + "doctoralDegreeFrom");
+
+    private static final URI TEACHER_OF = VF.createURI(NS + "teacherOf");
+
+    private static final URI TAKES_COURSE = VF.createURI(NS + "takesCourse");
+
+    private static final URI TEACHING_ASSISTANT_OF = VF.createURI(NS + "teachingAssistantOf");
+
+    private static final URI ADVISOR = VF.createURI(NS + "advisor");
+
+    private static final URI PUBLICATION_AUTHOR = VF.createURI(NS + "publicationAuthor");
+
+    private final double skew;
+
+    private final int clusterSize;
+
+    private final double clusterFraction;
+
+    private final int numGraphs;
+
+    private final long seed;
+
+    public LUBMGenerator(final double skew, final int clusterSize,
+            final double clusterFraction, final int numGraphs, final long seed) {
+        if (skew < 1.0) {
+            throw new IllegalArgumentException("Invalid skew (must be >= 1): " + skew);
+        }
+        this.skew = skew;
+        this.clusterSize = Math.max(1, clusterSize);
+        this.clusterFraction = Math.max(0.0, Math.min(1.0, clusterFraction));
+        this.numGraphs = Math.max(0, numGraphs);
+        this.seed = seed;
+    }
+
+    public long generateTBox(final RDFHandler handler) throws RDFHandlerException {
+
+        final Emitter out = new Emitter(handler, null);
+        out.emit(ONTOLOGY, RDF.TYPE, OWL.ONTOLOGY);
+
+        final URI[][] subClasses = new URI[][] { { ORGANIZATION, UNIVERSITY },
+                { ORGANIZATION, DEPARTMENT }, { ORGANIZATION, RESEARCH_GROUP },
+                { PERSON, EMPLOYEE }, { EMPLOYEE, FACULTY }, { FACULTY, PROFESSOR },
+                { FACULTY, LECTURER }, { PROFESSOR, FULL_PROFESSOR },
+                { PROFESSOR, ASSOCIATE_PROFESSOR }, { PROFESSOR, ASSISTANT_PROFESSOR },
+                { PERSON, STUDENT }, { STUDENT, UNDERGRADUATE_STUDENT },
+                { PERSON, GRADUATE_STUDENT }, { WORK, COURSE }, { COURSE, GRADUATE_COURSE },
+                { WORK, PUBLICATION } };
+        final Set<URI> classes = new LinkedHashSet<>();
+        for (final URI[] pair : subClasses) {
+            classes.add(pair[0]);
+            classes.add(pair[1]);
+        }
+        for (final URI clazz : classes) {
+            out.emit(clazz, RDF.TYPE, OWL.CLASS);
+        }
+        for (final URI[] pair : subClasses) {
+            out.emit(pair[1], RDFS.SUBCLASSOF, pair[0]);
+        }
+
+        for (final URI property : new URI[] { NAME, EMAIL_ADDRESS, TELEPHONE }) {
+            out.emit(property, RDF.TYPE, OWL.DATATYPEPROPERTY);
+        }
+        out.emit(NAME, RDFS.DOMAIN, PERSON);
+
+        final URI[][] properties = new URI[][] { // property, domain, range
+        { MEMBER, ORGANIZATION, PERSON }, { MEMBER_OF, PERSON, ORGANIZATION },
+                { WORKS_FOR, EMPLOYEE, ORGANIZATION }, { HEAD_OF, EMPLOYEE, ORGANIZATION },
+                { SUB_ORGANIZATION_OF, ORGANIZATION, ORGANIZATION },
+                { DEGREE_FROM, PERSON, UNIVERSITY }, { HAS_ALUMNUS, UNIVERSITY, PERSON },
+                { UNDERGRADUATE_DEGREE_FROM, PERSON, UNIVERSITY },
+                { MASTERS_DEGREE_FROM, PERSON, UNIVERSITY },
+                { DOCTORAL_DEGREE_FROM, PERSON, UNIVERSITY },
+                { TEACHER_OF, FACULTY, COURSE }, { TAKES_COURSE, STUDENT, COURSE },
+                { TEACHING_ASSISTANT_OF, GRADUATE_STUDENT, COURSE },
+                { ADVISOR, PERSON, PROFESSOR }, { PUBLICATION_AUTHOR, PUBLICATION, PERSON } };
+        for (final URI[] triple : properties) {
+            out.emit(triple[0], RDF.TYPE, OWL.OBJECTPROPERTY);
+            out.emit(triple[0], RDFS.DOMAIN, triple[1]);
+            out.emit(triple[0], RDFS.RANGE, triple[2]);
+        }
+
+        out.emit(WORKS_FOR, RDFS.SUBPROPERTYOF, MEMBER_OF);
+        out.emit(HEAD_OF, RDFS.SUBPROPERTYOF, WORKS_FOR);
+        out.emit(UNDERGRADUATE_DEGREE_FROM, RDFS.SUBPROPERTYOF, DEGREE_FROM);
+        out.emit(MASTERS_DEGREE_FROM, RDFS.SUBPROPERTYOF, DEGREE_FROM);
+        out.emit(DOCTORAL_DEGREE_FROM, RDFS.SUBPROPERTYOF, DEGREE_FROM);
+        out.emit(MEMBER, OWL.INVERSEOF, MEMBER_OF);
+        out.emit(HAS_ALUMNUS, OWL.INVERSEOF, DEGREE_FROM);
+        out.emit(SUB_ORGANIZATION_OF, RDF.TYPE, OWL.TRANSITIVEPROPERTY);
+
+        return out.count;
+    }
+
+    public long generateABox(final RDFHandler handler, final long numQuads)
+            throws RDFHandlerException {
+
+        // Estimate the number of universities needed based on the size of the first one
+        final long quadsPerUniversity = generateUniversity(RDFHandlers.NIL, 0, 1);
+        final int numUniversities = (int) Math.max(1L, (numQuads + quadsPerUniversity / 2)
+                / quadsPerUniversity);
+
+        // Generate universities in parallel
+        final AtomicLong count = new AtomicLong(0L);
+        final List<Runnable> runnables = new ArrayList<>();
+        for (int i = 0; i < numUniversities; ++i) {
+            final int university = i;
+            runnables.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        count.addAndGet(generateUniversity(handler, university, numUniversities));
+                    } catch (final RDFHandlerException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+            });
+        }
+        try {
+            Environment.run(runnables);
+        } catch (final RuntimeException ex) {
+            if (ex.getCause() instanceof RDFHandlerException) {
+                throw (RDFHandlerException) ex.getCause();
+            }
+            throw ex;
+        }
+        return count.get();
+    }
+
+    private long generateUniversity(final RDFHandler handler, final int u,
+            final int numUniversities) throws RDFHandlerException {
+
+        final Random random = new Random(this.seed * 7919 + u);
+        final Emitter out = new Emitter(handler, null);
+
+        final URI univ = university(u);
+        out.emit(univ, RDF.TYPE, UNIVERSITY);
+        out.emit(univ, NAME, VF.createLiteral("University" + u));
+
+        final int numDepartments = 10 + random.nextInt(6);
+        for (int d = 0; d < numDepartments; ++d) {
+
+            final String ns = "http://www.Department" + d + ".University" + u + ".edu/";
+            out.context = this.numGraphs == 0 ? null : VF.createURI("http://graph.example.org/"
+                    + (u * 31 + d) % this.numGraphs);
+
+            final URI dept = VF.createURI(ns.substring(0, ns.length() - 1));
+            out.emit(dept, RDF.TYPE, DEPARTMENT);
+            out.emit(dept, NAME, VF.createLiteral("Department" + d));
+            out.emit(dept, SUB_ORGANIZATION_OF, univ);
+
+            final int numGroups = 10 + random.nextInt(11);
+            for (int i = 0; i < numGroups; ++i) {
+                final URI group = VF.createURI(ns + "ResearchGroup" + i);
+                out.emit(group, RDF.TYPE, RESEARCH_GROUP);
+                out.emit(group, SUB_ORGANIZATION_OF, dept);
+            }
+
+            // Faculty (professors first, so they can be picked as advisors)
+            final List<URI> faculty = new ArrayList<>();
+            int numProfessors = 0;
+            final URI[] facultyTypes = { FULL_PROFESSOR, ASSOCIATE_PROFESSOR,
+                    ASSISTANT_PROFESSOR, LECTURER };
+            final int[] facultyMin = { 7, 10, 8, 5 };
+            final int[] facultyRange = { 4, 5, 4, 3 };
+            for (int t = 0; t < facultyTypes.length; ++t) {
+                final String label = facultyTypes[t].getLocalName();
+                final int num = facultyMin[t] + random.nextInt(facultyRange[t]);
+                for (int i = 0; i < num; ++i) {
+                    final URI person = VF.createURI(ns + label + i);
+                    person(out, random, person, facultyTypes[t], label + i, ns);
+                    out.emit(person, t == 0 && i == 0 ? HEAD_OF : WORKS_FOR, dept);
+                    out.emit(person, UNDERGRADUATE_DEGREE_FROM,
+                            university(pick(random, numUniversities)));
+                    out.emit(person, MASTERS_DEGREE_FROM,
+                            university(pick(random, numUniversities)));
+                    out.emit(person, DOCTORAL_DEGREE_FROM,
+                            university(pick(random, numUniversities)));
+                    faculty.add(person);
+                }
+                numProfessors += t < 3 ? num : 0;
+            }
+
+            // Courses, each taught by a faculty member
+            final List<URI> courses = new ArrayList<>();
+            final List<URI> graduateCourses = new ArrayList<>();
+            for (int i = 0; i < faculty.size(); ++i) {
+                final URI teacher = faculty.get(i);
+                final int numCourses = 1 + random.nextInt(2);
+                for (int j = 0; j < numCourses; ++j) {
+                    final URI course = VF.createURI(ns + "Course" + courses.size());
+                    out.emit(course, RDF.TYPE, COURSE);
+                    out.emit(course, NAME, VF.createLiteral("Course" + courses.size()));
+                    out.emit(teacher, TEACHER_OF, course);
+                    courses.add(course);
+                }
+                final int numGraduateCourses = 1 + random.nextInt(2);
+                for (int j = 0; j < numGraduateCourses; ++j) {
+                    final URI course = VF.createURI(ns + "GraduateCourse"
+                            + graduateCourses.size());
+                    out.emit(course, RDF.TYPE, GRADUATE_COURSE);
+                    out.emit(course, NAME,
+                            VF.createLiteral("GraduateCourse" + graduateCourses.size()));
+                    out.emit(teacher, TEACHER_OF, course);
+                    graduateCourses.add(course);
+                }
+            }
+
+            // Undergraduate students
+            final int numUndergraduates = faculty.size() * (8 + random.nextInt(7));
+            for (int i = 0; i < numUndergraduates; ++i) {
+                final URI student = VF.createURI(ns + "UndergraduateStudent" + i);
+                person(out, random, student, UNDERGRADUATE_STUDENT, "UndergraduateStudent" + i,
+                        ns);
+                out.emit(student, MEMBER_OF, dept);
+                final int numTaken = 2 + random.nextInt(3);
+                for (int j = 0; j < numTaken; ++j) {
+                    out.emit(student, TAKES_COURSE, courses.get(pick(random, courses.size())));
+                }
+                if (random.nextInt(5) == 0) {
+                    out.emit(student, ADVISOR, faculty.get(pick(random, numProfessors)));
+                }
+            }
+
+            // Graduate students
+            final List<URI> graduates = new ArrayList<>();
+            final int numGraduates = faculty.size() * (3 + random.nextInt(2));
+            for (int i = 0; i < numGraduates; ++i) {
+                final URI student = VF.createURI(ns + "GraduateStudent" + i);
+                person(out, random, student, GRADUATE_STUDENT, "GraduateStudent" + i, ns);
+                out.emit(student, MEMBER_OF, dept);
+                out.emit(student, UNDERGRADUATE_DEGREE_FROM,
+                        university(pick(random, numUniversities)));
+                final int numTaken = 1 + random.nextInt(3);
+                for (int j = 0; j < numTaken; ++j) {
+                    out.emit(student, TAKES_COURSE,
+                            graduateCourses.get(pick(random, graduateCourses.size())));
+                }
+                out.emit(student, ADVISOR, faculty.get(pick(random, numProfessors)));
+                if (random.nextInt(4) == 0) {
+                    out.emit(student, TEACHING_ASSISTANT_OF,
+                            courses.get(pick(random, courses.size())));
+                }
+                graduates.add(student);
+            }
+
+            // Publications: skewed counts, so that few faculty members have many publications
+            int numPublications = 0;
+            for (int i = 0; i < faculty.size(); ++i) {
+                final int num = 1 + (int) (20 * Math.pow(random.nextDouble(), this.skew));
+                for (int j = 0; j < num; ++j) {
+                    final URI publication = VF.createURI(ns + "Publication"
+                            + numPublications++);
+                    out.emit(publication, RDF.TYPE, PUBLICATION);
+                    out.emit(publication, NAME, VF.createLiteral("Publication" + j + " of "
+                            + faculty.get(i).getLocalName()));
+                    out.emit(publication, PUBLICATION_AUTHOR, faculty.get(i));
+                    if (random.nextBoolean()) {
+                        out.emit(publication, PUBLICATION_AUTHOR,
+                                graduates.get(pick(random, graduates.size())));
+                    }
+                }
+            }
+        }
+
+        return out.count;
+    }
+
+    private void person(final Emitter out, final Random random, final URI person,
+            final URI type, final String name, final String ns) throws RDFHandlerException {
+
+        out.emit(person, RDF.TYPE, type);
+        out.emit(person, NAME, VF.createLiteral(name));
+        out.emit(person, EMAIL_ADDRESS, VF.createLiteral(name + "@" + ns.substring(11,
+                ns.length() - 1)));
+        out.emit(person, TELEPHONE, VF.createLiteral("xxx-xxx-" + random.nextInt(10000)));
+
+        // Emit a sameAs cluster, chaining aliases and describing each of them with a name
+        if (this.clusterSize > 1 && random.nextDouble() < this.clusterFraction) {
+            URI previous = person;
+            for (int i = 1; i < this.clusterSize; ++i) {
+                final URI alias = VF.createURI("http://alias" + i + ".example.org/"
+                        + person.stringValue().substring(7).replace('/', '_'));
+                out.emit(alias, OWL.SAMEAS, previous);
+                out.emit(alias, NAME, VF.createLiteral(name));
+                previous = alias;
+            }
+        }
+    }
+
+    private int pick(final Random random, final int size) {
+        // Raising a uniform variable to skew >= 1 concentrates picks on low indexes
+        return Math.min(size - 1, (int) (size * Math.pow(random.nextDouble(), this.skew)));
+    }
+
+    private static URI university(final int index) {
+        return VF.createURI("http://www.University" + index + ".edu");
+    }
+
+    private static final class Emitter {
+
+        private final RDFHandler handler;
+
+        @Nullable
+        Resource context;
+
+        long count;
+
+        Emitter(final RDFHandler handler, @Nullable final Resource context) {
+            this.handler = handler;
+            this.context = context;
+            this.count = 0;
+        }
+
+        void emit(final Resource subj, final URI pred, final Value obj)
+                throws RDFHandlerException {
+            this.handler.handleStatement(this.context == null ? VF.createStatement(subj, pred,
+                    obj) : VF.createStatement(subj, pred, obj, this.context));
+            ++this.count;
+        }
+
+    }
+
+}
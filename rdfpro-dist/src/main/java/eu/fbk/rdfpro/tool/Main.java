@@ -36,6 +36,7 @@ import eu.fbk.rdfpro.RDFHandlers;
 import eu.fbk.rdfpro.RDFProcessor;
 import eu.fbk.rdfpro.RDFProcessors;
 import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Metrics;
 
 /**
  * RDFpro main class.
@@ -72,6 +73,8 @@ public final class Main {
 
         boolean showHelp = false;
         boolean showVersion = false;
+        boolean server = false;
+        boolean client = false;
         String logLevel = "INFO";
 
         int index = 0;
@@ -82,6 +85,8 @@ public final class Main {
             }
             showHelp |= arg.equals("-h");
             showVersion |= arg.equals("-v");
+            server |= arg.equals("-s");
+            client |= arg.equals("-c");
             if (arg.equals("-V")) {
                 logLevel = "DEBUG";
             } else if (arg.equals("-VV")) {
@@ -89,7 +94,7 @@ public final class Main {
             }
             ++index;
         }
-        showHelp |= index == args.length;
+        showHelp |= index == args.length && !server;
 
         try {
             final Logger root = LoggerFactory.getLogger("eu.fbk");
@@ -119,6 +124,30 @@ public final class Main {
             System.exit(0);
         }
 
+        if (server) {
+            // Cache preprocessed rulesets and TBox data by default, as jobs likely share them
+            if (!Environment.getPropertyNames().contains("rdfpro.rules.cache.size")) {
+                Environment.configureProperty("rdfpro.rules.cache.size", "16");
+            }
+            try {
+                Server.run();
+            } catch (final Throwable ex) {
+                System.err.println("EXECUTION FAILED. " + ex.getMessage() + "\n");
+                ex.printStackTrace();
+                System.exit(2);
+            }
+        }
+
+        if (client) {
+            try {
+                final String spec = escape(Arrays.copyOfRange(args, index, args.length));
+                System.exit(Server.submit(spec, System.out, System.err));
+            } catch (final Throwable ex) {
+                System.err.println("EXECUTION FAILED. " + ex.getMessage() + "\n");
+                System.exit(2);
+            }
+        }
+
         RDFProcessor processor = null;
         try {
             processor = RDFProcessors.parse(false, Arrays.copyOfRange(args, index, args.length));
@@ -139,11 +168,13 @@ public final class Main {
                 handler.endRDF();
             }
             LOGGER.info("Done in {} s", (System.currentTimeMillis() - ts) / 1000);
+            Metrics.dump();
             System.exit(0);
 
         } catch (final Throwable ex) {
             System.err.println("EXECUTION FAILED. " + ex.getMessage() + "\n");
             ex.printStackTrace();
+            Metrics.dump();
             System.exit(2);
         }
     }
@@ -208,4 +239,22 @@ public final class Main {
         return builder.toString();
     }
 
+    static String escape(final String... args) {
+        // Escape whitespace, quotes and backslashes so that the server gets the same args
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < args.length; ++i) {
+            builder.append(i == 0 ? "" : " ");
+            if (args[i].isEmpty()) {
+                builder.append("''");
+            }
+            for (final char ch : args[i].toCharArray()) {
+                if (ch == '\\' || ch == '\'' || ch == '"' || Character.isWhitespace(ch)) {
+                    builder.append('\\');
+                }
+                builder.append(ch);
+            }
+        }
+        return builder.toString();
+    }
+
 }
@@ -0,0 +1,283 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrdf.rio.RDFHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.RDFProcessor;
+import eu.fbk.rdfpro.RDFProcessors;
+import eu.fbk.rdfpro.util.Metrics;
+import eu.fbk.rdfpro.util.Options;
+
+/**
+ * End-to-end benchmark harness for RDFpro pipelines.
+ * <p>
+ * The harness generates synthetic LUBM-like data with {@link LUBMGenerator} (reusing it if already
+ * generated with the same parameters), then runs each configured pipeline in a separate JVM, so
+ * that the peak RSS of each pipeline can be measured in isolation. Pipelines are specified as
+ * {@code NAME=SPEC} arguments, where SPEC is an RDFpro pipeline specification that may use
+ * placeholders {@code ${abox}}, {@code ${tbox}} and {@code ${out}}. Results are written as a JSON
+ * report including time, throughput, peak RSS/heap, GC time and the {@link Metrics} collected
+ * in each pipeline (per-stage statements in/out and latencies).
+ * </p>
+ */
+public final class PipelineBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineBenchmark.class);
+
+    private static final String CHILD_OPTION = "--child";
+
+    private static final Map<String, String> DEFAULT_PIPELINES = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_PIPELINES.put("rdfs", "@read ${abox} @rdfs ${tbox} @unique "
+                + "@write ${out}/rdfs.tql.gz");
+        DEFAULT_PIPELINES.put("smush", "@read ${abox} @smush http://www. "
+                + "@write ${out}/smush.tql.gz");
+        DEFAULT_PIPELINES.put("stats", "@read ${abox} @stats -o @write ${out}/stats.tql.gz");
+        DEFAULT_PIPELINES.put("owl2rl", "@read ${abox} @rules -r owl2rl -u ${tbox} "
+                + "@write ${out}/owl2rl.tql.gz");
+    }
+
+    public static void main(final String... args) {
+
+        try {
+            Class.forName("eu.fbk.rdfpro.tql.TQL");
+        } catch (final Throwable ex) {
+            // ignore - TQL will not be supported
+        }
+
+        try {
+            if (args.length > 0 && args[0].equals(CHILD_OPTION)) {
+                runChild(args[1], args[2]);
+            } else {
+                runHarness(args);
+            }
+            System.exit(0);
+
+        } catch (final IllegalArgumentException ex) {
+            System.err.println("INVOCATION ERROR. " + ex.getMessage() + "\n");
+            System.err.println("Usage: PipelineBenchmark [-n QUADS] [-s SKEW] [-c CLUSTER_SIZE] "
+                    + "[-f CLUSTER_FRACTION]\n    [-g GRAPHS] [-S SEED] [-d DIR] [-o REPORT] "
+                    + "[NAME=PIPELINE...]");
+            System.exit(1);
+
+        } catch (final Throwable ex) {
+            System.err.println("EXECUTION FAILED. " + ex.getMessage() + "\n");
+            ex.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private static void runHarness(final String... args) throws Throwable {
+
+        final Options options = Options.parse("n!|s!|c!|f!|g!|S!|d!|o!|*", args);
+        final long numQuads = options.getOptionArg("n", Long.class, 10000000L);
+        final double skew = options.getOptionArg("s", Double.class, 1.5);
+        final int clusterSize = options.getOptionArg("c", Integer.class, 3);
+        final double clusterFraction = options.getOptionArg("f", Double.class, 0.05);
+        final int numGraphs = options.getOptionArg("g", Integer.class, 16);
+        final long seed = options.getOptionArg("S", Long.class, 0L);
+        final Path dir = Paths.get(options.getOptionArg("d", String.class, "bench"))
+                .toAbsolutePath();
+        final Path report = Paths.get(options.getOptionArg("o", String.class,
+                dir.resolve("report.json").toString()));
+
+        final Map<String, String> pipelines = new LinkedHashMap<>();
+        for (final String arg : options.getPositionalArgs(String.class)) {
+            final int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Invalid pipeline (expected NAME=SPEC): "
+                        + arg);
+            }
+            pipelines.put(arg.substring(0, index).trim(), arg.substring(index + 1).trim());
+        }
+        if (pipelines.isEmpty()) {
+            pipelines.putAll(DEFAULT_PIPELINES);
+        }
+
+        // Generate data in a directory named after generation parameters, unless existing
+        final String dataName = String.format("data-n%d-s%s-c%d-f%s-g%d-S%d", numQuads, skew,
+                clusterSize, clusterFraction, numGraphs, seed);
+        final Path dataDir = dir.resolve(dataName);
+        final Path abox = dataDir.resolve("abox.tql.gz");
+        final Path tbox = dataDir.resolve("tbox.tql.gz");
+        final Path done = dataDir.resolve("done");
+        long aboxQuads = -1L;
+        long tboxQuads = -1L;
+        long generationMillis = 0L;
+        if (Files.exists(done)) {
+            final String[] counts = new String(Files.readAllBytes(done),
+                    StandardCharsets.UTF_8).trim().split("\\s+");
+            aboxQuads = Long.parseLong(counts[0]);
+            tboxQuads = Long.parseLong(counts[1]);
+            LOGGER.info("Reusing {} ABox quads and {} TBox quads in {}", aboxQuads, tboxQuads,
+                    dataDir);
+        } else {
+            Files.createDirectories(dataDir);
+            final long ts = System.currentTimeMillis();
+            final LUBMGenerator generator = new LUBMGenerator(skew, clusterSize,
+                    clusterFraction, numGraphs, seed);
+            final RDFHandler tboxHandler = RDFHandlers.write(null, 1, tbox.toString());
+            tboxHandler.startRDF();
+            tboxQuads = generator.generateTBox(tboxHandler);
+            tboxHandler.endRDF();
+            final RDFHandler aboxHandler = RDFHandlers.write(null, 1000, abox.toString());
+            aboxHandler.startRDF();
+            aboxQuads = generator.generateABox(aboxHandler, numQuads);
+            aboxHandler.endRDF();
+            generationMillis = System.currentTimeMillis() - ts;
+            Files.write(done, (aboxQuads + " " + tboxQuads + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            LOGGER.info("Generated {} ABox quads and {} TBox quads in {} ms", aboxQuads,
+                    tboxQuads, generationMillis);
+        }
+
+        // Run pipelines, each in its own JVM
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n  \"dataset\": {\"quads\": ").append(aboxQuads);
+        json.append(", \"tboxQuads\": ").append(tboxQuads);
+        json.append(", \"skew\": ").append(skew);
+        json.append(", \"sameAsClusterSize\": ").append(clusterSize);
+        json.append(", \"sameAsClusterFraction\": ").append(clusterFraction);
+        json.append(", \"graphs\": ").append(numGraphs);
+        json.append(", \"seed\": ").append(seed);
+        json.append(", \"generationMillis\": ").append(generationMillis).append("},\n");
+        json.append("  \"pipelines\": [");
+        String separator = "\n";
+        for (final Map.Entry<String, String> entry : pipelines.entrySet()) {
+            final String name = entry.getKey();
+            final Path out = dir.resolve("out-" + name);
+            Files.createDirectories(out);
+            final String spec = entry.getValue().replace("${abox}", abox.toString())
+                    .replace("${tbox}", tbox.toString()).replace("${out}", out.toString());
+            final Path childReport = out.resolve("report.json");
+            Files.deleteIfExists(childReport);
+
+            LOGGER.info("Running pipeline {}: {}", name, spec);
+            final List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(PipelineBenchmark.class.getName());
+            command.add(CHILD_OPTION);
+            command.add(childReport.toString());
+            command.add(spec);
+            final long ts = System.currentTimeMillis();
+            final int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+            final long elapsed = System.currentTimeMillis() - ts;
+
+            json.append(separator).append("    {\"name\": \"").append(escape(name));
+            json.append("\", \"pipeline\": \"").append(escape(entry.getValue()));
+            json.append("\", \"exitCode\": ").append(exitCode);
+            json.append(", \"wallMillis\": ").append(elapsed);
+            if (Files.exists(childReport)) {
+                json.append(", ").append(new String(Files.readAllBytes(childReport),
+                        StandardCharsets.UTF_8).trim());
+            }
+            json.append("}");
+            separator = ",\n";
+            LOGGER.info("Pipeline {} completed with exit code {} in {} ms", name, exitCode,
+                    elapsed);
+        }
+        json.append("\n  ]\n}\n");
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.write(report, json.toString().getBytes(StandardCharsets.UTF_8));
+        LOGGER.info("Report written to {}", report);
+    }
+
+    private static void runChild(final String report, final String spec) throws Throwable {
+
+        final RDFProcessor processor = RDFProcessors.parse(true, spec);
+        final long ts = System.currentTimeMillis();
+        final RDFHandler handler = processor.wrap(RDFHandlers.NIL);
+        final int passes = processor.getExtraPasses() + 1;
+        for (int i = 0; i < passes; ++i) {
+            handler.startRDF();
+            handler.endRDF();
+        }
+        final long elapsed = System.currentTimeMillis() - ts;
+
+        long peakHeap = 0L;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        long gcMillis = 0L;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0L, gc.getCollectionTime());
+        }
+
+        // Input statements are the ones entering the first stage (label "1:...")
+        long statementsIn = 0L;
+        for (final Metrics.Metric metric : Metrics.getMetrics()) {
+            final String stage = metric.getLabel("stage");
+            if (metric.getName().equals("rdfpro_stage_statements_out_total") && stage != null
+                    && stage.startsWith("1:")) {
+                statementsIn = metric.getValue();
+            }
+        }
+
+        final StringBuilder json = new StringBuilder();
+        json.append("\"millis\": ").append(elapsed);
+        json.append(", \"statements\": ").append(statementsIn);
+        json.append(", \"throughput\": ").append(statementsIn * 1000 / Math.max(1L, elapsed));
+        json.append(", \"peakRssBytes\": ").append(readPeakRss());
+        json.append(", \"peakHeapBytes\": ").append(peakHeap);
+        json.append(", \"gcMillis\": ").append(gcMillis);
+        json.append(", \"metrics\": ").append(Metrics.toJson().trim().replace("\n", "\n    "));
+        Files.write(Paths.get(report), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long readPeakRss() {
+        // Linux only: VmHWM is the peak resident set size of the process
+        final File file = new File("/proc/self/status");
+        try {
+            for (final String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (final IOException | NumberFormatException ex) {
+            // ignore
+        }
+        return -1L;
+    }
+
+    private static String escape(final String string) {
+        return string.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+}
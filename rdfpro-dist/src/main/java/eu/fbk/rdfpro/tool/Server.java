@@ -0,0 +1,303 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.tool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.io.BaseEncoding;
+
+import org.openrdf.rio.RDFHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.RDFProcessor;
+import eu.fbk.rdfpro.RDFProcessors;
+import eu.fbk.rdfpro.util.Environment;
+import eu.fbk.rdfpro.util.Environment.Lane;
+import eu.fbk.rdfpro.util.IO;
+import eu.fbk.rdfpro.util.Metrics;
+
+/**
+ * Long-running RDFpro server.
+ * <p>
+ * The server keeps a warm JVM where multiple pipelines are executed, amortizing JVM startup,
+ * class loading, scripting engines initialization and the preprocessing of rulesets and TBox
+ * data (cached by {@code @rules} based on property {@code rdfpro.rules.cache.size}). The server
+ * listens on the loopback interface, at the port specified by property
+ * {@code rdfpro.server.port}. A client submits a pipeline by opening a connection and sending two
+ * lines: the server token and the pipeline specification, using the same syntax of the command
+ * line (quotes and backslash escapes are supported). The server executes the pipeline, which
+ * typically writes its results to files via {@code @write}, and replies with line
+ * {@code OK <millis>} followed by the JSON metrics of the job, or with line
+ * {@code ERROR <message>}, closing the connection. Each job uses its own processors and handlers
+ * and labels its stage metrics with its job ID; at most {@code rdfpro.server.jobs} jobs are
+ * executed concurrently.
+ * </p>
+ * <p>
+ * Jobs run with the privileges of the server process: they can read and write any file the
+ * server user can access and, via {@code @groovy} and {@code @transform} scripts, execute
+ * arbitrary code. As the loopback interface is reachable by all the users of the machine, the
+ * server generates a random token at startup and stores it in a file readable only by its owner
+ * (property {@code rdfpro.server.token.file}, default {@code ~/.rdfpro/server-<port>.token}),
+ * rejecting connections that do not present it. Anybody able to read that file can run jobs as
+ * the server user, so it should not be shared, and the server should not run as a privileged
+ * user.
+ * </p>
+ */
+final class Server {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Server.class);
+
+    private static final AtomicInteger JOB_COUNTER = new AtomicInteger(0);
+
+    private Server() {
+    }
+
+    static int getPort() {
+        return Integer.parseInt(Environment.getProperty("rdfpro.server.port", "9010"));
+    }
+
+    static Path getTokenFile(final int port) {
+        final String location = Environment.getProperty("rdfpro.server.token.file");
+        return location != null ? Paths.get(location) : Paths.get(
+                System.getProperty("user.home"), ".rdfpro", "server-" + port + ".token");
+    }
+
+    static void run() throws IOException {
+
+        final int port = getPort();
+        final int maxJobs = Integer.parseInt(Environment.getProperty("rdfpro.server.jobs",
+                "1"));
+
+        try (ServerSocket serverSocket = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress())) {
+            final Path tokenFile = getTokenFile(port);
+            final String token = createToken(tokenFile);
+            try {
+                LOGGER.info("Listening on port {}, max {} concurrent jobs, token in {}", port,
+                        maxJobs, tokenFile);
+                listen(serverSocket, token, maxJobs);
+            } finally {
+                Files.deleteIfExists(tokenFile);
+            }
+        }
+    }
+
+    static void listen(final ServerSocket serverSocket, final String token, final int maxJobs)
+            throws IOException {
+
+        final Semaphore semaphore = new Semaphore(maxJobs, true);
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (final SocketException ex) {
+                if (serverSocket.isClosed()) {
+                    return; // server stopped
+                }
+                throw ex;
+            }
+            Environment.getPool(Lane.IO).execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    serve(socket, token, semaphore);
+                }
+
+            });
+        }
+    }
+
+    static int submit(final String spec, final PrintStream out, final PrintStream err)
+            throws IOException {
+
+        final int port = getPort();
+        final Path tokenFile = getTokenFile(port);
+        final String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+        } catch (final IOException ex) {
+            throw new IOException("Cannot read server token file " + tokenFile
+                    + " (server not running or owned by another user?)", ex);
+        }
+        return submit(port, token, spec, out, err);
+    }
+
+    static int submit(final int port, final String token, final String spec,
+            final PrintStream out, final PrintStream err) throws IOException {
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+
+            final Writer writer = new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.UTF_8);
+            writer.write(token);
+            writer.write('\n');
+            writer.write(spec.replace('\n', ' ').replace('\r', ' '));
+            writer.write('\n');
+            writer.flush();
+            socket.shutdownOutput();
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            final String status = reader.readLine();
+            if (status == null || !status.startsWith("OK")) {
+                err.println(status == null ? "ERROR Connection closed by server" : status);
+                return 2;
+            }
+            out.println(status);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.println(line);
+            }
+            return 0;
+        }
+    }
+
+    static String createToken(final Path file) throws IOException {
+
+        // Generate a random token
+        final byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        final String token = BaseEncoding.base16().lowerCase().encode(bytes);
+
+        // Store it in a file created with owner-only permissions, so that it is never readable
+        // by other users, not even for a moment; fall back to File permissions if not POSIX
+        final Path parent = file.toAbsolutePath().getParent();
+        final boolean posix = Files.getFileStore(Files.exists(parent) ? parent : parent.getRoot())
+                .supportsFileAttributeView(PosixFileAttributeView.class);
+        if (!Files.exists(parent)) {
+            if (posix) {
+                Files.createDirectories(parent, PosixFilePermissions
+                        .asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(parent);
+            }
+        }
+        Files.deleteIfExists(file);
+        if (posix) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions
+                    .fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+            final File f = file.toFile();
+            if (!f.setReadable(false, false) || !f.setReadable(true, true)
+                    || !f.setWritable(false, false) || !f.setWritable(true, true)) {
+                throw new IOException("Cannot restrict access to token file " + file);
+            }
+        }
+        Files.write(file, token.getBytes(StandardCharsets.UTF_8));
+        return token;
+    }
+
+    private static void serve(final Socket socket, final String token,
+            final Semaphore semaphore) {
+
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            final String clientToken = reader.readLine();
+            final String spec = reader.readLine();
+
+            String response;
+            if (clientToken == null || !MessageDigest.isEqual(
+                    token.getBytes(StandardCharsets.UTF_8),
+                    clientToken.trim().getBytes(StandardCharsets.UTF_8))) {
+                LOGGER.warn("Rejected request with invalid token from {}",
+                        socket.getRemoteSocketAddress());
+                response = "ERROR Invalid token\n";
+
+            } else if (spec == null || spec.trim().isEmpty()) {
+                response = "ERROR Empty pipeline specification\n";
+
+            } else {
+                final String job = Integer.toString(JOB_COUNTER.incrementAndGet());
+                semaphore.acquire();
+                try {
+                    response = execute(job, spec.trim());
+                } catch (final Throwable ex) {
+                    LOGGER.error("Job " + job + " failed", ex);
+                    final String message = ex.getMessage() != null ? ex.getMessage() //
+                            : ex.toString();
+                    response = "ERROR " + message.replace('\n', ' ').replace('\r', ' ') + "\n";
+                } finally {
+                    semaphore.release();
+                }
+            }
+
+            final Writer writer = new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.UTF_8);
+            writer.write(response);
+            writer.flush();
+
+        } catch (final Throwable ex) {
+            LOGGER.warn("Could not serve request from " + socket.getRemoteSocketAddress(), ex);
+
+        } finally {
+            IO.closeQuietly(socket);
+        }
+    }
+
+    private static String execute(final String job, final String spec) throws Throwable {
+
+        LOGGER.info("Job {} started: {}", job, spec);
+        final long ts = System.currentTimeMillis();
+        Metrics.setJob(job);
+        try {
+            // Processors and handlers are created from scratch for each job
+            final RDFProcessor processor = RDFProcessors.parse(true, spec);
+            final RDFHandler handler = processor.wrap(RDFHandlers.NIL);
+            try {
+                final int repetitions = processor.getExtraPasses() + 1;
+                for (int i = 0; i < repetitions; ++i) {
+                    handler.startRDF();
+                    handler.endRDF();
+                }
+            } finally {
+                IO.closeQuietly(handler);
+            }
+            final long elapsed = System.currentTimeMillis() - ts;
+            LOGGER.info("Job {} done in {} ms", job, elapsed);
+            return "OK " + elapsed + "\n" + Metrics.toJson(Metrics.getMetrics("job", job));
+
+        } finally {
+            // Drop the metrics of the job, so that the registry does not grow indefinitely
+            Metrics.setJob(null);
+            for (final Metrics.Metric metric : Metrics.getMetrics("job", job)) {
+                Metrics.unregister(metric.getName(), metric.getLabels());
+            }
+        }
+    }
+
+}
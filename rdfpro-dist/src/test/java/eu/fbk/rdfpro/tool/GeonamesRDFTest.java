@@ -0,0 +1,97 @@
+package eu.fbk.rdfpro.tool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.helpers.StatementCollector;
+
+public class GeonamesRDFTest {
+
+    @Test
+    public void testParallelParse() throws Throwable {
+        for (final int threads : new int[] { 1, 4 }) {
+            for (final int count : new int[] { 0, 1, 255, 256, 1000 }) {
+                Assert.assertEquals(expected(count), parse(zip(count, false), threads));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidEntrySize() throws Throwable {
+        // Statements of the last partial batch must be emitted also when the zip stream ends
+        // with the 'invalid entry size' error that affects Geonames dumps
+        for (final int threads : new int[] { 1, 4 }) {
+            for (final int count : new int[] { 1, 300, 1000 }) {
+                Assert.assertEquals(expected(count), parse(zip(count, true), threads));
+            }
+        }
+    }
+
+    private static byte[] zip(final int count, final boolean wrongSize) throws Throwable {
+
+        // Each feature is described by a line with its URI and a line with its RDF/XML
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            builder.append("http://example.org/f").append(i).append("/\n");
+            builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rdf:RDF xmlns:rdf=\"");
+            builder.append("http://www.w3.org/1999/02/22-rdf-syntax-ns#\" ");
+            builder.append("xmlns:ex=\"http://example.org/\"><rdf:Description rdf:about=\"");
+            builder.append("http://example.org/f").append(i).append("/\"><ex:name>Feature ");
+            builder.append(i).append("</ex:name></rdf:Description></rdf:RDF>\n");
+        }
+        final byte[] data = builder.toString().getBytes(Charset.forName("UTF-8"));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("all-geonames-rdf.txt"));
+            zip.write(data);
+            zip.closeEntry();
+        }
+        final byte[] bytes = out.toByteArray();
+
+        // Corrupt the uncompressed size in the data descriptor that follows the entry data
+        if (wrongSize) {
+            for (int i = 0; i + 16 <= bytes.length; ++i) {
+                if (bytes[i] == 'P' && bytes[i + 1] == 'K' && bytes[i + 2] == 7
+                        && bytes[i + 3] == 8) {
+                    ++bytes[i + 12];
+                    break;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static Set<String> parse(final byte[] bytes, final int threads) throws Throwable {
+        final List<Statement> stmts = new ArrayList<>();
+        final GeonamesRDF.Parser parser = new GeonamesRDF.Parser();
+        parser.getParserConfig().set(GeonamesRDF.THREADS, threads);
+        parser.setRDFHandler(new StatementCollector(stmts));
+        parser.parse(new ByteArrayInputStream(bytes), "http://example.org/");
+        final Set<String> keys = new HashSet<>();
+        for (final Statement stmt : stmts) {
+            keys.add(stmt.getSubject().stringValue() + " " + stmt.getObject().stringValue());
+        }
+        Assert.assertEquals(keys.size(), stmts.size());
+        return keys;
+    }
+
+    private static Set<String> expected(final int count) {
+        final Set<String> keys = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            keys.add("http://example.org/f" + i + "/ Feature " + i);
+        }
+        return keys;
+    }
+
+}
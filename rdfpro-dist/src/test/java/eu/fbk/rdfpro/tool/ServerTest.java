@@ -0,0 +1,134 @@
+package eu.fbk.rdfpro.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServerTest {
+
+    private static final List<String> DATA = Arrays.asList(
+            "<http://example.org/s> <http://example.org/p> \"a\" .",
+            "<http://example.org/s> <http://example.org/p> \"b\" .");
+
+    private Path dir;
+
+    private ServerSocket serverSocket;
+
+    private Thread serverThread;
+
+    private String token;
+
+    @Before
+    public void setUp() throws Throwable {
+        this.dir = Files.createTempDirectory("rdfpro-server-");
+        this.token = Server.createToken(this.dir.resolve("tokens").resolve("server.token"));
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.serverThread = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Server.listen(ServerTest.this.serverSocket, ServerTest.this.token, 1);
+                } catch (final Throwable ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+        };
+        this.serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        this.serverSocket.close();
+        this.serverThread.join(10000);
+        Assert.assertFalse(this.serverThread.isAlive());
+        Files.walk(this.dir).sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+
+    @Test
+    public void testTokenFile() throws Throwable {
+        final Path file = this.dir.resolve("tokens").resolve("server.token");
+        Assert.assertEquals(this.token, new String(Files.readAllBytes(file),
+                StandardCharsets.UTF_8));
+        Assert.assertEquals(64, this.token.length());
+        if (Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Assert.assertEquals(PosixFilePermissions.fromString("rw-------"),
+                    Files.getPosixFilePermissions(file));
+            Assert.assertEquals(PosixFilePermissions.fromString("rwx------"),
+                    Files.getPosixFilePermissions(file.getParent()));
+        }
+        Assert.assertNotEquals(this.token, Server.createToken(file)); // regenerated
+    }
+
+    @Test
+    public void testJob() throws Throwable {
+
+        // Whitespace, quotes and backslashes in args must reach the server unchanged
+        final Path input = Files.write(this.dir.resolve("in put 'q' \"d\" \\b.nt"), DATA,
+                StandardCharsets.UTF_8);
+        final Path output = this.dir.resolve("out\tput.nt");
+        final String spec = Main.escape("@read", input.toString(), "@write",
+                output.toString());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(0, submit(spec, this.token, out, err));
+        Assert.assertTrue(out.toString("UTF-8").startsWith("OK "));
+        Assert.assertTrue(out.toString("UTF-8").contains("rdfpro_stage_statements_in_total"));
+        Assert.assertEquals(new HashSet<>(DATA), new HashSet<>(Files.readAllLines(output,
+                StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testInvalidToken() throws Throwable {
+        final Path output = this.dir.resolve("out.nt");
+        final String spec = Main.escape("@read", "nonexistent.nt", "@write", output.toString());
+        for (final String token : new String[] { "", "wrong", this.token + "x" }) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            Assert.assertEquals(2, submit(spec, token, out, err));
+            Assert.assertEquals("ERROR Invalid token", err.toString("UTF-8").trim());
+            Assert.assertFalse(Files.exists(output));
+        }
+    }
+
+    @Test
+    public void testFailedJob() throws Throwable {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(2, submit("@nonexistent", this.token, out, err));
+        Assert.assertTrue(err.toString("UTF-8").startsWith("ERROR "));
+    }
+
+    @Test
+    public void testEscape() throws Throwable {
+        Assert.assertEquals("@p -x a\\ b \\'c\\' \\\"d\\\" e\\\\f ''", Main.escape("@p", "-x",
+                "a b", "'c'", "\"d\"", "e\\f", ""));
+    }
+
+    private int submit(final String spec, final String token, final ByteArrayOutputStream out,
+            final ByteArrayOutputStream err) throws Throwable {
+        try (PrintStream outStream = new PrintStream(out, true, "UTF-8");
+                PrintStream errStream = new PrintStream(err, true, "UTF-8")) {
+            return Server.submit(this.serverSocket.getLocalPort(), token, spec, outStream,
+                    errStream);
+        }
+    }
+
+}
@@ -43,6 +43,7 @@ import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
@@ -63,6 +64,7 @@ import org.slf4j.LoggerFactory;
 
 import groovy.lang.MissingMethodException;
 import groovy.lang.Script;
+import groovy.transform.CompileStatic;
 import groovy.util.GroovyScriptEngine;
 import groovy.util.ResourceConnector;
 import groovy.util.ResourceException;
@@ -88,6 +90,8 @@ final class GroovyProcessor implements RDFProcessor {
 
     private static final DatatypeFactory DATATYPE_FACTORY;
 
+    private static final int BATCH_SIZE = 1024;
+
     private final boolean scriptPooling;
 
     private final Class<?> scriptClass;
@@ -95,28 +99,39 @@ final class GroovyProcessor implements RDFProcessor {
     private final String[] scriptArgs;
 
     static {
+        ENGINE = newEngine(false);
+        try {
+            DATATYPE_FACTORY = DatatypeFactory.newInstance();
+        } catch (final DatatypeConfigurationException ex) {
+            throw new Error("Could not instantiate javax.xml.datatype.DatatypeFactory", ex);
+        }
+    }
+
+    private static GroovyScriptEngine newEngine(final boolean compileStatic) {
         try {
             final ImportCustomizer customizer = new ImportCustomizer();
             customizer.addStaticStars("eu.fbk.rdfpro.SparqlFunctions");
             final String classpath = Environment.getProperty("rdfpro.groovy.classpath", "");
-            ENGINE = new GroovyScriptEngine(new Loader(classpath));
-            ENGINE.getConfig().setScriptBaseClass(HandlerScript.class.getName());
-            ENGINE.getConfig().addCompilationCustomizers(customizer);
+            final GroovyScriptEngine engine = new GroovyScriptEngine(new Loader(classpath));
+            engine.getConfig().setScriptBaseClass(HandlerScript.class.getName());
+            engine.getConfig().addCompilationCustomizers(customizer);
+            if (compileStatic) {
+                engine.getConfig().addCompilationCustomizers(
+                        new ASTTransformationCustomizer(CompileStatic.class));
+            }
+            return engine;
         } catch (final Throwable ex) {
             throw new Error("Could not initialize Groovy: " + ex.getMessage(), ex);
         }
-        try {
-            DATATYPE_FACTORY = DatatypeFactory.newInstance();
-        } catch (final DatatypeConfigurationException ex) {
-            throw new Error("Could not instantiate javax.xml.datatype.DatatypeFactory", ex);
-        }
     }
 
     static GroovyProcessor doCreate(final String name, final String... args) {
         int index = 0;
         boolean pooling = false;
-        if (args.length > 0 && args[0].equals("-p")) {
-            pooling = true;
+        boolean compileStatic = false;
+        while (index < args.length && (args[index].equals("-p") || args[index].equals("-s"))) {
+            pooling |= args[index].equals("-p");
+            compileStatic |= args[index].equals("-s");
             ++index;
         }
         if (index >= args.length) {
@@ -125,22 +140,29 @@ final class GroovyProcessor implements RDFProcessor {
         }
         final String groovyExpressionOrFile = args[index];
         final String[] groovyArgs = Arrays.copyOfRange(args, index + 1, args.length);
-        return new GroovyProcessor(pooling, groovyExpressionOrFile, groovyArgs);
+        return new GroovyProcessor(pooling, compileStatic, groovyExpressionOrFile, groovyArgs);
     }
 
     GroovyProcessor(final boolean scriptPooling, final String scriptExprOrFile,
             final String... scriptArgs) {
+        this(scriptPooling, false, scriptExprOrFile, scriptArgs);
+    }
+
+    GroovyProcessor(final boolean scriptPooling, final boolean compileStatic,
+            final String scriptExprOrFile, final String... scriptArgs) {
 
         Objects.requireNonNull(scriptExprOrFile);
 
+        final GroovyScriptEngine engine = compileStatic ? StaticEngineHolder.ENGINE : ENGINE;
+
         Class<?> scriptClass = null;
         try {
             try {
-                scriptClass = ENGINE.loadScriptByName(scriptExprOrFile);
+                scriptClass = engine.loadScriptByName(scriptExprOrFile);
             } catch (final ResourceException ex) {
                 final Path path = Files.createTempFile("rdfpro-filter-", ".groovy");
                 Files.write(path, scriptExprOrFile.getBytes(Charset.forName("UTF-8")));
-                scriptClass = ENGINE.loadScriptByName(path.toUri().toString());
+                scriptClass = engine.loadScriptByName(path.toUri().toString());
             }
         } catch (final Throwable ex) {
             throw new Error("Could not compile Groovy script", ex);
@@ -224,6 +246,13 @@ final class GroovyProcessor implements RDFProcessor {
         return Hash.murmur3(sb.toString()).toString();
     }
 
+    private static final class StaticEngineHolder {
+
+        // Initialized on first use, so that the additional engine is created only if needed
+        static final GroovyScriptEngine ENGINE = newEngine(true);
+
+    }
+
     private static final class Loader implements ResourceConnector {
 
         private URL[] roots;
@@ -625,11 +654,26 @@ final class GroovyProcessor implements RDFProcessor {
 
         private URI[] uriConsts;
 
+        private final Statement[] batch; // null unless handleBatch() is overridden
+
+        private int batchSize;
+
         protected HandlerScript() {
             this.startEnabled = true;
             this.handleEnabled = true;
             this.endEnabled = true;
             this.uriConsts = new URI[0];
+            this.batch = isBatching(getClass()) ? new Statement[BATCH_SIZE] : null;
+            this.batchSize = 0;
+        }
+
+        private static boolean isBatching(final Class<?> scriptClass) {
+            try {
+                return scriptClass.getMethod("handleBatch", Statement[].class)
+                        .getDeclaringClass() != HandlerScript.class;
+            } catch (final NoSuchMethodException ex) {
+                return false;
+            }
         }
 
         @Override
@@ -666,53 +710,176 @@ final class GroovyProcessor implements RDFProcessor {
         public void setProperty(final String property, final Object value) {
             // Directly matching variables this way is faster than storing them in binding object
             if (this.insideRun && property.length() == 1) {
-                if ("q".equals(property)) {
-                    this.statement = normalize((Statement) value);
-                } else if ("s".equals(property)) {
-                    this.statement.s = (Resource) toRDF(value, false);
-                } else if ("p".equals(property)) {
-                    this.statement.p = (URI) toRDF(value, false);
-                } else if ("c".equals(property)) {
-                    this.statement.c = (Resource) toRDF(value, false);
-                } else if ("t".equals(property)) {
-                    this.statement.o = toRDF(value, false);
-                    this.statement.p = RDF.TYPE;
-                } else {
-                    // Following code serves to assemble literals starting from label, lang, dt
-                    boolean setLiteral = false;
-                    String newLabel = null;
-                    String newLang = null;
-                    URI newDatatype = null;
-                    if ("o".equals(property)) {
-                        if (value instanceof Value) {
-                            this.statement.o = (Value) value;
-                        } else {
-                            newLabel = value.toString();
-                            setLiteral = true;
-                        }
-                    } else if ("l".equals(property)) {
-                        newLang = value == null ? null : value.toString();
-                        setLiteral = true;
-                    } else if ("d".equals(property)) {
-                        newDatatype = value == null ? null : (URI) toRDF(value, false);
+                assign(property, value);
+            }
+            super.setProperty(property, value);
+        }
+
+        // TYPED ACCESSORS (used by statically compiled scripts, bypassing getProperty)
+
+        public final Statement getQ() {
+            return this.statement;
+        }
+
+        public final void setQ(final Object value) {
+            assign("q", value);
+        }
+
+        public final Resource getS() {
+            return this.statement.s;
+        }
+
+        public final void setS(final Object value) {
+            assign("s", value);
+        }
+
+        public final URI getP() {
+            return this.statement.p;
+        }
+
+        public final void setP(final Object value) {
+            assign("p", value);
+        }
+
+        public final Value getO() {
+            return this.statement.o;
+        }
+
+        public final void setO(final Object value) {
+            assign("o", value);
+        }
+
+        public final Resource getC() {
+            return this.statement.c;
+        }
+
+        public final void setC(final Object value) {
+            assign("c", value);
+        }
+
+        @Nullable
+        public final Value getT() {
+            return this.statement.p.equals(RDF.TYPE) ? this.statement.o : null;
+        }
+
+        public final void setT(final Object value) {
+            assign("t", value);
+        }
+
+        @Nullable
+        public final String getL() {
+            return this.statement.o instanceof Literal ? ((Literal) this.statement.o)
+                    .getLanguage() : null;
+        }
+
+        public final void setL(@Nullable final Object value) {
+            assign("l", value);
+        }
+
+        @Nullable
+        public final URI getD() {
+            return this.statement.o instanceof Literal ? ((Literal) this.statement.o)
+                    .getDatatype() : null;
+        }
+
+        public final void setD(@Nullable final Object value) {
+            assign("d", value);
+        }
+
+        /**
+         * Batch callback, invoked with chunks of input statements. The default implementation
+         * calls {@link #handleStatement(Statement)} for each statement; scripts may override it
+         * to process a whole chunk at once. Input is buffered only for scripts overriding this
+         * method, while other scripts handle each statement as soon as it arrives. The supplied
+         * array is reused by subsequent calls and should not be retained.
+         *
+         * @param statements
+         *            the statements to handle
+         * @throws RDFHandlerException
+         *             on error
+         */
+        public void handleBatch(final Statement[] statements) throws RDFHandlerException {
+            for (final Statement statement : statements) {
+                handleStatement(statement);
+            }
+        }
+
+        /**
+         * Handles a single statement, by calling the {@code handle()} method of the script if
+         * defined or by running the script body otherwise.
+         *
+         * @param statement
+         *            the statement to handle
+         * @throws RDFHandlerException
+         *             on error
+         */
+        protected final void handleStatement(final Statement statement)
+                throws RDFHandlerException {
+
+            this.statement = normalize(statement);
+
+            if (this.handleEnabled) {
+                if (tryInvokeMethod("handle", this.statement)) {
+                    return;
+                }
+                this.handleEnabled = false;
+                LOGGER.debug("Using script body for " + this.name + " (no handle() method)");
+            }
+
+            this.insideRun = true;
+            try {
+                this.run();
+            } finally {
+                this.insideRun = false;
+            }
+        }
+
+        private void assign(final String property, final Object value) {
+            if ("q".equals(property)) {
+                this.statement = normalize((Statement) value);
+            } else if ("s".equals(property)) {
+                this.statement.s = (Resource) toRDF(value, false);
+            } else if ("p".equals(property)) {
+                this.statement.p = (URI) toRDF(value, false);
+            } else if ("c".equals(property)) {
+                this.statement.c = (Resource) toRDF(value, false);
+            } else if ("t".equals(property)) {
+                this.statement.o = toRDF(value, false);
+                this.statement.p = RDF.TYPE;
+            } else {
+                // Following code serves to assemble literals starting from label, lang, dt
+                boolean setLiteral = false;
+                String newLabel = null;
+                String newLang = null;
+                URI newDatatype = null;
+                if ("o".equals(property)) {
+                    if (value instanceof Value) {
+                        this.statement.o = (Value) value;
+                    } else {
+                        newLabel = value.toString();
                         setLiteral = true;
                     }
-                    if (setLiteral) {
-                        if (this.statement.o instanceof Literal) {
-                            final Literal l = (Literal) this.statement.o;
-                            newLabel = newLabel != null ? newLabel : l.getLabel();
-                            newLang = newLang != null ? newLang : l.getLanguage();
-                            newDatatype = newDatatype != null ? newDatatype : l.getDatatype();
-                        }
-                        this.statement.o = newLang != null ? Statements.VALUE_FACTORY
-                                .createLiteral(newLabel, newLang)
-                                : newDatatype != null ? Statements.VALUE_FACTORY.createLiteral(
-                                        newLabel, newDatatype) : Statements.VALUE_FACTORY
-                                        .createLiteral(newLabel);
+                } else if ("l".equals(property)) {
+                    newLang = value == null ? null : value.toString();
+                    setLiteral = true;
+                } else if ("d".equals(property)) {
+                    newDatatype = value == null ? null : (URI) toRDF(value, false);
+                    setLiteral = true;
+                }
+                if (setLiteral) {
+                    if (this.statement.o instanceof Literal) {
+                        final Literal l = (Literal) this.statement.o;
+                        newLabel = newLabel != null ? newLabel : l.getLabel();
+                        newLang = newLang != null ? newLang : l.getLanguage();
+                        newDatatype = newDatatype != null ? newDatatype : l.getDatatype();
                     }
+                    this.statement.o = newLang != null ? Statements.VALUE_FACTORY
+                            .createLiteral(newLabel, newLang)
+                            : newDatatype != null ? Statements.VALUE_FACTORY.createLiteral(
+                                    newLabel, newDatatype) : Statements.VALUE_FACTORY
+                                    .createLiteral(newLabel);
                 }
             }
-            super.setProperty(property, value);
         }
 
         final void doInit(final String name, final RDFHandler handler, final String[] args)
@@ -735,26 +902,18 @@ final class GroovyProcessor implements RDFProcessor {
         }
 
         final void doHandle(final Statement statement) throws RDFHandlerException {
-
-            this.statement = normalize(statement);
-
-            if (this.handleEnabled) {
-                if (tryInvokeMethod("handle", this.statement)) {
-                    return;
+            if (this.batch == null) {
+                handleStatement(statement);
+            } else {
+                this.batch[this.batchSize++] = statement;
+                if (this.batchSize == this.batch.length) {
+                    flushBatch();
                 }
-                this.handleEnabled = false;
-                LOGGER.debug("Using script body for " + this.name + " (no handle() method)");
-            }
-
-            this.insideRun = true;
-            try {
-                this.run();
-            } finally {
-                this.insideRun = false;
             }
         }
 
         final void doEnd(final int pass) throws RDFHandlerException {
+            flushBatch();
             if (this.endEnabled) {
                 this.endEnabled = tryInvokeMethod("end", pass);
                 if (this.endEnabled && LOGGER.isDebugEnabled()) {
@@ -763,6 +922,15 @@ final class GroovyProcessor implements RDFProcessor {
             }
         }
 
+        private void flushBatch() throws RDFHandlerException {
+            if (this.batchSize > 0) {
+                final Statement[] statements = this.batchSize == this.batch.length ? this.batch
+                        : Arrays.copyOf(this.batch, this.batchSize);
+                this.batchSize = 0;
+                handleBatch(statements);
+            }
+        }
+
         // INTERNAL FUNCTIONS
 
         protected final URI __iri(final int index, final Object arg) {
@@ -2,6 +2,8 @@ package eu.fbk.rdfpro;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
@@ -87,6 +89,65 @@ public class GroovyProcessorTest {
         Assert.assertEquals(1, processor.getProperty(handler, "valMatchCount"));
     }
 
+    @Test
+    public void testStaticBatch() throws RDFHandlerException {
+        final String script = "" //
+                + "void handleBatch(org.openrdf.model.Statement[] qs) { " //
+                + "for (org.openrdf.model.Statement st : qs) { " //
+                + "if (st.getObject().stringValue().endsWith('0')) { emit(st) } } }";
+        final GroovyProcessor processor = new GroovyProcessor(false, true, script);
+        final AtomicInteger n = new AtomicInteger(0);
+        final RDFHandler handler = processor.wrap(new RDFHandlerBase() {
+
+            @Override
+            public void handleStatement(final Statement st) throws RDFHandlerException {
+                n.incrementAndGet();
+            }
+
+        });
+        handler.startRDF();
+        for (int i = 0; i < 5000; ++i) {
+            handler.handleStatement(newStatement("ex:s", "ex:p", "ex:o" + i, "ex:c"));
+        }
+        handler.endRDF();
+        Assert.assertEquals(500, n.get());
+    }
+
+    @Test
+    public void testUnbufferedHandle() throws RDFHandlerException {
+        // Scripts not overriding handleBatch() must emit each statement before the next arrives
+        for (final boolean compileStatic : new boolean[] { false, true }) {
+            final GroovyProcessor processor = new GroovyProcessor(false, compileStatic,
+                    "emit()");
+            final List<Statement> stmts = new ArrayList<>();
+            final RDFHandler handler = processor.wrap(RDFHandlers.wrap(stmts));
+            handler.startRDF();
+            for (int i = 0; i < 10; ++i) {
+                handler.handleStatement(newStatement("ex:s", "ex:p", "ex:o" + i, "ex:c"));
+                Assert.assertEquals(i + 1, stmts.size());
+            }
+            handler.endRDF();
+        }
+    }
+
+    @Test
+    public void testStaticAccessors() throws RDFHandlerException {
+        final String script = "if (o.stringValue().endsWith('0')) { c = s; emit() }";
+        final GroovyProcessor processor = new GroovyProcessor(false, true, script);
+        final List<Statement> stmts = new ArrayList<>();
+        final RDFHandler handler = processor.wrap(RDFHandlers.wrap(stmts));
+        handler.startRDF();
+        for (int i = 0; i < 2000; ++i) {
+            handler.handleStatement(newStatement("ex:s", "ex:p", "ex:o" + i, "ex:c"));
+        }
+        handler.endRDF();
+        Assert.assertEquals(200, stmts.size());
+        for (final Statement stmt : stmts) {
+            Assert.assertEquals(stmt.getSubject(), stmt.getContext());
+            Assert.assertTrue(stmt.getObject().stringValue().endsWith("0"));
+        }
+    }
+
     private Statement newStatement(final String s, final String p, final String o, final String c) {
         final ValueFactory vf = Statements.VALUE_FACTORY;
         return vf.createStatement(vf.createURI(s), vf.createURI(p), vf.createURI(o),
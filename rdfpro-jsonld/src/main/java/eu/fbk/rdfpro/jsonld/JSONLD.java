@@ -13,6 +13,7 @@
  */
 package eu.fbk.rdfpro.jsonld;
 
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Set;
 
@@ -25,8 +26,12 @@ import org.openrdf.rio.helpers.RioSettingImpl;
  * Constants for the Turtle Quads (TQL) format.
  * <p>
  * Constant {@link #FORMAT} is a local alias for the JSON-LD RDFFormat defined in
- * {@link RDFFormat#JSONLD}. Constant {@link #ROOT_TYPES} is an optional setting controlling the
- * writing of JSON-LD data by {@link JSONLDWriter}.
+ * {@link RDFFormat#JSONLD}, while constant {@link #NDJSONLD_FORMAT} defines the newline-delimited
+ * JSON-LD format, where each line is a self-contained JSON-LD node object (or array of node
+ * objects) possibly with its own context, which allows splitting and processing a file in
+ * parallel as done for N-Triples and N-Quads. Constants {@link #ROOT_TYPES} and
+ * {@link #GROUPED} are optional settings controlling the writing of JSON-LD data by
+ * {@link JSONLDWriter}.
  * </p>
  */
 public class JSONLD {
@@ -34,6 +39,10 @@ public class JSONLD {
     /** RDFFormat constant for the JSON-LD format (alias of {@link RDFFormat#JSONLD}). */
     public static final RDFFormat FORMAT = RDFFormat.JSONLD;
 
+    /** RDFFormat constant for the newline-delimited JSON-LD format. */
+    public static final RDFFormat NDJSONLD_FORMAT = new RDFFormat("ND-JSON-LD",
+            "application/x-ld+ndjson", Charset.forName("UTF-8"), "ndjsonld", false, true);
+
     /**
      * Optional setting specifying the {@code rdf:type}(s) of RDF resources to be emitted as top
      * level JSONLD nodes.
@@ -43,4 +52,14 @@ public class JSONLD {
                     + "as root (top level) nodes in the produced JSONLD",
             Collections.<URI>emptySet());
 
+    /**
+     * Optional setting enabling the grouped writing mode, where all the statements with the same
+     * subject and context are emitted in a single JSONLD node (no matter how far apart they
+     * occur in the input) at the price of buffering data on disk and producing the output only
+     * at the end; nested nodes are never embedded in this mode. Disabled by default.
+     */
+    public static final RioSetting<Boolean> GROUPED = new RioSettingImpl<Boolean>(
+            "eu.fbk.jsonld.grouped", "Whether to fully group statements by subject and context, "
+                    + "processing groups in parallel", Boolean.FALSE);
+
 }
@@ -13,18 +13,39 @@
  */
 package eu.fbk.rdfpro.jsonld;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
+import org.openrdf.model.BNode;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.BNodeImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
@@ -44,17 +65,32 @@ import org.semarglproject.sink.QuadSink;
  * </p>
  * <p>
  * This implementation wraps the parser provided by the SEMARGL project -
- * http://semarglproject.org/, adapting it to the Sesame RIO API.
+ * http://semarglproject.org/, adapting it to the Sesame RIO API. Documents in expanded form (a
+ * top level array of node objects) or in flattened form (a top level object consisting of a
+ * {@code @context} with only prefix / term mappings, {@code @vocab} and {@code @language},
+ * followed by a {@code @graph}) are instead handled by a faster streaming parser implemented
+ * here. As whether this parser is applicable is known only at the end of the document, the
+ * document is first scanned without emitting anything, recording it in memory or (if large) in a
+ * temporary file; the recorded document is then replayed either to the streaming parser or to
+ * the SEMARGL one. The same streaming parser is used for newline-delimited JSON-LD (see
+ * {@link NDJSONLDParser}), where no scan is needed as each line is parsed on its own.
  * </p>
  */
 public class JSONLDParser extends RDFParserBase {
 
+    private static final int EOF = -1;
+
+    private static final BNode SCAN_BNODE = new BNodeImpl("scan"); // never emitted
+
+    private final boolean lineBased;
+
     /**
      * Creates a new JSONLDParser that will use a {@link ValueFactoryImpl} to create RDF model
      * objects.
      */
     public JSONLDParser() {
         super();
+        this.lineBased = false;
     }
 
     /**
@@ -65,7 +101,12 @@ public class JSONLDParser extends RDFParserBase {
      *            the ValueFactory to use
      */
     public JSONLDParser(final ValueFactory valueFactory) {
+        this(valueFactory, false);
+    }
+
+    JSONLDParser(final ValueFactory valueFactory, final boolean lineBased) {
         super(valueFactory);
+        this.lineBased = lineBased;
     }
 
     @Override
@@ -83,6 +124,49 @@ public class JSONLDParser extends RDFParserBase {
     public void parse(final Reader reader, final String baseURI) throws IOException,
             RDFParseException, RDFHandlerException {
 
+        if (reader == null) {
+            throw new NullPointerException("Null reader");
+        }
+
+        if (baseURI != null) {
+            setBaseURI(baseURI);
+        }
+
+        // Line-based documents are always handled with the streaming parser
+        if (this.lineBased) {
+            try {
+                new FastParser(reader, false).parseLines();
+            } finally {
+                clear();
+            }
+            return;
+        }
+
+        // Scan the document to check whether the streaming parser can handle it, then replay the
+        // recorded document to the streaming parser or, if not applicable, to the Semargl one
+        final FastParser scanner = new FastParser(reader, true);
+        try {
+            boolean fast;
+            try {
+                fast = scanner.parseDocument();
+            } catch (final RDFParseException ex) {
+                fast = false; // let the Semargl parser report the error, if any
+            }
+            final Reader replayReader = scanner.replay();
+            if (fast) {
+                new FastParser(replayReader, false).parseDocument();
+            } else {
+                parseSemargl(replayReader);
+            }
+        } finally {
+            scanner.dispose();
+            clear();
+        }
+    }
+
+    private void parseSemargl(final Reader reader) throws IOException, RDFParseException,
+            RDFHandlerException {
+
         final QuadSink sink = new SesameSink(this.rdfHandler, this.valueFactory);
         try {
             final CharSink parser = JsonLdParser.connect(sink);
@@ -101,6 +185,725 @@ public class JSONLDParser extends RDFParserBase {
         }
     }
 
+    private static final class JSONNumber {
+
+        final String lexical;
+
+        JSONNumber(final String lexical) {
+            this.lexical = lexical;
+        }
+
+        boolean isInteger() {
+            return this.lexical.indexOf('.') < 0 && this.lexical.indexOf('e') < 0
+                    && this.lexical.indexOf('E') < 0;
+        }
+
+        String toCanonicalDouble() {
+            // produce XSD canonical form as mandated by JSON-LD, e.g., 1.1E0
+            final String s = String.format(Locale.ROOT, "%1.15E",
+                    Double.parseDouble(this.lexical));
+            final int index = s.indexOf('E');
+            int end = index;
+            while (s.charAt(end - 1) == '0' && s.charAt(end - 2) != '.') {
+                --end;
+            }
+            return s.substring(0, end) + "E" + Integer.parseInt(s.substring(index + 1));
+        }
+
+    }
+
+    private final class FastParser {
+
+        private final Reader reader;
+
+        private final char[] buffer; // read buffer
+
+        private int pos; // index of next char to consume in buffer
+
+        private int limit; // number of valid chars in buffer
+
+        private final boolean scan; // whether to only scan the input, without emitting
+
+        private final Recording recording; // chars read while scanning (null if not scanning)
+
+        private final StringBuilder builder; // used for reading strings
+
+        private int lineNo;
+
+        private final Map<String, String> terms; // term / prefix -> IRI
+
+        private String vocab; // @vocab from context
+
+        private String language; // @language from context
+
+        private boolean contextSet; // whether terms, vocab and language reflect context field
+
+        private Object context; // last JSON @context processed, to avoid reprocessing it
+
+        private final Map<String, URI> cache; // term -> expanded URI (null if undefined)
+
+        FastParser(final Reader reader, final boolean scan) {
+            this.reader = reader;
+            this.scan = scan;
+            this.recording = scan ? new Recording() : null;
+            this.buffer = new char[64 * 1024];
+            this.pos = 0;
+            this.limit = 0;
+            this.builder = new StringBuilder();
+            this.lineNo = 1;
+            this.terms = new HashMap<String, String>();
+            this.cache = new HashMap<String, URI>();
+        }
+
+        void parseLines() throws IOException, RDFParseException, RDFHandlerException {
+            start();
+            while (skipWhitespace() != EOF) {
+                emitTop(readValue());
+            }
+            end();
+        }
+
+        boolean parseDocument() throws IOException, RDFParseException, RDFHandlerException {
+
+            // Accept only documents in expanded form (top level array) or in flattened form with
+            // a simple context; return false for other documents
+            final int c = skipWhitespace();
+            if (c == '{') {
+                ++this.pos;
+                String key = readKey();
+                if ("@context".equals(key)) {
+                    if (!setContext(readValue()) || !readSeparator('}')) {
+                        return false;
+                    }
+                    key = readKey();
+                }
+                if (!"@graph".equals(key) || skipWhitespace() != '[') {
+                    return false;
+                }
+            } else if (c != '[' && c != EOF) {
+                return false;
+            }
+
+            // Parse the document in streaming mode. Any construct not supported (e.g., embedded
+            // contexts or top level keys after @graph) leads to an exception
+            start();
+            if (c != EOF) {
+                ++this.pos;
+                parseGraph(null);
+                if (c == '{') {
+                    expect('}');
+                }
+            }
+            if (skipWhitespace() != EOF) {
+                fail("Unexpected content after end of JSON-LD document");
+            }
+            end();
+            return true;
+        }
+
+        Reader replay() throws IOException {
+            // Recorded chars are followed by unconsumed buffered chars and the rest of the input
+            return new ConcatReader(this.recording.reader(), new CharArrayReader(this.buffer, 0,
+                    this.limit), this.reader);
+        }
+
+        void dispose() {
+            if (this.recording != null) {
+                this.recording.delete();
+            }
+        }
+
+        private void start() throws RDFHandlerException {
+            if (!this.scan && JSONLDParser.this.rdfHandler != null) {
+                JSONLDParser.this.rdfHandler.startRDF();
+            }
+        }
+
+        private void end() throws RDFHandlerException {
+            if (!this.scan && JSONLDParser.this.rdfHandler != null) {
+                JSONLDParser.this.rdfHandler.endRDF();
+            }
+        }
+
+        private void parseGraph(final Resource graph) throws IOException, RDFParseException,
+                RDFHandlerException {
+            if (skipWhitespace() == ']') {
+                ++this.pos;
+                return;
+            }
+            do {
+                if (skipWhitespace() == '{') {
+                    parseNode(graph);
+                } else {
+                    fail("Expected node object");
+                }
+            } while (readSeparator(']'));
+        }
+
+        private void parseNode(final Resource graph) throws IOException, RDFParseException,
+                RDFHandlerException {
+
+            // Named graphs are streamed if their @id precedes @graph; other nodes are buffered
+            ++this.pos;
+            final Map<String, Object> node = new LinkedHashMap<String, Object>();
+            if (skipWhitespace() == '}') {
+                ++this.pos;
+                return;
+            }
+            do {
+                final String key = readKey();
+                final Object id = node.get("@id");
+                if ("@graph".equals(key) && node.size() == 1 && id instanceof String
+                        && skipWhitespace() == '[') {
+                    ++this.pos;
+                    parseGraph(expandId((String) id));
+                } else {
+                    node.put(key, readValue());
+                }
+            } while (readSeparator('}'));
+            emitNode(node, graph);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void emitTop(final Object value) throws RDFParseException, RDFHandlerException {
+            if (value instanceof List<?>) {
+                for (final Object element : (List<Object>) value) {
+                    emitTop(element);
+                }
+            } else if (value instanceof Map<?, ?>) {
+                final Map<String, Object> node = (Map<String, Object>) value;
+                if (!setContext(node.remove("@context"))) {
+                    fail("Unsupported @context (only term, @vocab and @language definitions "
+                            + "are allowed)");
+                }
+                if (node.size() == 1 && node.containsKey("@graph")) {
+                    emitGraph(node.get("@graph"), null);
+                } else {
+                    emitNode(node, null);
+                }
+            } else {
+                fail("Expected node object, found " + value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Resource emitNode(final Map<String, Object> node, final Resource graph)
+                throws RDFParseException, RDFHandlerException {
+
+            if (node.containsKey("@context")) {
+                fail("Embedded @context not supported");
+            }
+
+            final Object id = node.get("@id");
+            final Resource subject = id instanceof String ? expandId((String) id)
+                    : newBNode(null);
+
+            for (final Map.Entry<String, Object> entry : node.entrySet()) {
+                final String key = entry.getKey();
+                final Object value = entry.getValue();
+                if (!key.startsWith("@")) {
+                    final URI property = expandVocab(key);
+                    if (property != null) {
+                        emitValues(subject, property, value, graph);
+                    }
+                } else if ("@type".equals(key)) {
+                    for (final Object type : asList(value)) {
+                        final URI uri = type instanceof String ? expandVocab((String) type)
+                                : null;
+                        if (uri != null) {
+                            emit(subject, RDF.TYPE, uri, graph);
+                        }
+                    }
+                } else if ("@graph".equals(key)) {
+                    emitGraph(value, subject);
+                } else if ("@reverse".equals(key) && value instanceof Map<?, ?>) {
+                    for (final Map.Entry<String, Object> e : ((Map<String, Object>) value)
+                            .entrySet()) {
+                        final URI property = expandVocab(e.getKey());
+                        for (final Object object : asList(e.getValue())) {
+                            if (property != null && object instanceof Map<?, ?>) {
+                                final Resource resource = emitNode(
+                                        (Map<String, Object>) object, graph);
+                                emit(resource, property, subject, graph);
+                            }
+                        }
+                    }
+                }
+                // other keywords (@id, @index, ...) are either already handled or ignored
+            }
+            return subject;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void emitGraph(final Object nodes, final Resource graph)
+                throws RDFParseException, RDFHandlerException {
+            for (final Object node : asList(nodes)) {
+                if (node instanceof Map<?, ?>) {
+                    emitNode((Map<String, Object>) node, graph);
+                } else {
+                    fail("Expected node object in @graph, found " + node);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void emitValues(final Resource subject, final URI property, final Object value,
+                final Resource graph) throws RDFParseException, RDFHandlerException {
+            if (value instanceof List<?>) {
+                for (final Object element : (List<Object>) value) {
+                    emitValues(subject, property, element, graph);
+                }
+            } else if (value instanceof Map<?, ?> && ((Map<?, ?>) value).containsKey("@set")) {
+                emitValues(subject, property, ((Map<?, ?>) value).get("@set"), graph);
+            } else {
+                final Value object = toValue(value, graph);
+                if (object != null) {
+                    emit(subject, property, object, graph);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Value toValue(final Object value, final Resource graph) throws RDFParseException,
+                RDFHandlerException {
+
+            if (value == null) {
+                return null;
+            } else if (value instanceof String) {
+                return createLiteral((String) value, this.language, null);
+            } else if (value instanceof JSONNumber) {
+                return toLiteral((JSONNumber) value, null);
+            } else if (value instanceof Boolean) {
+                return createLiteral(value.toString(), null, XMLSchema.BOOLEAN);
+            } else if (!(value instanceof Map<?, ?>)) {
+                fail("Unexpected value " + value);
+            }
+
+            final Map<String, Object> map = (Map<String, Object>) value;
+            if (map.containsKey("@value")) {
+                final Object label = map.get("@value");
+                final Object type = map.get("@type");
+                final Object lang = map.get("@language");
+                final URI datatype = type instanceof String ? expandVocab((String) type) : null;
+                if (label == null) {
+                    return null;
+                } else if (label instanceof JSONNumber) {
+                    return toLiteral((JSONNumber) label, datatype);
+                } else if (label instanceof Boolean && datatype == null) {
+                    return createLiteral(label.toString(), null, XMLSchema.BOOLEAN);
+                }
+                return createLiteral(label.toString(), lang instanceof String ? (String) lang
+                        : null, datatype);
+
+            } else if (map.containsKey("@list")) {
+                final List<Value> values = new ArrayList<Value>();
+                for (final Object element : asList(map.get("@list"))) {
+                    final Value v = toValue(element, graph);
+                    if (v != null) {
+                        values.add(v);
+                    }
+                }
+                Resource list = RDF.NIL;
+                for (int i = values.size() - 1; i >= 0; --i) {
+                    final Resource node = newBNode(null);
+                    emit(node, RDF.FIRST, values.get(i), graph);
+                    emit(node, RDF.REST, list, graph);
+                    list = node;
+                }
+                return list;
+
+            } else {
+                return emitNode(map, graph);
+            }
+        }
+
+        private Value toLiteral(final JSONNumber number, final URI datatype)
+                throws RDFParseException {
+            if (number.isInteger() && (datatype == null || datatype.equals(XMLSchema.INTEGER))) {
+                return createLiteral(number.lexical, null, XMLSchema.INTEGER);
+            } else if (datatype == null || datatype.equals(XMLSchema.DOUBLE)) {
+                return createLiteral(number.toCanonicalDouble(), null, XMLSchema.DOUBLE);
+            } else {
+                return createLiteral(number.lexical, null, datatype);
+            }
+        }
+
+        private void emit(final Resource subject, final URI predicate, final Value object,
+                final Resource graph) throws RDFParseException, RDFHandlerException {
+            if (!this.scan && JSONLDParser.this.rdfHandler != null) {
+                JSONLDParser.this.rdfHandler.handleStatement(graph == null ? createStatement(
+                        subject, predicate, object) : createStatement(subject, predicate,
+                        object, graph));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Object> asList(final Object value) {
+            if (value instanceof List<?>) {
+                return (List<Object>) value;
+            } else if (value instanceof Map<?, ?> && ((Map<?, ?>) value).containsKey("@set")) {
+                return asList(((Map<?, ?>) value).get("@set"));
+            }
+            final List<Object> list = new ArrayList<Object>(1);
+            if (value != null) {
+                list.add(value);
+            }
+            return list;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean setContext(final Object context) {
+
+            // Reuse terms and cached expansions if the context did not change
+            if (this.contextSet && Objects.equals(context, this.context)) {
+                return true;
+            }
+
+            this.contextSet = false;
+            this.terms.clear();
+            this.cache.clear();
+            this.vocab = null;
+            this.language = null;
+
+            for (final Object element : asList(context)) {
+                if (!(element instanceof Map<?, ?>)) {
+                    return false; // remote contexts not supported
+                }
+                for (final Map.Entry<String, Object> entry : ((Map<String, Object>) element)
+                        .entrySet()) {
+                    final String key = entry.getKey();
+                    final Object value = entry.getValue();
+                    final Object id = value instanceof Map<?, ?> ? ((Map<?, ?>) value).get("@id")
+                            : null;
+                    if ("@vocab".equals(key) && value instanceof String) {
+                        this.vocab = (String) value;
+                    } else if ("@language".equals(key) && value instanceof String) {
+                        this.language = (String) value;
+                    } else if (key.startsWith("@")) {
+                        return false; // @base and other keywords not supported
+                    } else if (value instanceof String) {
+                        this.terms.put(key, (String) value);
+                    } else if (id instanceof String && ((Map<?, ?>) value).size() == 1) {
+                        this.terms.put(key, (String) id);
+                    } else {
+                        return false; // type coercion and other term features not supported
+                    }
+                }
+            }
+
+            this.context = context;
+            this.contextSet = true;
+            return true;
+        }
+
+        private URI expandVocab(final String term) throws RDFParseException {
+            URI uri = this.cache.get(term);
+            if (uri == null && !this.cache.containsKey(term)) {
+                final String mapped = this.terms.get(term);
+                String iri = expandPrefixed(mapped != null ? mapped : term);
+                if (iri == null && mapped == null && this.vocab != null) {
+                    iri = this.vocab + term;
+                }
+                uri = iri == null ? null : createURI(iri);
+                this.cache.put(term, uri);
+            }
+            return uri;
+        }
+
+        private Resource expandId(final String id) throws RDFParseException {
+            if (id.startsWith("_:")) {
+                return newBNode(id.substring(2));
+            }
+            final String iri = expandPrefixed(id);
+            return iri != null ? createURI(iri) : resolveURI(id);
+        }
+
+        private BNode newBNode(final String id) throws RDFParseException {
+            // While scanning nothing is emitted, so no BNode is registered in the parser ID map
+            if (this.scan) {
+                return SCAN_BNODE;
+            }
+            return id == null ? createBNode() : createBNode(id);
+        }
+
+        private String expandPrefixed(final String string) {
+            final int index = string.indexOf(':');
+            if (index < 0 || index == 1 && string.charAt(0) == '_') {
+                return null; // relative IRI or blank node
+            }
+            final String namespace = this.terms.get(string.substring(0, index));
+            if (namespace != null && !string.startsWith("//", index + 1)) {
+                return namespace + string.substring(index + 1);
+            }
+            return string; // absolute IRI
+        }
+
+        private Object readValue() throws IOException, RDFParseException {
+            final int c = skipWhitespace();
+            if (c == '{') {
+                ++this.pos;
+                final Map<String, Object> map = new LinkedHashMap<String, Object>();
+                if (skipWhitespace() == '}') {
+                    ++this.pos;
+                } else {
+                    do {
+                        final String key = readKey();
+                        map.put(key, readValue());
+                    } while (readSeparator('}'));
+                }
+                return map;
+            } else if (c == '[') {
+                ++this.pos;
+                final List<Object> list = new ArrayList<Object>();
+                if (skipWhitespace() == ']') {
+                    ++this.pos;
+                } else {
+                    do {
+                        list.add(readValue());
+                    } while (readSeparator(']'));
+                }
+                return list;
+            } else if (c == '"') {
+                return readString();
+            } else if (c == '-' || c >= '0' && c <= '9') {
+                this.builder.setLength(0);
+                for (int d = peek(); d == '-' || d == '+' || d == '.' || d == 'e' || d == 'E'
+                        || d >= '0' && d <= '9'; d = peek()) {
+                    this.builder.append((char) d);
+                    ++this.pos;
+                }
+                return new JSONNumber(this.builder.toString());
+            } else if (c >= 'a' && c <= 'z') {
+                this.builder.setLength(0);
+                for (int d = peek(); d >= 'a' && d <= 'z'; d = peek()) {
+                    this.builder.append((char) d);
+                    ++this.pos;
+                }
+                final String word = this.builder.toString();
+                if ("true".equals(word)) {
+                    return Boolean.TRUE;
+                } else if ("false".equals(word)) {
+                    return Boolean.FALSE;
+                } else if ("null".equals(word)) {
+                    return null;
+                }
+                fail("Invalid JSON token: " + word);
+            }
+            fail(c == EOF ? "Unexpected end of file" : "Unexpected character '" + (char) c + "'");
+            return null;
+        }
+
+        private String readKey() throws IOException, RDFParseException {
+            if (skipWhitespace() != '"') {
+                fail("Expected JSON object key");
+            }
+            final String key = readString();
+            expect(':');
+            return key;
+        }
+
+        private String readString() throws IOException, RDFParseException {
+            ++this.pos; // skip opening quote
+            this.builder.setLength(0);
+            while (true) {
+                if (this.pos == this.limit && !fill()) {
+                    fail("Unexpected end of file");
+                }
+                final int start = this.pos;
+                while (this.pos < this.limit) {
+                    final char c = this.buffer[this.pos];
+                    if (c == '"' || c == '\\') {
+                        break;
+                    }
+                    ++this.pos;
+                }
+                this.builder.append(this.buffer, start, this.pos - start);
+                if (this.pos < this.limit) {
+                    if (this.buffer[this.pos++] == '"') {
+                        return this.builder.toString();
+                    }
+                    final int c = read();
+                    if (c == 'u') {
+                        int code = 0;
+                        for (int i = 0; i < 4; ++i) {
+                            final int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                fail("Invalid \\u escape sequence");
+                            }
+                            code = code << 4 | digit;
+                        }
+                        this.builder.append((char) code);
+                    } else if (c == 'n') {
+                        this.builder.append('\n');
+                    } else if (c == 't') {
+                        this.builder.append('\t');
+                    } else if (c == 'r') {
+                        this.builder.append('\r');
+                    } else if (c == 'b') {
+                        this.builder.append('\b');
+                    } else if (c == 'f') {
+                        this.builder.append('\f');
+                    } else if (c == '"' || c == '\\' || c == '/') {
+                        this.builder.append((char) c);
+                    } else {
+                        fail("Invalid escape sequence \\" + (char) c);
+                    }
+                }
+            }
+        }
+
+        private boolean readSeparator(final char close) throws IOException, RDFParseException {
+            final int c = skipWhitespace();
+            ++this.pos;
+            if (c == ',') {
+                return true;
+            } else if (c != close) {
+                fail("Expected ',' or '" + close + "'");
+            }
+            return false;
+        }
+
+        private void expect(final char expected) throws IOException, RDFParseException {
+            if (skipWhitespace() != expected) {
+                fail("Expected '" + expected + "'");
+            }
+            ++this.pos;
+        }
+
+        private int skipWhitespace() throws IOException {
+            while (true) {
+                final int c = peek();
+                if (c == '\n') {
+                    ++this.lineNo;
+                } else if (c != ' ' && c != '\t' && c != '\r') {
+                    return c;
+                }
+                ++this.pos;
+            }
+        }
+
+        private int peek() throws IOException {
+            return this.pos < this.limit || fill() ? this.buffer[this.pos] : EOF;
+        }
+
+        private int read() throws IOException {
+            return this.pos < this.limit || fill() ? this.buffer[this.pos++] : EOF;
+        }
+
+        private boolean fill() throws IOException {
+            if (this.recording != null) {
+                this.recording.append(this.buffer, 0, this.limit);
+            }
+            this.pos = 0;
+            this.limit = 0;
+            while (this.limit == 0) {
+                final int length = this.reader.read(this.buffer);
+                if (length < 0) {
+                    return false;
+                }
+                this.limit = length;
+            }
+            return true;
+        }
+
+        private void fail(final String message) throws RDFParseException {
+            throw new RDFParseException(message, this.lineNo, -1);
+        }
+
+    }
+
+    private static final class Recording {
+
+        private static final int MEMORY_LIMIT = 4 * 1024 * 1024; // chars kept in memory
+
+        private final StringBuilder builder;
+
+        private File file; // temporary file, created when the memory limit is exceeded
+
+        private Writer out;
+
+        private Reader in;
+
+        Recording() {
+            this.builder = new StringBuilder();
+        }
+
+        void append(final char[] chars, final int offset, final int length) throws IOException {
+            if (this.out != null) {
+                this.out.write(chars, offset, length);
+                return;
+            }
+            this.builder.append(chars, offset, length);
+            if (this.builder.length() > MEMORY_LIMIT) {
+                this.file = File.createTempFile("rdfpro-jsonld-", ".tmp");
+                this.file.deleteOnExit();
+                this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                        this.file), Charset.forName("UTF-8")));
+                this.out.append(this.builder);
+                this.builder.setLength(0);
+                this.builder.trimToSize();
+            }
+        }
+
+        Reader reader() throws IOException {
+            if (this.out == null) {
+                this.in = new StringReader(this.builder.toString());
+            } else {
+                this.out.close();
+                this.in = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(this.file), Charset.forName("UTF-8")));
+            }
+            return this.in;
+        }
+
+        void delete() {
+            for (final Closeable closeable : new Closeable[] { this.out, this.in }) {
+                try {
+                    if (closeable != null) {
+                        closeable.close();
+                    }
+                } catch (final IOException ex) {
+                    // ignore
+                }
+            }
+            if (this.file != null) {
+                this.file.delete();
+            }
+        }
+
+    }
+
+    private static final class ConcatReader extends Reader {
+
+        private final Reader[] readers;
+
+        private int index;
+
+        ConcatReader(final Reader... readers) {
+            this.readers = readers;
+            this.index = 0;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length)
+                throws IOException {
+            while (this.index < this.readers.length) {
+                final int n = this.readers[this.index].read(buffer, offset, length);
+                if (n > 0 || n == 0 && length == 0) {
+                    return n;
+                }
+                ++this.index;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            // underlying readers are not closed here
+        }
+
+    }
+
     private static final class SesameSink implements QuadSink {
 
         private final RDFHandler handler;
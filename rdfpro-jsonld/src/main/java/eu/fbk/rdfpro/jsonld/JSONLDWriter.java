@@ -13,21 +13,38 @@
  */
 package eu.fbk.rdfpro.jsonld;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
@@ -35,10 +52,13 @@ import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.model.vocabulary.XMLSchema;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RioSetting;
 import org.openrdf.rio.helpers.RDFWriterBase;
 
 /**
@@ -55,11 +75,27 @@ import org.openrdf.rio.helpers.RDFWriterBase;
  * of a sequence of resource blocks, one for each RDF resource of the configured root type (@see
  * {@link JSONLD#ROOT_TYPES}).
  * </p>
+ * <p>
+ * By default, statements are grouped in nodes using a window of recently seen subjects, so that
+ * a node may be split in multiple fragments if its statements are far apart in the input. If
+ * setting {@link JSONLD#GROUPED} is enabled, statements are instead hash-partitioned by subject
+ * and context (spilling partitions to temporary files to bound memory usage) and partitions are
+ * loaded and grouped in parallel at the end of the document, being written as soon as ready,
+ * thus obtaining a complete grouping.
+ * </p>
  */
 public class JSONLDWriter extends RDFWriterBase {
 
     private static final int WINDOW = 32 * 1024;
 
+    private static final int PARTITIONS = 64; // number of partitions (and sub-partitions)
+
+    private static final int PARTITION_BUFFER = 8 * 1024; // statements buffered per partition
+
+    private static final int PARTITION_MAX_SIZE = 512 * 1024; // size above which to re-split
+
+    private static final int PARTITION_MAX_LEVEL = 4; // max re-split level (hash bits exhausted)
+
     private final Writer writer;
 
     private final Map<String, String> prefixes; // namespace-to-prefix map
@@ -81,6 +117,8 @@ public class JSONLDWriter extends RDFWriterBase {
 
     private Set<URI> rootTypes;
 
+    private JSONLDWriter.Partition[] partitions; // non-null if grouped mode enabled
+
     /**
      * Creates a new JSONLDWriter that will write to the supplied OutputStream. The UTF-8
      * character encoding is used.
@@ -99,11 +137,15 @@ public class JSONLDWriter extends RDFWriterBase {
      *            the Writer to write to
      */
     public JSONLDWriter(final Writer writer) {
+        this(writer, new LinkedHashMap<String, String>());
+    }
+
+    private JSONLDWriter(final Writer writer, final Map<String, String> prefixes) {
         if (writer == null) {
             throw new NullPointerException("Null writer");
         }
         this.writer = writer;
-        this.prefixes = new LinkedHashMap<String, String>();
+        this.prefixes = prefixes;
         this.nodes = new HashMap<Resource, Map<Resource, JSONLDWriter.Node>>();
         this.lrsHead = null;
         this.lrsTail = null;
@@ -117,13 +159,31 @@ public class JSONLDWriter extends RDFWriterBase {
         return RDFFormat.JSONLD;
     }
 
+    @Override
+    public Collection<RioSetting<?>> getSupportedSettings() {
+        final Collection<RioSetting<?>> settings = new ArrayList<RioSetting<?>>(
+                super.getSupportedSettings());
+        settings.add(JSONLD.ROOT_TYPES);
+        settings.add(JSONLD.GROUPED);
+        return settings;
+    }
+
     @Override
     public void startRDF() throws RDFHandlerException {
         this.rootTypes = getWriterConfig().get(JSONLD.ROOT_TYPES);
+        if (getWriterConfig().get(JSONLD.GROUPED)) {
+            this.partitions = new JSONLDWriter.Partition[PARTITIONS];
+            for (int i = 0; i < PARTITIONS; ++i) {
+                this.partitions[i] = new Partition(0);
+            }
+        }
     }
 
     @Override
     public void handleComment(final String comment) throws RDFHandlerException {
+        if (this.partitions != null) {
+            return; // nothing can be flushed before the end in grouped mode
+        }
         try {
             // comments cannot be emitted in JSONLD, but still we use them to flush output
             flush(true);
@@ -144,6 +204,16 @@ public class JSONLDWriter extends RDFWriterBase {
     @Override
     public void handleStatement(final Statement statement) throws RDFHandlerException {
 
+        // in grouped mode, just add the statement to the partition of its subject and context
+        if (this.partitions != null) {
+            try {
+                this.partitions[Partition.indexOf(statement, 0)].add(statement);
+            } catch (final IOException ex) {
+                throw new RDFHandlerException(ex);
+            }
+            return;
+        }
+
         // retrieve or create a node map for the statement context
         final Resource context = statement.getContext();
         Map<Resource, JSONLDWriter.Node> nodes = this.nodes.get(context);
@@ -179,12 +249,207 @@ public class JSONLDWriter extends RDFWriterBase {
     @Override
     public void endRDF() throws RDFHandlerException {
         try {
-            flush(true);
+            if (this.partitions != null) {
+                emitPreamble();
+                this.emitContextNodes = Collections.emptyMap();
+                emitPartitions(this.partitions);
+            } else {
+                flush(true);
+            }
             this.writer.append("]\n}");
             this.writer.flush();
         } catch (final IOException ex) {
             throw new RDFHandlerException(ex);
+        } finally {
+            if (this.partitions != null) {
+                for (final JSONLDWriter.Partition partition : this.partitions) {
+                    partition.delete();
+                }
+                this.partitions = null;
+            }
+        }
+    }
+
+    private void emitPreamble() throws IOException {
+        this.writer.append("{\n\t\"@context\": {");
+        if (!this.prefixes.isEmpty()) {
+            String separator = "\n\t\t";
+            final String[] sortedNamespaces = new String[this.prefixes.size()];
+            this.prefixes.keySet().toArray(sortedNamespaces);
+            Arrays.sort(sortedNamespaces);
+            for (final String namespace : sortedNamespaces) {
+                final String prefix = this.prefixes.get(namespace);
+                this.writer.append(separator);
+                this.writer.append('\"');
+                emitString(prefix);
+                this.writer.append("\": \"");
+                emitString(namespace);
+                this.writer.append('\"');
+                separator = ",\n\t\t";
+            }
+        }
+        this.writer.append("},\n\t\"@graph\": [");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emitPartitions(final JSONLDWriter.Partition[] partitions) throws IOException {
+
+        // Partitions are loaded and grouped in parallel by a dedicated executor, while this
+        // thread writes them to the output as soon as they are ready, in submission order; at
+        // most parallelism + 1 partitions are kept in memory. Big partitions are split and their
+        // sub-partitions queued at the end, as each node belongs to exactly one partition and
+        // thus the order of partitions does not matter
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "rdfpro-jsonld-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+
+                });
+        final Deque<JSONLDWriter.Partition> queued = new ArrayDeque<JSONLDWriter.Partition>(
+                Arrays.asList(partitions));
+        final Deque<JSONLDWriter.Partition> submitted = new ArrayDeque<JSONLDWriter.Partition>();
+        final Deque<Future<Object>> pending = new ArrayDeque<Future<Object>>();
+        boolean empty = true;
+        try {
+            while (!queued.isEmpty() || !pending.isEmpty()) {
+                while (pending.size() <= parallelism && !queued.isEmpty()) {
+                    final JSONLDWriter.Partition partition = queued.removeFirst();
+                    submitted.add(partition);
+                    pending.add(executor.submit(new Callable<Object>() {
+
+                        @Override
+                        public Object call() throws IOException {
+                            return prepare(partition);
+                        }
+
+                    }));
+                }
+                final Object result = pending.getFirst().get();
+                pending.removeFirst();
+                submitted.removeFirst();
+                if (result instanceof JSONLDWriter.Partition[]) {
+                    queued.addAll(Arrays.asList((JSONLDWriter.Partition[]) result));
+                } else {
+                    empty = emitNodes((List<JSONLDWriter.Node>) result, empty);
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            // On failure, wait for running tasks and delete all the partitions left
+            executor.shutdownNow();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // keep waiting
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            for (final Future<Object> future : pending) {
+                try {
+                    final Object result = future.isCancelled() ? null : future.get(0,
+                            TimeUnit.SECONDS);
+                    if (result instanceof JSONLDWriter.Partition[]) {
+                        queued.addAll(Arrays.asList((JSONLDWriter.Partition[]) result));
+                    }
+                } catch (final Throwable ex) {
+                    // ignore
+                }
+            }
+            for (final JSONLDWriter.Partition partition : submitted) {
+                partition.delete();
+            }
+            for (final JSONLDWriter.Partition partition : queued) {
+                partition.delete();
+            }
+        }
+    }
+
+    private static Object prepare(final JSONLDWriter.Partition partition) throws IOException {
+
+        try {
+            // Split the partition if too big to be processed in memory
+            if (partition.size > PARTITION_MAX_SIZE && partition.level < PARTITION_MAX_LEVEL) {
+                return partition.split();
+            }
+
+            // Group partition statements by context and subject, returning nodes sorted by
+            // context and with sorted statements
+            final Map<Resource, Map<Resource, JSONLDWriter.Node>> nodes;
+            nodes = new LinkedHashMap<Resource, Map<Resource, JSONLDWriter.Node>>();
+            for (final Statement statement : partition.load()) {
+                final Resource context = statement.getContext();
+                Map<Resource, JSONLDWriter.Node> contextNodes = nodes.get(context);
+                if (contextNodes == null) {
+                    contextNodes = new LinkedHashMap<Resource, JSONLDWriter.Node>();
+                    nodes.put(context, contextNodes);
+                }
+                final Resource subject = statement.getSubject();
+                JSONLDWriter.Node node = contextNodes.get(subject);
+                if (node == null) {
+                    node = new Node(subject, context);
+                    contextNodes.put(subject, node);
+                }
+                node.statements.add(statement);
+            }
+            final List<JSONLDWriter.Node> result = new ArrayList<JSONLDWriter.Node>();
+            for (final Map<Resource, JSONLDWriter.Node> contextNodes : nodes.values()) {
+                for (final JSONLDWriter.Node node : contextNodes.values()) {
+                    Collections.sort(node.statements, StatementComparator.INSTANCE);
+                    result.add(node);
+                }
+            }
+            return result;
+
+        } finally {
+            partition.delete(); // release memory and disk space ASAP
+        }
+    }
+
+    private boolean emitNodes(final List<JSONLDWriter.Node> nodes, final boolean empty)
+            throws IOException {
+
+        // Emit the nodes of a partition, opening a block for each context. Nodes are never
+        // embedded (emitContextNodes is empty)
+        boolean first = empty;
+        for (int i = 0; i < nodes.size(); ++i) {
+            final JSONLDWriter.Node node = nodes.get(i);
+            final Resource context = node.context;
+            final boolean open = i == 0 || !Objects.equals(context, nodes.get(i - 1).context);
+            final boolean close = i == nodes.size() - 1
+                    || !Objects.equals(context, nodes.get(i + 1).context);
+            this.writer.append(first ? "" : ", ");
+            first = false;
+            if (open && context != null) {
+                this.writer.append("{\n\t\t\"@id\": ");
+                emit(context, false);
+                this.writer.append(",\n\t\t\"@graph\": [");
+                ++this.indent;
+            }
+            emitNode(node);
+            if (close && context != null) {
+                this.writer.append("]\n\t}");
+                --this.indent;
+            }
         }
+        return first;
     }
 
     private void flush(final boolean force) throws IOException {
@@ -192,24 +457,7 @@ public class JSONLDWriter extends RDFWriterBase {
         // Emit preamble of JSONLD document if necessary and select context
         if (this.emitContextNodes == null
                 && (force || this.counter - this.lrsHead.counter >= WINDOW)) {
-            this.writer.append("{\n\t\"@context\": {");
-            if (!this.prefixes.isEmpty()) {
-                String separator = "\n\t\t";
-                final String[] sortedNamespaces = new String[this.prefixes.size()];
-                this.prefixes.keySet().toArray(sortedNamespaces);
-                Arrays.sort(sortedNamespaces);
-                for (final String namespace : sortedNamespaces) {
-                    final String prefix = this.prefixes.get(namespace);
-                    this.writer.append(separator);
-                    this.writer.append('\"');
-                    emitString(prefix);
-                    this.writer.append("\": \"");
-                    emitString(namespace);
-                    this.writer.append('\"');
-                    separator = ",\n\t\t";
-                }
-            }
-            this.writer.append("},\n\t\"@graph\": [");
+            emitPreamble();
         }
 
         // Emit all the nodes if force=true, otherwise limit to old nodes
@@ -462,6 +710,208 @@ public class JSONLDWriter extends RDFWriterBase {
 
     }
 
+    private static final class Partition {
+
+        private static final ValueFactory VALUE_FACTORY = ValueFactoryImpl.getInstance();
+
+        private static final Charset UTF8 = Charset.forName("UTF-8");
+
+        private static final int TYPE_NULL = 0;
+
+        private static final int TYPE_URI = 1;
+
+        private static final int TYPE_BNODE = 2;
+
+        private static final int TYPE_LITERAL = 3;
+
+        private static final int TYPE_LITERAL_LANG = 4;
+
+        private static final int TYPE_LITERAL_TYPED = 5;
+
+        final int level; // 0 for top level partitions, incremented at each split
+
+        final List<Statement> buffer; // statements not yet spilled to file
+
+        long size; // total number of statements in the partition
+
+        File file; // spill file, created on demand
+
+        DataOutputStream out; // stream for writing to spill file
+
+        Partition(final int level) {
+            this.level = level;
+            this.buffer = new ArrayList<Statement>();
+        }
+
+        static int indexOf(final Statement statement, final int level) {
+            // use different bits of the (subject, context) hash at each level
+            final int hash = Objects.hashCode(statement.getContext()) * 31
+                    + statement.getSubject().hashCode();
+            return Integer.rotateLeft(hash * 0x9E3779B9, level * 6) >>> 26;
+        }
+
+        void add(final Statement statement) throws IOException {
+            this.buffer.add(statement);
+            ++this.size;
+            if (this.buffer.size() >= PARTITION_BUFFER) {
+                spill();
+            }
+        }
+
+        List<Statement> load() throws IOException {
+            final List<Statement> statements = new ArrayList<Statement>((int) this.size);
+            if (this.file != null) {
+                this.out.close();
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(this.file)))) {
+                    Statement statement;
+                    while ((statement = read(in)) != null) {
+                        statements.add(statement);
+                    }
+                }
+            }
+            statements.addAll(this.buffer);
+            return statements;
+        }
+
+        JSONLDWriter.Partition[] split() throws IOException {
+            final JSONLDWriter.Partition[] partitions = new JSONLDWriter.Partition[PARTITIONS];
+            for (int i = 0; i < PARTITIONS; ++i) {
+                partitions[i] = new Partition(this.level + 1);
+            }
+            boolean success = false;
+            try {
+                if (this.file != null) {
+                    this.out.close();
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                            new FileInputStream(this.file)))) {
+                        Statement statement;
+                        while ((statement = read(in)) != null) {
+                            partitions[indexOf(statement, this.level + 1)].add(statement);
+                        }
+                    }
+                }
+                for (final Statement statement : this.buffer) {
+                    partitions[indexOf(statement, this.level + 1)].add(statement);
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    for (final JSONLDWriter.Partition partition : partitions) {
+                        partition.delete();
+                    }
+                }
+            }
+            delete();
+            return partitions;
+        }
+
+        void delete() {
+            try {
+                if (this.out != null) {
+                    this.out.close();
+                }
+            } catch (final IOException ex) {
+                // ignore
+            }
+            if (this.file != null) {
+                this.file.delete();
+            }
+            this.buffer.clear();
+            this.file = null;
+            this.out = null;
+        }
+
+        private void spill() throws IOException {
+            if (this.file == null) {
+                this.file = File.createTempFile("rdfpro-jsonld-", ".tmp");
+                this.file.deleteOnExit();
+                this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        this.file)));
+            }
+            for (final Statement statement : this.buffer) {
+                write(this.out, statement.getSubject());
+                write(this.out, statement.getPredicate());
+                write(this.out, statement.getObject());
+                write(this.out, statement.getContext());
+            }
+            this.buffer.clear();
+        }
+
+        private static void write(final DataOutputStream out, final Value value)
+                throws IOException {
+            if (value == null) {
+                out.writeByte(TYPE_NULL);
+            } else if (value instanceof URI) {
+                out.writeByte(TYPE_URI);
+                write(out, value.stringValue());
+            } else if (value instanceof BNode) {
+                out.writeByte(TYPE_BNODE);
+                write(out, ((BNode) value).getID());
+            } else {
+                final Literal literal = (Literal) value;
+                if (literal.getLanguage() != null) {
+                    out.writeByte(TYPE_LITERAL_LANG);
+                    write(out, literal.getLanguage());
+                } else if (literal.getDatatype() != null) {
+                    out.writeByte(TYPE_LITERAL_TYPED);
+                    write(out, literal.getDatatype().stringValue());
+                } else {
+                    out.writeByte(TYPE_LITERAL);
+                }
+                write(out, literal.getLabel());
+            }
+        }
+
+        private static void write(final DataOutputStream out, final String string)
+                throws IOException {
+            final byte[] bytes = string.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static Statement read(final DataInputStream in) throws IOException {
+            final int type = in.read();
+            if (type < 0) {
+                return null;
+            }
+            final Resource subj = (Resource) read(in, type);
+            final URI pred = (URI) read(in, in.readByte());
+            final Value obj = read(in, in.readByte());
+            final Resource ctx = (Resource) read(in, in.readByte());
+            return ctx == null ? VALUE_FACTORY.createStatement(subj, pred, obj) //
+                    : VALUE_FACTORY.createStatement(subj, pred, obj, ctx);
+        }
+
+        private static Value read(final DataInputStream in, final int type) throws IOException {
+            switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_URI:
+                return VALUE_FACTORY.createURI(readString(in));
+            case TYPE_BNODE:
+                return VALUE_FACTORY.createBNode(readString(in));
+            case TYPE_LITERAL:
+                return VALUE_FACTORY.createLiteral(readString(in));
+            case TYPE_LITERAL_LANG:
+                final String lang = readString(in);
+                return VALUE_FACTORY.createLiteral(readString(in), lang);
+            case TYPE_LITERAL_TYPED:
+                final URI datatype = VALUE_FACTORY.createURI(readString(in));
+                return VALUE_FACTORY.createLiteral(readString(in), datatype);
+            default:
+                throw new IOException("Invalid value type " + type);
+            }
+        }
+
+        private static String readString(final DataInputStream in) throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, UTF8);
+        }
+
+    }
+
     private static final class StatementComparator implements Comparator<Statement> {
 
         static final StatementComparator INSTANCE = new StatementComparator();
@@ -0,0 +1,55 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.jsonld;
+
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+
+/**
+ * A parser that can parse RDF documents that are in the newline-delimited JSON-LD format.
+ * <p>
+ * Each line of the document is a self-contained JSON-LD node object (or array of node objects),
+ * possibly with its own {@code @context}, which is processed by the streaming parser of
+ * {@link JSONLDParser}. Contexts may only define terms / prefixes, {@code @vocab} and
+ * {@code @language}; term expansions are cached while consecutive lines share the same context.
+ * </p>
+ */
+public class NDJSONLDParser extends JSONLDParser {
+
+    /**
+     * Creates a new NDJSONLDParser that will use a {@link ValueFactoryImpl} to create RDF model
+     * objects.
+     */
+    public NDJSONLDParser() {
+        this(ValueFactoryImpl.getInstance());
+    }
+
+    /**
+     * Creates a new NDJSONLDParser that will use the supplied ValueFactory to create RDF model
+     * objects.
+     *
+     * @param valueFactory
+     *            the ValueFactory to use
+     */
+    public NDJSONLDParser(final ValueFactory valueFactory) {
+        super(valueFactory, true);
+    }
+
+    @Override
+    public RDFFormat getRDFFormat() {
+        return JSONLD.NDJSONLD_FORMAT;
+    }
+
+}
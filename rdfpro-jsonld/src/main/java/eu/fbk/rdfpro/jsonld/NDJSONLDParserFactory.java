@@ -0,0 +1,41 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.jsonld;
+
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFParserFactory;
+
+/**
+ * An {@link RDFParserFactory} for newline-delimited JSONLD parsers.
+ */
+public class NDJSONLDParserFactory implements RDFParserFactory {
+
+    /**
+     * Returns {@link JSONLD#NDJSONLD_FORMAT}.
+     */
+    @Override
+    public RDFFormat getRDFFormat() {
+        return JSONLD.NDJSONLD_FORMAT;
+    }
+
+    /**
+     * Returns a new instance of {@link NDJSONLDParser}.
+     */
+    @Override
+    public RDFParser getParser() {
+        return new NDJSONLDParser();
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * RDFpro - An extensible tool for building stream-oriented RDF processing libraries.
+ * 
+ * Written in 2014 by Francesco Corcoglioniti with support by Marco Amadori, Michele Mostarda,
+ * Alessio Palmero Aprosio and Marco Rospocher. Contact info on http://rdfpro.fbk.eu/
+ * 
+ * To the extent possible under law, the authors have dedicated all copyright and related and
+ * neighboring rights to this software to the public domain worldwide. This software is
+ * distributed without any warranty.
+ * 
+ * You should have received a copy of the CC0 Public Domain Dedication along with this software.
+ * If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package eu.fbk.rdfpro.jsonld;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFWriterBase;
+
+/**
+ * An implementation of the RDFWriter interface that writes RDF documents in the newline-delimited
+ * JSON-LD format.
+ * <p>
+ * Each line is a self-contained JSON-LD node object (wrapped in a named graph object for quads)
+ * that groups consecutive statements with the same subject and context. Full IRIs are used, as
+ * namespace declarations cannot be shared among lines. Being line-based, the output of multiple
+ * writers can be concatenated, which allows writing data in parallel.
+ * </p>
+ */
+public class NDJSONLDWriter extends RDFWriterBase {
+
+    private final Writer writer;
+
+    private Resource lastContext; // context of current line
+
+    private Resource lastSubject; // subject of current line, null if no line open
+
+    private URI lastPredicate; // last predicate of current line
+
+    /**
+     * Creates a new NDJSONLDWriter that will write to the supplied OutputStream. The UTF-8
+     * character encoding is used.
+     *
+     * @param stream
+     *            the OutputStream to write to
+     */
+    public NDJSONLDWriter(final OutputStream stream) {
+        this(new OutputStreamWriter(stream, Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Creates a new NDJSONLDWriter that will write to the supplied Writer.
+     *
+     * @param writer
+     *            the Writer to write to
+     */
+    public NDJSONLDWriter(final Writer writer) {
+        if (writer == null) {
+            throw new NullPointerException("Null writer");
+        }
+        this.writer = writer;
+    }
+
+    @Override
+    public RDFFormat getRDFFormat() {
+        return JSONLD.NDJSONLD_FORMAT;
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+        this.lastContext = null;
+        this.lastSubject = null;
+        this.lastPredicate = null;
+    }
+
+    @Override
+    public void handleComment(final String comment) throws RDFHandlerException {
+        // comments cannot be emitted in JSONLD
+    }
+
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException {
+        // namespaces are not emitted, as each line has to be self-contained
+    }
+
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException {
+
+        final Resource subject = statement.getSubject();
+        final URI predicate = statement.getPredicate();
+        final Resource context = statement.getContext();
+
+        try {
+            if (subject.equals(this.lastSubject) && Objects.equals(context, this.lastContext)) {
+                if (predicate.equals(this.lastPredicate)) {
+                    this.writer.append(", ");
+                } else {
+                    this.writer.append("], ");
+                    emitProperty(predicate);
+                }
+            } else {
+                endLine();
+                if (context != null) {
+                    this.writer.append("{\"@id\": ");
+                    emitString(context);
+                    this.writer.append(", \"@graph\": [");
+                }
+                this.writer.append("{\"@id\": ");
+                emitString(subject);
+                this.writer.append(", ");
+                emitProperty(predicate);
+            }
+            emitValue(statement.getObject());
+        } catch (final IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+
+        this.lastContext = context;
+        this.lastSubject = subject;
+        this.lastPredicate = predicate;
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        try {
+            endLine();
+            this.writer.flush();
+        } catch (final IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+    }
+
+    private void endLine() throws IOException {
+        if (this.lastSubject != null) {
+            this.writer.append(this.lastContext != null ? "]}]}\n" : "]}\n");
+            this.lastSubject = null;
+        }
+    }
+
+    private void emitProperty(final URI predicate) throws IOException {
+        emitString(predicate);
+        this.writer.append(": [");
+    }
+
+    private void emitValue(final Value value) throws IOException {
+        if (!(value instanceof Literal)) {
+            this.writer.append("{\"@id\": ");
+            emitString(value);
+            this.writer.append('}');
+            return;
+        }
+        final Literal literal = (Literal) value;
+        final String language = literal.getLanguage();
+        final URI datatype = literal.getDatatype();
+        if (language != null) {
+            this.writer.append("{\"@value\": ");
+            emitString(literal.getLabel());
+            this.writer.append(", \"@language\": ");
+            emitString(language);
+            this.writer.append('}');
+        } else if (datatype != null && !datatype.equals(XMLSchema.STRING)) {
+            this.writer.append("{\"@value\": ");
+            emitString(literal.getLabel());
+            this.writer.append(", \"@type\": ");
+            emitString(datatype);
+            this.writer.append('}');
+        } else {
+            emitString(literal.getLabel());
+        }
+    }
+
+    private void emitString(final Value value) throws IOException {
+        emitString(value instanceof BNode ? "_:" + ((BNode) value).getID() : value
+                .stringValue());
+    }
+
+    private void emitString(final String string) throws IOException {
+        this.writer.append('"');
+        final int length = string.length();
+        for (int i = 0; i < length; ++i) {
+            final char ch = string.charAt(i);
+            if (ch == '\"' || ch == '\\') {
+                this.writer.append('\\').append(ch);
+            } else if (Character.isISOControl(ch)) {
+                if (ch == '\n') {
+                    this.writer.append('\\').append('n');
+                } else if (ch == '\r') {
+                    this.writer.append('\\').append('r');
+                } else if (ch == '\t') {
+                    this.writer.append('\\').append('t');
+                } else {
+                    this.writer.append(String.format("\\u%04x", (int) ch));
+                }
+            } else {
+                this.writer.append(ch);
+            }
+        }
+        this.writer.append('"');
+    }
+
+}
@@ -17,7 +17,8 @@
  * <p>
  * Parsing depends on the {@code Semargl} JSONLD parser, while writing is implemented directly by
  * this factory and can be configured via setting {@code #ROOT_TYPES}, which specifies the types
- * of RDF resources to be emitted as top level JSONLD nodes.
+ * of RDF resources to be emitted as top level JSONLD nodes. The newline-delimited JSON-LD format
+ * (one node object per line, file extension {@code .ndjsonld}) is also supported.
  * </p>
  */
 package eu.fbk.rdfpro.jsonld;
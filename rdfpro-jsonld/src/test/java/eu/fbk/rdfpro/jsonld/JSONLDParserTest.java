@@ -0,0 +1,142 @@
+package eu.fbk.rdfpro.jsonld;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.helpers.StatementCollector;
+
+public class JSONLDParserTest {
+
+    private static final String CONTEXT = "\"@context\": {\"ex\": \"http://ex.org/\"}";
+
+    @Test
+    public void testFlatArray() throws Throwable {
+        final List<Statement> stmts = parse("[{\"@id\": \"http://ex.org/s\", "
+                + "\"@type\": [\"http://ex.org/C\"], "
+                + "\"http://ex.org/p\": [{\"@value\": \"v\", \"@language\": \"en\"}, "
+                + "{\"@id\": \"http://ex.org/o\"}]}, "
+                + "{\"@id\": \"http://ex.org/o\", \"http://ex.org/p\": \"w\"}]");
+        Assert.assertEquals(keys("<http://ex.org/s> <" + RDF.TYPE + "> <http://ex.org/C> null",
+                "<http://ex.org/s> <http://ex.org/p> \"v\"@en null",
+                "<http://ex.org/s> <http://ex.org/p> <http://ex.org/o> null",
+                "<http://ex.org/o> <http://ex.org/p> \"w\" null"), keys(stmts));
+    }
+
+    @Test
+    public void testNamedGraph() throws Throwable {
+        final Set<String> expected = keys("<http://ex.org/s> <http://ex.org/p> \"v\" "
+                + "<http://ex.org/g>");
+        Assert.assertEquals(expected, keys(parse("{" + CONTEXT + ", \"@id\": \"ex:g\", "
+                + "\"@graph\": [{\"@id\": \"ex:s\", \"ex:p\": \"v\"}]}")));
+        Assert.assertEquals(1, parse("{" + CONTEXT + ", \"@graph\": [{\"@id\": \"ex:s\", "
+                + "\"ex:p\": \"v\"}], \"@id\": \"ex:g\"}").size()); // not streamed
+        Assert.assertEquals(expected, keys(parse("{" + CONTEXT + ", \"@graph\": [{\"@id\": "
+                + "\"ex:g\", \"@graph\": [{\"@id\": \"ex:s\", \"ex:p\": \"v\"}]}]}")));
+    }
+
+    @Test
+    public void testEmbeddedContext() throws Throwable {
+        final List<Statement> stmts = parse("[{" + CONTEXT + ", \"@id\": \"ex:s1\", "
+                + "\"ex:p\": \"v\"}, {\"@context\": {\"ex\": \"http://example.com/\"}, "
+                + "\"@id\": \"ex:s2\", \"ex:p\": \"w\"}]");
+        Assert.assertEquals(keys("<http://ex.org/s1> <http://ex.org/p> \"v\" null",
+                "<http://example.com/s2> <http://example.com/p> \"w\" null"), keys(stmts));
+    }
+
+    @Test
+    public void testListAndValues() throws Throwable {
+        final List<Statement> stmts = parse("{" + CONTEXT + ", \"@graph\": [{\"@id\": \"ex:s\", "
+                + "\"ex:l\": {\"@list\": [\"a\", \"b\"]}, "
+                + "\"ex:v\": {\"@value\": \"5\", \"@type\": \"" + XMLSchema.INT + "\"}, "
+                + "\"ex:n\": 7, \"ex:b\": true}]}");
+        Assert.assertEquals(8, stmts.size());
+        int first = 0;
+        int rest = 0;
+        for (final Statement stmt : stmts) {
+            final Value obj = stmt.getObject();
+            final String pred = stmt.getPredicate().stringValue();
+            if (pred.equals("http://ex.org/l")) {
+                Assert.assertTrue(obj instanceof BNode);
+            } else if (pred.equals("http://ex.org/v")) {
+                Assert.assertEquals(XMLSchema.INT, ((Literal) obj).getDatatype());
+                Assert.assertEquals("5", obj.stringValue());
+            } else if (pred.equals("http://ex.org/n")) {
+                Assert.assertEquals(XMLSchema.INTEGER, ((Literal) obj).getDatatype());
+            } else if (pred.equals("http://ex.org/b")) {
+                Assert.assertEquals(XMLSchema.BOOLEAN, ((Literal) obj).getDatatype());
+            } else if (stmt.getPredicate().equals(RDF.FIRST)) {
+                ++first;
+            } else if (stmt.getPredicate().equals(RDF.REST)) {
+                ++rest;
+            }
+        }
+        Assert.assertEquals(2, first);
+        Assert.assertEquals(2, rest);
+    }
+
+    @Test
+    public void testBNodeLabels() throws Throwable {
+        final JSONLDParser parser = new JSONLDParser();
+        for (int i = 0; i < 2; ++i) {
+            final List<Statement> stmts = new ArrayList<>();
+            parser.setRDFHandler(new StatementCollector(stmts));
+            parser.parse(new StringReader("[{\"@id\": \"_:b\", \"http://ex.org/p\": "
+                    + "{\"@id\": \"_:c\"}}, {\"@id\": \"_:c\", \"http://ex.org/p\": "
+                    + "{\"@id\": \"_:b\"}}, {\"http://ex.org/p\": \"v\"}]"), "http://ex.org/");
+            Assert.assertEquals(3, stmts.size());
+            Assert.assertEquals(stmts.get(0).getSubject(), stmts.get(1).getObject());
+            Assert.assertEquals(stmts.get(0).getObject(), stmts.get(1).getSubject());
+            Assert.assertNotEquals(stmts.get(0).getSubject(), stmts.get(0).getObject());
+            Assert.assertNotEquals(stmts.get(0).getSubject(), stmts.get(2).getSubject());
+            Assert.assertNotEquals(stmts.get(1).getSubject(), stmts.get(2).getSubject());
+        }
+    }
+
+    private static List<Statement> parse(final String json) throws Throwable {
+        final List<Statement> stmts = new ArrayList<>();
+        final JSONLDParser parser = new JSONLDParser();
+        parser.setRDFHandler(new StatementCollector(stmts));
+        parser.parse(new StringReader(json), "http://ex.org/");
+        return stmts;
+    }
+
+    private static Set<String> keys(final String... keys) {
+        final Set<String> set = new HashSet<>();
+        for (final String key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    private static Set<String> keys(final List<Statement> stmts) {
+        final Set<String> keys = new HashSet<>();
+        for (final Statement stmt : stmts) {
+            keys.add(format(stmt.getSubject()) + " " + format(stmt.getPredicate()) + " "
+                    + format(stmt.getObject()) + " " + format(stmt.getContext()));
+        }
+        return keys;
+    }
+
+    private static String format(final Value value) {
+        if (value instanceof Literal) {
+            final Literal l = (Literal) value;
+            final String label = "\"" + l.getLabel() + "\"";
+            return l.getLanguage() != null ? label + "@" + l.getLanguage() //
+                    : l.getDatatype() == null || l.getDatatype().equals(XMLSchema.STRING) ? label
+                            : label + "^^<" + l.getDatatype() + ">";
+        }
+        return value == null ? "null" : "<" + value.stringValue() + ">";
+    }
+
+}
@@ -0,0 +1,80 @@
+package eu.fbk.rdfpro.jsonld;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.helpers.StatementCollector;
+
+public class JSONLDWriterTest {
+
+    private static final ValueFactory VF = ValueFactoryImpl.getInstance();
+
+    @Test
+    public void testGrouped() throws Throwable {
+
+        // Generate statements whose subjects recur far apart in the input, in three graphs
+        final List<Statement> stmts = new ArrayList<>();
+        final URI[] contexts = new URI[] { null, VF.createURI("http://example.org/c1"),
+                VF.createURI("http://example.org/c2") };
+        for (int i = 0; i < 20000; ++i) {
+            final Resource subj = VF.createURI("http://example.org/s" + i % 100);
+            final URI pred = VF.createURI("http://example.org/p" + i % 7);
+            final Value obj = i % 2 == 0 ? VF.createLiteral("v" + i, "en") : VF.createLiteral(
+                    Integer.toString(i), XMLSchema.INT);
+            final URI ctx = contexts[i / 100 % 3];
+            stmts.add(ctx == null ? VF.createStatement(subj, pred, obj) : VF.createStatement(
+                    subj, pred, obj, ctx));
+        }
+
+        final StringWriter out = new StringWriter();
+        final JSONLDWriter writer = new JSONLDWriter(out);
+        writer.getWriterConfig().set(JSONLD.GROUPED, true);
+        writer.startRDF();
+        for (final Statement stmt : stmts) {
+            writer.handleStatement(stmt);
+        }
+        writer.endRDF();
+        final String json = out.toString();
+
+        // Each subject must be emitted exactly once for each of the three graphs
+        for (int i = 0; i < 100; ++i) {
+            final String id = "\"@id\": \"http://example.org/s" + i + "\",";
+            int count = 0;
+            for (int index = json.indexOf(id); index >= 0; index = json.indexOf(id, index + 1)) {
+                ++count;
+            }
+            Assert.assertEquals(3, count);
+        }
+
+        // Parsing the output must give back the same statements
+        final List<Statement> parsed = new ArrayList<>();
+        final JSONLDParser parser = new JSONLDParser();
+        parser.setRDFHandler(new StatementCollector(parsed));
+        parser.parse(new StringReader(json), "http://example.org/");
+        Assert.assertEquals(keys(stmts), keys(parsed));
+    }
+
+    private static Set<String> keys(final Collection<Statement> stmts) {
+        final Set<String> keys = new HashSet<>();
+        for (final Statement stmt : stmts) {
+            keys.add(stmt.getSubject() + " " + stmt.getPredicate() + " " + stmt.getObject()
+                    + " " + stmt.getContext());
+        }
+        return keys;
+    }
+
+}
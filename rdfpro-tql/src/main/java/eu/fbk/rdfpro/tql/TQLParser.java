@@ -36,13 +36,26 @@ import org.openrdf.rio.helpers.RDFParserBase;
  * A parser that can parse RDF documents that are in the Turtle Quads (TQL) format. TQL is N-Quads
  * with the more permissive (and efficient!) Turtle encoding. TQL is used in DBpedia exports and
  * is supported in input by the Virtuoso triple store.
+ * <p>
+ * Input is read in blocks into a {@code char[]} window. Terms not containing escape sequences
+ * and not crossing the window boundary are located by scanning the window for their delimiter and
+ * created directly from the window slice; the other terms are accumulated char by char.
+ * </p>
  */
 public class TQLParser extends RDFParserBase {
 
     private static final int EOF = -1;
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private Reader reader;
 
+    private char[] buffer;
+
+    private int pos;
+
+    private int limit;
+
     private int lineNo;
 
     private StringBuilder builder;
@@ -92,6 +105,9 @@ public class TQLParser extends RDFParserBase {
         }
 
         this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.pos = 0;
+        this.limit = 0;
         this.lineNo = 1;
         this.builder = new StringBuilder(1024);
         this.value = null;
@@ -114,6 +130,7 @@ public class TQLParser extends RDFParserBase {
         } finally {
             clear();
             this.reader = null;
+            this.buffer = null;
             this.builder = null;
             this.value = null;
         }
@@ -259,7 +276,26 @@ public class TQLParser extends RDFParserBase {
         if (c != '<') {
             throwParseException("Supplied char should be a '<', it is: " + c);
         }
+
+        // Fast path: scan the window for '>', stopping at escapes and invalid chars
+        final int start = this.pos;
+        int end = start;
+        while (end < this.limit) {
+            final char d = this.buffer[end];
+            if (d == '>') {
+                this.value = createURI(new String(this.buffer, start, end - start));
+                this.pos = end + 1;
+                return read();
+            } else if (d == '\\' || d < 32) {
+                break;
+            }
+            ++end;
+        }
+
+        // Slow path: accumulate remaining chars in the builder
         this.builder.setLength(0);
+        this.builder.append(this.buffer, start, end - start);
+        this.pos = end;
         c = read();
         while (c != '>') {
             switch (c) {
@@ -308,8 +344,28 @@ public class TQLParser extends RDFParserBase {
         } else if (!TQL.isPN_CHARS_U(c) && !TQL.isNumber(c)) {
             throwParseException("Invalid bnode character: " + (char) c);
         }
+
+        // Fast path: scan the window for the first non PN_CHARS char (c is at pos - 1)
+        final int start = this.pos - 1;
+        int end = this.pos;
+        while (end < this.limit && TQL.isPN_CHARS(this.buffer[end])) {
+            ++end;
+        }
+        if (end < this.limit) {
+            c = this.buffer[end];
+            this.pos = end + 1;
+            if (this.buffer[end - 1] == '.') {
+                --end; // remove trailing '.' and mark period found
+                c = c | 0x80000000;
+            }
+            this.value = createBNode(new String(this.buffer, start, end - start));
+            return c;
+        }
+
+        // Slow path: accumulate remaining chars in the builder
         this.builder.setLength(0);
-        this.builder.append((char) c);
+        this.builder.append(this.buffer, start, end - start);
+        this.pos = end;
         c = read();
         while (c != EOF && TQL.isPN_CHARS(c)) {
             this.builder.append((char) c);
@@ -330,47 +386,27 @@ public class TQLParser extends RDFParserBase {
             throwParseException("Expected '\"' or '\'', found: " + c);
         }
         final int delim = c;
-        this.builder.setLength(0);
-        c = read();
-        while (c != delim) {
-            if (c == EOF) {
-                throwEOFException();
-            } else if (c == '\\') {
-                c = read();
-                switch (c) {
-                case EOF:
-                    throwEOFException();
-                    break;
-                case 'b':
-                    this.builder.append('\b');
-                    break;
-                case 'f':
-                    this.builder.append('\f');
-                    break;
-                case 'n':
-                    this.builder.append('\n');
-                    break;
-                case 'r':
-                    this.builder.append('\r');
-                    break;
-                case 't':
-                    this.builder.append('\t');
-                    break;
-                case 'u':
-                case 'U':
-                    parseUChar(c);
-                    break;
-                default:
-                    this.builder.append((char) c); // handles ' " \
-                    break;
-                }
-            } else {
-                this.builder.append((char) c);
+
+        // Fast path: scan the window for the closing delimiter, stopping at escapes
+        final int start = this.pos;
+        int end = start;
+        String label = null;
+        while (end < this.limit) {
+            final char d = this.buffer[end];
+            if (d == delim) {
+                label = new String(this.buffer, start, end - start);
+                this.pos = end + 1;
+                break;
+            } else if (d == '\\') {
+                break;
             }
-            c = read();
+            ++end;
         }
+        if (label == null) {
+            label = parseLabel(delim, start, end);
+        }
+
         c = read();
-        final String label = this.builder.toString();
         if (c == '@') {
             this.builder.setLength(0);
             c = read();
@@ -384,7 +420,8 @@ public class TQLParser extends RDFParserBase {
                 this.builder.append((char) c);
                 c = read();
             }
-            if (this.builder.charAt(this.builder.length() - 1) == '-') {
+            if (this.builder.length() == 0
+                    || this.builder.charAt(this.builder.length() - 1) == '-') {
                 throwParseException("Invalid lang tag: " + this.builder.toString());
             }
             final String language = this.builder.toString();
@@ -411,6 +448,52 @@ public class TQLParser extends RDFParserBase {
         return c;
     }
 
+    private String parseLabel(final int delim, final int start, final int end)
+            throws IOException, RDFParseException {
+        this.builder.setLength(0);
+        this.builder.append(this.buffer, start, end - start);
+        this.pos = end;
+        int c = read();
+        while (c != delim) {
+            if (c == EOF) {
+                throwEOFException();
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                case EOF:
+                    throwEOFException();
+                    break;
+                case 'b':
+                    this.builder.append('\b');
+                    break;
+                case 'f':
+                    this.builder.append('\f');
+                    break;
+                case 'n':
+                    this.builder.append('\n');
+                    break;
+                case 'r':
+                    this.builder.append('\r');
+                    break;
+                case 't':
+                    this.builder.append('\t');
+                    break;
+                case 'u':
+                case 'U':
+                    parseUChar(c);
+                    break;
+                default:
+                    this.builder.append((char) c); // handles ' " \
+                    break;
+                }
+            } else {
+                this.builder.append((char) c);
+            }
+            c = read();
+        }
+        return this.builder.toString();
+    }
+
     private void parseUChar(final int ch) throws IOException, RDFParseException {
         int c = ch;
         int count = 0;
@@ -434,11 +517,28 @@ public class TQLParser extends RDFParserBase {
                 code = code * 16 + digit;
             }
         }
-        this.builder.append((char) code);
+        if (!Character.isValidCodePoint(code)) {
+            throwParseException("Invalid code point: " + Integer.toHexString(code));
+        }
+        this.builder.appendCodePoint(code);
     }
 
     private int read() throws IOException {
-        return this.reader.read();
+        if (this.pos < this.limit) {
+            return this.buffer[this.pos++];
+        }
+        int n = 0;
+        while (n == 0) {
+            n = this.reader.read(this.buffer, 0, this.buffer.length);
+        }
+        if (n < 0) {
+            this.pos = 0;
+            this.limit = 0;
+            return EOF;
+        }
+        this.pos = 1;
+        this.limit = n;
+        return this.buffer[0];
     }
 
     private void throwEOFException() throws RDFParseException {
@@ -15,9 +15,9 @@ package eu.fbk.rdfpro.tql;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
@@ -34,11 +34,33 @@ import org.openrdf.rio.helpers.RDFWriterBase;
  * An implementation of the RDFWriter interface that writes RDF documents in the Turtle Quads
  * (TQL) format. TQL is N-Quads with the more permissive (and efficient!) Turtle encoding. TQL is
  * used in DBpedia exports and is supported in input by the Virtuoso triple store.
+ * <p>
+ * Statements are serialized directly to UTF-8 bytes in an internal buffer, which is written to
+ * the underlying stream (or decoded for the underlying writer) only after complete lines, so that
+ * the output can be consumed by line-oriented buffered streams. The serializations of predicates,
+ * contexts and URI objects (e.g., types) are cached to avoid escaping and encoding them again.
+ * </p>
  */
 public class TQLWriter extends RDFWriterBase {
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int CACHE_SIZE = 4 * 1024; // must be a power of 2
+
+    private final OutputStream stream;
+
     private final Writer writer;
 
+    private byte[] buffer;
+
+    private int size;
+
+    private final URI[] cacheKeys;
+
+    private final byte[][] cacheValues;
+
     /**
      * Creates a new TQLWriter that will write to the supplied OutputStream. The UTF-8 character
      * encoding is used.
@@ -47,7 +69,10 @@ public class TQLWriter extends RDFWriterBase {
      *            the OutputStream to write to
      */
     public TQLWriter(final OutputStream stream) {
-        this(new OutputStreamWriter(stream, Charset.forName("UTF-8")));
+        this(stream, null);
+        if (stream == null) {
+            throw new NullPointerException("Null stream");
+        }
     }
 
     /**
@@ -57,10 +82,19 @@ public class TQLWriter extends RDFWriterBase {
      *            the Writer to write to
      */
     public TQLWriter(final Writer writer) {
+        this(null, writer);
         if (writer == null) {
             throw new NullPointerException("Null writer");
         }
+    }
+
+    private TQLWriter(final OutputStream stream, final Writer writer) {
+        this.stream = stream;
         this.writer = writer;
+        this.buffer = new byte[BUFFER_SIZE + 8 * 1024];
+        this.size = 0;
+        this.cacheKeys = new URI[CACHE_SIZE];
+        this.cacheValues = new byte[CACHE_SIZE][];
     }
 
     @Override
@@ -85,38 +119,56 @@ public class TQLWriter extends RDFWriterBase {
 
     @Override
     public void handleStatement(final Statement statement) throws RDFHandlerException {
-        try {
-            emitResource(statement.getSubject());
-            this.writer.write(' ');
-            emitURI(statement.getPredicate());
-            this.writer.write(' ');
-            emitValue(statement.getObject());
-            final Resource ctx = statement.getContext();
-            if (ctx != null) {
-                this.writer.write(' ');
-                emitResource(statement.getContext());
+        emitResource(statement.getSubject(), false);
+        emit(' ');
+        emitURI(statement.getPredicate(), true);
+        emit(' ');
+        emitValue(statement.getObject());
+        final Resource ctx = statement.getContext();
+        if (ctx != null) {
+            emit(' ');
+            emitResource(ctx, true);
+        }
+        emit(' ');
+        emit('.');
+        emit('\n');
+        if (this.size >= BUFFER_SIZE) {
+            try {
+                flushBuffer(); // only complete lines are flushed
+            } catch (final IOException ex) {
+                throw new RDFHandlerException(ex);
             }
-            this.writer.write(' ');
-            this.writer.write('.');
-            this.writer.write('\n');
-        } catch (final IOException ex) {
-            throw new RDFHandlerException(ex);
         }
     }
 
     @Override
     public void endRDF() throws RDFHandlerException {
         try {
-            this.writer.flush();
-            this.writer.flush();
+            flushBuffer();
+            if (this.stream != null) {
+                this.stream.flush();
+            } else {
+                this.writer.flush();
+            }
         } catch (final IOException ex) {
             throw new RDFHandlerException(ex);
         }
     }
 
-    private void emitValue(final Value value) throws IOException, RDFHandlerException {
+    private void flushBuffer() throws IOException {
+        if (this.size > 0) {
+            if (this.stream != null) {
+                this.stream.write(this.buffer, 0, this.size);
+            } else {
+                this.writer.write(new String(this.buffer, 0, this.size, UTF8));
+            }
+            this.size = 0;
+        }
+    }
+
+    private void emitValue(final Value value) throws RDFHandlerException {
         if (value instanceof URI) {
-            emitURI((URI) value);
+            emitURI((URI) value, true);
         } else if (value instanceof BNode) {
             emitBNode((BNode) value);
         } else if (value instanceof Literal) {
@@ -124,151 +176,172 @@ public class TQLWriter extends RDFWriterBase {
         }
     }
 
-    private void emitResource(final Resource resource) throws IOException, RDFHandlerException {
+    private void emitResource(final Resource resource, final boolean cache)
+            throws RDFHandlerException {
         if (resource instanceof URI) {
-            emitURI((URI) resource);
+            emitURI((URI) resource, cache);
         } else if (resource instanceof BNode) {
             emitBNode((BNode) resource);
         }
     }
 
-    private void emitURI(final URI uri) throws IOException, RDFHandlerException {
+    private void emitURI(final URI uri, final boolean cache) throws RDFHandlerException {
+
+        // Lookup the cache (direct-mapped) if enabled for the URI
+        int index = -1;
+        if (cache) {
+            index = uri.hashCode() & CACHE_SIZE - 1;
+            final URI key = this.cacheKeys[index];
+            if (key == uri || key != null && key.equals(uri)) {
+                final byte[] bytes = this.cacheValues[index];
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+                this.size += bytes.length;
+                return;
+            }
+        }
+
+        final int start = this.size;
         final String string = uri.stringValue();
         final int length = string.length();
-        this.writer.write('<');
+        emit('<');
         for (int i = 0; i < length; ++i) {
             final char ch = string.charAt(i);
             switch (ch) {
             case 0x22: // "
-                this.writer.write("\\u0022");
+                emit("\\u0022");
                 break;
             case 0x3C: // <
-                this.writer.write("\\u003C");
+                emit("\\u003C");
                 break;
             case 0x3E: // >
-                this.writer.write("\\u003E");
+                emit("\\u003E");
                 break;
             case 0x5C: // \
-                this.writer.write("\\u005C");
+                emit("\\u005C");
                 break;
             case 0x5E: // ^
-                this.writer.write("\\u005E");
+                emit("\\u005E");
                 break;
             case 0x60: // `
-                this.writer.write("\\u0060");
+                emit("\\u0060");
                 break;
             case 0x7B: // {
-                this.writer.write("\\u007B");
+                emit("\\u007B");
                 break;
             case 0x7C: // |
-                this.writer.write("\\u007C");
+                emit("\\u007C");
                 break;
             case 0x7D: // }
-                this.writer.write("\\u007D");
+                emit("\\u007D");
                 break;
             case 0x7F: // delete control char (not strictly necessary)
-                this.writer.write("\\u007F");
+                emit("\\u007F");
                 break;
             default:
                 if (ch <= 32) { // control char and ' '
-                    this.writer.write("\\u00");
-                    this.writer.write(Character.forDigit(ch / 16, 16));
-                    this.writer.write(Character.forDigit(ch % 16, 16));
+                    emit("\\u00");
+                    emit(Character.forDigit(ch / 16, 16));
+                    emit(Character.forDigit(ch % 16, 16));
                 } else {
-                    this.writer.write(ch);
+                    i = emit(string, i);
                 }
             }
         }
-        this.writer.write('>');
+        emit('>');
+
+        // Store the serialized URI in the cache, if enabled
+        if (index >= 0) {
+            this.cacheKeys[index] = uri;
+            this.cacheValues[index] = Arrays.copyOfRange(this.buffer, start, this.size);
+        }
     }
 
-    private void emitBNode(final BNode bnode) throws IOException, RDFHandlerException {
+    private void emitBNode(final BNode bnode) throws RDFHandlerException {
         final String id = bnode.getID();
         final int last = id.length() - 1;
-        this.writer.write('_');
-        this.writer.write(':');
+        emit('_');
+        emit(':');
         if (last < 0) {
-            this.writer.write("genid-hash-");
-            this.writer.write(Integer.toHexString(System.identityHashCode(bnode)));
+            emit("genid-hash-");
+            emit(Integer.toHexString(System.identityHashCode(bnode)));
         } else {
             char ch = id.charAt(0);
             if (!TQL.isPN_CHARS_U(ch) && !TQL.isNumber(ch)) {
-                this.writer.write("genid-start-");
-                this.writer.write(ch);
-            } else {
-                this.writer.write(ch);
+                emit("genid-start-");
             }
+            emit(id, 0);
             if (last > 0) {
                 for (int i = 1; i < last; ++i) {
                     ch = id.charAt(i);
                     if (TQL.isPN_CHARS(ch) || ch == '.') {
-                        this.writer.write(ch);
+                        emit(id, i);
                     } else {
-                        this.writer.write(Integer.toHexString(ch));
+                        emit(Integer.toHexString(ch));
                     }
                 }
                 ch = id.charAt(last);
                 if (TQL.isPN_CHARS(ch)) {
-                    this.writer.write(ch);
+                    emit(id, last);
                 } else {
-                    this.writer.write(Integer.toHexString(ch));
+                    emit(Integer.toHexString(ch));
                 }
             }
         }
     }
 
-    private void emitLiteral(final Literal literal) throws IOException, RDFHandlerException {
+    private void emitLiteral(final Literal literal) throws RDFHandlerException {
         final String label = literal.getLabel();
         final int length = label.length();
-        this.writer.write('"');
+        emit('"');
         for (int i = 0; i < length; ++i) {
             final char ch = label.charAt(i);
             switch (ch) {
             case 0x08: // \b
-                this.writer.write('\\');
-                this.writer.write('b');
+                emit('\\');
+                emit('b');
                 break;
             case 0x09: // \t
-                this.writer.write('\\');
-                this.writer.write('t');
+                emit('\\');
+                emit('t');
                 break;
             case 0x0A: // \n
-                this.writer.write('\\');
-                this.writer.write('n');
+                emit('\\');
+                emit('n');
                 break;
             case 0x0C: // \f
-                this.writer.write('\\');
-                this.writer.write('f');
+                emit('\\');
+                emit('f');
                 break;
             case 0x0D: // \r
-                this.writer.write('\\');
-                this.writer.write('r');
+                emit('\\');
+                emit('r');
                 break;
             case 0x22: // "
-                this.writer.write('\\');
-                this.writer.write('"');
+                emit('\\');
+                emit('"');
                 break;
             case 0x5C: // \
-                this.writer.write('\\');
-                this.writer.write('\\');
+                emit('\\');
+                emit('\\');
                 break;
             case 0x7F: // delete control char
-                this.writer.write("\\u007F");
+                emit("\\u007F");
                 break;
             default:
                 if (ch < 32) { // other control char (not strictly necessary)
-                    this.writer.write("\\u00");
-                    this.writer.write(Character.forDigit(ch / 16, 16));
-                    this.writer.write(Character.forDigit(ch % 16, 16));
+                    emit("\\u00");
+                    emit(Character.forDigit(ch / 16, 16));
+                    emit(Character.forDigit(ch % 16, 16));
                 } else {
-                    this.writer.write(ch);
+                    i = emit(label, i);
                 }
             }
         }
-        this.writer.write('"');
+        emit('"');
         final String language = literal.getLanguage();
         if (language != null) {
-            this.writer.write('@');
+            emit('@');
             final int len = language.length();
             boolean minusFound = false;
             for (int i = 0; i < len; ++i) {
@@ -291,7 +364,7 @@ public class TQLWriter extends RDFWriterBase {
                     throw new RDFHandlerException("Cannot serialize language tag '" + language
                             + "' in TQL: invalid char '" + ch + "' (see Turtle specs)");
                 }
-                this.writer.write(ch);
+                emit(ch);
             }
             if (language.charAt(len - 1) == '-') {
                 throw new RDFHandlerException("Cannot serialize language tag '" + language
@@ -300,11 +373,61 @@ public class TQLWriter extends RDFWriterBase {
         } else {
             final URI datatype = literal.getDatatype();
             if (datatype != null && !XMLSchema.STRING.equals(datatype)) {
-                this.writer.write('^');
-                this.writer.write('^');
-                emitURI(datatype);
+                emit('^');
+                emit('^');
+                emitURI(datatype, true);
             }
         }
     }
 
-}
\ No newline at end of file
+    private void emit(final char ch) {
+        // only used for ASCII chars
+        if (this.size == this.buffer.length) {
+            ensureCapacity(1);
+        }
+        this.buffer[this.size++] = (byte) ch;
+    }
+
+    private void emit(final String ascii) {
+        final int length = ascii.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; ++i) {
+            this.buffer[this.size++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private int emit(final String string, final int index) {
+        // emits the char at index in UTF-8, returning the index of its last UTF-16 unit
+        ensureCapacity(4);
+        final char ch = string.charAt(index);
+        if (ch < 0x80) {
+            this.buffer[this.size++] = (byte) ch;
+        } else if (ch < 0x800) {
+            this.buffer[this.size++] = (byte) (0xC0 | ch >> 6);
+            this.buffer[this.size++] = (byte) (0x80 | ch & 0x3F);
+        } else if (!Character.isSurrogate(ch)) {
+            this.buffer[this.size++] = (byte) (0xE0 | ch >> 12);
+            this.buffer[this.size++] = (byte) (0x80 | ch >> 6 & 0x3F);
+            this.buffer[this.size++] = (byte) (0x80 | ch & 0x3F);
+        } else if (Character.isHighSurrogate(ch) && index + 1 < string.length()
+                && Character.isLowSurrogate(string.charAt(index + 1))) {
+            final int cp = Character.toCodePoint(ch, string.charAt(index + 1));
+            this.buffer[this.size++] = (byte) (0xF0 | cp >> 18);
+            this.buffer[this.size++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            this.buffer[this.size++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            this.buffer[this.size++] = (byte) (0x80 | cp & 0x3F);
+            return index + 1;
+        } else {
+            this.buffer[this.size++] = (byte) '?'; // malformed surrogate, as String.getBytes()
+        }
+        return index;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (this.size + length > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer,
+                    Math.max(this.size + length, 2 * this.buffer.length));
+        }
+    }
+
+}
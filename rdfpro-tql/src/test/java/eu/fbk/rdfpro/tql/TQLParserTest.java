@@ -0,0 +1,219 @@
+package eu.fbk.rdfpro.tql;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+public class TQLParserTest {
+
+    private static final ValueFactory VF = ValueFactoryImpl.getInstance();
+
+    private static final String PREFIX = "<http://example.org/s> <http://example.org/p> ";
+
+    private static final int WINDOW = 64 * 1024;
+
+    @Test
+    public void testWindowBoundary() throws Throwable {
+
+        // Shift each term across the 64K window boundary, one char at a time
+        final String[] terms = new String[] { "<http://example.org/crossing-uri>",
+                "\"crossing literal\"", "\"crossing literal\"@en-US",
+                "\"42\"^^<http://www.w3.org/2001/XMLSchema#int>", "_:crossingNode",
+                "\"escape \\\" \\n \\u00E8 \\U0001F600 at boundary\"",
+                "<http://example.org/escaped\\u0020uri>" };
+        for (final String term : terms) {
+            final Value expected = parse(new StringReader(PREFIX + term + " .")).get(0)
+                    .getObject();
+            for (int offset = -term.length() - 2; offset <= 2; ++offset) {
+                final StringBuilder builder = new StringBuilder("#");
+                final int padding = WINDOW - PREFIX.length() - 2 + offset;
+                for (int i = 0; i < padding; ++i) {
+                    builder.append('x');
+                }
+                builder.append('\n');
+                builder.append(PREFIX).append(term).append(" .\n");
+                builder.append(PREFIX).append(term).append(" <http://example.org/g> .\n");
+                final List<Statement> stmts = parse(new StringReader(builder.toString()));
+                Assert.assertEquals(2, stmts.size());
+                Assert.assertEquals(expected, stmts.get(0).getObject());
+                Assert.assertEquals(expected, stmts.get(1).getObject());
+                Assert.assertEquals(VF.createURI("http://example.org/g"), stmts.get(1)
+                        .getContext());
+            }
+        }
+    }
+
+    @Test
+    public void testEscapes() throws Throwable {
+        final List<Statement> stmts = parse(new StringReader("<http://example.org/a\\u0020b> "
+                + "<http://example.org/p> \"q\\\"\\\\\\t\\u00E8\\U0001F600\" .\n"));
+        Assert.assertEquals(VF.createURI("http://example.org/a b"), stmts.get(0).getSubject());
+        Assert.assertEquals("q\"\\\t\u00E8\uD83D\uDE00", stmts.get(0).getObject()
+                .stringValue());
+    }
+
+    @Test
+    public void testBNodePeriod() throws Throwable {
+        for (final String text : new String[] { "_:a <http://example.org/p> _:b.",
+                "_:a <http://example.org/p> _:b.\n", "_:a <http://example.org/p> _:b .",
+                "_:a <http://example.org/p> _:b <http://example.org/g>.\n",
+                "_:a <http://example.org/p> _:b _:g.\n" }) {
+            final List<Statement> stmts = parse(new StringReader(text));
+            Assert.assertEquals(1, stmts.size());
+            Assert.assertEquals("a", ((BNode) stmts.get(0).getSubject()).getID());
+            Assert.assertEquals("b", ((BNode) stmts.get(0).getObject()).getID());
+            final Resource ctx = stmts.get(0).getContext();
+            Assert.assertTrue(ctx == null || ctx.stringValue().endsWith("g"));
+        }
+    }
+
+    @Test
+    public void testEOFInsideTerm() throws Throwable {
+        for (final String text : new String[] { "<http://example.org/s", //
+                PREFIX + "\"abc", //
+                PREFIX + "\"abc\\", //
+                PREFIX + "\"\\u00", //
+                PREFIX + "\"abc\"^^<http://x", //
+                PREFIX + "\"abc\"@", //
+                PREFIX + "_:", //
+                PREFIX + "<http://example.org/o>" }) {
+            try {
+                parse(new StringReader(text));
+                Assert.fail("Expected parse error for: " + text);
+            } catch (final RDFParseException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Throwable {
+
+        // Generate statements with all kinds of terms, including chars requiring escapes
+        final Random random = new Random(0);
+        final List<Statement> stmts = new ArrayList<>();
+        for (int i = 0; i < 50000; ++i) {
+            final Resource subj = i % 3 == 0 ? VF.createBNode("n" + i % 100) : VF
+                    .createURI("http://example.org/s" + i % 1000);
+            final URI pred = i % 5 == 0 ? RDF.TYPE : VF.createURI("http://example.org/p" + i
+                    % 10);
+            final Value obj;
+            switch (i % 5) {
+            case 0:
+                obj = VF.createURI("http://example.org/C" + i % 20);
+                break;
+            case 1:
+                obj = VF.createLiteral(randomString(random), i % 2 == 0 ? "en" : "it-IT");
+                break;
+            case 2:
+                obj = VF.createLiteral(Integer.toString(i), XMLSchema.INT);
+                break;
+            case 3:
+                obj = VF.createBNode("m" + i % 50);
+                break;
+            default:
+                obj = VF.createLiteral(randomString(random));
+            }
+            final Resource ctx = i % 4 == 0 ? null : VF.createURI("http://example.org/g" + i
+                    % 4);
+            stmts.add(ctx == null ? VF.createStatement(subj, pred, obj) : VF.createStatement(
+                    subj, pred, obj, ctx));
+        }
+
+        // Write with TQLWriter, then parse both in full windows and in small random chunks
+        final StringWriter writer = new StringWriter();
+        final TQLWriter tqlWriter = new TQLWriter(writer);
+        tqlWriter.startRDF();
+        for (final Statement stmt : stmts) {
+            tqlWriter.handleStatement(stmt);
+        }
+        tqlWriter.endRDF();
+        final String text = writer.toString();
+        for (final boolean chunked : new boolean[] { false, true }) {
+            final Reader reader = chunked ? chunked(new StringReader(text), random)
+                    : new StringReader(text);
+            final List<Statement> parsed = parse(reader);
+            Assert.assertEquals(stmts.size(), parsed.size());
+            for (int i = 0; i < stmts.size(); ++i) {
+                assertEquals(stmts.get(i), parsed.get(i));
+            }
+        }
+    }
+
+    private static String randomString(final Random random) {
+        final char[] chars = new char[] { 'a', 'Z', '0', ' ', '"', '\'', '\\', '\n', '\r', '\t',
+                '\u0001', '\u007f', '\u00E8', '\u4E2D', '>', '<', '.', '#', '@' };
+        final StringBuilder builder = new StringBuilder();
+        final int length = random.nextInt(40);
+        for (int i = 0; i < length; ++i) {
+            if (random.nextInt(20) == 0) {
+                builder.append("\uD83D\uDE00");
+            } else {
+                builder.append(chars[random.nextInt(chars.length)]);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void assertEquals(final Statement expected, final Statement actual) {
+        Assert.assertEquals(expected.getSubject(), actual.getSubject());
+        Assert.assertEquals(expected.getPredicate(), actual.getPredicate());
+        Assert.assertEquals(expected.getContext(), actual.getContext());
+        if (expected.getObject() instanceof Literal) {
+            final Literal e = (Literal) expected.getObject();
+            final Literal a = (Literal) actual.getObject();
+            Assert.assertEquals(e.getLabel(), a.getLabel());
+            Assert.assertEquals(e.getLanguage(), a.getLanguage());
+            if (e.getLanguage() == null) {
+                Assert.assertEquals(e.getDatatype() == null ? XMLSchema.STRING : e
+                        .getDatatype(), a.getDatatype() == null ? XMLSchema.STRING : a
+                        .getDatatype());
+            }
+        } else {
+            Assert.assertEquals(expected.getObject(), actual.getObject());
+        }
+    }
+
+    private static Reader chunked(final Reader reader, final Random random) {
+        return new FilterReader(reader) {
+
+            @Override
+            public int read(final char[] buffer, final int offset, final int length)
+                    throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1 + random.nextInt(13)));
+            }
+
+        };
+    }
+
+    private static List<Statement> parse(final Reader reader) throws Throwable {
+        final List<Statement> stmts = new ArrayList<>();
+        final TQLParser parser = new TQLParser();
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        parser.setRDFHandler(new StatementCollector(stmts));
+        parser.parse(reader, "http://example.org/");
+        return stmts;
+    }
+
+}
@@ -0,0 +1,110 @@
+package eu.fbk.rdfpro.tql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+public class TQLWriterTest {
+
+    private static final ValueFactory VF = ValueFactoryImpl.getInstance();
+
+    private static final URI S = VF.createURI("http://example.org/s");
+
+    private static final URI P = VF.createURI("http://example.org/p");
+
+    private static final String PREFIX = "<http://example.org/s> <http://example.org/p> ";
+
+    @Test
+    public void testURIEscapes() throws Throwable {
+        final URI uri = VF.createURI("http://example.org/a b\"<>\\^`{|}\u007F\u0001\u00E8");
+        Assert.assertEquals(PREFIX + "<http://example.org/a\\u0020b\\u0022\\u003C\\u003E"
+                + "\\u005C\\u005E\\u0060\\u007B\\u007C\\u007D\\u007F\\u0001\u00E8> .\n",
+                write(VF.createStatement(S, P, uri)));
+    }
+
+    @Test
+    public void testLiteralEscapes() throws Throwable {
+        final String label = "q\"\\\t\n\r\b\f\u0001\u007F\u00E8\u4E2D\uD83D\uDE00";
+        Assert.assertEquals(PREFIX + "\"q\\\"\\\\\\t\\n\\r\\b\\f\\u0001\\u007F\u00E8\u4E2D"
+                + "\uD83D\uDE00\" .\n", write(VF.createStatement(S, P, VF.createLiteral(label))));
+    }
+
+    @Test
+    public void testLiterals() throws Throwable {
+        Assert.assertEquals(PREFIX + "\"plain\" .\n",
+                write(VF.createStatement(S, P, VF.createLiteral("plain"))));
+        Assert.assertEquals(PREFIX + "\"string\" .\n", write(VF.createStatement(S, P,
+                VF.createLiteral("string", XMLSchema.STRING))));
+        Assert.assertEquals(PREFIX + "\"chat\"@fr-ca .\n",
+                write(VF.createStatement(S, P, VF.createLiteral("chat", "fr-ca"))));
+        Assert.assertEquals(PREFIX + "\"42\"^^<http://www.w3.org/2001/XMLSchema#int> "
+                + "<http://example.org/g> .\n", write(VF.createStatement(S, P,
+                VF.createLiteral("42", XMLSchema.INT), VF.createURI("http://example.org/g"))));
+        for (final String language : new String[] { "en_US", "en-", "-en", "1en" }) {
+            try {
+                write(VF.createStatement(S, P, VF.createLiteral("x", language)));
+                Assert.fail("Expected error for language " + language);
+            } catch (final RDFHandlerException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testBNodes() throws Throwable {
+        Assert.assertEquals("_:a20b <http://example.org/p> _:genid-start--x .\n",
+                write(VF.createStatement(VF.createBNode("a b"), P, VF.createBNode("-x"))));
+    }
+
+    @Test
+    public void testStreamAndWriter() throws Throwable {
+
+        // Long output with repeated (cached) URIs and multi-byte chars, spanning several
+        // buffer flushes: the stream and writer outputs match and can be parsed back
+        final List<Statement> stmts = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            final String label = "\u00E8\uD83D\uDE00 " + i;
+            stmts.add(VF.createStatement(VF.createURI("http://example.org/s" + i % 100), P,
+                    i % 2 == 0 ? VF.createLiteral(label, "it") : VF.createLiteral(label),
+                    VF.createURI("http://example.org/g" + i % 3)));
+        }
+        final String text = write(stmts.toArray(new Statement[stmts.size()]));
+        final List<Statement> parsed = new ArrayList<>();
+        final TQLParser parser = new TQLParser();
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        parser.setRDFHandler(new StatementCollector(parsed));
+        parser.parse(new StringReader(text), "http://example.org/");
+        Assert.assertEquals(stmts, parsed);
+    }
+
+    private static String write(final Statement... stmts) throws Throwable {
+        final StringWriter writer = new StringWriter();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (final TQLWriter tqlWriter : new TQLWriter[] { new TQLWriter(writer),
+                new TQLWriter(stream) }) {
+            tqlWriter.startRDF();
+            for (final Statement stmt : stmts) {
+                tqlWriter.handleStatement(stmt);
+            }
+            tqlWriter.endRDF();
+        }
+        final String text = writer.toString();
+        Assert.assertEquals(text, new String(stream.toByteArray(), Charset.forName("UTF-8")));
+        return text;
+    }
+
+}